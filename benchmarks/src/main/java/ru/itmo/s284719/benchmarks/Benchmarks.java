@@ -0,0 +1,45 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runner of benchmarks. It takes the usual JMH's options (for example, the regular expression
+ * of benchmarks: {@code java -jar benchmarks.jar Parser}) and writes results in format JSON
+ * to the file "jmh-result_dd-MM-yyyy_HH-mm-ss.json", if options "-rf" and "-rff" aren't given,
+ * so results of versions can be compared.
+ * Without the regular expression {@link DatabaseHandlerBenchmark} isn't run, because it starts PostgreSQL
+ * (it's run by {@link DatabaseBenchmarks}).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions cmdOptions;
+        try {
+            cmdOptions = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Incorrect options: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+        if (cmdOptions.getIncludes().isEmpty())
+            options.exclude(DatabaseHandlerBenchmark.class.getSimpleName());
+        if (!cmdOptions.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+        if (!cmdOptions.getResult().hasValue())
+            options.result("jmh-result_" +
+                    LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss")) + ".json");
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparisons of elements, which order the priority queue:
+ * {@link SpaceMarine#compareTo} and {@link Pair#compareTo}.
+ * Elements are compared in the cycle over the array, so the JIT can't fold the result.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareBenchmark {
+    /**
+     * The count of compared elements (power of 2).
+     */
+    private static final int COUNT = 1024;
+
+    private SpaceMarine[] marines;
+    private Pair<SpaceMarine, String>[] pairs;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        List<Pair<SpaceMarine, String>> list = Marines.pairs(COUNT, Marines.SEED);
+        pairs = list.toArray(new Pair[COUNT]);
+        marines = new SpaceMarine[COUNT];
+        for (int i = 0; i < COUNT; ++i)
+            marines[i] = pairs[i].first;
+    }
+
+    @Benchmark
+    public int spaceMarine() {
+        int i = index++ & (COUNT - 1);
+        return marines[i].compareTo(marines[(i + 1) & (COUNT - 1)]);
+    }
+
+    @Benchmark
+    public int pair() {
+        int i = index++ & (COUNT - 1);
+        return pairs[i].compareTo(pairs[(i + 1) & (COUNT - 1)]);
+    }
+
+    /**
+     * The comparison of the element with itself: both fields of the pair are compared.
+     */
+    @Benchmark
+    public int pairEqual() {
+        int i = index++ & (COUNT - 1);
+        return pairs[i].compareTo(pairs[i]);
+    }
+}
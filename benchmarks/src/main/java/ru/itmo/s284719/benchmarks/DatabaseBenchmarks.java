@@ -0,0 +1,47 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runner of {@link DatabaseHandlerBenchmark} with counts of concurrent callers from the system property
+ * "bench.threads" (1, 2, 4, 8, 16, 32, 64 by default). It takes the usual JMH's options
+ * (for example, the method: {@code java -cp benchmarks.jar ru.itmo.s284719.benchmarks.DatabaseBenchmarks
+ * DatabaseHandlerBenchmark.insert})
+ * and writes results of every count of threads in format JSON to the file
+ * "jmh-db-result_dd-MM-yyyy_HH-mm-ss_tN.json".
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class DatabaseBenchmarks {
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions cmdOptions;
+        try {
+            cmdOptions = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Incorrect options: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss"));
+        for (String threads : System.getProperty("bench.threads", "1,2,4,8,16,32,64").split(",")) {
+            int count = Integer.parseInt(threads.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-db-result_" + date + "_t" + count + ".json");
+            if (cmdOptions.getIncludes().isEmpty())
+                options.include(DatabaseHandlerBenchmark.class.getSimpleName());
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.itmo.s284719.database.DatabaseHandler;
+import ru.itmo.s284719.database.User;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Statements of {@link DatabaseHandler} with the embedded PostgreSQL ({@link EmbeddedDatabase}):
+ * insert, delete, load of the collection and checks of users. All callers share one handler,
+ * as clients' requests of the server do, so the count of threads ({@link DatabaseBenchmarks}
+ * runs 1 - 64 threads) shows the handler's contention.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseHandlerBenchmark {
+    /**
+     * The count of space marines in the table before the benchmark.
+     */
+    @Param({"1000"})
+    public int rows;
+
+    private EmbeddedDatabase database;
+    private DatabaseHandler handler;
+    private User user;
+    private User unknownUser;
+    /**
+     * The counter of IDs of generated space marines.
+     */
+    private final AtomicInteger nextMarine = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException, ClassNotFoundException, NoSuchAlgorithmException {
+        database = new EmbeddedDatabase();
+        handler = database.openHandler();
+        user = new User("benchmark", "benchmark");
+        unknownUser = new User("unknown", "unknown");
+        if (handler.isLoginFree(user.getLogin()))
+            handler.registerUser(user);
+        for (Pair<SpaceMarine, String> pair : Marines.pairs(rows, Marines.SEED))
+            handler.addSpaceMarineWithCreator(pair.first, user);
+        nextMarine.set(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException, ClassNotFoundException {
+        handler.getDbConnection().close();
+        database.close();
+    }
+
+    /**
+     * The space marine, which is inserted before the invocation for deleting.
+     */
+    @State(Scope.Thread)
+    public static class InsertedMarine {
+        private final Random random = new Random(Marines.SEED);
+        int id;
+
+        @Setup(Level.Invocation)
+        public void insert(DatabaseHandlerBenchmark benchmark) throws SQLException, ClassNotFoundException {
+            id = benchmark.handler.addSpaceMarineWithCreator(benchmark.nextSpaceMarine(random), benchmark.user);
+        }
+    }
+
+    /**
+     * The generator of space marines of the thread.
+     */
+    @State(Scope.Thread)
+    public static class Generator {
+        final Random random = new Random(Marines.SEED);
+    }
+
+    private SpaceMarine nextSpaceMarine(Random random) {
+        return Marines.spaceMarine(random, nextMarine.incrementAndGet());
+    }
+
+    /**
+     * The command "add": the insert of the space marine with its chapter.
+     */
+    @Benchmark
+    public int insert(Generator generator) throws SQLException, ClassNotFoundException {
+        return handler.addSpaceMarineWithCreator(nextSpaceMarine(generator.random), user);
+    }
+
+    /**
+     * The command "remove_by_id": the delete of the row by its ID.
+     */
+    @Benchmark
+    public boolean delete(InsertedMarine marine) throws SQLException, ClassNotFoundException {
+        return handler.deleteSpaceMarineWithCreator(marine.id);
+    }
+
+    /**
+     * The load of the whole collection at the start and the reloading.
+     */
+    @Benchmark
+    public PriorityBlockingQueue<Pair<SpaceMarine, String>> load() throws SQLException, ClassNotFoundException {
+        return handler.getPriorityBlockingQueuePair();
+    }
+
+    /**
+     * The check of the registered user (every request): it's answered by the directory of users.
+     */
+    @Benchmark
+    public boolean authRegistered() throws SQLException, ClassNotFoundException {
+        return handler.isRegisteredUser(user);
+    }
+
+    /**
+     * The check of the unknown user: the query of the table "users" every time.
+     */
+    @Benchmark
+    public boolean authUnknown() throws SQLException, ClassNotFoundException {
+        return handler.isRegisteredUser(unknownUser);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.itmo.s284719.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import ru.itmo.s284719.database.DatabaseHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+
+/**
+ * The PostgreSQL's server for benchmarks and integration runs without the host "pg".
+ * That's the real PostgreSQL (binaries of the library "embedded-postgres" are unpacked to the
+ * temporary directory and started by the JVM), because {@link DatabaseHandler} uses the driver
+ * of PostgreSQL, notifications (pg_notify, LISTEN), the command COPY and the PostgreSQL's SQL,
+ * which the in-process databases (H2 in the mode PostgreSQL) don't have.
+ * The server's address is set to system properties "db.host", "db.port" and "db.name",
+ * so handlers, which are created after that, use this database.
+ * <p>
+ * The main method starts the database for the server:
+ * {@code java -cp benchmarks.jar ru.itmo.s284719.benchmarks.EmbeddedDatabase}.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class EmbeddedDatabase implements Closeable {
+    /**
+     * The login and the password of the database's administrator.
+     */
+    public static final String ADMIN = "postgres";
+    /**
+     * The name of the database.
+     */
+    public static final String DATABASE = "postgres";
+
+    private final EmbeddedPostgres postgres;
+
+    /**
+     * Start the database.
+     */
+    public EmbeddedDatabase() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        System.setProperty("db.host", "localhost");
+        System.setProperty("db.port", Integer.toString(postgres.getPort()));
+        System.setProperty("db.name", DATABASE);
+    }
+
+    /**
+     * @return the new handler of the database with the administrator's data
+     * (the first handler creates the schema).
+     */
+    public DatabaseHandler openHandler() throws SQLException, ClassNotFoundException, NoSuchAlgorithmException {
+        return new DatabaseHandler(ADMIN, ADMIN);
+    }
+
+    public int getPort() {
+        return postgres.getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        postgres.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (EmbeddedDatabase database = new EmbeddedDatabase()) {
+            System.out.println("PostgreSQL is started, the server's options: -Ddb.host=localhost -Ddb.port=" +
+                    database.getPort() + " -Ddb.name=" + DATABASE + ", the admin's login and password: " +
+                    ADMIN + ". Press Enter for the stop.");
+            System.in.read();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.itmo.s284719.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.*;
+import ru.itmo.s284719.network.Converters;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Rendering of the command "show": the collection sorted by the height to JSON
+ * by the same GSON's settings as the server's ones.
+ * GSON reads fields of {@code ZonedDateTime} by the reflection, so on Java 9+ run it with
+ * {@code -jvmArgsAppend "--add-opens=java.base/java.time=ALL-UNNAMED --add-opens=java.base/java.util=ALL-UNNAMED"}.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonShowBenchmark {
+    /**
+     * The count of elements in the collection.
+     */
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final Gson gson = Converters.registerZoneId(new GsonBuilder()).setPrettyPrinting().create();
+    private List<Pair<SpaceMarine, String>> elements;
+    private List<Pair<SpaceMarine, String>> sorted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        elements = Marines.pairs(size, Marines.SEED);
+        sorted = sort(elements);
+    }
+
+    /**
+     * Only the rendering of the sorted collection.
+     */
+    @Benchmark
+    public String toJson() {
+        return gson.toJson(sorted);
+    }
+
+    /**
+     * The whole command: sorting by the height and the rendering.
+     */
+    @Benchmark
+    public String show() {
+        return gson.toJson(sort(elements));
+    }
+
+    private static List<Pair<SpaceMarine, String>> sort(List<Pair<SpaceMarine, String>> elements) {
+        return elements.stream()
+                .sorted(Comparator.comparing(pair -> pair.first.getHeight(),
+                        Comparator.nullsFirst(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,100 @@
+package ru.itmo.s284719.benchmarks;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of space marines for benchmarks. The same seed gives the same elements,
+ * so results of different runs are comparable.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+final class Marines {
+    /**
+     * The default seed of the generator.
+     */
+    static final long SEED = 284719;
+
+    private static final AstartesCategory[] CATEGORIES = AstartesCategory.values();
+    private static final MeleeWeapon[] WEAPONS = MeleeWeapon.values();
+    private static final String[] LOGINS = {"admin", "danhout", "kirill", "guest"};
+
+    private Marines() {
+    }
+
+    /**
+     * Generate the space marine with the ID.
+     *
+     * @param random the random generator.
+     * @param id the space marine's ID.
+     * @return the space marine.
+     */
+    static SpaceMarine spaceMarine(Random random, int id) {
+        SpaceMarine spaceMarine = new SpaceMarine("Marine " + id,
+                new Coordinates(random.nextInt(1000) - 342, (long) random.nextInt(1000)),
+                1L + random.nextInt(1000),
+                random.nextInt(10) == 0 ? null : random.nextInt(300),
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                WEAPONS[random.nextInt(WEAPONS.length)],
+                new Chapter("Chapter " + random.nextInt(100), "Legion " + random.nextInt(20),
+                        1 + random.nextInt(1000), "World " + random.nextInt(50)));
+        spaceMarine.setId(id);
+        return spaceMarine;
+    }
+
+    /**
+     * Generate elements of the collection with IDs from 1 to the count.
+     *
+     * @param count the count of elements.
+     * @param seed the seed of the generator.
+     * @return the elements.
+     */
+    static List<Pair<SpaceMarine, String>> pairs(int count, long seed) {
+        Random random = new Random(seed);
+        List<Pair<SpaceMarine, String>> pairs = new ArrayList<>(count);
+        for (int id = 1; id <= count; ++id)
+            pairs.add(new Pair<>(spaceMarine(random, id), LOGINS[random.nextInt(LOGINS.length)]));
+        return pairs;
+    }
+
+    /**
+     * Write generated space marines to the file in the format of the command "load".
+     *
+     * @param path the file's path.
+     * @param count the count of elements.
+     * @param seed the seed of the generator.
+     */
+    static void writeJson(Path path, int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (int id = 1; id <= count; ++id) {
+                SpaceMarine marine = spaceMarine(random, id);
+                Chapter chapter = marine.getChapter();
+                writer.write("  {\"name\": \"" + marine.getName() + "\", " +
+                        "\"coordinates\": {\"x\": " + marine.getCoordinates().getX() +
+                        ", \"y\": " + marine.getCoordinates().getY() + "}, " +
+                        "\"health\": " + marine.getHealth() + ", " +
+                        "\"height\": " + marine.getHeight() + ", " +
+                        "\"category\": \"" + marine.getCategory() + "\", " +
+                        "\"meleeWeapon\": \"" + marine.getMeleeWeapon() + "\", " +
+                        "\"chapter\": {\"name\": \"" + chapter.getName() + "\", " +
+                        "\"parentLegion\": \"" + chapter.getParentLegion() + "\", " +
+                        "\"marinesCount\": " + chapter.getMarinesCount() + ", " +
+                        "\"world\": \"" + chapter.getWorld() + "\"}}");
+                writer.write(id == count ? "\n" : ",\n");
+            }
+            writer.write("]\n");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.itmo.s284719.network.ObjectSocketChannel;
+import ru.itmo.s284719.network.commands.Show;
+import ru.itmo.s284719.network.commands.UserCommand;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of {@link ObjectSocketChannel} over the loopback: the client's command is sent
+ * to the server's channel and the answer with the space marines is sent back,
+ * as the client and the server do for every command.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectSocketChannelBenchmark {
+    /**
+     * The count of space marines in the answer.
+     */
+    @Param({"1", "100", "10000"})
+    public int answerLength;
+
+    private ServerSocketChannel serverSocket;
+    private SocketChannel client;
+    private SocketChannel server;
+    private UserCommand command;
+    private ArrayList<Pair<SpaceMarine, String>> answer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        serverSocket = ServerSocketChannel.open();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(serverSocket.getLocalAddress());
+        server = serverSocket.accept();
+        client.configureBlocking(false);
+        server.configureBlocking(false);
+        command = new UserCommand(new Show(), "admin", "admin");
+        answer = new ArrayList<>(Marines.pairs(answerLength, Marines.SEED));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+        serverSocket.close();
+    }
+
+    /**
+     * The command to the server and the empty answer back.
+     */
+    @Benchmark
+    public Object command() throws IOException, ClassNotFoundException {
+        ObjectSocketChannel.sendObject(client, command);
+        Object received = ObjectSocketChannel.getObject(server);
+        ObjectSocketChannel.sendObject(server, Boolean.TRUE);
+        ObjectSocketChannel.getObject(client);
+        return received;
+    }
+
+    /**
+     * The command to the server and the answer with space marines back.
+     */
+    @Benchmark
+    public Object commandWithAnswer() throws IOException, ClassNotFoundException {
+        ObjectSocketChannel.sendObject(client, command);
+        ObjectSocketChannel.getObject(server);
+        ObjectSocketChannel.sendObject(server, answer);
+        return ObjectSocketChannel.getObject(client);
+    }
+}
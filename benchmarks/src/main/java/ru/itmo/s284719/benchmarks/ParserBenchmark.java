@@ -0,0 +1,50 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.itmo.s284719.network.parser.Parser;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of the collection from the file (command "load"): {@link Parser#jsonToPriorityQueue}
+ * of generated files with different counts of space marines.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    /**
+     * The count of space marines in the file.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("marines-" + size + '-', ".json");
+        Marines.writeJson(file, size, Marines.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public PriorityQueue<SpaceMarine> jsonToPriorityQueue() throws IOException {
+        return new Parser().jsonToPriorityQueue(file.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package ru.itmo.s284719.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of the server's collection ({@link PriorityBlockingQueue} of pairs)
+ * with sizes from 10^3 to 10^6 elements. Adding and removing keep the size of the queue,
+ * so every invocation measures the same state.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PriorityQueueBenchmark {
+    /**
+     * The count of elements in the queue.
+     */
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private PriorityBlockingQueue<Pair<SpaceMarine, String>> queue;
+    private List<Pair<SpaceMarine, String>> elements;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        elements = Marines.pairs(size, Marines.SEED);
+        queue = new PriorityBlockingQueue<>(elements);
+        random = new Random(Marines.SEED);
+    }
+
+    /**
+     * Command "add_if_min"/"remove_head": the head is removed and added back.
+     */
+    @Benchmark
+    public Object pollAndAdd() {
+        Pair<SpaceMarine, String> head = queue.poll();
+        queue.add(head);
+        return head;
+    }
+
+    /**
+     * Command "add": the random element is added, the head is removed.
+     */
+    @Benchmark
+    public Object addAndPoll() {
+        queue.add(elements.get(random.nextInt(size)));
+        return queue.poll();
+    }
+
+    /**
+     * Commands "remove_by_id"/"update": the random element is removed by the linear search and added back.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean removeAndAdd() {
+        Pair<SpaceMarine, String> pair = elements.get(random.nextInt(size));
+        boolean removed = queue.remove(pair);
+        queue.add(pair);
+        return removed;
+    }
+
+    /**
+     * Commands "show", "info" and aggregates: iteration over all elements.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void iterate(Blackhole blackhole) {
+        for (Pair<SpaceMarine, String> pair : queue)
+            blackhole.consume(pair.first.getHeight());
+    }
+}
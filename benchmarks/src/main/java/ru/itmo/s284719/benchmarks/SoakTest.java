@@ -0,0 +1,339 @@
+package ru.itmo.s284719.benchmarks;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The soak test: the server and the load generator run in separate JVMs for hours
+ * (with the embedded PostgreSQL of {@link EmbeddedDatabase} or the storage in the memory),
+ * the server's heap after the full GC, open file descriptors, threads, connections and throughput
+ * are sampled by JMX. The test fails (the exit code 1), if the heap, descriptors, threads or connections
+ * grow or the throughput falls over the measurement more than the tolerance
+ * (the change by the least squares' line relative to the mean).
+ * <p>
+ * System properties: "soak.duration" - minutes of the load (240), "soak.warmup" - minutes,
+ * which aren't used for trends (10), "soak.interval" - seconds between samples (60),
+ * "soak.tolerance" - the allowed relative change (0.1), "soak.storage" - "embedded" or "memory",
+ * "soak.port" and "soak.jmxPort" - the server's ports (8123, 9123), "soak.serverOptions" - options
+ * of the server's JVM (for example, "-Xmx256m"). Properties "load.*" are given to the load generator
+ * (the rate is 200 requests per second and 20 connections by default). By default, one user sends
+ * the steady mix {@link #STEADY_MIX}: it removes heads as often as it adds elements, so the collection
+ * doesn't grow and the heap grows only by leaks (the mix, which adds more than it removes, grows the heap
+ * of the healthy server too).
+ * Samples and outputs of JVMs are written to the directory "soak_dd-MM-yyyy_HH-mm-ss".
+ * The build runs the test with the profile "soak": {@code mvn -P soak verify -Dsoak.duration=60}.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SoakTest {
+    /**
+     * Names of sampled metrics.
+     */
+    private static final String[] METRICS = {"heap, MB", "descriptors", "threads", "connections", "requests/s"};
+    /**
+     * The index of the throughput, which mustn't fall (other metrics mustn't grow).
+     */
+    private static final int THROUGHPUT = 4;
+    /**
+     * The time of the server's start in seconds.
+     */
+    private static final long START_TIMEOUT = 120;
+    /**
+     * The default mix of commands of the load: "add" and "remove_head" keep the collection's size.
+     */
+    static final String STEADY_MIX = "add:10,remove_head:10,update:10,show:1," +
+            "info:23,average_of_height:23,count_greater_than_melee_weapon:23";
+
+    private static final PrintWriter out = new PrintWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+    private static final PrintWriter err = new PrintWriter(
+            new OutputStreamWriter(System.err, StandardCharsets.UTF_8), true);
+
+    public static void main(String[] args) throws Exception {
+        long duration = TimeUnit.MINUTES.toSeconds(Long.getLong("soak.duration", 240));
+        long warmup = TimeUnit.MINUTES.toSeconds(Long.getLong("soak.warmup", 10));
+        long interval = Long.getLong("soak.interval", 60);
+        double tolerance = Double.parseDouble(System.getProperty("soak.tolerance", "0.1"));
+        boolean embedded = !System.getProperty("soak.storage", "embedded").equals("memory");
+        int port = Integer.getInteger("soak.port", 8123);
+        int jmxPort = Integer.getInteger("soak.jmxPort", 9123);
+        Path directory = Paths.get("soak_" +
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm-ss")));
+        Files.createDirectories(directory);
+
+        EmbeddedDatabase database = embedded ? new EmbeddedDatabase() : null;
+        Process server = null;
+        Process load = null;
+        List<double[]> samples = new ArrayList<>();
+        try {
+            // the server's JVM with JMX: the port, the admin's login and password are read from the console.
+            List<String> serverOptions = new ArrayList<>(options(System.getProperty("soak.serverOptions", "")));
+            serverOptions.addAll(Arrays.asList(
+                    "-Dcom.sun.management.jmxremote.port=" + jmxPort,
+                    "-Dcom.sun.management.jmxremote.rmi.port=" + jmxPort,
+                    "-Dcom.sun.management.jmxremote.authenticate=false",
+                    "-Dcom.sun.management.jmxremote.ssl=false",
+                    "-Djava.rmi.server.hostname=localhost"));
+            String admin = "admin";
+            if (embedded) {
+                admin = EmbeddedDatabase.ADMIN;
+                serverOptions.addAll(Arrays.asList("-Ddb.host=localhost", "-Ddb.port=" + database.getPort(),
+                        "-Ddb.name=" + EmbeddedDatabase.DATABASE));
+            } else {
+                serverOptions.add("-Dserver.storage=memory");
+            }
+            server = startJava(serverOptions, "ru.itmo.s284719.server.Server", directory.resolve("server.out"));
+            Writer console = new OutputStreamWriter(server.getOutputStream(), StandardCharsets.UTF_8);
+            console.write(port + "\n" + admin + '\n' + admin + '\n');
+            console.flush();
+            waitForPort(port);
+
+            try (JMXConnector connector = connectJmx(jmxPort)) {
+                MBeanServerConnection mBeans = connector.getMBeanServerConnection();
+                // the load generator's JVM with the schedule for the whole test.
+                List<String> loadOptions = new ArrayList<>(Arrays.asList("-Dload.address=localhost:" + port,
+                        "-Dload.warmup=0", "-Dload.duration=" + duration));
+                if (System.getProperty("load.rate") == null)
+                    loadOptions.add("-Dload.rate=200");
+                if (System.getProperty("load.connections") == null)
+                    loadOptions.add("-Dload.connections=20");
+                // the only user owns every head, so each "remove_head" removes the element.
+                if (System.getProperty("load.mix") == null) {
+                    loadOptions.add("-Dload.mix=" + STEADY_MIX);
+                    if (System.getProperty("load.users") == null)
+                        loadOptions.add("-Dload.users=1");
+                }
+                for (String name : System.getProperties().stringPropertyNames())
+                    if (name.startsWith("load.") && !name.equals("load.address") && !name.equals("load.duration"))
+                        loadOptions.add("-D" + name + '=' + System.getProperty(name));
+                load = startJava(loadOptions, "ru.itmo.s284719.loadgen.LoadGenerator", directory.resolve("load.out"));
+                out.println("Soak test: " + duration / 60 + " min, samples every " + interval + " s, " +
+                        (embedded ? "embedded PostgreSQL" : "storage in the memory") + ", results: " + directory + '.');
+
+                try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(directory.resolve("samples.csv")))) {
+                    csv.println("seconds," + String.join(",", METRICS));
+                    long start = System.nanoTime();
+                    long lastRequests = requests(mBeans);
+                    long lastTime = start;
+                    while (load.isAlive()) {
+                        if (load.waitFor(interval, TimeUnit.SECONDS))
+                            break;
+                        long now = System.nanoTime();
+                        long requests = requests(mBeans);
+                        double[] sample = sample(mBeans, (now - start) / 1e9,
+                                (requests - lastRequests) / ((now - lastTime) / 1e9));
+                        lastRequests = requests;
+                        lastTime = now;
+                        samples.add(sample);
+                        csv.println(csvLine(sample));
+                        csv.flush();
+                        out.println(String.format("%6.0f s: heap %.1f MB, descriptors %.0f, threads %.0f, " +
+                                "connections %.0f, %.1f requests/s.", sample[0], sample[1], sample[2], sample[3],
+                                sample[4], sample[5]));
+                    }
+                }
+            }
+        } finally {
+            if (load != null)
+                load.destroy();
+            if (server != null) {
+                try (Writer console = new OutputStreamWriter(server.getOutputStream(), StandardCharsets.UTF_8)) {
+                    console.write("exit\n");
+                } catch (IOException e) {
+                    // the server is already stopped.
+                }
+                if (!server.waitFor(30, TimeUnit.SECONDS))
+                    server.destroy();
+            }
+            if (database != null)
+                database.close();
+        }
+        System.exit(analyze(samples, warmup, tolerance) ? 0 : 1);
+    }
+
+    /**
+     * Print trends of metrics after the warmup.
+     *
+     * @param samples samples: the time in seconds and values of metrics.
+     * @param warmup the time of the warmup in seconds.
+     * @param tolerance the allowed relative change.
+     * @return true, if metrics don't drift.
+     */
+    static boolean analyze(List<double[]> samples, long warmup, double tolerance) {
+        List<double[]> measured = new ArrayList<>();
+        for (double[] sample : samples)
+            if (sample[0] >= warmup)
+                measured.add(sample);
+        if (measured.size() < 3) {
+            err.println("Too few samples after the warmup: " + measured.size() + '.');
+            return false;
+        }
+        boolean passed = true;
+        out.println();
+        String format = "%-12s %10s %10s %12s %10s  %s";
+        out.println(String.format(format, "Metric", "first", "last", "slope per h", "change", "result"));
+        for (int metric = 0; metric < METRICS.length; ++metric) {
+            double change = relativeChange(measured, metric + 1);
+            boolean failed = metric == THROUGHPUT ? change < -tolerance : change > tolerance;
+            passed &= !failed;
+            out.println(String.format(format, METRICS[metric],
+                    String.format("%.1f", measured.get(0)[metric + 1]),
+                    String.format("%.1f", measured.get(measured.size() - 1)[metric + 1]),
+                    String.format("%.2f", slope(measured, metric + 1) * 3600),
+                    String.format("%+.1f%%", change * 100), failed ? "FAILED" : "ok"));
+        }
+        out.println(passed ? "The soak test is passed." : "The soak test is failed: metrics drift more than " +
+                String.format("%.0f%%", tolerance * 100) + '.');
+        return passed;
+    }
+
+    /**
+     * @param samples samples.
+     * @param column the metric's column.
+     * @return the slope of the least squares' line per second.
+     */
+    static double slope(List<double[]> samples, int column) {
+        double meanTime = 0;
+        double meanValue = 0;
+        for (double[] sample : samples) {
+            meanTime += sample[0];
+            meanValue += sample[column];
+        }
+        meanTime /= samples.size();
+        meanValue /= samples.size();
+        double covariance = 0;
+        double variance = 0;
+        for (double[] sample : samples) {
+            covariance += (sample[0] - meanTime) * (sample[column] - meanValue);
+            variance += (sample[0] - meanTime) * (sample[0] - meanTime);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    /**
+     * @param samples samples.
+     * @param column the metric's column.
+     * @return the change of the metric by the least squares' line over samples relative to the mean.
+     */
+    static double relativeChange(List<double[]> samples, int column) {
+        double mean = 0;
+        for (double[] sample : samples)
+            mean += sample[column];
+        mean /= samples.size();
+        double change = slope(samples, column) * (samples.get(samples.size() - 1)[0] - samples.get(0)[0]);
+        return mean == 0 ? (change == 0 ? 0 : Math.signum(change)) : change / Math.abs(mean);
+    }
+
+    /**
+     * Sample the server's metrics after the full GC (so the heap is the heap of live objects).
+     *
+     * @param mBeans the server's MBeans.
+     * @param seconds the time since the start.
+     * @param throughput requests per second since the last sample.
+     * @return the sample.
+     */
+    private static double[] sample(MBeanServerConnection mBeans, double seconds, double throughput) throws Exception {
+        ObjectName memory = new ObjectName("java.lang:type=Memory");
+        mBeans.invoke(memory, "gc", null, null);
+        long heap = (Long) ((CompositeData) mBeans.getAttribute(memory, "HeapMemoryUsage")).get("used");
+        double descriptors;
+        try {
+            descriptors = ((Number) mBeans.getAttribute(new ObjectName("java.lang:type=OperatingSystem"),
+                    "OpenFileDescriptorCount")).doubleValue();
+        } catch (Exception e) {
+            // the attribute exists only in Unix.
+            descriptors = 0;
+        }
+        int threads = (Integer) mBeans.getAttribute(new ObjectName("java.lang:type=Threading"), "ThreadCount");
+        long connections = (Long) mBeans.getAttribute(
+                new ObjectName("ru.itmo.s284719:type=Gauge,name=connections"), "Value");
+        return new double[]{seconds, heap / (double) (1 << 20), descriptors, threads, connections, throughput};
+    }
+
+    private static long requests(MBeanServerConnection mBeans) throws Exception {
+        return (Long) mBeans.getAttribute(new ObjectName("ru.itmo.s284719:type=Server,name=Metrics"), "Requests");
+    }
+
+    private static String csvLine(double[] sample) {
+        StringBuilder line = new StringBuilder(String.format("%.0f", sample[0]));
+        for (int i = 1; i < sample.length; ++i)
+            line.append(',').append(String.format("%.2f", sample[i]));
+        return line.toString();
+    }
+
+    /**
+     * Start the class in the new JVM with the same class path.
+     *
+     * @param options options of the JVM.
+     * @param mainClass the main class.
+     * @param output the file for the standard output and errors.
+     * @return the process.
+     */
+    private static Process startJava(List<String> options, String mainClass, Path output) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // GSON reads fields of classes java.time and java.util by the reflection, Java 9+ closes them.
+        if (!System.getProperty("java.specification.version").startsWith("1."))
+            command.addAll(Arrays.asList("--add-opens", "java.base/java.time=ALL-UNNAMED",
+                    "--add-opens", "java.base/java.util=ALL-UNNAMED"));
+        command.addAll(options);
+        if (System.getProperty("log4j.configurationFile") != null)
+            command.add("-Dlog4j.configurationFile=" + System.getProperty("log4j.configurationFile"));
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), mainClass));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output.toFile()).start();
+    }
+
+    private static List<String> options(String line) {
+        List<String> options = new ArrayList<>();
+        for (String option : line.trim().split("\\s+"))
+            if (!option.isEmpty())
+                options.add(option);
+        return options;
+    }
+
+    private static void waitForPort(int port) throws IOException, InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(START_TIMEOUT);
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 1000);
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > end)
+                    throw new IOException("The server isn't started on the port " + port + '.', e);
+                Thread.sleep(500);
+            }
+        }
+    }
+
+    private static JMXConnector connectJmx(int port) throws IOException, InterruptedException {
+        JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + port + "/jmxrmi");
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(START_TIMEOUT);
+        while (true) {
+            try {
+                return JMXConnectorFactory.connect(url);
+            } catch (IOException e) {
+                if (System.nanoTime() > end)
+                    throw e;
+                Thread.sleep(500);
+            }
+        }
+    }
+}
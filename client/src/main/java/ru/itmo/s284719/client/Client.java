@@ -5,7 +5,10 @@ import org.apache.logging.log4j.Logger;
 import ru.itmo.s284719.network.parser.Parser;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 /**@version 0.2
  * @author Danhout
@@ -23,6 +26,11 @@ public class Client {
      * Default server's PORT.
      */
     public static final int DEFAULT_PORT = 8000;
+    /**
+     * The system property with addresses of the cluster's nodes in the order of their numbers
+     * ("host:port,host:port"), the server's IP and PORT aren't read in this case.
+     */
+    public static final String CLUSTER_NODES = "cluster.nodes";
     /*
      * System error's streams of client with auto-flush.
      */
@@ -49,6 +57,28 @@ public class Client {
         // declare client.
         ClientConsole clientConsole;
 
+        // if (addresses of the cluster's nodes are given) than: connect to the cluster.
+        String clusterNodes = System.getProperty(CLUSTER_NODES);
+        if (clusterNodes != null) {
+            List<InetSocketAddress> nodes = new ArrayList<>();
+            try {
+                for (String node : clusterNodes.split(",")) {
+                    String[] address = Parser.normalise(node).split(":");
+                    if (address.length != 2) throw new IllegalArgumentException();
+                    nodes.add(new InetSocketAddress(address[0], Integer.parseInt(address[1])));
+                }
+            } catch (IllegalArgumentException e) {
+                // logging.
+                logger.fatal("Incorrect addresses of the cluster's nodes: \"" + clusterNodes + "\".");
+                err.println("Incorrect addresses of the cluster's nodes, the format: host:port,host:port.");
+                System.exit(1);
+            }
+            // logging.
+            logger.info("Connect to the cluster with " + nodes.size() + " nodes: " + nodes + '.');
+            new ClientConsole(nodes);
+            return;
+        }
+
         // create server's IP and PORT for connection.
         String ip = DEFAULT_IP;
         int port = DEFAULT_PORT;
@@ -16,6 +16,7 @@ import java.net.UnknownHostException;
 import java.nio.channels.SocketChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Client's class with really commands.
@@ -52,6 +53,10 @@ public class ClientConsole extends SimpleCMD {
      * The user's password.
      */
     private String password = null;
+    /**
+     * The router of commands between nodes of the cluster or null for the single server.
+     */
+    private final ClusterRouter cluster;
 
     /**
      * Client's constructor.
@@ -63,6 +68,23 @@ public class ClientConsole extends SimpleCMD {
         // initialise server's IP and PORT.
         IP = InetAddress.getByName(address).getHostAddress();
         PORT = port;
+        cluster = null;
+
+        // connect to server.
+        connectionToServer();
+    }
+
+    /**
+     * Client's constructor for the cluster.
+     * The main connection goes to the first node, other nodes are connected by the first command to them.
+     *
+     * @param nodes addresses of the cluster's nodes by their numbers.
+     */
+    public ClientConsole(List<InetSocketAddress> nodes) {
+        // initialise the first node's IP and PORT.
+        IP = nodes.get(0).getAddress().getHostAddress();
+        PORT = nodes.get(0).getPort();
+        cluster = nodes.size() > 1 ? new ClusterRouter(nodes) : null;
 
         // connect to server.
         connectionToServer();
@@ -76,6 +98,8 @@ public class ClientConsole extends SimpleCMD {
                 if (channel == null) {
                     throw new IOException("The server is disconnected.");
                 }
+                if (cluster != null)
+                    cluster.setChannel(0, channel);
                 // logging.
                 logger.error("Connected to server with IP: " + IP + ", PORT: " + PORT + '.');
                 out.println("\u001B[32m" + "Connected to server with IP: " + IP + ", Port: " + PORT + "..." + "\u001B[0m");
@@ -116,6 +140,33 @@ public class ClientConsole extends SimpleCMD {
     }
 
 
+    /**
+     * Send the command to the server (or to nodes of the cluster) and get the answer.
+     *
+     * @param userCmd the command with the user's data.
+     * @return the server's answer.
+     */
+    private Object request(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        if (cluster != null)
+            return cluster.route(userCmd);
+        ObjectSocketChannel.sendObject(channel, userCmd);
+        return ObjectSocketChannel.getObject(channel);
+    }
+
+    /**
+     * Check the empty answer to the command, which changes the collection:
+     * print the server's refusal (for example, of the read-only replica) or the incorrect answer.
+     *
+     * @param object the server's answer.
+     */
+    private void checkEmptyAnswer(Object object) {
+        if (object instanceof String) {
+            err.println(object);
+        } else if (object != null) {
+            err.println("Invalid object type returned: expected \"null\".");
+        }
+    }
+
     public void checkConnection() throws IOException {
         if (!channel.isConnected()) {
             throw new IOException("Server with IP: " + IP + ", Port: " + PORT + " is unavailable.");
@@ -169,8 +220,7 @@ public class ClientConsole extends SimpleCMD {
             else {
                 // logging.
                 logger.info("Send user's login to server with IP: " + IP + ", PORT: " + PORT + " for registering.");
-                ObjectSocketChannel.sendObject(channel, new UserCommand(null, login, null));
-                Boolean isFreeLogin = (Boolean) ObjectSocketChannel.getObject(channel);
+                Boolean isFreeLogin = (Boolean) request(new UserCommand(null, login, null));
                 if (isFreeLogin) {
                     // logging.
                     logger.info("Login: " + login + " is free for registering.");
@@ -210,8 +260,15 @@ public class ClientConsole extends SimpleCMD {
             else {
                 // logging.
                 logger.info("Send user's full data to server with IP: " + IP + ", PORT: " + PORT + " for registering.");
-                ObjectSocketChannel.sendObject(channel, new UserCommand(null, login, password));
-                ObjectSocketChannel.getObject(channel);
+                // if (other user has taken the login before) than: the server answers false.
+                if (Boolean.FALSE.equals(request(new UserCommand(null, login, password)))) {
+                    // logging.
+                    logger.info("Login: " + login + " is taken by other user.");
+                    err.println("The login is taken by other user.");
+                    this.login = null;
+                    registerUser();
+                    return;
+                }
                 this.password = password;
             }
         }
@@ -244,8 +301,7 @@ public class ClientConsole extends SimpleCMD {
             else {
                 // logging.
                 logger.info("Send user's login to server with IP: " + IP + ", PORT: " + PORT + " for logging.");
-                ObjectSocketChannel.sendObject(channel, new UserCommand(null, login, null));
-                Boolean isFreeLogin = (Boolean) ObjectSocketChannel.getObject(channel);
+                Boolean isFreeLogin = (Boolean) request(new UserCommand(null, login, null));
                 if (!isFreeLogin) {
                     // logging.
                     logger.info("Login: " + login + " is exist.");
@@ -285,8 +341,7 @@ public class ClientConsole extends SimpleCMD {
             else {
                 // logging.
                 logger.info("Send user's full data to server with IP: " + IP + ", PORT: " + PORT + " for logging.");
-                ObjectSocketChannel.sendObject(channel, new UserCommand(null, login, password));
-                Boolean isCorrectPassword = (Boolean) ObjectSocketChannel.getObject(channel);
+                Boolean isCorrectPassword = (Boolean) request(new UserCommand(null, login, password));
                 if (isCorrectPassword) {
                     this.password = password;
                 } else {
@@ -318,8 +373,7 @@ public class ClientConsole extends SimpleCMD {
         // else print to ru.itmo.s284719.client's console an information about the collection.
         try {
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new Info(), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new Info(), login, password));
 
             if (!object.getClass().equals(String.class)) {
                 err.println("Invalid object type returned: expected \"String\".");
@@ -348,8 +402,7 @@ public class ClientConsole extends SimpleCMD {
         // else: print that.
         try {
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new Show(), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new Show(), login, password));
 
             if (!object.getClass().equals(String.class)) {
                 err.println("Invalid object type returned: expected \"String\".");
@@ -380,13 +433,10 @@ public class ClientConsole extends SimpleCMD {
             SpaceMarine spaceMarine = inputSpaceMarine();
 
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new Add(spaceMarine), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new Add(spaceMarine), login, password));
 
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
+            checkEmptyAnswer(object);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         }
@@ -426,12 +476,9 @@ public class ClientConsole extends SimpleCMD {
             SpaceMarine spaceMarine = inputSpaceMarine();
             // update element from collection with the ID.
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new Update(id, spaceMarine), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new Update(id, spaceMarine), login, password));
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
+            checkEmptyAnswer(object);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         }
@@ -459,12 +506,9 @@ public class ClientConsole extends SimpleCMD {
             }
 
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new RemoveById(id), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new RemoveById(id), login, password));
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
+            checkEmptyAnswer(object);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         } catch (IllegalArgumentException e) {
@@ -482,12 +526,9 @@ public class ClientConsole extends SimpleCMD {
     public void clear(String[] args) throws IOException {
         try {
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new Clear(), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new Clear(), login, password));
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
+            checkEmptyAnswer(object);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         }
@@ -538,12 +579,13 @@ public class ClientConsole extends SimpleCMD {
         // else if (the queue isn't empty): print and remove element from head of the collection.
         try {
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new RemoveHead(), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new RemoveHead(), login, password));
 
             if (object == null) {
             } else if (object.getClass().equals(Pair.class)) {
                 out.println(object);
+            } else if (object instanceof String) {
+                err.println(object);
             } else {
                 err.println("Invalid object type returned: expected \"Optional<Pair<SpaceMarine, String>>\".");
             }
@@ -571,12 +613,9 @@ public class ClientConsole extends SimpleCMD {
             SpaceMarine spaceMarine = inputSpaceMarine();
             // if (the element is minimal) than: add the element to the collection.
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new AddIfMin(spaceMarine), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new AddIfMin(spaceMarine), login, password));
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
+            checkEmptyAnswer(object);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         }
@@ -601,12 +640,9 @@ public class ClientConsole extends SimpleCMD {
             SpaceMarine spaceMarine = inputSpaceMarine();
             // remove all elements from the collection greater than the element.
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new RemoveGreater(spaceMarine), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new RemoveGreater(spaceMarine), login, password));
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
+            checkEmptyAnswer(object);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         }
@@ -626,24 +662,19 @@ public class ClientConsole extends SimpleCMD {
             return;
         }
 
-        // else if (the command hasn't parameters) than: the command has one easy parameter "zero".
-        if (args.length == 0) {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel,new UserCommand(new RemoveAnyByHeight(0), login, password));
-            return;
-        }
-
-        // check the parameter (Integer)
+        // check the parameter (Integer), if (the command hasn't parameters) than: the parameter is "zero",
         // and remove any element from the collection whose has a height equal to the height.
         try {
-            int height = Integer.parseInt(args[0]);
+            int height = args.length == 0 ? 0 : Integer.parseInt(args[0]);
 
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new RemoveAnyByHeight(height), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new RemoveAnyByHeight(height), login, password));
 
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
+            // the server returns the removed element or null.
+            if (object instanceof String) {
+                err.println(object);
+            } else if (object != null && !object.getClass().equals(Pair.class)) {
+                err.println("Invalid object type returned: expected \"Pair<SpaceMarine, String>\".");
             }
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
@@ -669,8 +700,7 @@ public class ClientConsole extends SimpleCMD {
         // else: get and print ru.itmo.s284719.server's answer.
         try {
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new AverageOfHeight(), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new AverageOfHeight(), login, password));
 
             if (!object.getClass().equals(String.class)) {
                 err.println("Invalid object type returned: expected \"String\".");
@@ -709,8 +739,7 @@ public class ClientConsole extends SimpleCMD {
 
             // else: print the count.
             checkConnection();
-            ObjectSocketChannel.sendObject(channel, new UserCommand(new CountGreaterThanMeleeWeapon(meleeWeapon), login, password));
-            Object object = ObjectSocketChannel.getObject(channel);
+            Object object = request(new UserCommand(new CountGreaterThanMeleeWeapon(meleeWeapon), login, password));
 
             if (!object.getClass().equals(String.class)) {
                 err.println("Invalid object type returned: expected \"String\".");
@@ -0,0 +1,253 @@
+package ru.itmo.s284719.client;
+
+import com.google.gson.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.network.ObjectSocketChannel;
+import ru.itmo.s284719.network.cluster.ShardIds;
+import ru.itmo.s284719.network.cluster.ShardSummary;
+import ru.itmo.s284719.network.commands.*;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Router of the client's commands between nodes of the cluster.
+ * Space marines are partitioned by IDs ({@link ShardIds}): commands with the ID go to the owner,
+ * new space marines are added to nodes by turns, aggregate commands go to all nodes
+ * and their results are merged to the same answers as the answers of the single server.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ClusterRouter {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(ClusterRouter.class);
+    /**
+     * The GSON's parser for format JSON.
+     */
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * Addresses of nodes by their numbers.
+     */
+    private final List<InetSocketAddress> nodes;
+    /**
+     * Channels to nodes by their numbers (null before the connection).
+     */
+    private final SocketChannel[] channels;
+    /**
+     * The number of the node for the next new space marine.
+     */
+    private int nextNode = 0;
+
+    /**
+     * Constructor with addresses of nodes.
+     *
+     * @param nodes addresses of nodes by their numbers.
+     */
+    public ClusterRouter(List<InetSocketAddress> nodes) {
+        this.nodes = new ArrayList<>(nodes);
+        this.channels = new SocketChannel[nodes.size()];
+    }
+
+    /**
+     * Use the channel of the client's main connection for the node.
+     *
+     * @param node the node's number.
+     * @param channel the channel to the node.
+     */
+    public void setChannel(int node, SocketChannel channel) {
+        channels[node] = channel;
+    }
+
+    /**
+     * @return the count of nodes.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Send the command to nodes and get the merged answer.
+     *
+     * @param userCmd the command with the user's data.
+     * @return the answer.
+     */
+    public Object route(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        Object command = userCmd.getCommand();
+        // if (command is empty) than: the user is authorized or registered on all nodes.
+        if (command == null) {
+            // the user, which is registered by this request on some nodes, is correct.
+            boolean result = true;
+            for (Object answer : sendToAll(userCmd))
+                result &= answer == null || (Boolean) answer;
+            return result;
+        }
+        if (command instanceof RemoveById)
+            return send(ShardIds.owner(((RemoveById) command).id, size()), userCmd);
+        if (command instanceof Update)
+            return send(ShardIds.owner(((Update) command).id, size()), userCmd);
+        if (command instanceof Add)
+            return send(nextNode(), userCmd);
+        if (command instanceof AddIfMin)
+            return addIfMin(userCmd);
+        if (command instanceof Clear || command instanceof RemoveGreater) {
+            sendToAll(userCmd);
+            return null;
+        }
+        if (command instanceof RemoveAnyByHeight) {
+            // remove only one element: ask nodes, while nothing is removed.
+            for (int node = 0; node < size(); ++node) {
+                Object answer = send(node, userCmd);
+                if (answer != null)
+                    return answer;
+            }
+            return null;
+        }
+        if (command instanceof RemoveHead)
+            return removeHead(userCmd);
+        if (command instanceof Info)
+            return info(userCmd);
+        if (command instanceof AverageOfHeight)
+            return averageOfHeight(userCmd);
+        if (command instanceof CountGreaterThanMeleeWeapon)
+            return countGreaterThanMeleeWeapon(userCmd);
+        if (command instanceof Show)
+            return show(userCmd);
+        // other commands don't depend on the partitioning.
+        return send(0, userCmd);
+    }
+
+    // add the space marine, if that's less than heads of all nodes.
+    private Object addIfMin(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        SpaceMarine spaceMarine = ((AddIfMin) userCmd.getCommand()).spaceMarine;
+        Pair<SpaceMarine, String> min = null;
+        for (ShardSummary summary : summaries(userCmd))
+            if (summary.head != null && (min == null || summary.head.first.compareTo(min.first) < 0))
+                min = summary.head;
+        // the node checks the head again, so the concurrent addition of the less element isn't lost.
+        if (min == null || spaceMarine.compareTo(min.first) < 0)
+            return send(nextNode(), userCmd);
+        return null;
+    }
+
+    // remove the head of the node with the minimal head.
+    private Object removeHead(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        List<ShardSummary> summaries = summaries(userCmd);
+        int minNode = -1;
+        for (int node = 0; node < summaries.size(); ++node) {
+            Pair<SpaceMarine, String> head = summaries.get(node).head;
+            if (head != null && (minNode < 0 || head.first.compareTo(summaries.get(minNode).head.first) < 0))
+                minNode = node;
+        }
+        return minNode < 0 ? null : send(minNode, userCmd);
+    }
+
+    private Object info(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        List<ShardSummary> summaries = summaries(userCmd);
+        long length = 0;
+        for (ShardSummary summary : summaries)
+            length += summary.size;
+        return "collectionType: " + summaries.get(0).collectionType + ", " +
+                "createTime: " + summaries.get(0).createTime +
+                ", length: " + length + ", nodes: " + summaries.size() + ".";
+    }
+
+    // the average of nodes' averages weighted by their sizes.
+    private Object averageOfHeight(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        double heightSum = 0;
+        long count = 0;
+        for (ShardSummary summary : summaries(userCmd)) {
+            heightSum += summary.averageHeight * summary.size;
+            count += summary.size;
+        }
+        return "The average value of the height: " + (count == 0 ? 0 : heightSum / count) + ".";
+    }
+
+    private Object countGreaterThanMeleeWeapon(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        int ordinal = ((CountGreaterThanMeleeWeapon) userCmd.getCommand()).meleeWeapon.ordinal();
+        long count = 0;
+        for (ShardSummary summary : summaries(userCmd))
+            count += summary.countsGreaterThanMeleeWeapon[ordinal];
+        return count + " queue's elements have the value \"Melee Weapon\", greater than the given value.";
+    }
+
+    // merge sorted lists of nodes to one list sorted by the height (null heights are the first).
+    private Object show(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        List<JsonElement> elements = new ArrayList<>();
+        JsonParser parser = new JsonParser();
+        for (Object answer : sendToAll(userCmd))
+            for (JsonElement element : parser.parse((String) answer).getAsJsonArray())
+                elements.add(element);
+        elements.sort(Comparator.comparing(ClusterRouter::height, Comparator.nullsFirst(Comparator.naturalOrder())));
+        JsonArray array = new JsonArray();
+        elements.forEach(array::add);
+        return gson.toJson(array);
+    }
+
+    private static Integer height(JsonElement element) {
+        JsonElement height = element.getAsJsonObject().getAsJsonObject("first").get("height");
+        return height == null || height.isJsonNull() ? null : height.getAsInt();
+    }
+
+    // get summaries of all nodes.
+    private List<ShardSummary> summaries(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        List<ShardSummary> summaries = new ArrayList<>(size());
+        UserCommand summaryCmd = new UserCommand(new Summary(), userCmd.getLogin(), userCmd.getPassword());
+        for (Object answer : sendToAll(summaryCmd)) {
+            if (!(answer instanceof ShardSummary))
+                throw new IOException("The node of the cluster doesn't support the command \"summary\".");
+            summaries.add((ShardSummary) answer);
+        }
+        return summaries;
+    }
+
+    private int nextNode() {
+        int node = nextNode;
+        nextNode = (nextNode + 1) % size();
+        return node;
+    }
+
+    private List<Object> sendToAll(UserCommand userCmd) throws IOException, ClassNotFoundException {
+        List<Object> answers = new ArrayList<>(size());
+        for (int node = 0; node < size(); ++node)
+            answers.add(send(node, userCmd));
+        return answers;
+    }
+
+    /**
+     * Send the command to the node and get its answer.
+     * If the node is unavailable, than its channel is closed and opened again by the next command.
+     *
+     * @param node the node's number.
+     * @param userCmd the command with the user's data.
+     * @return the node's answer.
+     */
+    private Object send(int node, UserCommand userCmd) throws IOException, ClassNotFoundException {
+        InetSocketAddress address = nodes.get(node);
+        try {
+            if (channels[node] == null || !channels[node].isConnected()) {
+                channels[node] = SocketChannel.open(address);
+                channels[node].configureBlocking(false);
+                // logging.
+                logger.info("Connected to the node " + node + " with address: " + address + '.');
+            }
+            ObjectSocketChannel.sendObject(channels[node], userCmd);
+            return ObjectSocketChannel.getObject(channels[node]);
+        } catch (IOException e) {
+            if (channels[node] != null)
+                channels[node].close();
+            channels[node] = null;
+            throw new IOException("The node " + node + " with address: " + address + " is unavailable.", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.itmo.s284719.loadgen;
+
+import ru.itmo.s284719.network.commands.*;
+import ru.itmo.s284719.network.space.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random commands with given weights, for example:
+ * "add:20,update:10,remove_by_id:10,show:2,info:20,average_of_height:18,count_greater_than_melee_weapon:20".
+ * Space marines of commands are random, IDs are taken from the pool of known IDs.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class CommandMix implements CommandSource {
+    /**
+     * The default mix of commands.
+     */
+    public static final String DEFAULT_MIX = "add:20,update:10,remove_by_id:10,show:2," +
+            "info:20,average_of_height:18,count_greater_than_melee_weapon:20";
+
+    private static final AstartesCategory[] CATEGORIES = AstartesCategory.values();
+    private static final MeleeWeapon[] WEAPONS = MeleeWeapon.values();
+
+    /**
+     * Names of commands.
+     */
+    private final List<String> names = new ArrayList<>();
+    /**
+     * Cumulative weights of commands.
+     */
+    private final List<Integer> weights = new ArrayList<>();
+    /**
+     * The sum of weights.
+     */
+    private int totalWeight = 0;
+    /**
+     * The pool of known IDs.
+     */
+    private final IdPool ids;
+
+    /**
+     * @param mix the mix in the format "name:weight,name:weight".
+     * @param ids the pool of known IDs.
+     */
+    public CommandMix(String mix, IdPool ids) {
+        this.ids = ids;
+        for (String item : mix.split(",")) {
+            String[] pair = item.trim().split(":");
+            if (pair.length != 2)
+                throw new IllegalArgumentException("Incorrect item of the mix: \"" + item + "\".");
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0)
+                throw new IllegalArgumentException("The weight of \"" + pair[0] + "\" must be not negative.");
+            // check the name.
+            command(pair[0].trim(), new Random());
+            if (weight == 0)
+                continue;
+            totalWeight += weight;
+            names.add(pair[0].trim());
+            weights.add(totalWeight);
+        }
+        if (totalWeight == 0)
+            throw new IllegalArgumentException("The mix hasn't commands.");
+    }
+
+    @Override
+    public Command next(Random random) {
+        int value = random.nextInt(totalWeight);
+        int i = 0;
+        while (weights.get(i) <= value)
+            ++i;
+        return command(names.get(i), random);
+    }
+
+    private Command command(String name, Random random) {
+        switch (name) {
+            case "add":
+                return new Add(spaceMarine(random));
+            case "add_if_min":
+                return new AddIfMin(spaceMarine(random));
+            case "update":
+                return new Update(ids.next(random), spaceMarine(random));
+            case "remove_by_id":
+                return new RemoveById(ids.next(random));
+            case "remove_head":
+                return new RemoveHead();
+            case "remove_greater":
+                return new RemoveGreater(spaceMarine(random));
+            case "remove_any_by_height":
+                return new RemoveAnyByHeight(random.nextInt(300));
+            case "clear":
+                return new Clear();
+            case "show":
+                return new Show();
+            case "info":
+                return new Info();
+            case "average_of_height":
+                return new AverageOfHeight();
+            case "count_greater_than_melee_weapon":
+                return new CountGreaterThanMeleeWeapon(WEAPONS[random.nextInt(WEAPONS.length)]);
+            default:
+                throw new IllegalArgumentException("\"" + name + "\" isn't a command of the client.");
+        }
+    }
+
+    /**
+     * @param random the random generator.
+     * @return the random space marine.
+     */
+    static SpaceMarine spaceMarine(Random random) {
+        return new SpaceMarine("Marine " + random.nextInt(100000),
+                new Coordinates(random.nextInt(1000) - 342, (long) random.nextInt(1000)),
+                1L + random.nextInt(1000),
+                random.nextInt(300),
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                WEAPONS[random.nextInt(WEAPONS.length)],
+                new Chapter("Chapter " + random.nextInt(100), "Legion " + random.nextInt(20),
+                        1 + random.nextInt(1000), "World " + random.nextInt(50)));
+    }
+}
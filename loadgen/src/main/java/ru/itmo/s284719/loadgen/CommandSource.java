@@ -0,0 +1,19 @@
+package ru.itmo.s284719.loadgen;
+
+import ru.itmo.s284719.network.commands.Command;
+
+import java.util.Random;
+
+/**
+ * Source of commands for the load.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface CommandSource {
+    /**
+     * @param random the random generator of the dispatcher.
+     * @return the next command.
+     */
+    Command next(Random random);
+}
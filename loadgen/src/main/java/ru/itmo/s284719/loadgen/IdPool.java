@@ -0,0 +1,59 @@
+package ru.itmo.s284719.loadgen;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.util.Random;
+
+/**
+ * IDs of space marines, which the server has, for commands "update" and "remove_by_id".
+ * The server doesn't send IDs of added space marines, so IDs are taken from answers to "show".
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class IdPool {
+    /**
+     * The maximal ID, which is used, while IDs aren't known.
+     */
+    private static final int DEFAULT_MAX_ID = 1000;
+
+    /**
+     * The known IDs.
+     */
+    private volatile int[] ids = new int[0];
+
+    /**
+     * @param random the random generator.
+     * @return the random known ID or the random ID from 1 to 1000, if IDs aren't known.
+     */
+    public int next(Random random) {
+        int[] current = ids;
+        return current.length == 0 ? 1 + random.nextInt(DEFAULT_MAX_ID) : current[random.nextInt(current.length)];
+    }
+
+    /**
+     * Replace known IDs with IDs from the answer to "show".
+     *
+     * @param json the collection in format JSON.
+     */
+    public void update(String json) {
+        JsonElement root = new JsonParser().parse(json);
+        if (!root.isJsonArray())
+            return;
+        int[] newIds = new int[root.getAsJsonArray().size()];
+        int count = 0;
+        for (JsonElement element : root.getAsJsonArray()) {
+            JsonElement id = element.getAsJsonObject().getAsJsonObject("first").get("id");
+            if (id != null && !id.isJsonNull())
+                newIds[count++] = id.getAsInt();
+        }
+        int[] result = new int[count];
+        System.arraycopy(newIds, 0, result, 0, count);
+        ids = result;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,156 @@
+package ru.itmo.s284719.loadgen;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.network.ObjectSocketChannel;
+import ru.itmo.s284719.network.commands.Command;
+import ru.itmo.s284719.network.commands.Show;
+import ru.itmo.s284719.network.commands.UserCommand;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connection of the simulated user: it authorizes (or registers) the user
+ * and sends scheduled requests one by one, as the client does.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LoadConnection implements Runnable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(LoadConnection.class);
+
+    private final LoadGenerator generator;
+    private final InetSocketAddress address;
+    private final String login;
+    private final String password;
+    private final BlockingQueue<LoadGenerator.Request> queue;
+    private final CountDownLatch ready;
+    private SocketChannel channel = null;
+
+    /**
+     * @param generator the generator of the load.
+     * @param address the server's address.
+     * @param login the simulated user's login.
+     * @param password the simulated user's password.
+     * @param queue the queue of scheduled requests.
+     * @param ready the latch, which counts established (or failed) connections.
+     */
+    public LoadConnection(LoadGenerator generator, InetSocketAddress address, String login, String password,
+                          BlockingQueue<LoadGenerator.Request> queue, CountDownLatch ready) {
+        this.generator = generator;
+        this.address = address;
+        this.login = login;
+        this.password = password;
+        this.queue = queue;
+        this.ready = ready;
+    }
+
+    @Override
+    public void run() {
+        try {
+            connect();
+            generator.connected();
+        } catch (IOException | ClassNotFoundException e) {
+            // logging.
+            logger.error("Connection of the user \"" + login + "\" is failed.", e);
+            close();
+            return;
+        } finally {
+            ready.countDown();
+        }
+        try {
+            // send requests, while the load isn't finished and the queue isn't empty.
+            while (true) {
+                LoadGenerator.Request request = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (request == null) {
+                    if (generator.isFinished())
+                        return;
+                    continue;
+                }
+                send(request);
+            }
+        } catch (InterruptedException e) {
+            // the load is stopped.
+        } finally {
+            generator.disconnected();
+            close();
+        }
+    }
+
+    /**
+     * Send the request and record its latency. After the error the connection is established again.
+     *
+     * @param request the scheduled request.
+     */
+    private void send(LoadGenerator.Request request) throws InterruptedException {
+        Command command = request.command;
+        LoadStats stats = generator.getStats();
+        boolean measured = request.time >= generator.getMeasureStart();
+        try {
+            long start = System.nanoTime();
+            ObjectSocketChannel.sendObject(channel, new UserCommand(command, login, password));
+            Object answer = ObjectSocketChannel.getObject(channel);
+            long end = System.nanoTime();
+            generator.answered();
+            if (measured)
+                stats.record(command.getName(), end - request.time, end - start);
+            if (command instanceof Show && answer instanceof String)
+                generator.getIds().update((String) answer);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            if (measured)
+                stats.error(command.getName());
+            // logging.
+            logger.warn("Request \"" + command.getName() + "\" of the user \"" + login + "\" is failed.", e);
+            close();
+            reconnect();
+        }
+    }
+
+    /**
+     * Establish the connection again after the error, while the load isn't finished.
+     */
+    private void reconnect() throws InterruptedException {
+        while (!generator.isFinished()) {
+            try {
+                connect();
+                return;
+            } catch (IOException | ClassNotFoundException e) {
+                close();
+                Thread.sleep(1000);
+            }
+        }
+    }
+
+    /**
+     * Open the channel and authorize the user (the free login is registered).
+     */
+    private void connect() throws IOException, ClassNotFoundException {
+        channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        ObjectSocketChannel.sendObject(channel, new UserCommand(null, login, password));
+        Object answer = ObjectSocketChannel.getObject(channel);
+        // null is the answer of the registration, true - of the authorization.
+        if (Boolean.FALSE.equals(answer))
+            throw new IOException("Incorrect password of the user \"" + login + "\".");
+    }
+
+    private void close() {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // logging.
+            logger.warn("Closing the connection of the user \"" + login + "\" is failed.", e);
+        }
+        channel = null;
+    }
+}
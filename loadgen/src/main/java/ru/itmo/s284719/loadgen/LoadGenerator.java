@@ -0,0 +1,280 @@
+package ru.itmo.s284719.loadgen;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.network.commands.Command;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the client/server protocol.
+ * It opens connections of simulated users and sends requests at the target rate by the schedule,
+ * independently of answers: the request waits in the queue, while all connections are busy,
+ * and this waiting is counted to the latency. Commands are random by the mix
+ * or are replayed from scripts given as arguments.
+ * Parameters are system properties:
+ * <ul>
+ *     <li>load.address - the server's address "host:port" (localhost:8000);</li>
+ *     <li>load.connections - the count of connections (100);</li>
+ *     <li>load.users - the count of simulated users, "loader0", "loader1", ... (10);</li>
+ *     <li>load.password - the users' password (password);</li>
+ *     <li>load.rate - the target count of requests per second (1000);</li>
+ *     <li>load.warmup - the time before measurements in seconds (10);</li>
+ *     <li>load.duration - the time of measurements in seconds (60);</li>
+ *     <li>load.mix - weights of commands, {@link CommandMix#DEFAULT_MIX};</li>
+ *     <li>load.backlog - the maximal count of waiting requests, other requests are dropped (100000).</li>
+ * </ul>
+ * Example: {@code java -Dload.connections=2000 -Dload.rate=5000 -jar loadgen.jar input/script1.txt}.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LoadGenerator {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(LoadGenerator.class);
+    /**
+     * The stack's size of connections' threads (thousands of connections are threads).
+     */
+    private static final long THREAD_STACK_SIZE = 256 << 10;
+    /**
+     * The time for connecting all connections in seconds.
+     */
+    private static final long CONNECT_TIMEOUT = 60;
+    /**
+     * The time for answers to sent requests after the load in seconds.
+     */
+    private static final long DRAIN_TIMEOUT = 10;
+    /*
+     * System output's streams with auto-flush.
+     */
+    private static final PrintWriter out = new PrintWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+    private static final PrintWriter err = new PrintWriter(
+            new OutputStreamWriter(System.err, StandardCharsets.UTF_8), true);
+
+    /**
+     * The scheduled request.
+     */
+    static class Request {
+        /**
+         * The command.
+         */
+        final Command command;
+        /**
+         * The time, when the request had to be sent, by {@link System#nanoTime()}.
+         */
+        final long time;
+
+        Request(Command command, long time) {
+            this.command = command;
+            this.time = time;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final int users;
+    private final String password;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int backlog;
+    private final CommandSource source;
+    private final IdPool ids;
+    private final LoadStats stats = new LoadStats();
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    /**
+     * The count of answers including the warmup (for the progress).
+     */
+    private final LongAdder answers = new LongAdder();
+    /**
+     * The start of measurements by {@link System#nanoTime()}.
+     */
+    private volatile long measureStart = Long.MAX_VALUE;
+    /**
+     * The field with information about the end of the schedule.
+     */
+    private volatile boolean finished = false;
+
+    public LoadGenerator(InetSocketAddress address, int connections, int users, String password, double rate,
+                         long warmupSeconds, long durationSeconds, int backlog, CommandSource source, IdPool ids) {
+        if (connections <= 0 || users <= 0 || rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0)
+            throw new IllegalArgumentException("Connections, users, the rate and the duration must be positive.");
+        this.address = address;
+        this.connections = connections;
+        this.users = users;
+        this.password = password;
+        this.rate = rate;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.backlog = backlog;
+        this.source = source;
+        this.ids = ids;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String[] hostPort = System.getProperty("load.address", "localhost:8000").split(":");
+        if (hostPort.length != 2) {
+            err.println("Incorrect address of the server, the format: host:port.");
+            System.exit(1);
+        }
+        InetSocketAddress address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        IdPool ids = new IdPool();
+        CommandSource source;
+        if (args.length == 0) {
+            source = new CommandMix(System.getProperty("load.mix", CommandMix.DEFAULT_MIX), ids);
+        } else {
+            List<Path> scripts = new ArrayList<>();
+            for (String arg : args)
+                scripts.add(Paths.get(arg));
+            ScriptReplay replay = new ScriptReplay(scripts);
+            out.println("Replay of " + replay.size() + " commands from scripts.");
+            source = replay;
+        }
+        LoadGenerator generator = new LoadGenerator(address,
+                Integer.getInteger("load.connections", 100),
+                Integer.getInteger("load.users", 10),
+                System.getProperty("load.password", "password"),
+                Double.parseDouble(System.getProperty("load.rate", "1000")),
+                Long.getLong("load.warmup", 10),
+                Long.getLong("load.duration", 60),
+                Integer.getInteger("load.backlog", 100000),
+                source, ids);
+        System.exit(generator.run() ? 0 : 1);
+    }
+
+    /**
+     * Connect, run the load and print results.
+     *
+     * @return true, if the load is run.
+     */
+    public boolean run() throws InterruptedException {
+        out.println("Load of " + address + ": " + connections + " connections, " + users + " users, " +
+                rate + " requests per second, warmup " + warmupNanos / 1_000_000_000 + " s, " +
+                "measurement " + durationNanos / 1_000_000_000 + " s.");
+        // logging.
+        logger.info("Load of " + address + " with " + connections + " connections at " + rate + " requests/s.");
+
+        CountDownLatch ready = new CountDownLatch(connections);
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; ++i) {
+            LoadConnection connection = new LoadConnection(this, address, "loader" + (i % users), password,
+                    queue, ready);
+            Thread thread = new Thread(null, connection, "load-connection-" + i, THREAD_STACK_SIZE);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        if (!ready.await(CONNECT_TIMEOUT, TimeUnit.SECONDS))
+            err.println("Not all connections are established in " + CONNECT_TIMEOUT + " s.");
+        int connected = activeConnections.get();
+        out.println("Connections: " + connected + " of " + connections + '.');
+        if (connected == 0) {
+            err.println("The server " + address + " is unavailable.");
+            finished = true;
+            return false;
+        }
+
+        schedule();
+
+        // wait for answers to the sent requests.
+        long drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT);
+        for (Thread thread : threads)
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(drainEnd - System.nanoTime())));
+        int unanswered = queue.size();
+        queue.clear();
+
+        double seconds = durationNanos / 1e9;
+        out.println();
+        out.println(String.format("Target: %.1f requests per second, completed: %.1f per second, " +
+                        "errors: %d, dropped: %d, not answered: %d.",
+                rate, stats.getCompleted() / seconds, stats.getErrors(), stats.getDropped(), unanswered));
+        out.println(String.format("Latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms.",
+                stats.getLatencyMillis(50), stats.getLatencyMillis(99), stats.getLatencyMillis(99.9)));
+        stats.print(out, seconds);
+        return true;
+    }
+
+    /**
+     * Put requests to the queue by the schedule: the request's time doesn't depend on answers.
+     */
+    private void schedule() {
+        Random random = new Random();
+        long start = System.nanoTime();
+        measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long lastAnswers = 0;
+        for (long i = 0; ; ++i) {
+            long time = start + (long) (i * 1e9 / rate);
+            if (time >= end)
+                break;
+            long now;
+            while ((now = System.nanoTime()) < time)
+                LockSupport.parkNanos(time - now);
+            if (queue.size() >= backlog) {
+                if (time >= measureStart)
+                    stats.drop();
+            } else {
+                queue.offer(new Request(source.next(random), time));
+            }
+            // print the progress every second.
+            if (now >= nextReport) {
+                long answered = answers.sum();
+                out.println(String.format("%4d s: %s%d answers per second, waiting requests: %d, connections: %d.",
+                        TimeUnit.NANOSECONDS.toSeconds(now - start), now < measureStart ? "warmup, " : "",
+                        answered - lastAnswers, queue.size(), activeConnections.get()));
+                lastAnswers = answered;
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+        finished = true;
+    }
+
+    void connected() {
+        activeConnections.incrementAndGet();
+    }
+
+    void answered() {
+        answers.increment();
+    }
+
+    void disconnected() {
+        activeConnections.decrementAndGet();
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    long getMeasureStart() {
+        return measureStart;
+    }
+
+    LoadStats getStats() {
+        return stats;
+    }
+
+    IdPool getIds() {
+        return ids;
+    }
+}
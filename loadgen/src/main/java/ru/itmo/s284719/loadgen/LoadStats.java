@@ -0,0 +1,123 @@
+package ru.itmo.s284719.loadgen;
+
+import ru.itmo.s284719.network.metrics.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of the load by commands. The latency is measured from the time,
+ * when the request had to be sent by the schedule, so the waiting for the busy connection
+ * is counted too (the load is open-loop); the service time is measured from the sending.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LoadStats {
+    /**
+     * Results of one command.
+     */
+    static class CommandStats {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LatencyHistogram serviceTimes = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Results by commands' names.
+     */
+    private final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+    /**
+     * Results of all commands.
+     */
+    private final CommandStats total = new CommandStats();
+    /**
+     * The count of requests, which weren't sent, because the backlog was full.
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Record the answered request.
+     *
+     * @param command the command's name.
+     * @param latency the time from the schedule to the answer in nanoseconds.
+     * @param serviceTime the time from the sending to the answer in nanoseconds.
+     */
+    public void record(String command, long latency, long serviceTime) {
+        CommandStats stats = commands.computeIfAbsent(command, name -> new CommandStats());
+        stats.latencies.record(latency);
+        stats.serviceTimes.record(serviceTime);
+        total.latencies.record(latency);
+        total.serviceTimes.record(serviceTime);
+    }
+
+    /**
+     * Record the failed request.
+     *
+     * @param command the command's name.
+     */
+    public void error(String command) {
+        commands.computeIfAbsent(command, name -> new CommandStats()).errors.increment();
+        total.errors.increment();
+    }
+
+    /**
+     * Record the request, which isn't sent.
+     */
+    public void drop() {
+        dropped.increment();
+    }
+
+    public long getCompleted() {
+        return total.latencies.getCount();
+    }
+
+    public long getErrors() {
+        return total.errors.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @param percentile the percentile from 0 to 100.
+     * @return the latency of all commands at the percentile in milliseconds.
+     */
+    public double getLatencyMillis(double percentile) {
+        return total.latencies.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    /**
+     * Print the table of results.
+     *
+     * @param out the output.
+     * @param seconds the duration of measurements in seconds.
+     */
+    public void print(PrintWriter out, double seconds) {
+        String format = "%-32s %10s %8s %10s %10s %10s %10s %10s %12s";
+        out.println(String.format(format, "Command", "count", "errors", "per second",
+                "p50, ms", "p99, ms", "p99.9, ms", "max, ms", "service, ms"));
+        for (Map.Entry<String, CommandStats> entry : new TreeMap<>(commands).entrySet())
+            print(out, format, entry.getKey(), entry.getValue(), seconds);
+        print(out, format, "total", total, seconds);
+        out.println("The service time is p50 from the sending to the answer, " +
+                "other latencies are from the scheduled time.");
+    }
+
+    private static void print(PrintWriter out, String format, String name, CommandStats stats, double seconds) {
+        LatencyHistogram latencies = stats.latencies;
+        out.println(String.format(format, name, latencies.getCount(), stats.errors.sum(),
+                String.format("%.1f", latencies.getCount() / seconds),
+                millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMax()),
+                millis(stats.serviceTimes.getValueAtPercentile(50))));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,163 @@
+package ru.itmo.s284719.loadgen;
+
+import ru.itmo.s284719.network.commands.*;
+import ru.itmo.s284719.network.parser.Parser;
+import ru.itmo.s284719.network.space.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Commands of the client's scripts (the format of the command "execute_script", for example, "input/script1.txt"),
+ * which are replayed in a circle. Nested scripts are read too, commands of the client itself
+ * ("help", "save", "exit") aren't sent to the server and are skipped.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ScriptReplay implements CommandSource {
+    /**
+     * Commands of scripts.
+     */
+    private final List<Command> commands = new ArrayList<>();
+    /**
+     * The index of the next command.
+     */
+    private int next = 0;
+
+    /**
+     * @param scripts files of scripts.
+     */
+    public ScriptReplay(List<Path> scripts) throws IOException {
+        for (Path script : scripts)
+            read(script, new HashSet<>());
+        if (commands.isEmpty())
+            throw new IllegalArgumentException("Scripts haven't commands for the server.");
+    }
+
+    @Override
+    public Command next(Random random) {
+        Command command = commands.get(next);
+        next = (next + 1) % commands.size();
+        return command;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * Read commands of the script.
+     *
+     * @param script the script's file.
+     * @param running the scripts, which are read now (for the checking of the recursion).
+     */
+    private void read(Path script, Set<Path> running) throws IOException {
+        Path normalized = script.toAbsolutePath().normalize();
+        // the recursion is ignored as the client does.
+        if (!running.add(normalized))
+            return;
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = Parser.normalise(line);
+                if (line.isEmpty())
+                    continue;
+                String[] words = line.split(" ");
+                switch (words[0]) {
+                    case "add":
+                        commands.add(new Add(readSpaceMarine(reader)));
+                        break;
+                    case "add_if_min":
+                        commands.add(new AddIfMin(readSpaceMarine(reader)));
+                        break;
+                    case "remove_greater":
+                        commands.add(new RemoveGreater(readSpaceMarine(reader)));
+                        break;
+                    case "update":
+                        commands.add(new Update(Integer.parseInt(argument(words)), readSpaceMarine(reader)));
+                        break;
+                    case "remove_by_id":
+                        commands.add(new RemoveById(Integer.parseInt(argument(words))));
+                        break;
+                    case "remove_any_by_height":
+                        commands.add(new RemoveAnyByHeight(words.length > 1 ? Integer.parseInt(words[1]) : 0));
+                        break;
+                    case "count_greater_than_melee_weapon":
+                        commands.add(new CountGreaterThanMeleeWeapon(MeleeWeapon.valueOf(argument(words))));
+                        break;
+                    case "remove_head":
+                        commands.add(new RemoveHead());
+                        break;
+                    case "clear":
+                        commands.add(new Clear());
+                        break;
+                    case "show":
+                        commands.add(new Show());
+                        break;
+                    case "info":
+                        commands.add(new Info());
+                        break;
+                    case "average_of_height":
+                        commands.add(new AverageOfHeight());
+                        break;
+                    case "execute_script":
+                        read(Paths.get(argument(words)), running);
+                        break;
+                    default:
+                        // commands of the client itself.
+                        break;
+                }
+            }
+        } finally {
+            running.remove(normalized);
+        }
+    }
+
+    private static String argument(String[] words) {
+        if (words.length < 2)
+            throw new IllegalArgumentException("The command \"" + words[0] + "\" needs the argument.");
+        return words[1];
+    }
+
+    /**
+     * Read the space marine in the order of the client's input:
+     * name, x, y, health, height, category, melee weapon, chapter's name, legion, marines' count, world.
+     *
+     * @param reader the script's reader.
+     * @return the space marine.
+     */
+    private static SpaceMarine readSpaceMarine(BufferedReader reader) throws IOException {
+        SpaceMarine spaceMarine = new SpaceMarine();
+        spaceMarine.setName(readField(reader));
+        spaceMarine.setCoordinates(new Coordinates(Long.parseLong(readField(reader)),
+                Long.parseLong(readField(reader))));
+        spaceMarine.setHealth(Long.parseLong(readField(reader)));
+        spaceMarine.setHeight(Integer.parseInt(readField(reader)));
+        spaceMarine.setCategory(AstartesCategory.valueOf(readField(reader)));
+        spaceMarine.setMeleeWeapon(MeleeWeapon.valueOf(readField(reader)));
+        Chapter chapter = new Chapter();
+        chapter.setName(readField(reader));
+        chapter.setParentLegion(readField(reader));
+        chapter.setMarinesCount(Integer.parseInt(readField(reader)));
+        chapter.setWorld(readField(reader));
+        spaceMarine.setChapter(chapter);
+        return spaceMarine;
+    }
+
+    private static String readField(BufferedReader reader) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null)
+                throw new IOException("The script ends inside the space marine.");
+            line = Parser.normalise(line);
+        } while (line.isEmpty());
+        return line;
+    }
+}
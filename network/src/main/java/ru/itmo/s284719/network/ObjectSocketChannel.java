@@ -1,19 +1,29 @@
 package ru.itmo.s284719.network;
 
+import ru.itmo.s284719.network.jfr.FlightEvents;
+
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.function.IntConsumer;
 
 /**
  * Abstract class with functions for transmitting objects to channel.
+ * Every object is sent with its length before the serialized bytes,
+ * so objects greater than one network's packet (snapshots, big collections) are read fully.
+ * Reading and writing of objects are committed as events "Frame Read" and "Frame Write" to JDK Flight Recorder.
  */
 public abstract class ObjectSocketChannel {
     /**
-     * The size of byte's buffer for getting objects.
+     * The size of the object's length before the object.
+     */
+    private static final int LENGTH_SIZE = 4;
+    /**
+     * The maximal size of an object.
      */
-    private static int BUFF_SIZE = 8192;
+    private static final int MAX_OBJECT_SIZE = 64 << 20;
 
     /**
      * Send an object to a channel.
@@ -21,15 +31,40 @@ public abstract class ObjectSocketChannel {
      * @author Kirill Shahow.
      * @param channel the channel for transmitting objects.
      * @param object the object for sending to the channel.
+     * @return the count of sent bytes.
      */
-    public static void sendObject(SocketChannel channel, Object object) throws IOException {
+    public static int sendObject(SocketChannel channel, Object object) throws IOException {
+        Object event = FlightEvents.SINK.beginFrameWrite();
         ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
         ObjectOutputStream objectOut = new ObjectOutputStream(byteOut);
         synchronized (objectOut) {
             objectOut.writeObject(object);
             objectOut.flush();
         }
-        channel.write(ByteBuffer.wrap(byteOut.toByteArray()));
+        byte[] bytes = byteOut.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + bytes.length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+        // the not-blocking channel can write only a part of the buffer:
+        // the rest waits for the free space in the socket's buffer.
+        Selector selector = null;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) > 0)
+                    continue;
+                if (selector == null) {
+                    selector = Selector.open();
+                    channel.register(selector, SelectionKey.OP_WRITE);
+                }
+                while (selector.select() < 1) { continue; }
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            if (selector != null)
+                selector.close();
+        }
+        if (event != null)
+            FlightEvents.SINK.endFrameWrite(event, buffer.limit(), type(object));
+        return buffer.limit();
     }
     /**
      * Get an object from a channel.
@@ -39,16 +74,65 @@ public abstract class ObjectSocketChannel {
      * @return an object for sending to the channel.
      */
     public static Object getObject(SocketChannel channel) throws IOException, ClassNotFoundException {
-        ByteBuffer buffer = ByteBuffer.allocate(BUFF_SIZE);
-        Selector selector = Selector.open();
-        channel.configureBlocking(false);
-        channel.register(selector, SelectionKey.OP_READ);
-        while (selector.select() < 1) { continue; }
-        synchronized (channel) {
-            channel.read(buffer);
+        return getObject(channel, null);
+    }
+
+    /**
+     * Get an object from a channel and report the count of read bytes.
+     *
+     * @param channel the channel for transmitting objects.
+     * @param bytesRead the receiver of the count of read bytes or null.
+     * @return an object for sending to the channel.
+     */
+    public static Object getObject(SocketChannel channel, IntConsumer bytesRead)
+            throws IOException, ClassNotFoundException {
+        Object event = FlightEvents.SINK.beginFrameRead();
+        try (Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            ByteBuffer length = ByteBuffer.allocate(LENGTH_SIZE);
+            read(channel, selector, length);
+            int size = length.getInt(0);
+            if (size < 0 || size > MAX_OBJECT_SIZE)
+                throw new StreamCorruptedException("Incorrect object's size: " + size + '.');
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            read(channel, selector, buffer);
+            if (bytesRead != null)
+                bytesRead.accept(LENGTH_SIZE + size);
+            ByteArrayInputStream byteIn = new ByteArrayInputStream(buffer.array());
+            ObjectInputStream objectIn = new ObjectInputStream(byteIn);
+            Object object = objectIn.readObject();
+            if (event != null)
+                FlightEvents.SINK.endFrameRead(event, LENGTH_SIZE + size, type(object));
+            return object;
+        }
+    }
+
+    /**
+     * @param object the transmitted object.
+     * @return the object's class for events.
+     */
+    private static String type(Object object) {
+        return object == null ? "null" : object.getClass().getName();
+    }
+
+    /**
+     * Read bytes from the channel, while the buffer isn't full.
+     *
+     * @param channel the channel for transmitting objects.
+     * @param selector the selector with the channel for operation read.
+     * @param buffer the buffer for bytes.
+     */
+    private static void read(SocketChannel channel, Selector selector, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            while (selector.select() < 1) { continue; }
+            selector.selectedKeys().clear();
+            int count;
+            synchronized (channel) {
+                count = channel.read(buffer);
+            }
+            if (count < 0)
+                throw new EOFException("The channel is closed.");
         }
-        ByteArrayInputStream byteIn = new ByteArrayInputStream(buffer.array());
-        ObjectInputStream objectIn = new ObjectInputStream(byteIn);
-        return objectIn.readObject();
     }
-}
\ No newline at end of file
+}
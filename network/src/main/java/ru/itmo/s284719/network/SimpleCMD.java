@@ -5,7 +5,9 @@ import ru.itmo.s284719.network.parser.Parser;
 import ru.itmo.s284719.network.space.*;
 
 import java.io.*;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.*;
@@ -18,9 +20,9 @@ import java.util.*;
  */
 public abstract class SimpleCMD implements Commands {
     /**
-     * The map for commands.
+     * The map for commands: handles of the commands' methods, which are bound to this console.
      */
-    protected final Map<String, Method> mapCommands;
+    protected final Map<String, MethodHandle> mapCommands;
     /**
      * The stack for buffered input's streams.
      */
@@ -52,10 +54,20 @@ public abstract class SimpleCMD implements Commands {
     public SimpleCMD() {
         mapCommands = new HashMap<>();
 
-        for (Method method : Commands.class.getDeclaredMethods()) {
-            if (method.isAnnotationPresent(Command.class)) {
-                Command cmd = method.getAnnotation(Command.class);
-                mapCommands.put(cmd.name(), method);
+        // commands of all interfaces of the console (for example, the server's administrator's commands).
+        // handles are created once, so the command's line doesn't need the reflection.
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType type = MethodType.methodType(void.class, String[].class);
+        for (Class<?> commands : Commands.commandInterfaces(getClass())) {
+            for (Method method : commands.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Command.class)) {
+                    Command cmd = method.getAnnotation(Command.class);
+                    try {
+                        mapCommands.put(cmd.name(), lookup.unreflect(method).bindTo(this).asType(type));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("The command \"" + cmd.name() + "\" isn't accessible.", e);
+                    }
+                }
             }
         }
     }
@@ -73,8 +85,8 @@ public abstract class SimpleCMD implements Commands {
             String[] args = Arrays.copyOfRange(strs, 1, strs.length);
 
             // check correction of the command.
-            Method method = mapCommands.get(command);
-            if (method == null) {
+            MethodHandle handle = mapCommands.get(command);
+            if (handle == null) {
                 // if (command isn't correction) than: print the exception.
                 if (!command.equals("")) {
                     err.println("\"" + command + "\" isn't a command.");
@@ -83,18 +95,18 @@ public abstract class SimpleCMD implements Commands {
                 return;
             }
             // else: execute the command.
-            ru.itmo.s284719.network.Command cmd = method.getAnnotation(ru.itmo.s284719.network.Command.class);
-            method.invoke(this, (Object) args);
+            try {
+                handle.invokeExact(args);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // the command's exception.
+                throw new IOException(e);
+            }
         } catch (ArrayIndexOutOfBoundsException e) {
             // warning: the code must not be started.
             err.println("This command wasn't detected.");
             err.println("help - a command that output the list with open commands.");
-        } catch (IllegalAccessException | IllegalArgumentException e) {
-            // warning: print about thees exceptions.
-            err.println("Exception: " + e.getMessage());
-            err.println("help - a command that output the list with open commands.");
-        } catch (InvocationTargetException e) {
-            throw new IOException(e);
         }
     }
 
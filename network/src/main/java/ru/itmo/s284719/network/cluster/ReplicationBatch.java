@@ -0,0 +1,67 @@
+package ru.itmo.s284719.network.cluster;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The primary's answer to the replica: mutations after the replica's LSN
+ * or the page of the snapshot of the whole collection, if the primary's log doesn't have them
+ * (the replica is new, too far behind or the primary is restarted).
+ * Pages are read in the order of IDs without stopping mutations, so the snapshot isn't consistent:
+ * after the last page the replica applies mutations after the snapshot's LSN, which make that consistent.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ReplicationBatch implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * The ID of the primary's log (LSNs of different logs aren't comparable).
+     */
+    public final String logId;
+    /**
+     * The LSN of the replica's collection after applying this batch.
+     */
+    public final long lsn;
+    /**
+     * The last LSN of the primary's log (for the replication's lag).
+     */
+    public final long primaryLsn;
+    /**
+     * The page of the snapshot of the primary's collection in the order of IDs or null.
+     * The whole snapshot replaces the replica's collection.
+     */
+    public final List<Pair<SpaceMarine, String>> snapshot;
+    /**
+     * The ID before the first element of the snapshot's page (0 for the first page).
+     */
+    public final int snapshotAfterId;
+    /**
+     * The field with information about the last page of the snapshot.
+     */
+    public final boolean snapshotComplete;
+    /**
+     * Mutations after the replica's LSN (or after the snapshot) in the order of LSNs.
+     */
+    public final List<ReplicationEntry> entries;
+
+    public ReplicationBatch(String logId, long lsn, long primaryLsn, List<ReplicationEntry> entries) {
+        this(logId, lsn, primaryLsn, null, 0, false, entries);
+    }
+
+    public ReplicationBatch(String logId, long lsn, long primaryLsn,
+                            List<Pair<SpaceMarine, String>> snapshot, int snapshotAfterId, boolean snapshotComplete,
+                            List<ReplicationEntry> entries) {
+        this.logId = logId;
+        this.lsn = lsn;
+        this.primaryLsn = primaryLsn;
+        this.snapshot = snapshot;
+        this.snapshotAfterId = snapshotAfterId;
+        this.snapshotComplete = snapshotComplete;
+        this.entries = entries;
+    }
+}
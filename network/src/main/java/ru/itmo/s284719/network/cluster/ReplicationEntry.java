@@ -0,0 +1,35 @@
+package ru.itmo.s284719.network.cluster;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.Serializable;
+
+/**
+ * The mutation of the primary's collection: adding or removing of the element.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ReplicationEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The mutation's number in the primary's log.
+     */
+    public final long lsn;
+    /**
+     * The element's ID.
+     */
+    public final int id;
+    /**
+     * The added element or null for removing.
+     */
+    public final Pair<SpaceMarine, String> pair;
+
+    public ReplicationEntry(long lsn, int id, Pair<SpaceMarine, String> pair) {
+        this.lsn = lsn;
+        this.id = id;
+        this.pair = pair;
+    }
+}
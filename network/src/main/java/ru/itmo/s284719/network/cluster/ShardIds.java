@@ -0,0 +1,51 @@
+package ru.itmo.s284719.network.cluster;
+
+/**
+ * Partitioning of space marines between nodes of the cluster by IDs:
+ * the space marine belongs to the node with the number {@code id mod nodes}.
+ * Every node gives out only its own IDs, so the client finds the owner of any ID without requests.
+ * The server's node is set by system's properties "cluster.node" and "cluster.size"
+ * (by default the single node owns all IDs).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public final class ShardIds {
+    /**
+     * The count of nodes in the cluster.
+     */
+    public static final int NODES = Math.max(1, Integer.getInteger("cluster.size", 1));
+    /**
+     * The number of this server's node.
+     */
+    public static final int NODE = Math.floorMod(Integer.getInteger("cluster.node", 0), NODES);
+
+    private ShardIds() {
+    }
+
+    /**
+     * @param id the space marine's ID.
+     * @param nodes the count of nodes.
+     * @return the number of the node, which owns the ID.
+     */
+    public static int owner(int id, int nodes) {
+        return Math.floorMod(id, nodes);
+    }
+
+    /**
+     * @param id the space marine's ID.
+     * @return true, if this server's node owns the ID.
+     */
+    public static boolean owns(int id) {
+        return owner(id, NODES) == NODE;
+    }
+
+    /**
+     * @param previous the previous given ID.
+     * @return the minimal ID of this server's node greater than the previous ID.
+     */
+    public static int next(int previous) {
+        int id = previous + 1;
+        return id + Math.floorMod(NODE - id, NODES);
+    }
+}
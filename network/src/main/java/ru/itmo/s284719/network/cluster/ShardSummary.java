@@ -0,0 +1,53 @@
+package ru.itmo.s284719.network.cluster;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.Serializable;
+
+/**
+ * The summary of one node's collection in the cluster.
+ * The client merges summaries of all nodes for aggregate commands
+ * (info, average_of_height, count_greater_than_melee_weapon) and for finding the head.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ShardSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The type of the node's collection.
+     */
+    public final String collectionType;
+    /**
+     * The formatted creation time of the node's collection.
+     */
+    public final String createTime;
+    /**
+     * The count of space marines in the node's collection.
+     */
+    public final long size;
+    /**
+     * The average height of space marines in the node's collection.
+     */
+    public final double averageHeight;
+    /**
+     * The counts of space marines with the melee weapon greater than the melee weapon by its ordinal.
+     */
+    public final long[] countsGreaterThanMeleeWeapon;
+    /**
+     * The head of the node's collection or null.
+     */
+    public final Pair<SpaceMarine, String> head;
+
+    public ShardSummary(String collectionType, String createTime, long size, double averageHeight,
+                        long[] countsGreaterThanMeleeWeapon, Pair<SpaceMarine, String> head) {
+        this.collectionType = collectionType;
+        this.createTime = createTime;
+        this.size = size;
+        this.averageHeight = averageHeight;
+        this.countsGreaterThanMeleeWeapon = countsGreaterThanMeleeWeapon;
+        this.head = head;
+    }
+}
@@ -12,6 +12,24 @@ import java.util.List;
 
 /** Interface for ru.itmo.s284719.network.commands.commands*/
 public interface Commands {
+    /**
+     * Get interfaces with commands of the console's class and its superclasses.
+     *
+     * @param type the console's class.
+     * @return the list of interfaces.
+     */
+    public static List<Class<?>> commandInterfaces(Class<?> type) {
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Class<?> commands : current.getInterfaces()) {
+                if (!interfaces.contains(commands)) {
+                    interfaces.add(commands);
+                }
+            }
+        }
+        return interfaces;
+    }
+
     @ru.itmo.s284719.network.Command(name = "help", desc = "справка по доступным коммандам")
     public default void help(String[] args) {
         if (args == null || args.length != 0) {
@@ -19,17 +37,19 @@ public interface Commands {
             return;
         }
         List<String> list = new ArrayList<>();
-        for (Method method : Commands.class.getDeclaredMethods()) {
-            StringBuilder strB = new StringBuilder();
-            if (method.isAnnotationPresent(ru.itmo.s284719.network.Command.class)) {
-                ru.itmo.s284719.network.Command cmd = method.getAnnotation(ru.itmo.s284719.network.Command.class);
-                strB.append(cmd.name());
-                if (!cmd.args().equals("")) {
-                    strB.append(" " + cmd.args());
+        for (Class<?> commands : commandInterfaces(getClass())) {
+            for (Method method : commands.getDeclaredMethods()) {
+                StringBuilder strB = new StringBuilder();
+                if (method.isAnnotationPresent(ru.itmo.s284719.network.Command.class)) {
+                    ru.itmo.s284719.network.Command cmd = method.getAnnotation(ru.itmo.s284719.network.Command.class);
+                    strB.append(cmd.name());
+                    if (!cmd.args().equals("")) {
+                        strB.append(" " + cmd.args());
+                    }
+                    strB.append(" : " + cmd.desc() + "\n");
                 }
-                strB.append(" : " + cmd.desc() + "\n");
+                list.add(strB.toString());
             }
-            list.add(strB.toString());
         }
         Collections.sort(list);
         StringBuilder result = new StringBuilder("Список комманд:\n");
@@ -64,7 +84,8 @@ public interface Commands {
     @ru.itmo.s284719.network.Command(name = "clear", desc = "очистить коллекцию")
     public void clear(String[] args) throws IOException, SQLException, ClassNotFoundException;
 
-    @ru.itmo.s284719.network.Command(name = "save", desc = "сохранить коллекцию в файл")
+    @ru.itmo.s284719.network.Command(name = "save", args = "[binary]", desc = "сохранить коллекцию в файл " +
+            "(binary - в бинарный снимок base.bin)")
     public void save(String[] args) throws IOException;
 
     @ru.itmo.s284719.network.Command(name = "execute_script", numbArgs = 1, args = "file_name",
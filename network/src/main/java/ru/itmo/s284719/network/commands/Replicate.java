@@ -0,0 +1,45 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+
+public class Replicate implements Command, Serializable {
+    /**
+     * The value of {@link #snapshotAfterId}, when the replica doesn't load the snapshot.
+     */
+    public static final int NO_SNAPSHOT = -1;
+
+    public String replicaName;
+    public String logId;
+    public long lsn;
+    /**
+     * The ID of the last element of the loaded snapshot's page or {@link #NO_SNAPSHOT}.
+     */
+    public int snapshotAfterId;
+
+    public Replicate(String replicaName, String logId, long lsn, int snapshotAfterId) {
+        this.replicaName = replicaName;
+        this.logId = logId;
+        this.lsn = lsn;
+        this.snapshotAfterId = snapshotAfterId;
+    }
+
+    @Override
+    public String getName() {
+        return "replicate";
+    }
+
+    @Override
+    public String getDesc() {
+        return "получить изменения коллекции после заданного номера для реплики";
+    }
+
+    @Override
+    public String getArgs() {
+        return "replicaName, logId, lsn, snapshotAfterId";
+    }
+
+    @Override
+    public int getNumbArgs() {
+        return 4;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+
+public class Summary implements Command, Serializable {
+
+    @Override
+    public String getName() {
+        return "summary";
+    }
+
+    @Override
+    public String getDesc() {
+        return "получить сводку по коллекции узла кластера";
+    }
+}
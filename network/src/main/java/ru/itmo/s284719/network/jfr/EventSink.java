@@ -0,0 +1,89 @@
+package ru.itmo.s284719.network.jfr;
+
+/**
+ * Receiver of the application's events for JDK Flight Recorder.
+ * Every event is started by the method "begin..." and finished by the method "end...".
+ * The method "begin..." returns null, if the event isn't recorded, so the caller
+ * doesn't prepare fields of the event and doesn't call the method "end...".
+ * Default methods record nothing: that's the receiver of the Java 8 build.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface EventSink {
+    /**
+     * @return the event of the client's command or null.
+     */
+    default Object beginCommand() {
+        return null;
+    }
+
+    /**
+     * @param event the event from {@link #beginCommand()}.
+     * @param command the command's name.
+     * @param user the user's login.
+     * @param success false, if the command is failed.
+     */
+    default void endCommand(Object event, String command, String user, boolean success) {
+    }
+
+    /**
+     * @return the event of the storage's statement or null.
+     */
+    default Object beginStatement() {
+        return null;
+    }
+
+    /**
+     * @param event the event from {@link #beginStatement()}.
+     * @param operation the storage's method.
+     * @param rows the count of read or changed rows or -1, if it's unknown.
+     * @param success false, if the statement is failed.
+     */
+    default void endStatement(Object event, String operation, long rows, boolean success) {
+    }
+
+    /**
+     * @return the event of the waiting for the lock or null.
+     */
+    default Object beginLockWait() {
+        return null;
+    }
+
+    /**
+     * @param event the event from {@link #beginLockWait()}.
+     * @param lock the lock's name.
+     */
+    default void endLockWait(Object event, String lock) {
+    }
+
+    /**
+     * @return the event of the reading of the object from the channel or null.
+     */
+    default Object beginFrameRead() {
+        return null;
+    }
+
+    /**
+     * @param event the event from {@link #beginFrameRead()}.
+     * @param bytes the count of read bytes.
+     * @param type the class of the read object.
+     */
+    default void endFrameRead(Object event, int bytes, String type) {
+    }
+
+    /**
+     * @return the event of the writing of the object to the channel or null.
+     */
+    default Object beginFrameWrite() {
+        return null;
+    }
+
+    /**
+     * @param event the event from {@link #beginFrameWrite()}.
+     * @param bytes the count of written bytes.
+     * @param type the class of the written object.
+     */
+    default void endFrameWrite(Object event, int bytes, String type) {
+    }
+}
@@ -0,0 +1,42 @@
+package ru.itmo.s284719.network.jfr;
+
+/**
+ * Access to events of JDK Flight Recorder. The receiver with JFR's events (sources "src/main/java11")
+ * is compiled by the JDK 11+ to META-INF/versions/11 of the multi-release JAR of the module.
+ * The Java 8 JVM, the Java 8 build and the system property "jfr.events=false" use the receiver,
+ * which records nothing.
+ * Usage:
+ * <pre>
+ *     Object event = FlightEvents.SINK.beginCommand();
+ *     ...
+ *     if (event != null)
+ *         FlightEvents.SINK.endCommand(event, name, login, true);
+ * </pre>
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public final class FlightEvents {
+    /**
+     * The class of the receiver with JFR's events.
+     */
+    private static final String JFR_SINK = "ru.itmo.s284719.network.jfr.JfrEventSink";
+    /**
+     * The receiver of events.
+     */
+    public static final EventSink SINK = load();
+
+    private FlightEvents() {
+    }
+
+    private static EventSink load() {
+        if (!Boolean.parseBoolean(System.getProperty("jfr.events", "true")))
+            return new EventSink() {};
+        try {
+            return (EventSink) Class.forName(JFR_SINK).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // the Java 8 build or JVM without JFR.
+            return new EventSink() {};
+        }
+    }
+}
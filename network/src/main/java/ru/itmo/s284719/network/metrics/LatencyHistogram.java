@@ -0,0 +1,149 @@
+package ru.itmo.s284719.network.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets (as the HDR histogram):
+ * every power of 2 is divided into 64 buckets, so percentiles have the relative error
+ * less than 1/64 (two significant digits) from 1 ns to 2^40 ns (about 18 minutes).
+ * Recording is one increment of the bucket without locks.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LatencyHistogram {
+    /**
+     * The count of bits of the sub-bucket's index.
+     */
+    private static final int SUB_BUCKET_BITS = 7;
+    /**
+     * The count of buckets for small values, which are recorded exactly.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * The count of buckets in every next power of 2.
+     */
+    private static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    /**
+     * The count of bits of the maximal recorded value.
+     */
+    private static final int MAX_VALUE_BITS = 40;
+    /**
+     * The maximal recorded value (greater values are recorded as it).
+     */
+    public static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    /**
+     * Counts of values by buckets.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    /**
+     * The count of values.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * The sum of values.
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * The maximal value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record the value.
+     *
+     * @param value the latency in nanoseconds.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        else if (value > MAX_VALUE)
+            value = MAX_VALUE;
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+            currentMax = max.get();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean value or 0, if values aren't recorded.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : ((double) sum.sum()) / n;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the value, which is greater or equal than the percentile of recorded values.
+     * Values are read without locks, so values recorded during the call may be not counted.
+     *
+     * @param percentile the percentile from 0 to 100.
+     * @return the upper bound of the bucket with the percentile or 0, if values aren't recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; ++i) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; ++i) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); ++i)
+            counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @param value the value from 0 to {@link #MAX_VALUE}.
+     * @return the index of the value's bucket.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        // the value is [64, 128) shifted to the left by the shift.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (shift + 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    /**
+     * @param index the bucket's index.
+     * @return the greatest value of the bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / HALF_COUNT - 1;
+        long subBucket = index % HALF_COUNT + HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,371 @@
+package ru.itmo.s284719.network.parser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import ru.itmo.s284719.network.space.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Streaming importer of space marines from a JSON's array.
+ * The text is read by tokens, so only the current batch of elements is in the memory.
+ * The batch's elements can be built and checked in the fork/join pool,
+ * while the next batch is read. Errors have the line, the column and the path in the file.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class JsonImporter {
+    /**
+     * The default count of elements in one batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    /**
+     * The count of elements, which are built by one fork/join's task without splitting.
+     */
+    private static final int TASK_THRESHOLD = 64;
+
+    /**
+     * The pool for building elements or null for building in the reading thread.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The count of elements in one batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Constructor for building in the reading thread.
+     */
+    public JsonImporter() {
+        this(null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param pool the pool for building elements or null for building in the reading thread.
+     * @param batchSize the count of elements in one batch.
+     */
+    public JsonImporter(ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("The batch's size must be greater than 0.");
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import the file to the priority queue.
+     *
+     * @param fileName the file's name.
+     * @return the priority queue with space marines.
+     */
+    public PriorityQueue<SpaceMarine> toPriorityQueue(String fileName)
+            throws IllegalArgumentException, IOException {
+        PriorityQueue<SpaceMarine> queue = new PriorityQueue<>();
+        importFile(Paths.get(fileName), queue::add);
+        return queue;
+    }
+
+    /**
+     * Import the file and give elements to the consumer in the file's order.
+     *
+     * @param path the file's path.
+     * @param consumer the consumer of space marines.
+     * @return the count of imported elements.
+     */
+    public int importFile(Path path, Consumer<SpaceMarine> consumer)
+            throws IllegalArgumentException, IOException {
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return importJson(in, consumer);
+        }
+    }
+
+    /**
+     * Import the JSON's array and give elements to the consumer in the array's order.
+     *
+     * @param in the reader of the text.
+     * @param consumer the consumer of space marines.
+     * @return the count of imported elements.
+     */
+    public int importJson(Reader in, Consumer<SpaceMarine> consumer)
+            throws IllegalArgumentException, IOException {
+        JsonReader reader = new JsonReader(in);
+        int count = 0;
+        BuildTask pending = null;
+        try {
+            reader.beginArray();
+            List<RawMarine> batch = new ArrayList<>(batchSize);
+            while (reader.hasNext()) {
+                batch.add(readSpaceMarine(reader));
+                if (batch.size() == batchSize) {
+                    // start building of the batch and finish the previous batch meanwhile.
+                    BuildTask task = build(batch);
+                    count += finish(pending, consumer);
+                    pending = task;
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            reader.endArray();
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+                throw new IllegalArgumentException("Wrong: the file must end after the array\n" +
+                        "Position: " + location(reader));
+
+            BuildTask task = build(batch);
+            count += finish(pending, consumer);
+            pending = null;
+            count += finish(task, consumer);
+            return count;
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            // messages of GSON's reader have the position.
+            throw new IllegalArgumentException("Wrong: " + e.getMessage(), e);
+        } finally {
+            if (pending != null)
+                pending.cancel(true);
+        }
+    }
+
+    /**
+     * Read one element's fields without checking.
+     *
+     * @param reader the JSON's reader before the element.
+     * @return the element's fields.
+     */
+    private RawMarine readSpaceMarine(JsonReader reader) throws IOException {
+        RawMarine raw = new RawMarine(location(reader));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    raw.name = nextString(reader);
+                    break;
+                case "coordinates":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "x":
+                                raw.x = nextLong(reader);
+                                break;
+                            case "y":
+                                raw.y = nextLong(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    raw.hasCoordinates = true;
+                    break;
+                case "health":
+                    raw.health = nextLong(reader);
+                    break;
+                case "height":
+                    raw.height = nextInteger(reader);
+                    break;
+                case "category":
+                    raw.category = nextString(reader);
+                    break;
+                case "meleeWeapon":
+                    raw.meleeWeapon = nextString(reader);
+                    break;
+                case "chapter":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "name":
+                                raw.chapterName = nextString(reader);
+                                break;
+                            case "parentLegion":
+                                raw.parentLegion = nextString(reader);
+                                break;
+                            case "marinesCount":
+                                raw.marinesCount = nextInteger(reader);
+                                break;
+                            case "world":
+                                raw.world = nextString(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    raw.hasChapter = true;
+                    break;
+                default:
+                    // the generated fields (ID, creation date) and unknown fields are skipped.
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return raw;
+    }
+
+    /**
+     * Start building of the batch in the pool or build that now.
+     *
+     * @param batch the batch's elements.
+     * @return the task of building.
+     */
+    private BuildTask build(List<RawMarine> batch) {
+        BuildTask task = new BuildTask(batch, new SpaceMarine[batch.size()], 0, batch.size());
+        if (pool == null)
+            task.invoke();
+        else
+            pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Wait for the end of building and give elements to the consumer.
+     *
+     * @param task the task of building or null.
+     * @param consumer the consumer of space marines.
+     * @return the count of given elements.
+     */
+    private int finish(BuildTask task, Consumer<SpaceMarine> consumer) {
+        if (task == null)
+            return 0;
+        task.join();
+        // the first error by the file's order is reported.
+        for (int i = 0; i < task.results.length; ++i) {
+            RawMarine raw = task.batch.get(i);
+            if (raw.error != null)
+                throw new IllegalArgumentException("Wrong: " + raw.error + "\n" +
+                        "Position: " + raw.location);
+            consumer.accept(task.results[i]);
+        }
+        return task.results.length;
+    }
+
+    /**
+     * Build and check the space marine from the fields.
+     *
+     * @param raw the element's fields.
+     * @return the space marine.
+     */
+    private static SpaceMarine toSpaceMarine(RawMarine raw)
+            throws IllegalArgumentException, NullPointerException {
+        SpaceMarine spaceMarine = new SpaceMarine();
+        spaceMarine.setName(raw.name == null ? null : Parser.normalise(raw.name));
+        if (!raw.hasCoordinates || raw.x == null)
+            throw new NullPointerException("The value of the \"Coordinates\" field cannot be null.");
+        spaceMarine.setCoordinates(new Coordinates(raw.x, raw.y));
+        spaceMarine.setHealth(raw.health);
+        spaceMarine.setHeight(raw.height);
+        spaceMarine.setCategory(raw.category == null ? null
+                : AstartesCategory.valueOf(raw.category.toUpperCase()));
+        spaceMarine.setMeleeWeapon(raw.meleeWeapon == null ? null
+                : MeleeWeapon.valueOf(raw.meleeWeapon.toUpperCase()));
+        if (!raw.hasChapter || raw.marinesCount == null)
+            throw new NullPointerException("The value of the \"Chapter\" field cannot be null.");
+        spaceMarine.setChapter(new Chapter(raw.chapterName == null ? null : Parser.normalise(raw.chapterName),
+                raw.parentLegion == null ? null : Parser.normalise(raw.parentLegion),
+                raw.marinesCount,
+                raw.world == null ? null : Parser.normalise(raw.world)));
+        return spaceMarine;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static Long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextLong();
+    }
+
+    private static Integer nextInteger(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextInt();
+    }
+
+    /**
+     * @return the reader's position: the line, the column and the path.
+     */
+    private static String location(JsonReader reader) {
+        String string = reader.toString();
+        int index = string.indexOf(" at ");
+        return index < 0 ? reader.getPath() : string.substring(index + 4);
+    }
+
+    /**
+     * Fields of one element before checking.
+     */
+    private static class RawMarine {
+        final String location;
+        String name;
+        boolean hasCoordinates;
+        Long x;
+        Long y;
+        Long health;
+        Integer height;
+        String category;
+        String meleeWeapon;
+        boolean hasChapter;
+        String chapterName;
+        String parentLegion;
+        Integer marinesCount;
+        String world;
+        String error;
+
+        RawMarine(String location) {
+            this.location = location;
+        }
+    }
+
+    /**
+     * Fork/join's task for building of the batch's range.
+     */
+    private static class BuildTask extends RecursiveAction {
+        final List<RawMarine> batch;
+        final SpaceMarine[] results;
+        final int from;
+        final int to;
+
+        BuildTask(List<RawMarine> batch, SpaceMarine[] results, int from, int to) {
+            this.batch = batch;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > TASK_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(batch, results, from, middle), new BuildTask(batch, results, middle, to));
+                return;
+            }
+            for (int i = from; i < to; ++i) {
+                RawMarine raw = batch.get(i);
+                try {
+                    results[i] = toSpaceMarine(raw);
+                } catch (IllegalArgumentException | NullPointerException e) {
+                    raw.error = e.getMessage();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.itmo.s284719.network.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * The client's command, which is executed by the server.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@Name("ru.itmo.s284719.Command")
+@Label("Command")
+@Category({"Lab7", "Server"})
+@Description("The client's command, which is executed by the server")
+@StackTrace(false)
+class CommandEvent extends Event {
+    @Label("Command")
+    String command;
+
+    @Label("User")
+    String user;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,23 @@
+package ru.itmo.s284719.network.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * The reading of the object from the channel (with the waiting for bytes and the deserialization).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@Name("ru.itmo.s284719.FrameRead")
+@Label("Frame Read")
+@Category({"Lab7", "Network"})
+@Description("The reading and the deserialization of the object from the channel")
+@StackTrace(false)
+class FrameReadEvent extends Event {
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Type")
+    String type;
+}
@@ -0,0 +1,23 @@
+package ru.itmo.s284719.network.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * The writing of the object to the channel (with the serialization).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@Name("ru.itmo.s284719.FrameWrite")
+@Label("Frame Write")
+@Category({"Lab7", "Network"})
+@Description("The serialization and the writing of the object to the channel")
+@StackTrace(false)
+class FrameWriteEvent extends Event {
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    @Label("Type")
+    String type;
+}
@@ -0,0 +1,117 @@
+package ru.itmo.s284719.network.jfr;
+
+/**
+ * The receiver, which commits events to JDK Flight Recorder.
+ * The event isn't created, while its type isn't enabled in the recording.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class JfrEventSink implements EventSink {
+    private static final jdk.jfr.EventType COMMAND = jdk.jfr.EventType.getEventType(CommandEvent.class);
+    private static final jdk.jfr.EventType STATEMENT = jdk.jfr.EventType.getEventType(StatementEvent.class);
+    private static final jdk.jfr.EventType LOCK_WAIT = jdk.jfr.EventType.getEventType(LockWaitEvent.class);
+    private static final jdk.jfr.EventType FRAME_READ = jdk.jfr.EventType.getEventType(FrameReadEvent.class);
+    private static final jdk.jfr.EventType FRAME_WRITE = jdk.jfr.EventType.getEventType(FrameWriteEvent.class);
+
+    @Override
+    public Object beginCommand() {
+        if (!COMMAND.isEnabled())
+            return null;
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endCommand(Object event, String command, String user, boolean success) {
+        CommandEvent commandEvent = (CommandEvent) event;
+        commandEvent.end();
+        if (commandEvent.shouldCommit()) {
+            commandEvent.command = command;
+            commandEvent.user = user;
+            commandEvent.success = success;
+            commandEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginStatement() {
+        if (!STATEMENT.isEnabled())
+            return null;
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endStatement(Object event, String operation, long rows, boolean success) {
+        StatementEvent statementEvent = (StatementEvent) event;
+        statementEvent.end();
+        if (statementEvent.shouldCommit()) {
+            statementEvent.operation = operation;
+            statementEvent.rows = rows;
+            statementEvent.success = success;
+            statementEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginLockWait() {
+        if (!LOCK_WAIT.isEnabled())
+            return null;
+        LockWaitEvent event = new LockWaitEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endLockWait(Object event, String lock) {
+        LockWaitEvent lockWaitEvent = (LockWaitEvent) event;
+        lockWaitEvent.end();
+        if (lockWaitEvent.shouldCommit()) {
+            lockWaitEvent.lock = lock;
+            lockWaitEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginFrameRead() {
+        if (!FRAME_READ.isEnabled())
+            return null;
+        FrameReadEvent event = new FrameReadEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFrameRead(Object event, int bytes, String type) {
+        FrameReadEvent frameEvent = (FrameReadEvent) event;
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.bytes = bytes;
+            frameEvent.type = type;
+            frameEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginFrameWrite() {
+        if (!FRAME_WRITE.isEnabled())
+            return null;
+        FrameWriteEvent event = new FrameWriteEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFrameWrite(Object event, int bytes, String type) {
+        FrameWriteEvent frameEvent = (FrameWriteEvent) event;
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.bytes = bytes;
+            frameEvent.type = type;
+            frameEvent.commit();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.itmo.s284719.network.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * The waiting for the lock, which is held by other thread.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@Name("ru.itmo.s284719.LockWait")
+@Label("Lock Wait")
+@Category({"Lab7", "Storage"})
+@Description("The waiting for the lock, which is held by other thread")
+class LockWaitEvent extends Event {
+    @Label("Lock")
+    String lock;
+}
@@ -0,0 +1,26 @@
+package ru.itmo.s284719.network.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * The call of the storage (the statement of the database).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+@Name("ru.itmo.s284719.Statement")
+@Label("Storage Statement")
+@Category({"Lab7", "Storage"})
+@Description("The call of the storage of users and space marines")
+@StackTrace(false)
+class StatementEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Rows")
+    @Description("The count of read or changed rows, -1 if it's unknown")
+    long rows;
+
+    @Label("Success")
+    boolean success;
+}
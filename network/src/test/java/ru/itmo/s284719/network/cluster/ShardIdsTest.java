@@ -0,0 +1,33 @@
+package ru.itmo.s284719.network.cluster;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the partitioning of IDs between nodes.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ShardIdsTest {
+    @Test
+    public void ownerIsIdModNodes() {
+        assertEquals(0, ShardIds.owner(6, 3));
+        assertEquals(1, ShardIds.owner(7, 3));
+        assertEquals(2, ShardIds.owner(8, 3));
+    }
+
+    @Test
+    public void ownerOfNegativeIdIsNotNegative() {
+        assertEquals(2, ShardIds.owner(-1, 3));
+    }
+
+    @Test
+    public void singleNodeOwnsAllIds() {
+        // tests run without "cluster.size", so the single node gives out all IDs.
+        assertEquals(1, ShardIds.NODES);
+        assertEquals(1, ShardIds.next(0));
+        assertEquals(42, ShardIds.next(41));
+    }
+}
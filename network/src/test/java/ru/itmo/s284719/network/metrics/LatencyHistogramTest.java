@@ -0,0 +1,86 @@
+package ru.itmo.s284719.network.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of buckets and percentiles of the latencies' histogram.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void smallValuesHaveOwnBuckets() {
+        for (int value = 0; value < 128; ++value) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highestValue(value));
+        }
+    }
+
+    @Test
+    public void bucketsFollowEachOtherWithoutGaps() {
+        int previous = LatencyHistogram.index(127);
+        for (long value = 128; value < 1 << 20; ++value) {
+            int index = LatencyHistogram.index(value);
+            // if (the value starts the new bucket) than: the previous bucket ends just before that.
+            if (index != previous) {
+                assertEquals(previous + 1, index);
+                assertEquals(value - 1, LatencyHistogram.highestValue(previous));
+            }
+            previous = index;
+        }
+    }
+
+    @Test
+    public void bucketsHaveRelativeErrorLessThanOne64th() {
+        for (long value = 128; value <= LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            assertTrue(highest >= value);
+            assertTrue((double) (highest - value) / value < 1.0 / 64);
+        }
+    }
+
+    @Test
+    public void maxValueHasTheLastBucket() {
+        int last = LatencyHistogram.index(LatencyHistogram.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValue(last));
+    }
+
+    @Test
+    public void percentilesAreUpperBoundsOfBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 1000; ++value)
+            histogram.record(value);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 1e-9);
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500 && median < 500 + 500 / 64);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void valuesOutOfRangeAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(100));
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void emptyAndResetHistogramsGiveZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
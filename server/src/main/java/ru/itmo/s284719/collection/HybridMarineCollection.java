@@ -0,0 +1,288 @@
+package ru.itmo.s284719.collection;
+
+import ru.itmo.s284719.database.RowChange;
+import ru.itmo.s284719.database.Storage;
+import ru.itmo.s284719.database.TableSummary;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The collection with the database as the backing store and the bounded cache of hot elements.
+ * The cache evicts the least recently used element, point lookups, which miss the cache,
+ * and scans go to the database by indexed queries (the ID, the creator's login, the height),
+ * aggregates are served from the summary, which is calculated by the database at the start.
+ * Changes of other servers are applied to the summary by their notified values,
+ * if the summary's snapshot doesn't count them yet.
+ * The collection's order is the order of IDs, because space marines are compared by IDs first.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class HybridMarineCollection implements MarineCollection {
+    /**
+     * The count of rows in one page of the scan.
+     */
+    private static final int PAGE_SIZE = 1000;
+    /**
+     * The cached mark of the row, which is deleted by this server.
+     */
+    private static final Pair<SpaceMarine, String> DELETED = new Pair<>(null, null);
+
+    /**
+     * The storage (the database).
+     */
+    private final Storage storage;
+    /**
+     * The cache of hot elements by IDs in the order of access.
+     */
+    private final LinkedHashMap<Integer, Pair<SpaceMarine, String>> cache;
+    /**
+     * The maximal count of cached elements.
+     */
+    private final int capacity;
+    /**
+     * The summary of the whole table.
+     */
+    private final MarineSummary summary = new MarineSummary();
+    /**
+     * The summary calculated by the database with the snapshot, which tells the counted changes.
+     */
+    private TableSummary counted;
+
+    /**
+     * Constructor with the storage and the cache's capacity.
+     *
+     * @param storage the storage.
+     * @param capacity the maximal count of cached elements.
+     */
+    public HybridMarineCollection(Storage storage, int capacity)
+            throws SQLException, ClassNotFoundException {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The cache's capacity must be greater than 0.");
+        this.storage = storage;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<Integer, Pair<SpaceMarine, String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Pair<SpaceMarine, String>> eldest) {
+                return size() > capacity;
+            }
+        };
+        reset(storage);
+    }
+
+    /**
+     * @return the maximal count of cached elements.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, summary.getCount());
+    }
+
+    @Override
+    public synchronized void add(Pair<SpaceMarine, String> pair) {
+        cache.put(pair.first.getId(), pair);
+        summary.add(pair.first);
+    }
+
+    /**
+     * Remove the element from the summary and leave the mark of the deleted row in the cache.
+     * The caller removes the element after the deleting from the database, so the element,
+     * which isn't marked, is in the summary; the repeated removing finds the mark and changes nothing.
+     */
+    @Override
+    public synchronized boolean remove(Pair<SpaceMarine, String> pair) {
+        int id = pair.first.getId();
+        if (cache.get(id) == DELETED)
+            return false;
+        cache.put(id, DELETED);
+        summary.remove(pair.first);
+        return true;
+    }
+
+    /**
+     * Apply the change without the transaction: the summary can count the row or not,
+     * so the summary is recalculated by the database.
+     */
+    @Override
+    public synchronized boolean applyChange(int id, Pair<SpaceMarine, String> pair)
+            throws SQLException, ClassNotFoundException {
+        reload(storage);
+        if (pair != null)
+            cache.put(id, pair);
+        return true;
+    }
+
+    /**
+     * Apply the notified change of other server to the cache and the summary.
+     * The summary is changed by the change's values, if the summary's snapshot doesn't count the change
+     * (the insert or the delete, which is committed before the reloading, is already counted).
+     */
+    @Override
+    public synchronized boolean applyChange(RowChange change, Pair<SpaceMarine, String> pair) {
+        cache.remove(change.getId());
+        if (change.isInserted() && pair != null)
+            cache.put(change.getId(), pair);
+        if (counted.isCounted(change))
+            return false;
+        if (change.isInserted())
+            summary.add(change.getHeight(), change.getMeleeWeapon());
+        else
+            summary.remove(change.getHeight(), change.getMeleeWeapon());
+        return true;
+    }
+
+    @Override
+    public synchronized void reload(Storage storage) throws SQLException, ClassNotFoundException {
+        cache.clear();
+        reset(storage);
+    }
+
+    /**
+     * Replace the summary with the summary calculated by the database.
+     *
+     * @param storage the storage.
+     */
+    private void reset(Storage storage) throws SQLException, ClassNotFoundException {
+        counted = storage.getSpaceMarineSummary();
+        summary.reset(counted.getMeleeWeaponCounts(), counted.getHeightSum());
+    }
+
+    @Override
+    public synchronized Pair<SpaceMarine, String> findById(int id) throws SQLException, ClassNotFoundException {
+        Pair<SpaceMarine, String> pair = cache.get(id);
+        if (pair == DELETED)
+            return null;
+        if (pair != null)
+            return pair;
+        List<Pair<SpaceMarine, String>> list = storage.getSpaceMarinePairsByIds(Collections.singleton(id));
+        if (list.isEmpty())
+            return null;
+        pair = list.get(0);
+        cache.put(id, pair);
+        return pair;
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> peek() throws SQLException, ClassNotFoundException {
+        List<Pair<SpaceMarine, String>> list = storage.getSpaceMarinePairsAfterId(0, 1);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> findByCreator(String login) throws SQLException, ClassNotFoundException {
+        return storage.getSpaceMarinePairsByCreator(login);
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> findAnyByHeight(String login, int height)
+            throws SQLException, ClassNotFoundException {
+        return storage.getAnySpaceMarinePairByHeight(login, height);
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> findGreaterThan(SpaceMarine spaceMarine)
+            throws SQLException, ClassNotFoundException {
+        // greater space marines have greater or the same ID (the scan starts after the previous ID without overflow).
+        return findAfterId(Math.max(spaceMarine.getId(), Integer.MIN_VALUE + 1) - 1,
+                pair -> pair.first.compareTo(spaceMarine) > 0);
+    }
+
+    /**
+     * The scan reads the table by pages in the order of heights and IDs.
+     */
+    @Override
+    public Scan scanByHeight() {
+        return new Scan() {
+            @Override
+            public <E extends Exception> void forEach(Visitor<E> visitor) throws SQLException, ClassNotFoundException, E {
+                Pair<SpaceMarine, String> after = null;
+                List<Pair<SpaceMarine, String>> page;
+                do {
+                    page = storage.getSpaceMarinePairsOrderedByHeight(after, PAGE_SIZE);
+                    for (Pair<SpaceMarine, String> pair : page) {
+                        visitor.visit(pair);
+                        after = pair;
+                    }
+                } while (page.size() == PAGE_SIZE);
+            }
+        };
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> findPage(int afterId, int limit) throws SQLException, ClassNotFoundException {
+        return storage.getSpaceMarinePairsAfterId(afterId, limit);
+    }
+
+    /**
+     * The scan reads the table by pages, so only one page is in the memory.
+     */
+    @Override
+    public Scan scan() {
+        return new Scan() {
+            @Override
+            public <E extends Exception> void forEach(Visitor<E> visitor) throws SQLException, ClassNotFoundException, E {
+                visitAfterId(0, visitor);
+            }
+        };
+    }
+
+    /**
+     * Scan the table by pages in the order of IDs (by the primary key's index).
+     *
+     * @param afterId the ID before the first scanned row.
+     * @param filter the filter of elements.
+     * @return the filtered elements.
+     */
+    private List<Pair<SpaceMarine, String>> findAfterId(int afterId, Predicate<Pair<SpaceMarine, String>> filter)
+            throws SQLException, ClassNotFoundException {
+        List<Pair<SpaceMarine, String>> list = new ArrayList<>();
+        visitAfterId(afterId, pair -> {
+            if (filter.test(pair))
+                list.add(pair);
+        });
+        return list;
+    }
+
+    /**
+     * Visit rows of the table by pages in the order of IDs (by the primary key's index).
+     *
+     * @param afterId the ID before the first visited row.
+     * @param visitor the visitor of elements.
+     * @param <E> the visitor's own exception.
+     */
+    private <E extends Exception> void visitAfterId(int afterId, Visitor<E> visitor)
+            throws SQLException, ClassNotFoundException, E {
+        List<Pair<SpaceMarine, String>> page;
+        do {
+            page = storage.getSpaceMarinePairsAfterId(afterId, PAGE_SIZE);
+            for (Pair<SpaceMarine, String> pair : page) {
+                visitor.visit(pair);
+                afterId = pair.first.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    @Override
+    public double averageHeight() {
+        return summary.getAverageHeight();
+    }
+
+    @Override
+    public long countMeleeWeaponGreaterThan(MeleeWeapon meleeWeapon) {
+        return summary.countMeleeWeaponGreaterThan(meleeWeapon);
+    }
+
+    @Override
+    public synchronized String getType() {
+        return "PostgreSQL table with cache of " + cache.size() + " elements";
+    }
+}
@@ -0,0 +1,199 @@
+package ru.itmo.s284719.collection;
+
+import ru.itmo.s284719.database.Storage;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * The collection with all elements in the memory (the priority queue).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class InMemoryMarineCollection implements MarineCollection {
+    /**
+     * The queue with all elements.
+     */
+    private final PriorityBlockingQueue<Pair<SpaceMarine, String>> queue;
+    /**
+     * The summary of the queue.
+     */
+    private final MarineSummary summary = new MarineSummary();
+
+    /**
+     * Constructor with the loaded queue.
+     *
+     * @param queue the queue with all elements.
+     */
+    public InMemoryMarineCollection(PriorityBlockingQueue<Pair<SpaceMarine, String>> queue) {
+        this.queue = queue;
+        for (Pair<SpaceMarine, String> pair : queue)
+            summary.add(pair.first);
+    }
+
+    /**
+     * @return the queue with all elements (for the journal's snapshots).
+     */
+    public PriorityBlockingQueue<Pair<SpaceMarine, String>> getQueue() {
+        return queue;
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void add(Pair<SpaceMarine, String> pair) {
+        queue.add(pair);
+        summary.add(pair.first);
+    }
+
+    @Override
+    public boolean remove(Pair<SpaceMarine, String> pair) {
+        Iterator<Pair<SpaceMarine, String>> iter = queue.iterator();
+        while (iter.hasNext()) {
+            Pair<SpaceMarine, String> current = iter.next();
+            if (current.first.getId() == pair.first.getId()) {
+                // if (other thread already has removed the element) than: the summary isn't changed.
+                if (!queue.remove(current))
+                    return false;
+                summary.remove(current.first);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean applyChange(int id, Pair<SpaceMarine, String> pair) {
+        Pair<SpaceMarine, String> current = findById(id);
+        if (pair == null)
+            return current != null && remove(current);
+        // an updated space marine gets new ID, so the row with the same ID isn't changed.
+        if (current != null)
+            return false;
+        add(pair);
+        return true;
+    }
+
+    @Override
+    public void reload(Storage storage) throws SQLException, ClassNotFoundException {
+        if (storage.reconcile(queue) == 0)
+            return;
+        summary.reset(new long[MeleeWeapon.values().length], 0);
+        for (Pair<SpaceMarine, String> pair : queue)
+            summary.add(pair.first);
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> findById(int id) {
+        for (Pair<SpaceMarine, String> pair : queue) {
+            if (pair.first.getId() == id)
+                return pair;
+        }
+        return null;
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> findByCreator(String login) {
+        return queue.stream()
+                .filter(pair -> pair.second.equals(login))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> findAnyByHeight(String login, int height) {
+        for (Pair<SpaceMarine, String> pair : queue) {
+            if ((login == null || pair.second.equals(login)) && Integer.valueOf(height).equals(pair.first.getHeight()))
+                return pair;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> findGreaterThan(SpaceMarine spaceMarine) {
+        return queue.stream()
+                .filter(pair -> pair.first.compareTo(spaceMarine) > 0)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Scan scanByHeight() {
+        List<Pair<SpaceMarine, String>> elements = new ArrayList<>(queue);
+        elements.sort(Storage.HEIGHT_ORDER);
+        return new Scan() {
+            @Override
+            public <E extends Exception> void forEach(Visitor<E> visitor) throws SQLException, ClassNotFoundException, E {
+                for (Pair<SpaceMarine, String> pair : elements)
+                    visitor.visit(pair);
+            }
+        };
+    }
+
+    /**
+     * Select the page by one pass over the queue: the heap keeps the page's elements
+     * with the greatest ID at the head, which is replaced by the element with less ID.
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> findPage(int afterId, int limit) {
+        Comparator<Pair<SpaceMarine, String>> byId = Comparator.comparingInt(pair -> pair.first.getId());
+        PriorityQueue<Pair<SpaceMarine, String>> page = new PriorityQueue<>(Math.max(1, limit), byId.reversed());
+        for (Pair<SpaceMarine, String> pair : queue) {
+            int id = pair.first.getId();
+            if (id <= afterId)
+                continue;
+            if (page.size() < limit) {
+                page.add(pair);
+            } else if (limit > 0 && id < page.peek().first.getId()) {
+                page.poll();
+                page.add(pair);
+            }
+        }
+        List<Pair<SpaceMarine, String>> list = new ArrayList<>(page);
+        list.sort(byId);
+        return list;
+    }
+
+    /**
+     * The scan copies only references to elements at the opening.
+     */
+    @Override
+    public Scan scan() {
+        Object[] elements = queue.toArray();
+        return new Scan() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <E extends Exception> void forEach(Visitor<E> visitor) throws SQLException, ClassNotFoundException, E {
+                for (Object element : elements)
+                    visitor.visit((Pair<SpaceMarine, String>) element);
+            }
+        };
+    }
+
+    @Override
+    public double averageHeight() {
+        return summary.getAverageHeight();
+    }
+
+    @Override
+    public long countMeleeWeaponGreaterThan(MeleeWeapon meleeWeapon) {
+        return summary.countMeleeWeaponGreaterThan(meleeWeapon);
+    }
+
+    @Override
+    public String getType() {
+        return "PriorityQueue<SpaceMarine>";
+    }
+}
@@ -0,0 +1,174 @@
+package ru.itmo.s284719.collection;
+
+import ru.itmo.s284719.database.RowChange;
+import ru.itmo.s284719.database.Storage;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The server's collection of space marines with their creators' logins.
+ * The database is changed by the caller before the collection, so the collection
+ * only reflects the table "space_marines": wholly in the memory or partly as a cache.
+ * Aggregates are served from the maintained summary without scanning elements.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface MarineCollection {
+    /**
+     * The visitor of elements.
+     *
+     * @param <E> the visitor's own exception.
+     */
+    @FunctionalInterface
+    interface Visitor<E extends Exception> {
+        /**
+         * @param pair the element.
+         */
+        void visit(Pair<SpaceMarine, String> pair) throws SQLException, ClassNotFoundException, E;
+    }
+
+    /**
+     * The scan of all elements, which is opened cheaply and read later without the whole copy.
+     */
+    interface Scan {
+        /**
+         * Visit all elements of the scan.
+         *
+         * @param visitor the visitor of elements.
+         * @param <E> the visitor's own exception.
+         */
+        <E extends Exception> void forEach(Visitor<E> visitor) throws SQLException, ClassNotFoundException, E;
+    }
+
+    /**
+     * @return the count of elements.
+     */
+    int size();
+
+    /**
+     * @return true, if the collection hasn't elements.
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add the element, which is already added to the database.
+     *
+     * @param pair the element with the space marine and the creator's login.
+     */
+    void add(Pair<SpaceMarine, String> pair);
+
+    /**
+     * Remove the element with the same ID, which is already removed from the database.
+     *
+     * @param pair the element.
+     * @return true, if the collection had the element.
+     */
+    boolean remove(Pair<SpaceMarine, String> pair);
+
+    /**
+     * Apply the change of the row, which is made by other server with the same database.
+     * The change can be already applied (for example, by the reloading), so it's idempotent.
+     *
+     * @param id the changed row's ID.
+     * @param pair the row's current element or null, if the row is deleted.
+     * @return true, if the collection is changed.
+     */
+    boolean applyChange(int id, Pair<SpaceMarine, String> pair) throws SQLException, ClassNotFoundException;
+
+    /**
+     * Apply the notified change of the row, which is made by other server with the same database.
+     * The change can be already applied by the reloading, so it's idempotent.
+     *
+     * @param change the insert or the delete of the row.
+     * @param pair the row's current element or null, if the row is deleted.
+     * @return true, if the collection is changed.
+     */
+    default boolean applyChange(RowChange change, Pair<SpaceMarine, String> pair)
+            throws SQLException, ClassNotFoundException {
+        return applyChange(change.getId(), change.isInserted() ? pair : null);
+    }
+
+    /**
+     * Reload the collection from the storage, because changes of other servers could be lost.
+     *
+     * @param storage the storage.
+     */
+    void reload(Storage storage) throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param id the space marine's ID.
+     * @return the element with the ID or null.
+     */
+    Pair<SpaceMarine, String> findById(int id) throws SQLException, ClassNotFoundException;
+
+    /**
+     * @return the minimal element (the head of the priority queue) or null.
+     */
+    Pair<SpaceMarine, String> peek() throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param login the creator's login.
+     * @return elements of the creator.
+     */
+    List<Pair<SpaceMarine, String>> findByCreator(String login) throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param login the creator's login or null for any creator.
+     * @param height the height.
+     * @return any element of the creator with the height or null.
+     */
+    Pair<SpaceMarine, String> findAnyByHeight(String login, int height) throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param spaceMarine the space marine for comparing.
+     * @return elements, whose space marines are greater than the space marine.
+     */
+    List<Pair<SpaceMarine, String>> findGreaterThan(SpaceMarine spaceMarine) throws SQLException, ClassNotFoundException;
+
+    /**
+     * Open the scan of all elements in the order of heights (null heights are the first) and IDs,
+     * like {@link #scan()}.
+     *
+     * @return the scan.
+     */
+    Scan scanByHeight();
+
+    /**
+     * @param afterId the ID before the first element.
+     * @param limit the maximal count of elements.
+     * @return elements with IDs greater than the ID in the order of IDs.
+     */
+    List<Pair<SpaceMarine, String>> findPage(int afterId, int limit) throws SQLException, ClassNotFoundException;
+
+    /**
+     * Open the scan of all elements. The in-memory collection copies references at the opening
+     * (the caller, which holds the write lock, gets the consistent snapshot), the hybrid collection
+     * reads the table by pages in the order of IDs during the scan (it sees changes after the opening or not).
+     *
+     * @return the scan.
+     */
+    Scan scan();
+
+    /**
+     * @return the average height of space marines (null heights are counted as 0).
+     */
+    double averageHeight();
+
+    /**
+     * @param meleeWeapon the melee weapon.
+     * @return the count of space marines with the greater melee weapon.
+     */
+    long countMeleeWeaponGreaterThan(MeleeWeapon meleeWeapon);
+
+    /**
+     * @return the description of the collection for the command "info".
+     */
+    String getType();
+}
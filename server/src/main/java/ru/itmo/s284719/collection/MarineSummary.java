@@ -0,0 +1,90 @@
+package ru.itmo.s284719.collection;
+
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+/**
+ * Summary of the collection, which is maintained by every adding and removing:
+ * the count of space marines, the sum of heights and counts by melee weapons.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class MarineSummary {
+    /**
+     * The count of space marines.
+     */
+    private long count = 0;
+    /**
+     * The sum of not null heights.
+     */
+    private long heightSum = 0;
+    /**
+     * The counts of space marines by ordinals of melee weapons.
+     */
+    private final long[] meleeWeaponCounts = new long[MeleeWeapon.values().length];
+
+    /**
+     * Replace the summary with the values calculated by the database.
+     *
+     * @param meleeWeaponCounts the counts of space marines by ordinals of melee weapons.
+     * @param heightSum the sum of not null heights.
+     */
+    public synchronized void reset(long[] meleeWeaponCounts, long heightSum) {
+        count = 0;
+        for (int i = 0; i < this.meleeWeaponCounts.length; ++i) {
+            this.meleeWeaponCounts[i] = meleeWeaponCounts[i];
+            count += meleeWeaponCounts[i];
+        }
+        this.heightSum = heightSum;
+    }
+
+    public void add(SpaceMarine spaceMarine) {
+        add(spaceMarine.getHeight(), spaceMarine.getMeleeWeapon());
+    }
+
+    public void remove(SpaceMarine spaceMarine) {
+        remove(spaceMarine.getHeight(), spaceMarine.getMeleeWeapon());
+    }
+
+    /**
+     * Count the space marine by the values, which are summarised.
+     *
+     * @param height the height or null.
+     * @param meleeWeapon the melee weapon.
+     */
+    public synchronized void add(Integer height, MeleeWeapon meleeWeapon) {
+        ++count;
+        if (height != null)
+            heightSum += height;
+        ++meleeWeaponCounts[meleeWeapon.ordinal()];
+    }
+
+    /**
+     * Uncount the space marine by the values, which are summarised.
+     *
+     * @param height the height or null.
+     * @param meleeWeapon the melee weapon.
+     */
+    public synchronized void remove(Integer height, MeleeWeapon meleeWeapon) {
+        --count;
+        if (height != null)
+            heightSum -= height;
+        --meleeWeaponCounts[meleeWeapon.ordinal()];
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getAverageHeight() {
+        return count == 0 ? 0 : ((double) heightSum) / count;
+    }
+
+    public synchronized long countMeleeWeaponGreaterThan(MeleeWeapon meleeWeapon) {
+        long result = 0;
+        for (int i = meleeWeapon.ordinal() + 1; i < meleeWeaponCounts.length; ++i)
+            result += meleeWeaponCounts[i];
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.itmo.s284719.database;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings: the answer "absent" is exact, the answer "present" can be false
+ * with the given probability, while the count of added strings is less than the expected count.
+ * Strings can't be removed. Bits are set without locks.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+class BloomFilter {
+    /**
+     * The bits of the filter.
+     */
+    private final AtomicLongArray bits;
+    /**
+     * The count of bits.
+     */
+    private final int size;
+    /**
+     * The count of bits for one string.
+     */
+    private final int hashes;
+    /**
+     * The expected count of strings.
+     */
+    private final int expected;
+
+    /**
+     * Constructor with the expected count of strings and the probability of false answers "present".
+     *
+     * @param expected the expected count of strings.
+     * @param falsePositiveProbability the probability of false answers "present".
+     */
+    BloomFilter(int expected, double falsePositiveProbability) {
+        this.expected = Math.max(1, expected);
+        double bitsCount = -this.expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        this.size = (int) Math.max(Long.SIZE, Math.min(bitsCount, Integer.MAX_VALUE - Long.SIZE));
+        this.bits = new AtomicLongArray((size + Long.SIZE - 1) / Long.SIZE);
+        this.hashes = Math.max(1, (int) Math.round((double) size / this.expected * Math.log(2)));
+    }
+
+    void put(String string) {
+        long hash = hash(string);
+        for (int i = 0; i < hashes; ++i) {
+            int index = index(hash, i);
+            long mask = 1L << index;
+            int word = index >>> 6;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask))
+                continue;
+        }
+    }
+
+    boolean mightContain(String string) {
+        long hash = hash(string);
+        for (int i = 0; i < hashes; ++i) {
+            int index = index(hash, i);
+            if ((bits.get(index >>> 6) & (1L << index)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    int getExpected() {
+        return expected;
+    }
+
+    /**
+     * The index of the i-th bit by two halves of the 64-bit hash (double hashing).
+     */
+    private int index(long hash, int i) {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return Math.floorMod(combined, size);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the string's characters.
+     */
+    private static long hash(String string) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); ++i) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,156 @@
+package ru.itmo.s284719.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listener of changes of the table "space_marines", which are made by other servers
+ * with the same database (command LISTEN on the separate connection).
+ * Notifications have inserted and deleted rows' IDs with values, which are counted by summaries
+ * (see {@link RowChange}), the subscriber reads the inserted rows' state.
+ * After the start and every reconnection notifications could be lost,
+ * so the subscriber reloads the whole collection.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ChangeListener implements Closeable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(ChangeListener.class);
+    /**
+     * The time of waiting for notifications in milliseconds.
+     */
+    private static final int POLL_TIMEOUT = 1000;
+    /**
+     * The time before the reconnection in milliseconds.
+     */
+    private static final long RECONNECT_DELAY = 5000;
+
+    /**
+     * The subscriber of changes.
+     */
+    public interface Subscriber {
+        /**
+         * Apply the change of the row.
+         *
+         * @param change the insert or the delete of the row.
+         */
+        void changed(RowChange change) throws SQLException, ClassNotFoundException;
+
+        /**
+         * Reload the whole collection, because notifications could be lost.
+         */
+        void reload() throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * The database's handler.
+     */
+    private final DatabaseHandler dbHandler;
+    /**
+     * The subscriber of changes.
+     */
+    private final Subscriber subscriber;
+    /**
+     * The listening thread.
+     */
+    private final Thread thread;
+    /**
+     * The field with information about closing.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor with the database and the subscriber.
+     *
+     * @param dbHandler the database's handler.
+     * @param subscriber the subscriber of changes.
+     */
+    public ChangeListener(DatabaseHandler dbHandler, Subscriber subscriber) {
+        this.dbHandler = dbHandler;
+        this.subscriber = subscriber;
+        this.thread = new Thread(this::listen, "db-change-listener");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start listening in the separate thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Listen the channel, while the listener isn't closed.
+     */
+    private void listen() {
+        String ownPrefix = dbHandler.getInstanceId() + ':';
+        while (!closed) {
+            try (Connection connection = dbHandler.openConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + DatabaseHandler.CHANGES_CHANNEL);
+                }
+                // logging.
+                logger.info("Listening of the channel \"" + DatabaseHandler.CHANGES_CHANNEL + "\" is started.");
+                // changes before LISTEN aren't received.
+                dbHandler.loadUsers();
+                subscriber.reload();
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (!closed) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT);
+                    if (notifications == null)
+                        continue;
+                    // changes are applied in the order of notifications: the insert before the delete.
+                    List<RowChange> changes = new ArrayList<>();
+                    boolean reload = false;
+                    for (PGNotification notification : notifications) {
+                        String payload = notification.getParameter();
+                        if (payload.startsWith(ownPrefix))
+                            continue;
+                        String change = payload.substring(payload.indexOf(':') + 1);
+                        if (change.startsWith(DatabaseHandler.USER_CHANGE_PREFIX))
+                            dbHandler.userChanged(change.substring(DatabaseHandler.USER_CHANGE_PREFIX.length()));
+                        else if (change.equals(DatabaseHandler.RELOAD_CHANGE))
+                            reload = true;
+                        else
+                            changes.add(RowChange.parse(change));
+                    }
+                    if (reload) {
+                        subscriber.reload();
+                    } else {
+                        for (RowChange change : changes)
+                            subscriber.changed(change);
+                    }
+                }
+            } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+                if (closed)
+                    return;
+                // logging.
+                logger.error("Listening of changes is failed, reconnection after " + RECONNECT_DELAY + " ms.", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException interruptedE) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+}
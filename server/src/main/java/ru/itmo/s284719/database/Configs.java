@@ -1,8 +1,9 @@
 package ru.itmo.s284719.database;
 
 public class Configs {
-    protected String dbHost = "pg";//pg localhost
-    protected String dbPort = "5432";
-    protected String dbName = "studs";//studs users
+    // the database's address can be changed by system properties "db.host", "db.port" and "db.name".
+    protected String dbHost = System.getProperty("db.host", "pg");//pg localhost
+    protected String dbPort = System.getProperty("db.port", "5432");
+    protected String dbName = System.getProperty("db.name", "studs");//studs users
     protected String connectionString = String.format("jdbc:postgresql://%s:%s/%s", dbHost, dbPort, dbName);
 }
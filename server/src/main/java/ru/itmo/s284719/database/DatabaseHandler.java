@@ -1,21 +1,92 @@
 package ru.itmo.s284719.database;
 
+import ru.itmo.s284719.metrics.TracedLock;
+import ru.itmo.s284719.network.cluster.ShardIds;
 import ru.itmo.s284719.network.parser.Pair;
 import ru.itmo.s284719.network.space.SpaceMarine;
 import ru.itmo.s284719.network.space.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.NoSuchAlgorithmException;
 import java.sql.*;
+import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
-public class DatabaseHandler extends Configs {
-    private Lock lock = new ReentrantLock();
+public class DatabaseHandler extends Configs implements Storage {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(DatabaseHandler.class);
+    /**
+     * The lock of the connection (it switches phases of the request's trace).
+     */
+    private Lock lock = new TracedLock();
     public Connection dbConnection = null;
     private String adminLogin, adminPassword;
+    private final IdAllocator idAllocator = new IdAllocator(this);
+    /**
+     * The IDs of rows of the table "chapters" by chapters' fields.
+     */
+    private final Map<List<Object>, Integer> chapterIds = new HashMap<>();
+    /**
+     * The parsed zones' IDs by their strings (rows have few different zones).
+     */
+    private final Map<String, ZoneId> zoneIds = new ConcurrentHashMap<>();
+    /**
+     * The values of enums by ordinals, which are kept in the database.
+     */
+    private static final AstartesCategory[] CATEGORIES = AstartesCategory.values();
+    private static final MeleeWeapon[] MELEE_WEAPONS = MeleeWeapon.values();
+    /**
+     * The channel of notifications about changed rows of the table "space_marines".
+     */
+    static final String CHANGES_CHANNEL = "space_marines_changes";
+    /**
+     * The payload's change, which means that many rows are changed and the collection must be reloaded.
+     */
+    static final String RELOAD_CHANGE = "*";
+    /**
+     * The prefix of the payload's change, which means that the user with the login is registered or deleted.
+     */
+    static final String USER_CHANGE_PREFIX = "user:";
+    /**
+     * SQLSTATE of the violation of the unique key.
+     */
+    private static final String UNIQUE_VIOLATION = "23505";
+    /**
+     * The directory of users for checks of logins and passwords without queries.
+     */
+    private final UsersDirectory usersDirectory = new UsersDirectory();
+    /**
+     * The ID of this server's instance in notifications (the instance skips its own notifications).
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+    /**
+     * The query of space marines with their chapters and creators' logins.
+     */
+    private static final String SELECT_SPACE_MARINES = "SELECT " +
+            "m.id, m.name, m.coordinate_x, m.coordinate_y, m.creation_time, m.creation_zone_id, " +
+            "m.health, m.height, m.category, m.melee_weapon, " +
+            "c.name AS chapter_name, c.parent_legion AS chapter_parent_legion, " +
+            "c.marines_count AS chapter_marines_count, c.world AS chapter_world, " +
+            "m.creator_user_login " +
+            "FROM space_marines m JOIN chapters c ON c.id = m.chapter_id";
+    /**
+     * The columns of CSV's files for the command COPY (the chapter's fields are inlined).
+     */
+    private static final String COPY_COLUMNS = "name, coordinate_x, coordinate_y, creation_time, creation_zone_id, " +
+            "health, height, category, melee_weapon, " +
+            "chapter_name, chapter_parent_legion, chapter_marines_count, chapter_world, creator_user_login";
 
     public DatabaseHandler(String adminLogin, String adminPassword) throws ClassNotFoundException, SQLException, NoSuchAlgorithmException {
         // save the admin's data.
@@ -24,33 +95,132 @@ public class DatabaseHandler extends Configs {
         User admin = new User(adminLogin, adminPassword);
         // try to connection to the database.
         lock.lock();
-        Class.forName("org.postgresql.Driver");
-        dbConnection = DriverManager.getConnection(connectionString, adminLogin, adminPassword);
-        // is the login free?
-        String selectLogin = "SELECT login FROM users WHERE login = ?";
-        PreparedStatement prSt = dbConnection.prepareStatement(selectLogin);
-        prSt.setString(1, adminLogin);
-        ResultSet resultSet = prSt.executeQuery();
-        // if it's true, than: register the admin.
-        if (!resultSet.next()) {
-            String insertUser = "INSERT INTO users(login, hash_password) VALUES(?,?)";
-            prSt = dbConnection.prepareStatement(insertUser);
+        try {
+            Class.forName("org.postgresql.Driver");
+            dbConnection = DriverManager.getConnection(connectionString, adminLogin, adminPassword);
+            // create or migrate the schema before the first query.
+            bootstrapSchema();
+            loadUsers();
+            // is the login free?
+            String selectLogin = "SELECT login FROM users WHERE login = ?";
+            PreparedStatement prSt = dbConnection.prepareStatement(selectLogin);
+            prSt.setString(1, adminLogin);
+            ResultSet resultSet = prSt.executeQuery();
+            // if it's true, than: register the admin.
+            if (!resultSet.next()) {
+                String insertUser = "INSERT INTO users(login, hash_password) VALUES(?,?)";
+                prSt = dbConnection.prepareStatement(insertUser);
+                prSt.setString(1, adminLogin);
+                prSt.setBytes(2, admin.getHashPassword());
+                prSt.executeUpdate();
+                usersDirectory.registered(adminLogin, admin.getHashPassword());
+                return;
+            }
+            // else: is the login corrected?
+            String selectUserLogin = "SELECT login FROM users " +
+                    "WHERE login = ? AND hash_password = ?";
+            prSt = dbConnection.prepareStatement(selectUserLogin);
             prSt.setString(1, adminLogin);
             prSt.setBytes(2, admin.getHashPassword());
-            prSt.executeUpdate();
-            return;
+            resultSet = prSt.executeQuery();
+            // if it's false: throw PasswordIncorrectException;
+            if (!resultSet.next())
+                throw new SQLDataException();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Create the schema in the empty database or migrate that to the latest version,
+     * and report the expected indexes, which are absent (for example, dropped by hand).
+     */
+    private void bootstrapSchema() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator();
+        int applied = migrator.migrate(dbConnection);
+        // logging.
+        logger.info("The database's schema has version " + migrator.currentVersion(dbConnection) +
+                " (" + applied + " migrations are applied at the start).");
+        List<String> missingIndexes = migrator.findMissingIndexes(dbConnection);
+        if (!missingIndexes.isEmpty())
+            // logging.
+            logger.warn("The table \"space_marines\" doesn't have indexes: " + missingIndexes +
+                    ". Queries by these columns scan the whole table.");
+    }
+
+    /**
+     * Open the new connection to the database with the admin's data (for listening of notifications).
+     *
+     * @return the new connection.
+     */
+    Connection openConnection() throws ClassNotFoundException, SQLException {
+        Class.forName("org.postgresql.Driver");
+        return DriverManager.getConnection(connectionString, adminLogin, adminPassword);
+    }
+
+    /**
+     * @return the ID of this server's instance in notifications.
+     */
+    String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * The change of rows, which is run with its notification in one transaction.
+     */
+    @FunctionalInterface
+    private interface Change<T> {
+        /**
+         * @param connection the connection in the transaction.
+         * @return the change's result.
+         */
+        T apply(Connection connection) throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * Run the change of rows and the notification about it in one transaction:
+     * other servers are notified about every committed change and only about committed changes.
+     * The lock must be held by the caller.
+     *
+     * @param change the change, which calls {@link #notifyChange(Connection, String)}.
+     * @return the change's result.
+     */
+    private <T> T changeAndNotify(Change<T> change) throws SQLException, ClassNotFoundException {
+        Connection connection = getDbConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        boolean committed = false;
+        try {
+            T result = change.apply(connection);
+            connection.commit();
+            committed = true;
+            return result;
+        } finally {
+            try {
+                if (!committed)
+                    connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                // logging.
+                logger.warn("The transaction isn't rolled back: the connection is broken.", e);
+            }
+        }
+    }
+
+    /**
+     * Notify other servers, which listen the channel, about the changed row.
+     * The notification is delivered after the commit of the current transaction,
+     * so the change and the notification are run by {@link #changeAndNotify(Change)}.
+     *
+     * @param connection the connection.
+     * @param change the row's change ({@link RowChange}), the user's change or {@link #RELOAD_CHANGE}.
+     */
+    private void notifyChange(Connection connection, String change) throws SQLException {
+        try (PreparedStatement prSt = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            prSt.setString(1, CHANGES_CHANNEL);
+            prSt.setString(2, instanceId + ':' + change);
+            prSt.executeQuery().close();
         }
-        // else: is the login corrected?
-        String selectUserLogin = "SELECT login FROM users " +
-                "WHERE login = ? AND hash_password = ?";
-        prSt = dbConnection.prepareStatement(selectUserLogin);
-        prSt.setString(1, adminLogin);
-        prSt.setBytes(2, admin.getHashPassword());
-        resultSet = prSt.executeQuery();
-        // if it's false: throw PasswordIncorrectException;
-        if (!resultSet.next())
-            throw new SQLDataException();
-        lock.unlock();
     }
 
     public Connection getDbConnection() throws ClassNotFoundException, SQLException {
@@ -63,165 +233,670 @@ public class DatabaseHandler extends Configs {
         return dbConnection;
     }
 
-    public boolean isLoginFree(String login) throws ClassNotFoundException, SQLException {
+    /**
+     * Load all users to the directory (at the start, after the lost notifications
+     * and when the directory's filter is overfilled).
+     */
+    void loadUsers() throws ClassNotFoundException, SQLException {
         lock.lock();
-        String selectLogin = "SELECT login FROM users WHERE login = ?";
-        PreparedStatement prSt = getDbConnection().prepareStatement(selectLogin);
-        prSt.setString(1, login);
-        ResultSet resultSet = prSt.executeQuery();
-        lock.unlock();
-        return !resultSet.next();
+        try (Statement statement = getDbConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT login, hash_password FROM users")) {
+            Map<String, byte[]> users = new HashMap<>();
+            while (resultSet.next())
+                users.put(resultSet.getString("login"), resultSet.getBytes("hash_password"));
+            usersDirectory.load(users);
+            // logging.
+            logger.info("Directory of users is loaded: " + users.size() + " users.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget the user, which is registered or deleted by other server.
+     *
+     * @param login the user's login.
+     */
+    void userChanged(String login) {
+        usersDirectory.changed(login);
+    }
+
+    /**
+     * Read the hash of the user's password from the database and cache that in the directory.
+     *
+     * @param login the user's login.
+     * @return the hash or null, if the user isn't registered.
+     */
+    private byte[] selectHashPassword(String login) throws ClassNotFoundException, SQLException {
+        lock.lock();
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(
+                "SELECT hash_password FROM users WHERE login = ?")) {
+            prSt.setString(1, login);
+            try (ResultSet resultSet = prSt.executeQuery()) {
+                if (!resultSet.next())
+                    return null;
+                byte[] hashPassword = resultSet.getBytes("hash_password");
+                usersDirectory.cache(login, hashPassword);
+                return hashPassword;
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public void registerUser(User user) throws ClassNotFoundException, SQLException {
+    /**
+     * Check the login by the users' directory and ask the database only about logins,
+     * which the directory can't answer. The answer "free" is exact only for registrations of this server:
+     * the login, which is registered by other server and isn't notified yet, is answered free,
+     * and its registration is rejected by {@link #registerUser(User)}.
+     *
+     * @param login the user's login.
+     * @return true, if the login isn't registered.
+     */
+    @Override
+    public boolean isLoginFree(String login) throws ClassNotFoundException, SQLException {
+        // if (the directory knows the answer) than: the database isn't asked.
+        if (usersDirectory.isFree(login))
+            return true;
+        if (usersDirectory.getHash(login) != null)
+            return false;
+        if (selectHashPassword(login) != null)
+            return false;
+        usersDirectory.cacheFree(login);
+        return true;
+    }
+
+    @Override
+    public boolean registerUser(User user) throws ClassNotFoundException, SQLException {
+        boolean overfilled;
         lock.lock();
         String insertUser = "INSERT INTO users(login, hash_password) VALUES(?,?)";
-        PreparedStatement prSt = getDbConnection().prepareStatement(insertUser);
-        prSt.setString(1, user.getLogin());
-        prSt.setBytes(2, user.getHashPassword());
-        prSt.executeUpdate();
-        lock.unlock();
+        try {
+            try {
+                changeAndNotify(connection -> {
+                    try (PreparedStatement prSt = connection.prepareStatement(insertUser)) {
+                        prSt.setString(1, user.getLogin());
+                        prSt.setBytes(2, user.getHashPassword());
+                        prSt.executeUpdate();
+                    }
+                    notifyChange(connection, USER_CHANGE_PREFIX + user.getLogin());
+                    return null;
+                });
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState()))
+                    throw e;
+                // if (other server has registered the login, but its notification isn't received) than: it's taken.
+                usersDirectory.changed(user.getLogin());
+                return false;
+            }
+            overfilled = usersDirectory.registered(user.getLogin(), user.getHashPassword());
+        } finally {
+            lock.unlock();
+        }
+        // the filter with more logins than expected gives too many false answers.
+        if (overfilled)
+            loadUsers();
+        return true;
     }
 
     public void deleteUser(String login) throws ClassNotFoundException, SQLException {
         lock.lock();
         String deleteUser = "DELETE FROM users WHERE login = ?";
-        PreparedStatement prSt = getDbConnection().prepareStatement(deleteUser);
-        prSt.setString(1, login);
-        prSt.executeQuery();
-        lock.unlock();
+        try {
+            changeAndNotify(connection -> {
+                try (PreparedStatement prSt = connection.prepareStatement(deleteUser)) {
+                    prSt.setString(1, login);
+                    prSt.executeUpdate();
+                }
+                notifyChange(connection, USER_CHANGE_PREFIX + login);
+                return null;
+            });
+            usersDirectory.deleted(login);
+        } finally {
+            lock.unlock();
+        }
     }
 
+    @Override
     public boolean isRegisteredUser(User user) throws ClassNotFoundException, SQLException {
-        lock.lock();
-        String selectUserLogin = "SELECT login FROM users " +
-                "WHERE login = ? AND hash_password = ?";
-        PreparedStatement prSt = getDbConnection().prepareStatement(selectUserLogin);
-        prSt.setString(1, user.getLogin());
-        prSt.setBytes(2, user.getHashPassword());
-        ResultSet resultSet = prSt.executeQuery();
-        lock.unlock();
-        return resultSet.next();
+        byte[] hashPassword = usersDirectory.getHash(user.getLogin());
+        // the user, which isn't cached, is read from the database
+        // (registrations of other servers could be not notified yet).
+        if (hashPassword == null)
+            hashPassword = selectHashPassword(user.getLogin());
+        return hashPassword != null && Arrays.equals(hashPassword, user.getHashPassword());
     }
 
+    @Override
     public int addSpaceMarineWithCreator(SpaceMarine spaceMarine, User user)
             throws SQLException, ClassNotFoundException {
+        // get the ID from the reserved block (without round trip to the database).
+        int id = idAllocator.nextId();
         lock.lock();
-        String selectIdInsertedSpaceMarine = "INSERT INTO space_marines" +
+        String insertSpaceMarine = "INSERT INTO space_marines" +
             "(" +
-                getFieldSpaceMarineWithoutIdWithCreatorLogin() +
+                getFieldSpaceMarineWithCreatorLogin() +
             ")" +
-            "VALUES(?, ?,?, ?,?,?,?,?,?,?,?, ?,?,?,?, ?,?,?,?, ?) RETURNING id";
-        PreparedStatement prSt = getDbConnection().prepareStatement(selectIdInsertedSpaceMarine);
-        prSt.setString(1, spaceMarine.getName());
-
-        Coordinates coordinates = spaceMarine.getCoordinates();
-        prSt.setLong(2, coordinates.getX());
-        if (coordinates.getY() == null)
-            prSt.setNull(3, Types.BIGINT);
-        else
-            prSt.setLong(3, coordinates.getY());
-
-        ZonedDateTime creationDate = spaceMarine.getCreationDate();
-        prSt.setInt(4, creationDate.getYear());
-        prSt.setInt(5, creationDate.getMonthValue());
-        prSt.setInt(6, creationDate.getDayOfMonth());
-        prSt.setInt(7, creationDate.getHour());
-        prSt.setInt(8, creationDate.getMinute());
-        prSt.setInt(9, creationDate.getSecond());
-        prSt.setInt(10, creationDate.getNano());
-        prSt.setString(11, creationDate.getZone().toString());
-
-        prSt.setLong(12, spaceMarine.getHealth());
-        if (spaceMarine.getHeight() == null)
-            prSt.setNull(13, Types.INTEGER);
-        else
-            prSt.setInt(13, spaceMarine.getHeight());
-        prSt.setString(14, spaceMarine.getCategory().toString());
-        prSt.setString(15, spaceMarine.getMeleeWeapon().toString());
-
-        Chapter chapter = spaceMarine.getChapter();
-        prSt.setString(16, chapter.getName());
-        prSt.setString(17, chapter.getParentLegion());
-        prSt.setInt(18, chapter.getMarinesCount());
-        prSt.setString(19, chapter.getWorld());
-
-        prSt.setString(20, user.getLogin());
-
-        ResultSet resultSet = prSt.executeQuery();
-        resultSet.next();
-        lock.unlock();
-        return resultSet.getInt("id");
+            "VALUES(?, ?, ?,?, ?,?, ?,?,?,?, ?, ?) RETURNING txid_current() AS transaction_id";
+        try {
+            // the chapter's row is committed before the transaction, so its cached ID stays correct after rollback.
+            int chapterId = getChapterId(spaceMarine.getChapter());
+            changeAndNotify(connection -> {
+                long transactionId;
+                try (PreparedStatement prSt = connection.prepareStatement(insertSpaceMarine)) {
+                    prSt.setInt(1, id);
+                    prSt.setString(2, spaceMarine.getName());
+
+                    Coordinates coordinates = spaceMarine.getCoordinates();
+                    prSt.setLong(3, coordinates.getX());
+                    if (coordinates.getY() == null)
+                        prSt.setNull(4, Types.BIGINT);
+                    else
+                        prSt.setLong(4, coordinates.getY());
+
+                    ZonedDateTime creationDate = spaceMarine.getCreationDate();
+                    prSt.setObject(5, creationDate.toOffsetDateTime());
+                    prSt.setString(6, creationDate.getZone().getId());
+
+                    prSt.setLong(7, spaceMarine.getHealth());
+                    if (spaceMarine.getHeight() == null)
+                        prSt.setNull(8, Types.INTEGER);
+                    else
+                        prSt.setInt(8, spaceMarine.getHeight());
+                    prSt.setShort(9, (short) spaceMarine.getCategory().ordinal());
+                    prSt.setShort(10, (short) spaceMarine.getMeleeWeapon().ordinal());
+
+                    prSt.setInt(11, chapterId);
+
+                    prSt.setString(12, user.getLogin());
+
+                    try (ResultSet resultSet = prSt.executeQuery()) {
+                        resultSet.next();
+                        transactionId = resultSet.getLong("transaction_id");
+                    }
+                }
+                notifyChange(connection, new RowChange(id, true, transactionId,
+                        spaceMarine.getHeight(), spaceMarine.getMeleeWeapon()).toString());
+                return null;
+            });
+        } finally {
+            lock.unlock();
+        }
+        spaceMarine.setId(id);
+        return id;
     }
 
-    public void deleteSpaceMarineWithCreator(int id)
+    /**
+     * Get the ID of the chapter's row in the table "chapters" and insert the row, if it's absent.
+     * The lock must be held by the caller.
+     *
+     * @param chapter the space marine's chapter.
+     * @return the row's ID.
+     */
+    private int getChapterId(Chapter chapter) throws SQLException, ClassNotFoundException {
+        List<Object> key = Arrays.asList(chapter.getName(), chapter.getParentLegion(),
+                chapter.getMarinesCount(), chapter.getWorld());
+        Integer chapterId = chapterIds.get(key);
+        if (chapterId != null)
+            return chapterId;
+        // the update without changes returns the ID of the existing row.
+        String upsertChapter = "INSERT INTO chapters(name, parent_legion, marines_count, world) " +
+                "VALUES(?, ?, ?, ?) " +
+                "ON CONFLICT (name, (COALESCE(parent_legion, '')), marines_count, (COALESCE(world, ''))) " +
+                "DO UPDATE SET name = EXCLUDED.name RETURNING id";
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(upsertChapter)) {
+            prSt.setString(1, chapter.getName());
+            prSt.setString(2, chapter.getParentLegion());
+            prSt.setInt(3, chapter.getMarinesCount());
+            prSt.setString(4, chapter.getWorld());
+            try (ResultSet resultSet = prSt.executeQuery()) {
+                resultSet.next();
+                chapterId = resultSet.getInt("id");
+            }
+        }
+        chapterIds.put(key, chapterId);
+        return chapterId;
+    }
+
+    @Override
+    public boolean deleteSpaceMarineWithCreator(int id)
             throws SQLException, ClassNotFoundException {
         lock.lock();
-        String deleteSpaceMarine = "DELETE FROM space_marines WHERE id = ?";
-        PreparedStatement prSt = getDbConnection().prepareStatement(deleteSpaceMarine);
-        prSt.setInt(1, id);
-        prSt.executeUpdate();
-        lock.unlock();
+        // other servers subtract the deleted row's values from their summaries without reading the row.
+        String deleteSpaceMarine = "DELETE FROM space_marines WHERE id = ? " +
+                "RETURNING height, melee_weapon, txid_current() AS transaction_id";
+        try {
+            return changeAndNotify(connection -> {
+                try (PreparedStatement prSt = connection.prepareStatement(deleteSpaceMarine)) {
+                    prSt.setInt(1, id);
+                    try (ResultSet resultSet = prSt.executeQuery()) {
+                        // the row can be already deleted by other request.
+                        if (!resultSet.next())
+                            return false;
+                        int height = resultSet.getInt("height");
+                        Integer deletedHeight = resultSet.wasNull() ? null : height;
+                        RowChange change = new RowChange(id, false, resultSet.getLong("transaction_id"),
+                                deletedHeight, MELEE_WEAPONS[resultSet.getShort("melee_weapon")]);
+                        notifyChange(connection, change.toString());
+                        return true;
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
     }
 
+    @Override
     public PriorityBlockingQueue<Pair<SpaceMarine, String>> getPriorityBlockingQueuePair()
             throws SQLException, ClassNotFoundException {
         lock.lock();
         PriorityBlockingQueue<Pair<SpaceMarine, String>> queue = new PriorityBlockingQueue<>();
-        ResultSet resultSet = getDbConnection().prepareStatement("SELECT * FROM space_marines").executeQuery();
-        while (resultSet.next()) {
-            SpaceMarine spaceMarine = new SpaceMarine();
-
-            int id = resultSet.getInt("id");
-            spaceMarine.setId(id);
-
-            String name = resultSet.getString("name");
-            spaceMarine.setName(name);
-
-            long coordinateX = resultSet.getLong("coordinate_x");
-            Long coordinateY = resultSet.getObject("coordinate_y", Long.class);
-            Coordinates coordinates = new Coordinates(coordinateX, coordinateY);
-            spaceMarine.setCoordinates(coordinates);
-
-            int creationDateYear = resultSet.getInt("creation_date_year");
-            int creationDateMonth = resultSet.getInt("creation_date_month");
-            int creationDateDay = resultSet.getInt("creation_date_day");
-            int creationTimeHour = resultSet.getInt("creation_time_hour");
-            int creationTimeMinute = resultSet.getInt("creation_time_minute");
-            int creationTimeSecond = resultSet.getInt("creation_time_second");
-            int creationTimeNano = resultSet.getInt("creation_time_nano");
-            ZoneId creationZoneId = ZoneId.of(resultSet.getString("creation_zone_id"));
-            ZonedDateTime creationDate = ZonedDateTime.of(
-                    creationDateYear, creationDateMonth, creationDateDay,
-                    creationTimeHour, creationTimeMinute, creationTimeSecond,
-                    creationTimeNano, creationZoneId
-            );
-            spaceMarine.setCreationDate(creationDate);
-
-            long health = resultSet.getLong("health");
-            Integer height = resultSet.getObject("height", Integer.class);
-            AstartesCategory category = AstartesCategory.valueOf(resultSet.getString("category"));
-            MeleeWeapon meleeWeapon = MeleeWeapon.valueOf(resultSet.getString("melee_weapon"));
-            spaceMarine.setHealth(health);
-            spaceMarine.setHeight(height);
-            spaceMarine.setCategory(category);
-            spaceMarine.setMeleeWeapon(meleeWeapon);
-
-            String chapterName = resultSet.getString("chapter_name");
-            String chapter_parent_legion = resultSet.getString("chapter_parent_legion");
-            int chapterMarinesCount = resultSet.getInt("chapter_marines_count");
-            String chapterWorld = resultSet.getString("chapter_world");
-            Chapter chapter = new Chapter(chapterName, chapter_parent_legion, chapterMarinesCount, chapterWorld);
-            spaceMarine.setChapter(chapter);
-
-            String creatorUserLogin = resultSet.getString("creator_user_login");
-
-            queue.add(new Pair<>(spaceMarine, creatorUserLogin));
-        }
+        ResultSet resultSet = getDbConnection().prepareStatement(SELECT_SPACE_MARINES).executeQuery();
+        while (resultSet.next())
+            queue.add(readSpaceMarinePair(resultSet));
         lock.unlock();
         return queue;
     }
 
+    /**
+     * Get space marines with IDs greater than the ID in the order of IDs (by the primary key's index).
+     *
+     * @param afterId the ID before the first row.
+     * @param limit the maximal count of rows.
+     * @return the list of pairs.
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsAfterId(int afterId, int limit)
+            throws SQLException, ClassNotFoundException {
+        String selectSpaceMarines = SELECT_SPACE_MARINES + " WHERE m.id > ? ORDER BY m.id LIMIT ?";
+        return selectSpaceMarinePairs(selectSpaceMarines, afterId, limit);
+    }
+
+    /**
+     * Get space marines of the creator (by the index of creators' logins).
+     *
+     * @param login the creator's login.
+     * @return the list of pairs.
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByCreator(String login)
+            throws SQLException, ClassNotFoundException {
+        String selectSpaceMarines = SELECT_SPACE_MARINES + " WHERE m.creator_user_login = ? ORDER BY m.id";
+        return selectSpaceMarinePairs(selectSpaceMarines, login);
+    }
+
+    /**
+     * Get any space marine with the height (by the index of heights).
+     *
+     * @param login the creator's login or null for any creator.
+     * @param height the height.
+     * @return the pair or null.
+     */
+    @Override
+    public Pair<SpaceMarine, String> getAnySpaceMarinePairByHeight(String login, int height)
+            throws SQLException, ClassNotFoundException {
+        List<Pair<SpaceMarine, String>> list = login == null
+                ? selectSpaceMarinePairs(SELECT_SPACE_MARINES + " WHERE m.height = ? LIMIT 1", height)
+                : selectSpaceMarinePairs(SELECT_SPACE_MARINES +
+                        " WHERE m.height = ? AND m.creator_user_login = ? LIMIT 1", height, login);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /**
+     * @return all space marines sorted by the height (by the index of heights).
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight()
+            throws SQLException, ClassNotFoundException {
+        return selectSpaceMarinePairs(SELECT_SPACE_MARINES + " ORDER BY m.height NULLS FIRST");
+    }
+
+    /**
+     * Get the page of space marines in the order of heights and IDs (by the index of heights):
+     * rows with null heights are read by IDs, after them rows with not null heights.
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight(Pair<SpaceMarine, String> after,
+                                                                             int limit)
+            throws SQLException, ClassNotFoundException {
+        String order = " ORDER BY m.height NULLS FIRST, m.id LIMIT ?";
+        if (after == null)
+            return selectSpaceMarinePairs(SELECT_SPACE_MARINES + order, limit);
+        if (after.first.getHeight() == null)
+            return selectSpaceMarinePairs(SELECT_SPACE_MARINES +
+                    " WHERE (m.height IS NULL AND m.id > ?) OR m.height IS NOT NULL" + order,
+                    after.first.getId(), limit);
+        return selectSpaceMarinePairs(SELECT_SPACE_MARINES + " WHERE (m.height, m.id) > (?, ?)" + order,
+                after.first.getHeight(), after.first.getId(), limit);
+    }
+
+    /**
+     * Get the random sample of space marines: the database sorts rows by random numbers,
+     * so only sampled rows are sent.
+     *
+     * @param size the maximal count of sampled space marines.
+     * @return the list of pairs (new objects for every call).
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsSample(int size)
+            throws SQLException, ClassNotFoundException {
+        return selectSpaceMarinePairs(SELECT_SPACE_MARINES + " ORDER BY random() LIMIT ?", size);
+    }
+
+    /**
+     * @return the counts of space marines by ordinals of melee weapons.
+     */
+    @Override
+    public long[] getSpaceMarineCountsByMeleeWeapon() throws SQLException, ClassNotFoundException {
+        lock.lock();
+        String selectCounts = "SELECT melee_weapon, count(*) AS count FROM space_marines GROUP BY melee_weapon";
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(selectCounts);
+             ResultSet resultSet = prSt.executeQuery()) {
+            long[] counts = new long[MELEE_WEAPONS.length];
+            while (resultSet.next())
+                counts[resultSet.getShort("melee_weapon")] = resultSet.getLong("count");
+            return counts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the sum of not null heights of space marines.
+     */
+    @Override
+    public long getSpaceMarineHeightSum() throws SQLException, ClassNotFoundException {
+        lock.lock();
+        String selectSum = "SELECT COALESCE(sum(height), 0) AS height_sum FROM space_marines";
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(selectSum);
+             ResultSet resultSet = prSt.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong("height_sum");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calculate the summary by one query, so the summary and the snapshot are the same state of the table.
+     *
+     * @return the summary with the snapshot of transactions.
+     */
+    @Override
+    public TableSummary getSpaceMarineSummary() throws SQLException, ClassNotFoundException {
+        lock.lock();
+        // the empty table gives one row with the snapshot and the count 0.
+        String selectSummary = "SELECT s.snapshot, m.melee_weapon, count(m.id) AS count, " +
+                "COALESCE(sum(m.height), 0) AS height_sum " +
+                "FROM space_marines m RIGHT JOIN (SELECT txid_current_snapshot()::text AS snapshot) s ON true " +
+                "GROUP BY s.snapshot, m.melee_weapon";
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(selectSummary);
+             ResultSet resultSet = prSt.executeQuery()) {
+            long[] counts = new long[MELEE_WEAPONS.length];
+            long heightSum = 0;
+            String snapshot = null;
+            while (resultSet.next()) {
+                snapshot = resultSet.getString("snapshot");
+                long count = resultSet.getLong("count");
+                if (count == 0)
+                    continue;
+                counts[resultSet.getShort("melee_weapon")] = count;
+                heightSum += resultSet.getLong("height_sum");
+            }
+            return new TableSummary(counts, heightSum, snapshot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Execute the query of space marines with the parameters.
+     *
+     * @param query the query based on {@link #SELECT_SPACE_MARINES}.
+     * @param parameters the query's parameters.
+     * @return the list of pairs.
+     */
+    private List<Pair<SpaceMarine, String>> selectSpaceMarinePairs(String query, Object... parameters)
+            throws SQLException, ClassNotFoundException {
+        lock.lock();
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; ++i)
+                prSt.setObject(i + 1, parameters[i]);
+            List<Pair<SpaceMarine, String>> list = new ArrayList<>();
+            try (ResultSet resultSet = prSt.executeQuery()) {
+                while (resultSet.next())
+                    list.add(readSpaceMarinePair(resultSet));
+            }
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get IDs of all space marines from the table "space_marines".
+     *
+     * @return the set of IDs.
+     */
+    @Override
+    public Set<Integer> getSpaceMarineIds() throws SQLException, ClassNotFoundException {
+        lock.lock();
+        try (PreparedStatement prSt = getDbConnection().prepareStatement("SELECT id FROM space_marines");
+             ResultSet resultSet = prSt.executeQuery()) {
+            Set<Integer> ids = new HashSet<>();
+            while (resultSet.next())
+                ids.add(resultSet.getInt("id"));
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get space marines with the IDs and their creators' logins.
+     *
+     * @param ids the space marines' IDs.
+     * @return the list of pairs.
+     */
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByIds(Collection<Integer> ids)
+            throws SQLException, ClassNotFoundException {
+        List<Pair<SpaceMarine, String>> list = new ArrayList<>(ids.size());
+        if (ids.isEmpty())
+            return list;
+        lock.lock();
+        String selectSpaceMarines = SELECT_SPACE_MARINES + " WHERE m.id = ANY(?)";
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(selectSpaceMarines)) {
+            prSt.setArray(1, getDbConnection().createArrayOf("integer", ids.toArray()));
+            try (ResultSet resultSet = prSt.executeQuery()) {
+                while (resultSet.next())
+                    list.add(readSpaceMarinePair(resultSet));
+            }
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Load rows to the table "space_marines" from the CSV's text by one command "COPY ... FROM STDIN".
+     * The text has the header and columns {@link #COPY_COLUMNS}: the rows are copied to the temporary table,
+     * than the chapters and the space marines are inserted from that by two queries.
+     * IDs are given by the table's sequence. If any row is incorrect, no rows are loaded.
+     *
+     * @param reader the reader of the CSV's text.
+     * @return IDs of loaded rows.
+     */
+    @Override
+    public List<Integer> copySpaceMarinesFrom(Reader reader) throws SQLException, ClassNotFoundException, IOException {
+        lock.lock();
+        Connection connection = getDbConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TEMP TABLE space_marines_copy (" +
+                    "name VARCHAR(32), coordinate_x BIGINT, coordinate_y BIGINT, " +
+                    "creation_time TIMESTAMPTZ, creation_zone_id VARCHAR(64), " +
+                    "health BIGINT, height INT, category SMALLINT, melee_weapon SMALLINT, " +
+                    "chapter_name VARCHAR(255), chapter_parent_legion VARCHAR(255), " +
+                    "chapter_marines_count INT, chapter_world VARCHAR(255), " +
+                    "creator_user_login VARCHAR(32)) ON COMMIT DROP");
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY space_marines_copy (" + COPY_COLUMNS + ") FROM STDIN WITH (FORMAT csv, HEADER true)",
+                    reader);
+            statement.executeUpdate("INSERT INTO chapters(name, parent_legion, marines_count, world) " +
+                    "SELECT DISTINCT chapter_name, chapter_parent_legion, chapter_marines_count, chapter_world " +
+                    "FROM space_marines_copy ON CONFLICT DO NOTHING");
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery(
+                    "INSERT INTO space_marines(" + getFieldSpaceMarineWithoutIdWithCreatorLogin() + ") " +
+                    "SELECT i.name, i.coordinate_x, i.coordinate_y, i.creation_time, i.creation_zone_id, " +
+                    "i.health, i.height, i.category, i.melee_weapon, c.id, i.creator_user_login " +
+                    "FROM space_marines_copy i JOIN chapters c ON c.name = i.chapter_name " +
+                    "AND COALESCE(c.parent_legion, '') = COALESCE(i.chapter_parent_legion, '') " +
+                    "AND c.marines_count = i.chapter_marines_count " +
+                    "AND COALESCE(c.world, '') = COALESCE(i.chapter_world, '') RETURNING id")) {
+                while (resultSet.next())
+                    ids.add(resultSet.getInt("id"));
+            }
+            // other servers reload the collection instead of reading every new row.
+            notifyChange(connection, RELOAD_CHANGE);
+            connection.commit();
+            return ids;
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unload rows of the table "space_marines" to the CSV's text by one command "COPY ... TO STDOUT".
+     * The text has the same format as the text for {@link #copySpaceMarinesFrom(Reader)}.
+     *
+     * @param writer the writer of the CSV's text.
+     * @return the count of unloaded rows.
+     */
+    @Override
+    public long copySpaceMarinesTo(Writer writer) throws SQLException, ClassNotFoundException, IOException {
+        lock.lock();
+        String copyOut = "COPY (SELECT " +
+                "m.name, m.coordinate_x, m.coordinate_y, m.creation_time, m.creation_zone_id, " +
+                "m.health, m.height, m.category, m.melee_weapon, " +
+                "c.name, c.parent_legion, c.marines_count, c.world, m.creator_user_login " +
+                "FROM space_marines m JOIN chapters c ON c.id = m.chapter_id) " +
+                "TO STDOUT WITH (FORMAT csv, HEADER true)";
+        try {
+            return getDbConnection().unwrap(PGConnection.class).getCopyAPI().copyOut(copyOut, writer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the space marine and the creator's login from the current row.
+     *
+     * @param resultSet the result set with the current row of the table "space_marines".
+     * @return the pair with the space marine and the creator's login.
+     */
+    private Pair<SpaceMarine, String> readSpaceMarinePair(ResultSet resultSet) throws SQLException {
+        SpaceMarine spaceMarine = new SpaceMarine();
+
+        int id = resultSet.getInt("id");
+        spaceMarine.setId(id);
+
+        String name = resultSet.getString("name");
+        spaceMarine.setName(name);
+
+        long coordinateX = resultSet.getLong("coordinate_x");
+        Long coordinateY = resultSet.getObject("coordinate_y", Long.class);
+        Coordinates coordinates = new Coordinates(coordinateX, coordinateY);
+        spaceMarine.setCoordinates(coordinates);
+
+        OffsetDateTime creationTime = resultSet.getObject("creation_time", OffsetDateTime.class);
+        ZoneId creationZoneId = zoneIds.computeIfAbsent(resultSet.getString("creation_zone_id"), ZoneId::of);
+        spaceMarine.setCreationDate(creationTime.atZoneSameInstant(creationZoneId));
+
+        long health = resultSet.getLong("health");
+        Integer height = resultSet.getObject("height", Integer.class);
+        AstartesCategory category = CATEGORIES[resultSet.getShort("category")];
+        MeleeWeapon meleeWeapon = MELEE_WEAPONS[resultSet.getShort("melee_weapon")];
+        spaceMarine.setHealth(health);
+        spaceMarine.setHeight(height);
+        spaceMarine.setCategory(category);
+        spaceMarine.setMeleeWeapon(meleeWeapon);
+
+        String chapterName = resultSet.getString("chapter_name");
+        String chapter_parent_legion = resultSet.getString("chapter_parent_legion");
+        int chapterMarinesCount = resultSet.getInt("chapter_marines_count");
+        String chapterWorld = resultSet.getString("chapter_world");
+        Chapter chapter = new Chapter(chapterName, chapter_parent_legion, chapterMarinesCount, chapterWorld);
+        spaceMarine.setChapter(chapter);
+
+        String creatorUserLogin = resultSet.getString("creator_user_login");
+
+        return new Pair<>(spaceMarine, creatorUserLogin);
+    }
+
+    /**
+     * Reserve new IDs from the sequence of the table "space_marines" by one query.
+     * In the cluster the query takes IDs of all nodes and only IDs of this node are kept
+     * (every node has its own database, other IDs are just skipped).
+     * If the sequence skips values (its cache or increment), than IDs are fetched again,
+     * so the block is always full.
+     *
+     * @param count the count of IDs.
+     * @return the reserved IDs.
+     * @throws IllegalArgumentException if the count isn't positive or the query's count overflows.
+     * @throws SQLException if the sequence gives IDs out of the type or no IDs of this node.
+     */
+    public int[] reserveSpaceMarineIds(int count) throws SQLException, ClassNotFoundException {
+        if (count <= 0 || count > Integer.MAX_VALUE / ShardIds.NODES)
+            throw new IllegalArgumentException("Incorrect count of reserved IDs: " + count + '.');
+        lock.lock();
+        String selectIds = "SELECT nextval(pg_get_serial_sequence('space_marines', 'id')) AS id " +
+                "FROM generate_series(1, ?)";
+        try (PreparedStatement prSt = getDbConnection().prepareStatement(selectIds)) {
+            int[] ids = new int[count];
+            int size = 0;
+            while (size < count) {
+                int found = 0;
+                prSt.setInt(1, (count - size) * ShardIds.NODES);
+                try (ResultSet resultSet = prSt.executeQuery()) {
+                    while (size < count && resultSet.next()) {
+                        long id = resultSet.getLong("id");
+                        // if (the sequence is over the type of IDs) than: the ID can't be given out.
+                        if (id <= 0 || id > Integer.MAX_VALUE)
+                            throw new SQLException("The sequence of space marines' IDs gives the incorrect ID " +
+                                    id + '.');
+                        if (ShardIds.owns((int) id)) {
+                            ids[size++] = (int) id;
+                            ++found;
+                        }
+                    }
+                }
+                // if (the sequence's step skips all IDs of this node) than: fetching again never ends.
+                if (found == 0)
+                    throw new SQLException("The sequence of space marines' IDs gives no IDs of the node " +
+                            ShardIds.NODE + '.');
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public IdAllocator getIdAllocator() {
+        return idAllocator;
+    }
+
+    public String getFieldSpaceMarineWithCreatorLogin() {
+        return getFieldSpaceMarine() + ", creator_user_login";
+    }
+
     public String getFieldSpaceMarineWithoutIdWithCreatorLogin() {
         return getFieldSpaceMarineWithoutId() + ", creator_user_login";
     }
@@ -237,13 +912,7 @@ public class DatabaseHandler extends Configs {
             "coordinate_x, " +
             "coordinate_y, " +
 
-            "creation_date_year, " +
-            "creation_date_month, " +
-            "creation_date_day, " +
-            "creation_time_hour, " +
-            "creation_time_minute, " +
-            "creation_time_second, " +
-            "creation_time_nano, " +
+            "creation_time, " +
             "creation_zone_id, " +
 
             "health, " +
@@ -251,9 +920,6 @@ public class DatabaseHandler extends Configs {
             "category, " +
             "melee_weapon, " +
 
-            "chapter_name, " +
-            "chapter_parent_legion, " +
-            "chapter_marines_count, " +
-            "chapter_world";
+            "chapter_id";
     }
 }
@@ -0,0 +1,133 @@
+package ru.itmo.s284719.database;
+
+import ru.itmo.s284719.network.cluster.ShardIds;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Allocator of space marines' IDs.
+ * It reserves blocks of IDs from the database's sequence by one query
+ * and gives they out locally without the database and locks.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class IdAllocator {
+    /**
+     * The default count of IDs in one reserved block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+    /**
+     * The source of reserved blocks (the database's sequence of space marines' IDs).
+     */
+    private final BlockSource source;
+    /**
+     * The count of IDs in one reserved block.
+     */
+    private final int blockSize;
+    /**
+     * The lock for reserving new blocks (only one thread goes to the database).
+     */
+    private final Lock refillLock = new ReentrantLock();
+    /**
+     * The current block with IDs.
+     */
+    private volatile Block block = new Block(new int[0]);
+
+    /**
+     * Constructor with the default block's size.
+     *
+     * @param dbHandler the database's handler.
+     */
+    public IdAllocator(DatabaseHandler dbHandler) {
+        this(dbHandler, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param dbHandler the database's handler.
+     * @param blockSize the count of IDs in one reserved block.
+     */
+    public IdAllocator(DatabaseHandler dbHandler, int blockSize) {
+        this(dbHandler::reserveSpaceMarineIds, blockSize);
+    }
+
+    /**
+     * Constructor with the source of blocks.
+     *
+     * @param source the source of reserved blocks.
+     * @param blockSize the count of IDs in one reserved block.
+     */
+    IdAllocator(BlockSource source, int blockSize) {
+        if (blockSize <= 0 || blockSize > Integer.MAX_VALUE / ShardIds.NODES)
+            throw new IllegalArgumentException("The block's size must be from 1 to " +
+                    Integer.MAX_VALUE / ShardIds.NODES + '.');
+        this.source = source;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Get new unique ID for a space marine.
+     * If the current block is over, than reserve new block from the database.
+     *
+     * @return new ID.
+     */
+    public int nextId() throws SQLException, ClassNotFoundException {
+        while (true) {
+            Block current = block;
+            int index = current.cursor.getAndIncrement();
+            if (index < current.ids.length)
+                return current.ids[index];
+            refill(current);
+        }
+    }
+
+    /**
+     * Replace the exhausted block with new reserved block.
+     *
+     * @param exhausted the block, which is over.
+     */
+    private void refill(Block exhausted) throws SQLException, ClassNotFoundException {
+        refillLock.lock();
+        try {
+            // if (other thread already has replaced the block) than: use that block.
+            if (block == exhausted) {
+                int[] ids = source.reserve(blockSize);
+                // if (the block is empty) than: the next call would reserve again without the end.
+                if (ids.length == 0)
+                    throw new SQLException("No IDs of space marines are reserved.");
+                block = new Block(ids);
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * The source of reserved blocks of IDs.
+     */
+    @FunctionalInterface
+    interface BlockSource {
+        /**
+         * @param count the count of IDs in the block.
+         * @return reserved IDs.
+         */
+        int[] reserve(int count) throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * Block with reserved IDs and the cursor of next free ID.
+     */
+    private static class Block {
+        final int[] ids;
+        final AtomicInteger cursor = new AtomicInteger();
+
+        Block(int[] ids) {
+            this.ids = ids;
+        }
+    }
+}
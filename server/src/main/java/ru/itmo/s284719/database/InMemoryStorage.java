@@ -0,0 +1,167 @@
+package ru.itmo.s284719.database;
+
+import ru.itmo.s284719.network.cluster.ShardIds;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * The storage in the memory without durability: all data is lost after the server's exit.
+ * It's used for load tests and profiling of the network and the collection without the database.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class InMemoryStorage implements Storage {
+    /**
+     * Hashes of users' passwords by logins.
+     */
+    private final Map<String, byte[]> users = new ConcurrentHashMap<>();
+    /**
+     * Space marines with their creators' logins by IDs.
+     */
+    private final ConcurrentNavigableMap<Integer, Pair<SpaceMarine, String>> spaceMarines =
+            new ConcurrentSkipListMap<>();
+    /**
+     * The last given ID.
+     */
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    @Override
+    public boolean isLoginFree(String login) {
+        return !users.containsKey(login);
+    }
+
+    @Override
+    public boolean registerUser(User user) {
+        return users.putIfAbsent(user.getLogin(), user.getHashPassword()) == null;
+    }
+
+    @Override
+    public boolean isRegisteredUser(User user) {
+        byte[] hashPassword = users.get(user.getLogin());
+        return hashPassword != null && Arrays.equals(hashPassword, user.getHashPassword());
+    }
+
+    @Override
+    public int addSpaceMarineWithCreator(SpaceMarine spaceMarine, User user) {
+        int id = lastId.updateAndGet(ShardIds::next);
+        spaceMarine.setId(id);
+        spaceMarines.put(id, new Pair<>(spaceMarine, user.getLogin()));
+        return id;
+    }
+
+    @Override
+    public boolean deleteSpaceMarineWithCreator(int id) {
+        return spaceMarines.remove(id) != null;
+    }
+
+    @Override
+    public PriorityBlockingQueue<Pair<SpaceMarine, String>> getPriorityBlockingQueuePair() {
+        return new PriorityBlockingQueue<>(spaceMarines.values());
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsAfterId(int afterId, int limit) {
+        return spaceMarines.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByCreator(String login) {
+        return spaceMarines.values().stream()
+                .filter(pair -> pair.second.equals(login))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> getAnySpaceMarinePairByHeight(String login, int height) {
+        for (Pair<SpaceMarine, String> pair : spaceMarines.values()) {
+            if ((login == null || pair.second.equals(login)) && Integer.valueOf(height).equals(pair.first.getHeight()))
+                return pair;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight() {
+        return spaceMarines.values().stream()
+                .sorted(Comparator.comparing(pair -> pair.first.getHeight(),
+                        Comparator.nullsFirst(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsSample(int size) {
+        List<Pair<SpaceMarine, String>> sample = new ArrayList<>(size);
+        Random random = new Random();
+        long seen = 0;
+        for (Pair<SpaceMarine, String> pair : spaceMarines.values())
+            Storage.sample(sample, size, pair, ++seen, random);
+        return sample;
+    }
+
+    /**
+     * @return the map of space marines by IDs (sampled pairs are the same objects).
+     */
+    @Override
+    public Map<Integer, ?> getHeapIndex() {
+        return spaceMarines;
+    }
+
+    @Override
+    public long[] getSpaceMarineCountsByMeleeWeapon() {
+        long[] counts = new long[MeleeWeapon.values().length];
+        for (Pair<SpaceMarine, String> pair : spaceMarines.values())
+            ++counts[pair.first.getMeleeWeapon().ordinal()];
+        return counts;
+    }
+
+    @Override
+    public long getSpaceMarineHeightSum() {
+        long sum = 0;
+        for (Pair<SpaceMarine, String> pair : spaceMarines.values()) {
+            if (pair.first.getHeight() != null)
+                sum += pair.first.getHeight();
+        }
+        return sum;
+    }
+
+    @Override
+    public Set<Integer> getSpaceMarineIds() {
+        return new HashSet<>(spaceMarines.keySet());
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByIds(Collection<Integer> ids) {
+        List<Pair<SpaceMarine, String>> list = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Pair<SpaceMarine, String> pair = spaceMarines.get(id);
+            if (pair != null)
+                list.add(pair);
+        }
+        return list;
+    }
+
+    @Override
+    public List<Integer> copySpaceMarinesFrom(Reader reader) throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("COPY is supported only by PostgreSQL's storage.");
+    }
+
+    @Override
+    public long copySpaceMarinesTo(Writer writer) throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("COPY is supported only by PostgreSQL's storage.");
+    }
+}
@@ -0,0 +1,115 @@
+package ru.itmo.s284719.database;
+
+import ru.itmo.s284719.network.space.MeleeWeapon;
+
+/**
+ * The change of the row of the table "space_marines" in the notification:
+ * the inserted or deleted row's ID, the ID of the changing transaction
+ * and the row's values, which are counted by summaries.
+ * Rows aren't updated (an updated space marine gets new ID), so every row has at most two changes.
+ * The format: "+id:transactionId:height:meleeWeapon" for the insert and "-id:..." for the delete,
+ * the melee weapon is the ordinal, the null height is empty.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class RowChange {
+    /**
+     * The prefix of the insert's change.
+     */
+    static final char INSERT_PREFIX = '+';
+    /**
+     * The prefix of the delete's change.
+     */
+    static final char DELETE_PREFIX = '-';
+    /**
+     * The values of melee weapons by ordinals.
+     */
+    private static final MeleeWeapon[] MELEE_WEAPONS = MeleeWeapon.values();
+
+    /**
+     * The row's ID.
+     */
+    private final int id;
+    /**
+     * The field with information about the kind of the change: true for the insert, false for the delete.
+     */
+    private final boolean inserted;
+    /**
+     * The ID of the transaction, which inserted or deleted the row.
+     */
+    private final long transactionId;
+    /**
+     * The row's height or null.
+     */
+    private final Integer height;
+    /**
+     * The row's melee weapon.
+     */
+    private final MeleeWeapon meleeWeapon;
+
+    /**
+     * Constructor with all fields.
+     *
+     * @param id the row's ID.
+     * @param inserted true for the insert, false for the delete.
+     * @param transactionId the ID of the transaction, which inserted or deleted the row.
+     * @param height the row's height or null.
+     * @param meleeWeapon the row's melee weapon.
+     */
+    public RowChange(int id, boolean inserted, long transactionId, Integer height, MeleeWeapon meleeWeapon) {
+        this.id = id;
+        this.inserted = inserted;
+        this.transactionId = transactionId;
+        this.height = height;
+        this.meleeWeapon = meleeWeapon;
+    }
+
+    /**
+     * Parse the change from the notification's payload.
+     *
+     * @param change the change in the format of {@link #toString()}.
+     * @return the change.
+     * @throws IllegalArgumentException if the change has incorrect format.
+     */
+    static RowChange parse(String change) {
+        String[] fields = change.substring(1).split(":", -1);
+        if (fields.length != 4 || (change.charAt(0) != INSERT_PREFIX && change.charAt(0) != DELETE_PREFIX))
+            throw new IllegalArgumentException("Incorrect change of the row: \"" + change + "\".");
+        int meleeWeapon = Integer.parseInt(fields[3]);
+        if (meleeWeapon < 0 || meleeWeapon >= MELEE_WEAPONS.length)
+            throw new IllegalArgumentException("Incorrect melee weapon of the row: \"" + change + "\".");
+        return new RowChange(Integer.parseInt(fields[0]), change.charAt(0) == INSERT_PREFIX,
+                Long.parseLong(fields[1]), fields[2].isEmpty() ? null : Integer.valueOf(fields[2]),
+                MELEE_WEAPONS[meleeWeapon]);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isInserted() {
+        return inserted;
+    }
+
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public MeleeWeapon getMeleeWeapon() {
+        return meleeWeapon;
+    }
+
+    /**
+     * @return the change in the notification's format.
+     */
+    @Override
+    public String toString() {
+        return String.valueOf(inserted ? INSERT_PREFIX : DELETE_PREFIX) + id + ':' + transactionId + ':' +
+                (height == null ? "" : height.toString()) + ':' + meleeWeapon.ordinal();
+    }
+}
@@ -0,0 +1,318 @@
+package ru.itmo.s284719.database;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.network.space.AstartesCategory;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+
+import java.sql.*;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runner of the database's schema migrations.
+ * The schema's version is kept in the table "schema_version",
+ * every migration converts the existing data in place in one transaction.
+ * <ul>
+ *     <li>1 - the first schema: the creation date by seven INT columns, enums and chapters by VARCHAR columns;</li>
+ *     <li>2 - the narrow schema: the creation time by TIMESTAMPTZ and the zone's ID,
+ *     enums by SMALLINT ordinals, chapters in the normalized table "chapters";</li>
+ *     <li>3 - indexes of the owner, the height and the creation time of space marines.</li>
+ * </ul>
+ * It can be run by hand: {@code java ... SchemaMigrator login password}.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SchemaMigrator extends Configs {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(SchemaMigrator.class);
+    /**
+     * The latest version of the schema.
+     */
+    public static final int LATEST_VERSION = 3;
+    /**
+     * The count of rows in one batch of updates.
+     */
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * The expected indexes of the table "space_marines" by their leading columns:
+     * deleting and filtering by the owner, filtering by the height, ordering by the creation time.
+     */
+    private static final String[][] EXPECTED_INDEXES = {
+            {"creator_user_login", "space_marines_creator_user_login_idx"},
+            {"height", "space_marines_height_idx"},
+            {"creation_time", "space_marines_creation_time_idx"}
+    };
+
+    /**
+     * Migrate the database to the latest version of the schema.
+     *
+     * @param connection the connection to the database.
+     * @return the count of applied migrations.
+     */
+    public int migrate(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int version = currentVersion(connection);
+            int applied = 0;
+            while (version < LATEST_VERSION) {
+                ++version;
+                try {
+                    apply(connection, version);
+                    setVersion(connection, version);
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+                ++applied;
+                // logging.
+                logger.info("The database's schema is migrated to version " + version + '.');
+            }
+            return applied;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Get the schema's version. The database without the table "schema_version"
+     * has version 1, if it has the table "space_marines", else version 0.
+     *
+     * @param connection the connection to the database.
+     * @return the schema's version.
+     */
+    public int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)");
+            try (ResultSet resultSet = statement.executeQuery("SELECT max(version) AS version FROM schema_version")) {
+                resultSet.next();
+                int version = resultSet.getInt("version");
+                if (!resultSet.wasNull())
+                    return version;
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT to_regclass('space_marines') IS NOT NULL")) {
+                resultSet.next();
+                return resultSet.getBoolean(1) ? 1 : 0;
+            }
+        }
+    }
+
+    private void setVersion(Connection connection, int version) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM schema_version");
+            statement.executeUpdate("INSERT INTO schema_version(version) VALUES(" + version + ")");
+        }
+    }
+
+    /**
+     * Apply the migration to the version.
+     *
+     * @param connection the connection to the database.
+     * @param version the new version.
+     */
+    private void apply(Connection connection, int version) throws SQLException {
+        switch (version) {
+            case 1:
+                createFirstSchema(connection);
+                break;
+            case 2:
+                migrateToNarrowSchema(connection);
+                break;
+            case 3:
+                createIndexes(connection);
+                break;
+            default:
+                throw new SQLException("Unknown version of the schema: " + version + '.');
+        }
+    }
+
+    /**
+     * Create the first schema (from "creationDB.txt" of the first release) in the empty database.
+     */
+    private void createFirstSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS users (" +
+                    "login VARCHAR(32) NOT NULL PRIMARY KEY, " +
+                    "hash_password BYTEA NOT NULL)");
+            statement.executeUpdate("CREATE TABLE space_marines (" +
+                    "id SERIAL PRIMARY KEY, " +
+                    "name VARCHAR(32) NOT NULL, " +
+                    "coordinate_x BIGINT NOT NULL, " +
+                    "coordinate_y BIGINT, " +
+                    "creation_date_year INT NOT NULL, " +
+                    "creation_date_month INT NOT NULL, " +
+                    "creation_date_day INT NOT NULL, " +
+                    "creation_time_hour INT NOT NULL, " +
+                    "creation_time_minute INT NOT NULL, " +
+                    "creation_time_second INT NOT NULL, " +
+                    "creation_time_nano INT NOT NULL, " +
+                    "creation_zone_id VARCHAR(255) NOT NULL, " +
+                    "health BIGINT NOT NULL, " +
+                    "height INT, " +
+                    "category VARCHAR(32) NOT NULL, " +
+                    "melee_weapon VARCHAR(32) NOT NULL, " +
+                    "chapter_name VARCHAR(255) NOT NULL, " +
+                    "chapter_parent_legion VARCHAR(255), " +
+                    "chapter_marines_count INT NOT NULL, " +
+                    "chapter_world VARCHAR(255), " +
+                    "creator_user_login VARCHAR(32) NOT NULL REFERENCES users(login))");
+        }
+    }
+
+    /**
+     * Migrate the first schema to the narrow schema.
+     * The creation time is converted by Java in the same way, as the first mapper read that,
+     * because zones' IDs of java.time and PostgreSQL have different formats of offsets.
+     */
+    private void migrateToNarrowSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // the normalized table of chapters.
+            statement.executeUpdate("CREATE TABLE chapters (" +
+                    "id SERIAL PRIMARY KEY, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "parent_legion VARCHAR(255), " +
+                    "marines_count INT NOT NULL, " +
+                    "world VARCHAR(255))");
+            statement.executeUpdate("CREATE UNIQUE INDEX chapters_unique_idx ON chapters " +
+                    "(name, (COALESCE(parent_legion, '')), marines_count, (COALESCE(world, '')))");
+            statement.executeUpdate("INSERT INTO chapters(name, parent_legion, marines_count, world) " +
+                    "SELECT DISTINCT chapter_name, chapter_parent_legion, chapter_marines_count, chapter_world " +
+                    "FROM space_marines ON CONFLICT DO NOTHING");
+            statement.executeUpdate("ALTER TABLE space_marines " +
+                    "ADD COLUMN chapter_id INT REFERENCES chapters(id), " +
+                    "ADD COLUMN creation_time TIMESTAMPTZ");
+            statement.executeUpdate("UPDATE space_marines m SET chapter_id = c.id FROM chapters c " +
+                    "WHERE c.name = m.chapter_name " +
+                    "AND COALESCE(c.parent_legion, '') = COALESCE(m.chapter_parent_legion, '') " +
+                    "AND c.marines_count = m.chapter_marines_count " +
+                    "AND COALESCE(c.world, '') = COALESCE(m.chapter_world, '')");
+
+            // enums by ordinals.
+            statement.executeUpdate("ALTER TABLE space_marines " +
+                    "ALTER COLUMN category TYPE SMALLINT USING " + ordinalCase("category", AstartesCategory.values()) + ", " +
+                    "ALTER COLUMN melee_weapon TYPE SMALLINT USING " + ordinalCase("melee_weapon", MeleeWeapon.values()));
+        }
+
+        // the creation time.
+        String selectDates = "SELECT id, creation_date_year, creation_date_month, creation_date_day, " +
+                "creation_time_hour, creation_time_minute, creation_time_second, creation_time_nano, " +
+                "creation_zone_id FROM space_marines";
+        String updateTime = "UPDATE space_marines SET creation_time = ? WHERE id = ?";
+        try (Statement select = connection.createStatement();
+             PreparedStatement update = connection.prepareStatement(updateTime)) {
+            select.setFetchSize(BATCH_SIZE);
+            try (ResultSet resultSet = select.executeQuery(selectDates)) {
+                int count = 0;
+                while (resultSet.next()) {
+                    ZonedDateTime creationDate = ZonedDateTime.of(
+                            resultSet.getInt("creation_date_year"),
+                            resultSet.getInt("creation_date_month"),
+                            resultSet.getInt("creation_date_day"),
+                            resultSet.getInt("creation_time_hour"),
+                            resultSet.getInt("creation_time_minute"),
+                            resultSet.getInt("creation_time_second"),
+                            resultSet.getInt("creation_time_nano"),
+                            ZoneId.of(resultSet.getString("creation_zone_id")));
+                    update.setObject(1, creationDate.toOffsetDateTime());
+                    update.setInt(2, resultSet.getInt("id"));
+                    update.addBatch();
+                    if (++count % BATCH_SIZE == 0)
+                        update.executeBatch();
+                }
+                update.executeBatch();
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE space_marines " +
+                    "ALTER COLUMN chapter_id SET NOT NULL, " +
+                    "ALTER COLUMN creation_time SET NOT NULL, " +
+                    "ALTER COLUMN creation_zone_id TYPE VARCHAR(64), " +
+                    "DROP COLUMN creation_date_year, " +
+                    "DROP COLUMN creation_date_month, " +
+                    "DROP COLUMN creation_date_day, " +
+                    "DROP COLUMN creation_time_hour, " +
+                    "DROP COLUMN creation_time_minute, " +
+                    "DROP COLUMN creation_time_second, " +
+                    "DROP COLUMN creation_time_nano, " +
+                    "DROP COLUMN chapter_name, " +
+                    "DROP COLUMN chapter_parent_legion, " +
+                    "DROP COLUMN chapter_marines_count, " +
+                    "DROP COLUMN chapter_world");
+        }
+    }
+
+    /**
+     * Create the expected indexes of the table "space_marines".
+     */
+    private void createIndexes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String[] index : EXPECTED_INDEXES)
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + index[1] +
+                        " ON space_marines (" + index[0] + ")");
+        }
+    }
+
+    /**
+     * Find the expected indexes, which are absent in the database.
+     * An index is found by the leading column, so indexes with other names are counted too.
+     *
+     * @param connection the connection to the database.
+     * @return the names of absent indexes.
+     */
+    public List<String> findMissingIndexes(Connection connection) throws SQLException {
+        String selectLeadingColumns = "SELECT a.attname FROM pg_index i " +
+                "JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0] " +
+                "WHERE i.indrelid = to_regclass('space_marines')";
+        Set<String> columns = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(selectLeadingColumns)) {
+            while (resultSet.next())
+                columns.add(resultSet.getString("attname"));
+        }
+        List<String> missing = new ArrayList<>();
+        for (String[] index : EXPECTED_INDEXES) {
+            if (!columns.contains(index[0]))
+                missing.add(index[1]);
+        }
+        return missing;
+    }
+
+    /**
+     * @return the SQL's expression, which converts the enum's name in the column to the ordinal.
+     */
+    private static String ordinalCase(String column, Enum<?>[] values) {
+        StringBuilder sb = new StringBuilder("CASE " + column);
+        for (Enum<?> value : values)
+            sb.append(" WHEN '").append(value.name()).append("' THEN ").append(value.ordinal());
+        return sb.append(" END").toString();
+    }
+
+    /**
+     * Migrate the database by hand.
+     *
+     * @param args the database's login and password.
+     */
+    public static void main(String[] args) throws SQLException, ClassNotFoundException {
+        if (args.length != 2) {
+            System.err.println("Usage: SchemaMigrator login password");
+            return;
+        }
+        SchemaMigrator migrator = new SchemaMigrator();
+        Class.forName("org.postgresql.Driver");
+        try (Connection connection = DriverManager.getConnection(migrator.connectionString, args[0], args[1])) {
+            int applied = migrator.migrate(connection);
+            System.out.println(applied + " migrations are applied, the schema's version is " +
+                    migrator.currentVersion(connection) + '.');
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package ru.itmo.s284719.database;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * The storage of users and space marines with their creators' logins.
+ * The server works only through this interface, so the storage is selected at the start:
+ * PostgreSQL ({@link DatabaseHandler}) or the memory without durability ({@link InMemoryStorage}).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface Storage {
+    /**
+     * The order of pages by heights: null heights are the first, the same heights are ordered by IDs.
+     */
+    Comparator<Pair<SpaceMarine, String>> HEIGHT_ORDER = Comparator
+            .comparing((Pair<SpaceMarine, String> pair) -> pair.first.getHeight(),
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(pair -> pair.first.getId());
+
+    /**
+     * The count of space marines in one page of the default sampling.
+     */
+    int SAMPLE_PAGE_SIZE = 1000;
+
+    /**
+     * @param login the user's login.
+     * @return true, if the login isn't registered.
+     */
+    boolean isLoginFree(String login) throws ClassNotFoundException, SQLException;
+
+    /**
+     * @param user the new user.
+     * @return false, if the login is already taken (for example, by the registration of other server).
+     */
+    boolean registerUser(User user) throws ClassNotFoundException, SQLException;
+
+    /**
+     * @param user the user.
+     * @return true, if the user is registered with the same password.
+     */
+    boolean isRegisteredUser(User user) throws ClassNotFoundException, SQLException;
+
+    /**
+     * Add the space marine with new ID.
+     *
+     * @param spaceMarine the space marine.
+     * @param user the space marine's creator.
+     * @return the space marine's ID.
+     */
+    int addSpaceMarineWithCreator(SpaceMarine spaceMarine, User user) throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param id the space marine's ID.
+     * @return true, if the space marine is deleted by this call.
+     */
+    boolean deleteSpaceMarineWithCreator(int id) throws SQLException, ClassNotFoundException;
+
+    /**
+     * @return all space marines in the priority queue.
+     */
+    PriorityBlockingQueue<Pair<SpaceMarine, String>> getPriorityBlockingQueuePair()
+            throws SQLException, ClassNotFoundException;
+
+    /**
+     * Get space marines with IDs greater than the ID in the order of IDs.
+     *
+     * @param afterId the ID before the first space marine.
+     * @param limit the maximal count of space marines.
+     * @return the list of pairs.
+     */
+    List<Pair<SpaceMarine, String>> getSpaceMarinePairsAfterId(int afterId, int limit)
+            throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param login the creator's login.
+     * @return space marines of the creator in the order of IDs.
+     */
+    List<Pair<SpaceMarine, String>> getSpaceMarinePairsByCreator(String login)
+            throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param login the creator's login or null for any creator.
+     * @param height the height.
+     * @return any space marine with the height or null.
+     */
+    Pair<SpaceMarine, String> getAnySpaceMarinePairByHeight(String login, int height)
+            throws SQLException, ClassNotFoundException;
+
+    /**
+     * @return all space marines sorted by the height (null heights are the first).
+     */
+    List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight() throws SQLException, ClassNotFoundException;
+
+    /**
+     * Get the page of space marines in the order of heights (null heights are the first) and IDs.
+     * The default implementation sorts all space marines for every page (for storages in the memory).
+     *
+     * @param after the last element of the previous page or null for the first page.
+     * @param limit the maximal count of space marines.
+     * @return the list of pairs.
+     */
+    default List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight(Pair<SpaceMarine, String> after,
+                                                                              int limit)
+            throws SQLException, ClassNotFoundException {
+        return getSpaceMarinePairsOrderedByHeight().stream()
+                .sorted(HEIGHT_ORDER)
+                .filter(pair -> after == null || HEIGHT_ORDER.compare(pair, after) > 0)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the random sample of space marines for estimations of the heap.
+     * The default implementation reads all space marines by pages of IDs and keeps the reservoir.
+     *
+     * @param size the maximal count of sampled space marines.
+     * @return the list of pairs in the random order.
+     */
+    default List<Pair<SpaceMarine, String>> getSpaceMarinePairsSample(int size)
+            throws SQLException, ClassNotFoundException {
+        List<Pair<SpaceMarine, String>> sample = new ArrayList<>(size);
+        Random random = new Random();
+        long seen = 0;
+        int afterId = 0;
+        List<Pair<SpaceMarine, String>> page;
+        do {
+            page = getSpaceMarinePairsAfterId(afterId, SAMPLE_PAGE_SIZE);
+            for (Pair<SpaceMarine, String> pair : page)
+                sample(sample, size, pair, ++seen, random);
+            if (!page.isEmpty())
+                afterId = page.get(page.size() - 1).first.getId();
+        } while (page.size() == SAMPLE_PAGE_SIZE);
+        return sample;
+    }
+
+    /**
+     * Add the element to the reservoir's sample (every seen element gets into the sample with the same chance).
+     *
+     * @param sample the sample.
+     * @param size the maximal size of the sample.
+     * @param pair the element.
+     * @param seen the count of seen elements with the element.
+     * @param random the generator of random numbers.
+     */
+    static void sample(List<Pair<SpaceMarine, String>> sample, int size, Pair<SpaceMarine, String> pair,
+                       long seen, Random random) {
+        if (sample.size() < size) {
+            sample.add(pair);
+        } else {
+            long index = (long) (random.nextDouble() * seen);
+            if (index < size)
+                sample.set((int) index, pair);
+        }
+    }
+
+    /**
+     * The storage keeps in the heap the map by IDs, whose entries are space marines (the memory's storage)
+     * or their locations (the file's storage). The map is used only for estimations and mustn't be changed.
+     *
+     * @return the map by IDs in the heap or null, if the storage keeps nothing for every space marine.
+     */
+    default Map<Integer, ?> getHeapIndex() {
+        return null;
+    }
+
+    /**
+     * @return the counts of space marines by ordinals of melee weapons.
+     */
+    long[] getSpaceMarineCountsByMeleeWeapon() throws SQLException, ClassNotFoundException;
+
+    /**
+     * @return the sum of not null heights of space marines.
+     */
+    long getSpaceMarineHeightSum() throws SQLException, ClassNotFoundException;
+
+    /**
+     * Calculate the summary of space marines in one state of the storage.
+     * The storage, which notifies other servers about changes, returns the summary with the snapshot.
+     *
+     * @return the summary.
+     */
+    default TableSummary getSpaceMarineSummary() throws SQLException, ClassNotFoundException {
+        return new TableSummary(getSpaceMarineCountsByMeleeWeapon(), getSpaceMarineHeightSum());
+    }
+
+    /**
+     * @return IDs of all space marines.
+     */
+    Set<Integer> getSpaceMarineIds() throws SQLException, ClassNotFoundException;
+
+    /**
+     * @param ids the space marines' IDs.
+     * @return space marines with the IDs, which exist.
+     */
+    List<Pair<SpaceMarine, String>> getSpaceMarinePairsByIds(Collection<Integer> ids)
+            throws SQLException, ClassNotFoundException;
+
+    /**
+     * Load space marines from the CSV's text (the format of {@link #copySpaceMarinesTo(Writer)}).
+     *
+     * @param reader the reader of the CSV's text.
+     * @return IDs of loaded space marines.
+     */
+    List<Integer> copySpaceMarinesFrom(Reader reader) throws SQLException, ClassNotFoundException, IOException;
+
+    /**
+     * Unload space marines to the CSV's text.
+     *
+     * @param writer the writer of the CSV's text.
+     * @return the count of unloaded space marines.
+     */
+    long copySpaceMarinesTo(Writer writer) throws SQLException, ClassNotFoundException, IOException;
+
+    /**
+     * Reconcile the collection with the storage by IDs:
+     * remove elements, which aren't in the storage, and add space marines, which aren't in the collection.
+     * An updated space marine gets new ID, so the comparison of IDs finds all changed space marines
+     * without reading the whole storage.
+     *
+     * @param queue the server's collection.
+     * @return the count of added and removed elements.
+     */
+    default int reconcile(Queue<Pair<SpaceMarine, String>> queue) throws SQLException, ClassNotFoundException {
+        Set<Integer> ids = getSpaceMarineIds();
+        int changes = 0;
+        // remove elements, which were deleted from the storage.
+        Iterator<Pair<SpaceMarine, String>> iter = queue.iterator();
+        while (iter.hasNext()) {
+            if (!ids.remove(iter.next().first.getId())) {
+                iter.remove();
+                ++changes;
+            }
+        }
+        // the remaining IDs are space marines, which aren't in the collection.
+        List<Pair<SpaceMarine, String>> added = getSpaceMarinePairsByIds(ids);
+        queue.addAll(added);
+        return changes + added.size();
+    }
+}
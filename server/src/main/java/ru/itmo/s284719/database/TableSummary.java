@@ -0,0 +1,88 @@
+package ru.itmo.s284719.database;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The summary of the table "space_marines" (counts by melee weapons and the sum of heights)
+ * with the transactions' snapshot, in which the summary is calculated.
+ * The snapshot tells, which notified changes the summary already counts:
+ * the change is counted, if its transaction was committed before the snapshot.
+ * The storage without snapshots counts no notified changes (it doesn't notify).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class TableSummary {
+    /**
+     * The counts of space marines by ordinals of melee weapons.
+     */
+    private final long[] meleeWeaponCounts;
+    /**
+     * The sum of not null heights.
+     */
+    private final long heightSum;
+    /**
+     * The earliest transaction, which was running at the snapshot (earlier ones are finished).
+     */
+    private final long xmin;
+    /**
+     * The first transaction, which wasn't started at the snapshot.
+     */
+    private final long xmax;
+    /**
+     * Transactions between xmin and xmax, which were running at the snapshot.
+     */
+    private final Set<Long> running;
+
+    /**
+     * Constructor of the summary without the snapshot.
+     *
+     * @param meleeWeaponCounts the counts of space marines by ordinals of melee weapons.
+     * @param heightSum the sum of not null heights.
+     */
+    public TableSummary(long[] meleeWeaponCounts, long heightSum) {
+        this(meleeWeaponCounts, heightSum, "0:0:");
+    }
+
+    /**
+     * Constructor with the PostgreSQL's snapshot.
+     *
+     * @param meleeWeaponCounts the counts of space marines by ordinals of melee weapons.
+     * @param heightSum the sum of not null heights.
+     * @param snapshot the snapshot in the format of txid_current_snapshot(): "xmin:xmax:xip,...".
+     */
+    public TableSummary(long[] meleeWeaponCounts, long heightSum, String snapshot) {
+        this.meleeWeaponCounts = meleeWeaponCounts;
+        this.heightSum = heightSum;
+        String[] fields = snapshot.split(":", -1);
+        if (fields.length != 3)
+            throw new IllegalArgumentException("Incorrect snapshot: \"" + snapshot + "\".");
+        this.xmin = Long.parseLong(fields[0]);
+        this.xmax = Long.parseLong(fields[1]);
+        this.running = new HashSet<>();
+        if (!fields[2].isEmpty()) {
+            for (String transactionId : fields[2].split(","))
+                running.add(Long.parseLong(transactionId));
+        }
+    }
+
+    public long[] getMeleeWeaponCounts() {
+        return meleeWeaponCounts;
+    }
+
+    public long getHeightSum() {
+        return heightSum;
+    }
+
+    /**
+     * @param change the notified change.
+     * @return true, if the change's transaction was committed before the snapshot.
+     */
+    public boolean isCounted(RowChange change) {
+        long transactionId = change.getTransactionId();
+        if (transactionId < xmin)
+            return true;
+        return transactionId < xmax && !running.contains(transactionId);
+    }
+}
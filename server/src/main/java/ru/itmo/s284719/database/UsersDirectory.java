@@ -0,0 +1,155 @@
+package ru.itmo.s284719.database;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The directory of users in the memory for checks of logins and passwords without the database.
+ * The Bloom filter has all logins of the table "users", which this server knows, and answers
+ * "the login is free" exactly for them: registrations of other servers come by notifications,
+ * so the login, which is registered by other server just now, can be answered free
+ * (its registration is rejected by the table's unique key).
+ * hashes of passwords are cached for the limited count of recent users (system property "server.usersCacheSize").
+ * Logins, which the filter answers falsely, are cached as free after the database's answer.
+ * The directory is loaded at the start and changed with the table, registrations of other servers
+ * come by notifications.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+class UsersDirectory {
+    /**
+     * The count of cached hashes of passwords.
+     */
+    static final int CACHE_SIZE = Integer.getInteger("server.usersCacheSize", 10000);
+    /**
+     * The count of cached free logins.
+     */
+    private static final int FREE_CACHE_SIZE = 1024;
+    /**
+     * The minimal expected count of logins in the filter.
+     */
+    private static final int MIN_EXPECTED = 1024;
+    /**
+     * The probability of false answers "the login can be registered" of the filter.
+     */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /**
+     * The filter of all registered logins.
+     */
+    private volatile BloomFilter logins = new BloomFilter(MIN_EXPECTED, FALSE_POSITIVE_PROBABILITY);
+    /**
+     * The count of logins in the filter.
+     */
+    private volatile int count = 0;
+    /**
+     * Hashes of passwords by logins in the order of access.
+     */
+    private final Map<String, byte[]> hashes = Collections.synchronizedMap(lru(CACHE_SIZE));
+    /**
+     * Free logins, which the filter answers falsely, in the order of access.
+     */
+    private final Map<String, Boolean> freeLogins = Collections.synchronizedMap(lru(FREE_CACHE_SIZE));
+
+    /**
+     * Replace the directory with all users of the table.
+     * The filter is twice greater than the count of users, so registrations don't overfill that at once.
+     *
+     * @param users hashes of passwords by logins.
+     */
+    synchronized void load(Map<String, byte[]> users) {
+        BloomFilter filter = new BloomFilter(Math.max(MIN_EXPECTED, users.size() * 2), FALSE_POSITIVE_PROBABILITY);
+        for (String login : users.keySet())
+            filter.put(login);
+        hashes.clear();
+        freeLogins.clear();
+        for (Map.Entry<String, byte[]> entry : users.entrySet()) {
+            if (hashes.size() == CACHE_SIZE)
+                break;
+            hashes.put(entry.getKey(), entry.getValue());
+        }
+        logins = filter;
+        count = users.size();
+    }
+
+    /**
+     * @param login the login.
+     * @return true, if the login isn't registered by this server and isn't notified as registered
+     *         by other servers; false, if the database must be asked.
+     */
+    boolean isFree(String login) {
+        return !logins.mightContain(login) || freeLogins.containsKey(login);
+    }
+
+    /**
+     * @param login the login.
+     * @return the cached hash of the user's password or null.
+     */
+    byte[] getHash(String login) {
+        return hashes.get(login);
+    }
+
+    /**
+     * Remember the user's hash, which is read from the database.
+     *
+     * @param login the user's login.
+     * @param hashPassword the hash of the user's password.
+     */
+    void cache(String login, byte[] hashPassword) {
+        hashes.put(login, hashPassword);
+    }
+
+    /**
+     * Remember the free login, which the filter answers falsely.
+     *
+     * @param login the free login.
+     */
+    void cacheFree(String login) {
+        freeLogins.put(login, Boolean.TRUE);
+    }
+
+    /**
+     * Add the registered user.
+     *
+     * @param login the user's login.
+     * @param hashPassword the hash of the user's password.
+     * @return true, if the filter has more logins than expected and must be loaded again.
+     */
+    synchronized boolean registered(String login, byte[] hashPassword) {
+        logins.put(login);
+        freeLogins.remove(login);
+        hashes.put(login, hashPassword);
+        return ++count > logins.getExpected();
+    }
+
+    /**
+     * Forget the user, which is changed by other server (the database is asked next time).
+     *
+     * @param login the user's login.
+     */
+    synchronized void changed(String login) {
+        logins.put(login);
+        freeLogins.remove(login);
+        hashes.remove(login);
+    }
+
+    /**
+     * Forget the deleted user (the filter keeps the login, so the database is asked next time).
+     *
+     * @param login the user's login.
+     */
+    void deleted(String login) {
+        hashes.remove(login);
+    }
+
+    private static <V> Map<String, V> lru(int capacity) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
@@ -0,0 +1,407 @@
+package ru.itmo.s284719.journal;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of the collection, which is written and read
+ * through memory-mapped regions of the file.
+ * <p>
+ * The file's format (version 1, big-endian):
+ * <pre>
+ * header (64 bytes): magic, version, record's size, count of records,
+ *                    sequence number, offset and size of the string table, CRC32;
+ * record area:       fixed-width records (one record is one element);
+ * string table:      deduplicated strings as [length: int][UTF-8 bytes].
+ * </pre>
+ * Records refer to strings by their offsets in the string table,
+ * so repeated strings (logins, chapters, zones) are stored and loaded once.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class BinarySnapshot {
+    /**
+     * The magic number of the format.
+     */
+    public static final int MAGIC = 0x534D4253;
+    /**
+     * The current version of the format.
+     */
+    public static final short VERSION = 1;
+    /**
+     * The header's size.
+     */
+    private static final int HEADER_SIZE = 64;
+    /**
+     * The size of one record.
+     */
+    private static final int RECORD_SIZE = 80;
+    /**
+     * The count of string's references in one record.
+     */
+    private static final int STRINGS_PER_RECORD = 6;
+    /**
+     * The count of records in one mapped region.
+     */
+    private static final int RECORDS_PER_REGION = 1 << 20;
+    /**
+     * The count of records, which are collected before the copying to the mapped region.
+     */
+    private static final int RECORDS_PER_WRITE = 1 << 14;
+    /**
+     * The offset of the null string.
+     */
+    private static final int NULL_STRING = -1;
+
+    /**
+     * Flags of the nullable fields.
+     */
+    private static final int Y_IS_NULL = 1;
+    private static final int HEIGHT_IS_NULL = 2;
+
+    /**
+     * The sequence number of the snapshot (for example, LSN of the journal).
+     */
+    private final long sequence;
+    /**
+     * The elements of the snapshot.
+     */
+    private final List<Pair<SpaceMarine, String>> elements;
+
+    private BinarySnapshot(long sequence, List<Pair<SpaceMarine, String>> elements) {
+        this.sequence = sequence;
+        this.elements = elements;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<Pair<SpaceMarine, String>> getElements() {
+        return elements;
+    }
+
+    /**
+     * Write the snapshot of elements to the file.
+     *
+     * @param path the file's path.
+     * @param elements the elements (pairs of space marines and creators' logins).
+     * @param sequence the sequence number of the snapshot.
+     */
+    public static void write(Path path, Object[] elements, long sequence) throws IOException {
+        write(path, elements, sequence, written -> {});
+    }
+
+    /**
+     * Write the snapshot of elements to the file and report the progress after every region.
+     *
+     * @param path the file's path.
+     * @param elements the elements (pairs of space marines and creators' logins).
+     * @param sequence the sequence number of the snapshot.
+     * @param progress the consumer of the count of written records.
+     */
+    @SuppressWarnings("unchecked")
+    public static void write(Path path, Object[] elements, long sequence, IntConsumer progress) throws IOException {
+        try (Writer writer = new Writer(path, sequence, progress)) {
+            for (Object element : elements)
+                writer.write((Pair<SpaceMarine, String>) element);
+            writer.finish();
+        }
+    }
+
+    /**
+     * The writer of the snapshot by one element, so elements aren't collected before the writing
+     * (the count of records is written to the header at the end).
+     * Records are collected in the region's buffer, which is copied to the mapped region of the file,
+     * the string table and the header are written by {@link #finish()}.
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final long sequence;
+        private final IntConsumer progress;
+        private final StringTable strings = new StringTable();
+        private final int[] offsets = new int[STRINGS_PER_RECORD];
+        private final ByteBuffer region = ByteBuffer.allocate(RECORDS_PER_WRITE * RECORD_SIZE);
+        private final CRC32 crc = new CRC32();
+        private int count = 0;
+
+        /**
+         * Create the file of the snapshot.
+         *
+         * @param path the file's path.
+         * @param sequence the sequence number of the snapshot.
+         * @param progress the consumer of the count of written records.
+         */
+        public Writer(Path path, long sequence, IntConsumer progress) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.sequence = sequence;
+            this.progress = progress;
+        }
+
+        /**
+         * @param pair the element (the pair of the space marine and the creator's login).
+         */
+        public void write(Pair<SpaceMarine, String> pair) throws IOException {
+            SpaceMarine spaceMarine = pair.first;
+            Chapter chapter = spaceMarine.getChapter();
+            offsets[0] = strings.offsetOf(spaceMarine.getName());
+            offsets[1] = strings.offsetOf(spaceMarine.getCreationDate().getZone().getId());
+            offsets[2] = strings.offsetOf(chapter.getName());
+            offsets[3] = strings.offsetOf(chapter.getParentLegion());
+            offsets[4] = strings.offsetOf(chapter.getWorld());
+            offsets[5] = strings.offsetOf(pair.second);
+            writeRecord(region, pair, offsets, 0);
+            ++count;
+            if (!region.hasRemaining())
+                flushRegion();
+        }
+
+        /**
+         * @return the count of written records.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Copy the collected records to the file after the previous records.
+         */
+        private void flushRegion() throws IOException {
+            region.flip();
+            if (region.hasRemaining()) {
+                int records = region.remaining() / RECORD_SIZE;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) (count - records) * RECORD_SIZE, region.remaining());
+                mapped.put(region.duplicate());
+                mapped.force();
+                crc.update(region);
+                progress.accept(count);
+            }
+            region.clear();
+        }
+
+        /**
+         * Write the rest of records, the string table and the header.
+         */
+        public void finish() throws IOException {
+            flushRegion();
+            long stringsOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+            byte[] stringBytes = strings.toByteArray();
+
+            // write the string table.
+            MappedByteBuffer stringRegion = channel.map(FileChannel.MapMode.READ_WRITE,
+                    stringsOffset, stringBytes.length);
+            stringRegion.put(stringBytes);
+            stringRegion.force();
+            crc.update(stringBytes, 0, stringBytes.length);
+
+            // write the header at last: the file without the header isn't correct snapshot.
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort((short) RECORD_SIZE)
+                    .putInt(count)
+                    .putLong(sequence)
+                    .putLong(stringsOffset)
+                    .putLong(stringBytes.length)
+                    .putInt((int) crc.getValue());
+            header.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read the snapshot from the file.
+     *
+     * @param path the file's path.
+     * @return the snapshot with the rebuilt elements.
+     */
+    public static BinarySnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("The snapshot's file is too small.");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Incorrect snapshot's format.");
+            short version = header.getShort();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot's version: " + version + '.');
+            int recordSize = header.getShort();
+            int count = header.getInt();
+            long sequence = header.getLong();
+            long stringsOffset = header.getLong();
+            long stringsSize = header.getLong();
+            int expectedCrc = header.getInt();
+            if (recordSize != RECORD_SIZE || count < 0
+                    || stringsOffset != HEADER_SIZE + (long) count * RECORD_SIZE
+                    || stringsOffset + stringsSize != channel.size())
+                throw new IOException("Incorrect snapshot's header.");
+
+            CRC32 crc = new CRC32();
+            MappedByteBuffer stringRegion = channel.map(FileChannel.MapMode.READ_ONLY, stringsOffset, stringsSize);
+            StringReader strings = new StringReader(stringRegion);
+
+            List<Pair<SpaceMarine, String>> elements = new ArrayList<>(count);
+            for (int start = 0; start < count; start += RECORDS_PER_REGION) {
+                int end = Math.min(count, start + RECORDS_PER_REGION);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) start * RECORD_SIZE, (long) (end - start) * RECORD_SIZE);
+                crc.update(region.duplicate());
+                for (int i = 0; i < end - start; ++i)
+                    elements.add(readRecord(region, i * RECORD_SIZE, strings));
+            }
+            crc.update(stringRegion.duplicate());
+            if ((int) crc.getValue() != expectedCrc)
+                throw new IOException("Incorrect snapshot's checksum.");
+            return new BinarySnapshot(sequence, elements);
+        }
+    }
+
+    private static void writeRecord(ByteBuffer region, Pair<SpaceMarine, String> pair, int[] offsets, int index) {
+        SpaceMarine spaceMarine = pair.first;
+        Coordinates coordinates = spaceMarine.getCoordinates();
+        ZonedDateTime creationDate = spaceMarine.getCreationDate();
+        Chapter chapter = spaceMarine.getChapter();
+        int flags = (coordinates.getY() == null ? Y_IS_NULL : 0)
+                | (spaceMarine.getHeight() == null ? HEIGHT_IS_NULL : 0);
+
+        region.putInt(spaceMarine.getId())                                                // 0
+                .putInt(offsets[index * STRINGS_PER_RECORD])                              // 4: name
+                .putLong(coordinates.getX())                                              // 8
+                .putLong(coordinates.getY() == null ? 0 : coordinates.getY())             // 16
+                .putLong(creationDate.toEpochSecond())                                    // 24
+                .putInt(creationDate.getNano())                                           // 32
+                .putInt(offsets[index * STRINGS_PER_RECORD + 1])                          // 36: zone
+                .putLong(spaceMarine.getHealth())                                         // 40
+                .putInt(spaceMarine.getHeight() == null ? 0 : spaceMarine.getHeight())    // 48
+                .put((byte) flags)                                                        // 52
+                .put((byte) spaceMarine.getCategory().ordinal())                          // 53
+                .put((byte) spaceMarine.getMeleeWeapon().ordinal())                       // 54
+                .put((byte) 0)                                                            // 55: padding
+                .putInt(offsets[index * STRINGS_PER_RECORD + 2])                          // 56: chapter's name
+                .putInt(offsets[index * STRINGS_PER_RECORD + 3])                          // 60: parent legion
+                .putInt(chapter.getMarinesCount())                                        // 64
+                .putInt(offsets[index * STRINGS_PER_RECORD + 4])                          // 68: world
+                .putInt(offsets[index * STRINGS_PER_RECORD + 5])                          // 72: creator's login
+                .putInt(0);                                                               // 76: padding
+    }
+
+    private static Pair<SpaceMarine, String> readRecord(ByteBuffer region, int base, StringReader strings)
+            throws IOException {
+        int flags = region.get(base + 52);
+        SpaceMarine spaceMarine = new SpaceMarine();
+        spaceMarine.setId(region.getInt(base));
+        spaceMarine.setName(strings.get(region.getInt(base + 4)));
+        spaceMarine.setCoordinates(new Coordinates(region.getLong(base + 8),
+                (flags & Y_IS_NULL) != 0 ? null : region.getLong(base + 16)));
+        spaceMarine.setCreationDate(ZonedDateTime.ofInstant(
+                Instant.ofEpochSecond(region.getLong(base + 24), region.getInt(base + 32)),
+                strings.getZoneId(region.getInt(base + 36))));
+        spaceMarine.setHealth(region.getLong(base + 40));
+        spaceMarine.setHeight((flags & HEIGHT_IS_NULL) != 0 ? null : region.getInt(base + 48));
+        spaceMarine.setCategory(AstartesCategory.values()[region.get(base + 53)]);
+        spaceMarine.setMeleeWeapon(MeleeWeapon.values()[region.get(base + 54)]);
+        spaceMarine.setChapter(new Chapter(
+                strings.get(region.getInt(base + 56)),
+                strings.get(region.getInt(base + 60)),
+                region.getInt(base + 64),
+                strings.get(region.getInt(base + 68))));
+        return new Pair<>(spaceMarine, strings.get(region.getInt(base + 72)));
+    }
+
+    /**
+     * Builder of the string table with deduplication.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int offsetOf(String string) {
+            if (string == null)
+                return NULL_STRING;
+            Integer offset = offsets.get(string);
+            if (offset == null) {
+                offset = bytes.size();
+                byte[] utf = string.getBytes(StandardCharsets.UTF_8);
+                bytes.write(utf.length >>> 24);
+                bytes.write(utf.length >>> 16);
+                bytes.write(utf.length >>> 8);
+                bytes.write(utf.length);
+                bytes.write(utf, 0, utf.length);
+                offsets.put(string, offset);
+            }
+            return offset;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Reader of the string table, which decodes every string once.
+     */
+    private static class StringReader {
+        private final ByteBuffer region;
+        private final Map<Integer, String> strings = new HashMap<>();
+        private final Map<Integer, ZoneId> zones = new HashMap<>();
+
+        StringReader(ByteBuffer region) {
+            this.region = region;
+        }
+
+        String get(int offset) throws IOException {
+            if (offset == NULL_STRING)
+                return null;
+            String string = strings.get(offset);
+            if (string == null) {
+                if (offset < 0 || offset + 4 > region.limit())
+                    throw new IOException("Incorrect string's offset: " + offset + '.');
+                int length = region.getInt(offset);
+                if (length < 0 || offset + 4 + length > region.limit())
+                    throw new IOException("Incorrect string's length: " + length + '.');
+                byte[] utf = new byte[length];
+                ByteBuffer source = region.duplicate();
+                source.position(offset + 4);
+                source.get(utf);
+                string = new String(utf, StandardCharsets.UTF_8);
+                strings.put(offset, string);
+            }
+            return string;
+        }
+
+        ZoneId getZoneId(int offset) throws IOException {
+            ZoneId zoneId = zones.get(offset);
+            if (zoneId == null) {
+                zoneId = ZoneId.of(get(offset));
+                zones.put(offset, zoneId);
+            }
+            return zoneId;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package ru.itmo.s284719.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local journal of the server's collection: the mutation log and periodic snapshots.
+ * After restart the collection is recovered from the latest snapshot and the log's replay.
+ * If the journal has an error, it stops working and removes its files,
+ * so the next start loads the collection from the database.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Journal implements Closeable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(Journal.class);
+    /**
+     * The default directory of the journal.
+     */
+    public static final String DEFAULT_DIRECTORY = "journal";
+    /**
+     * The default period between snapshots in seconds.
+     */
+    public static final long DEFAULT_SNAPSHOT_PERIOD = 60;
+    /**
+     * The prefix of snapshots' names.
+     */
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    /**
+     * The suffix of snapshots' names.
+     */
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    /**
+     * The count of kept snapshots (the previous is used if the latest is damaged).
+     */
+    private static final int KEPT_SNAPSHOTS = 2;
+
+    /**
+     * The journal's directory.
+     */
+    private final Path directory;
+    /**
+     * The log of mutations.
+     */
+    private MutationLog log;
+    /**
+     * The LSN of the last snapshot.
+     */
+    private volatile long snapshotLsn = 0;
+    /**
+     * The thread for periodic snapshots.
+     */
+    private ScheduledExecutorService snapshotExecutor;
+    /**
+     * The field with information about the journal's error.
+     */
+    private volatile boolean failed = false;
+
+    /**
+     * Constructor with the journal's directory.
+     *
+     * @param directory the journal's directory.
+     */
+    public Journal(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Recover the collection from the latest snapshot and the log, and open the log for appending.
+     *
+     * @return the recovered collection or null, if the journal doesn't have snapshots.
+     */
+    public Collection<Pair<SpaceMarine, String>> recover() {
+        Map<Integer, Pair<SpaceMarine, String>> map = null;
+        long lastLsn = 0;
+        try {
+            Files.createDirectories(directory);
+            // find the latest correct snapshot.
+            for (Long lsn : snapshotLsns()) {
+                try {
+                    map = readSnapshot(snapshotPath(lsn));
+                    snapshotLsn = lastLsn = lsn;
+                    break;
+                } catch (IOException | RuntimeException e) {
+                    // logging.
+                    logger.error("Snapshot \"" + snapshotPath(lsn) + "\" is damaged.", e);
+                }
+            }
+
+            if (map != null) {
+                // replay the log after the snapshot.
+                final Map<Integer, Pair<SpaceMarine, String>> recovered = map;
+                lastLsn = MutationLog.replay(directory, snapshotLsn, (lsn, type, payload) -> {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                    if (type == MutationLog.ADD) {
+                        Pair<SpaceMarine, String> pair = MarineCodec.read(in);
+                        recovered.putIfAbsent(pair.first.getId(), pair);
+                    } else if (type == MutationLog.REMOVE) {
+                        recovered.remove(in.readInt());
+                    }
+                });
+                // logging.
+                logger.info("Collection is recovered from the journal: snapshot's LSN " + snapshotLsn +
+                        ", last LSN " + lastLsn + ", length " + map.size() + '.');
+            }
+            log = new MutationLog(directory, lastLsn);
+        } catch (IOException | RuntimeException e) {
+            fail("Recovering from the journal is failed.", e);
+            return null;
+        }
+        return map == null ? null : map.values();
+    }
+
+    /**
+     * Append adding of the element to the log.
+     *
+     * @param pair the added element.
+     */
+    public void logAdd(Pair<SpaceMarine, String> pair) {
+        if (failed || log == null)
+            return;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            MarineCodec.write(pair, new DataOutputStream(bytes));
+            log.append(MutationLog.ADD, bytes.toByteArray());
+        } catch (IOException e) {
+            fail("Appending to the mutation log is failed.", e);
+        }
+    }
+
+    /**
+     * Append removing of the element to the log.
+     *
+     * @param id the removed element's ID.
+     */
+    public void logRemove(int id) {
+        if (failed || log == null)
+            return;
+        try {
+            log.append(MutationLog.REMOVE, new byte[] {
+                    (byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id});
+        } catch (IOException e) {
+            fail("Appending to the mutation log is failed.", e);
+        }
+    }
+
+    /**
+     * Write the compact snapshot of the collection and remove the covered part of the log.
+     *
+     * @param collection the server's collection.
+     */
+    public synchronized void snapshot(Collection<Pair<SpaceMarine, String>> collection) {
+        if (failed || log == null)
+            return;
+        try {
+            // the LSN is read before the copy: mutations after the LSN are replayed idempotently.
+            long lsn = log.getLastLsn();
+            if (lsn == snapshotLsn && Files.exists(snapshotPath(lsn)))
+                return;
+            Object[] elements = collection.toArray();
+
+            Path temp = directory.resolve(SNAPSHOT_PREFIX + lsn + ".tmp");
+            BinarySnapshot.write(temp, elements, lsn);
+            Files.move(temp, snapshotPath(lsn), StandardCopyOption.ATOMIC_MOVE);
+            snapshotLsn = lsn;
+
+            // remove old snapshots and segments, which are covered by the oldest kept snapshot.
+            log.roll();
+            List<Long> lsns = snapshotLsns();
+            for (int i = KEPT_SNAPSHOTS; i < lsns.size(); ++i)
+                Files.deleteIfExists(snapshotPath(lsns.get(i)));
+            log.removeSegmentsBefore(lsns.get(Math.min(KEPT_SNAPSHOTS, lsns.size()) - 1));
+            // logging.
+            logger.info("Snapshot of the collection with LSN " + lsn + " and length " +
+                    elements.length + " is written.");
+        } catch (IOException | RuntimeException e) {
+            fail("Writing the collection's snapshot is failed.", e);
+        }
+    }
+
+    /**
+     * Start writing snapshots of the collection with the period.
+     *
+     * @param collection the server's collection.
+     * @param periodSeconds the period between snapshots in seconds.
+     */
+    public void startPeriodicSnapshots(Collection<Pair<SpaceMarine, String>> collection, long periodSeconds) {
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(() -> snapshot(collection),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (snapshotExecutor != null)
+            snapshotExecutor.shutdownNow();
+        try {
+            if (log != null)
+                log.close();
+        } catch (IOException e) {
+            // logging.
+            logger.error("Closing the mutation log is failed.", e);
+        }
+    }
+
+    /**
+     * Stop the journal after the error and remove its files,
+     * because they can't be used for recovering.
+     *
+     * @param message the error's message.
+     * @param e the error.
+     */
+    private void fail(String message, Exception e) {
+        failed = true;
+        // logging.
+        logger.error(message + " The journal is disabled.", e);
+        close();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream)
+                Files.deleteIfExists(path);
+        } catch (IOException ioE) {
+            // logging.
+            logger.error("Removing the journal's files is failed.", ioE);
+        }
+    }
+
+    private Map<Integer, Pair<SpaceMarine, String>> readSnapshot(Path path) throws IOException {
+        List<Pair<SpaceMarine, String>> elements = BinarySnapshot.read(path).getElements();
+        Map<Integer, Pair<SpaceMarine, String>> map = new LinkedHashMap<>(elements.size() * 4 / 3 + 1);
+        for (Pair<SpaceMarine, String> pair : elements)
+            map.put(pair.first.getId(), pair);
+        return map;
+    }
+
+    private Path snapshotPath(long lsn) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * @return LSNs of snapshots in the journal's directory from the latest.
+     */
+    private List<Long> snapshotLsns() throws IOException {
+        List<Long> lsns = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                lsns.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                        name.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        lsns.sort(Comparator.reverseOrder());
+        return lsns;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.itmo.s284719.journal;
+
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Compact binary codec for pairs of space marines and creators' logins.
+ * It's used by the journal instead of Java's serialization.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public final class MarineCodec {
+    private MarineCodec() {}
+
+    /**
+     * Write the pair to the output.
+     *
+     * @param pair the pair with the space marine and the creator's login.
+     * @param out the output.
+     */
+    public static void write(Pair<SpaceMarine, String> pair, DataOutput out) throws IOException {
+        SpaceMarine spaceMarine = pair.first;
+        out.writeInt(spaceMarine.getId());
+        out.writeUTF(spaceMarine.getName());
+
+        Coordinates coordinates = spaceMarine.getCoordinates();
+        out.writeLong(coordinates.getX());
+        writeNullableLong(coordinates.getY(), out);
+
+        ZonedDateTime creationDate = spaceMarine.getCreationDate();
+        out.writeLong(creationDate.toEpochSecond());
+        out.writeInt(creationDate.getNano());
+        out.writeUTF(creationDate.getZone().getId());
+
+        out.writeLong(spaceMarine.getHealth());
+        out.writeBoolean(spaceMarine.getHeight() != null);
+        if (spaceMarine.getHeight() != null)
+            out.writeInt(spaceMarine.getHeight());
+        out.writeByte(spaceMarine.getCategory().ordinal());
+        out.writeByte(spaceMarine.getMeleeWeapon().ordinal());
+
+        Chapter chapter = spaceMarine.getChapter();
+        out.writeUTF(chapter.getName());
+        writeNullableUTF(chapter.getParentLegion(), out);
+        out.writeInt(chapter.getMarinesCount());
+        writeNullableUTF(chapter.getWorld(), out);
+
+        out.writeUTF(pair.second);
+    }
+
+    /**
+     * Read the pair from the input.
+     *
+     * @param in the input.
+     * @return the pair with the space marine and the creator's login.
+     */
+    public static Pair<SpaceMarine, String> read(DataInput in) throws IOException {
+        SpaceMarine spaceMarine = new SpaceMarine();
+        spaceMarine.setId(in.readInt());
+        spaceMarine.setName(in.readUTF());
+
+        long x = in.readLong();
+        spaceMarine.setCoordinates(new Coordinates(x, readNullableLong(in)));
+
+        long epochSecond = in.readLong();
+        int nano = in.readInt();
+        ZoneId zoneId = ZoneId.of(in.readUTF());
+        spaceMarine.setCreationDate(ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), zoneId));
+
+        spaceMarine.setHealth(in.readLong());
+        spaceMarine.setHeight(in.readBoolean() ? in.readInt() : null);
+        spaceMarine.setCategory(AstartesCategory.values()[in.readByte()]);
+        spaceMarine.setMeleeWeapon(MeleeWeapon.values()[in.readByte()]);
+
+        String chapterName = in.readUTF();
+        String parentLegion = readNullableUTF(in);
+        int marinesCount = in.readInt();
+        String world = readNullableUTF(in);
+        spaceMarine.setChapter(new Chapter(chapterName, parentLegion, marinesCount, world));
+
+        return new Pair<>(spaceMarine, in.readUTF());
+    }
+
+    private static void writeNullableLong(Long value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeLong(value);
+    }
+
+    private static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeNullableUTF(String value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullableUTF(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,300 @@
+package ru.itmo.s284719.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of applied mutations, written by segments to a directory.
+ * Every record has a format: [length: int][CRC32: int][LSN: long][type: byte][payload],
+ * where the length and the CRC32 cover all bytes after the header.
+ * Records are forced to the disk by the background thread (group fsync):
+ * one force covers all records appended while the previous force was running.
+ * Writers don't wait for the force: the log is appended after the database's commit,
+ * and the recovered collection is reconciled with the database, so the lost tail is read again.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class MutationLog implements Closeable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(MutationLog.class);
+    /**
+     * The type of record about adding an element.
+     */
+    public static final byte ADD = 1;
+    /**
+     * The type of record about removing an element.
+     */
+    public static final byte REMOVE = 2;
+    /**
+     * The size of record's header (the length and the CRC32).
+     */
+    private static final int HEADER_SIZE = 8;
+    /**
+     * The prefix of segments' names.
+     */
+    private static final String SEGMENT_PREFIX = "mutations-";
+    /**
+     * The suffix of segments' names.
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * The directory with segments.
+     */
+    private final Path directory;
+    /**
+     * The channel of the current segment.
+     */
+    private FileChannel channel;
+    /**
+     * The LSN of the last appended record.
+     */
+    private long lastLsn;
+    /**
+     * The LSN of the last record forced to the disk.
+     */
+    private long durableLsn;
+    /**
+     * The field with information about closing the log.
+     */
+    private boolean closed = false;
+    /**
+     * The thread for group fsync.
+     */
+    private final Thread flusher;
+
+    /**
+     * Open new segment of the log after the last recovered record.
+     *
+     * @param directory the directory with segments.
+     * @param lastLsn the LSN of the last recovered record.
+     */
+    public MutationLog(Path directory, long lastLsn) throws IOException {
+        this.directory = directory;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        Files.createDirectories(directory);
+        channel = openSegment(lastLsn + 1);
+
+        flusher = new Thread(this::flushLoop, "mutation-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Append the record to the log. The record isn't durable after returning,
+     * the background thread forces that later.
+     *
+     * @param type the record's type.
+     * @param payload the record's payload.
+     * @return the record's LSN.
+     */
+    public synchronized long append(byte type, byte[] payload) throws IOException {
+        if (closed)
+            throw new ClosedChannelException();
+        long lsn = lastLsn + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 9 + payload.length);
+        buffer.putInt(9 + payload.length).putInt(0).putLong(lsn).put(type).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        lastLsn = lsn;
+        // wake the flusher.
+        notifyAll();
+        return lsn;
+    }
+
+    /**
+     * @return the LSN of the last appended record.
+     */
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Close the current segment and start new segment after the last record.
+     */
+    public synchronized void roll() throws IOException {
+        channel.force(false);
+        channel.close();
+        durableLsn = lastLsn;
+        channel = openSegment(lastLsn + 1);
+    }
+
+    /**
+     * Remove segments, whose all records have LSN less or equals than the LSN.
+     *
+     * @param lsn the LSN covered by a snapshot.
+     */
+    public synchronized void removeSegmentsBefore(long lsn) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i + 1 < starts.size(); ++i) {
+            // the segment ends before start of the next segment.
+            if (starts.get(i + 1) - 1 <= lsn)
+                Files.deleteIfExists(segmentPath(directory, starts.get(i)));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.force(false);
+            channel.close();
+            durableLsn = lastLsn;
+        }
+    }
+
+    /**
+     * Loop of the background thread, which forces appended records to the disk.
+     */
+    private void flushLoop() {
+        while (true) {
+            FileChannel target;
+            long targetLsn;
+            synchronized (this) {
+                while (!closed && durableLsn == lastLsn) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed)
+                    return;
+                target = channel;
+                targetLsn = lastLsn;
+            }
+            try {
+                // force without the lock: new records are appended meanwhile and get to the next force.
+                target.force(false);
+            } catch (ClosedChannelException e) {
+                // the segment was rolled and forced by roll().
+            } catch (IOException e) {
+                // logging.
+                logger.error("Forcing the mutation log to the disk is failed.", e);
+            }
+            synchronized (this) {
+                if (durableLsn < targetLsn)
+                    durableLsn = targetLsn;
+            }
+        }
+    }
+
+    private FileChannel openSegment(long startLsn) throws IOException {
+        return FileChannel.open(segmentPath(directory, startLsn),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replay records with LSN greater than the LSN from all segments of the directory.
+     * The torn tail of the last segment (after crash) is cut off.
+     *
+     * @param directory the directory with segments.
+     * @param afterLsn the LSN covered by the snapshot.
+     * @param consumer the consumer of records.
+     * @return the LSN of the last valid record.
+     */
+    public static long replay(Path directory, long afterLsn, RecordConsumer consumer) throws IOException {
+        long lastLsn = afterLsn;
+        if (!Files.isDirectory(directory))
+            return lastLsn;
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i < starts.size(); ++i) {
+            Path segment = segmentPath(directory, starts.get(i));
+            try (FileChannel segmentChannel = FileChannel.open(segment,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) segmentChannel.size());
+                while (buffer.hasRemaining() && segmentChannel.read(buffer) >= 0) { continue; }
+                buffer.flip();
+
+                long validEnd = 0;
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    int length = buffer.getInt();
+                    int crcValue = buffer.getInt();
+                    if (length < 9 || length > buffer.remaining())
+                        break;
+                    CRC32 crc = new CRC32();
+                    crc.update(buffer.array(), buffer.position(), length);
+                    if ((int) crc.getValue() != crcValue)
+                        break;
+                    long lsn = buffer.getLong();
+                    byte type = buffer.get();
+                    byte[] payload = new byte[length - 9];
+                    buffer.get(payload);
+                    validEnd = buffer.position();
+                    if (lsn > afterLsn)
+                        consumer.accept(lsn, type, payload);
+                    lastLsn = Math.max(lastLsn, lsn);
+                }
+
+                if (validEnd != segmentChannel.size()) {
+                    // logging.
+                    logger.warn("Mutation log's segment \"" + segment + "\" has a torn tail, " +
+                            "it's cut off at the byte " + validEnd + '.');
+                    segmentChannel.truncate(validEnd);
+                    // the records of next segments can't be applied after the gap.
+                    for (int j = i + 1; j < starts.size(); ++j)
+                        Files.deleteIfExists(segmentPath(directory, starts.get(j)));
+                    return lastLsn;
+                }
+            }
+        }
+        return lastLsn;
+    }
+
+    private static Path segmentPath(Path directory, long startLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startLsn, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+
+    /**
+     * Consumer of replayed records.
+     */
+    public interface RecordConsumer {
+        void accept(long lsn, byte type, byte[] payload) throws IOException;
+    }
+}
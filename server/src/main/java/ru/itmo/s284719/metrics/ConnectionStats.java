@@ -0,0 +1,185 @@
+package ru.itmo.s284719.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounting of the client's connection: bytes in and out, served requests and their latencies
+ * (from the start of the reading to the end of the sending), queued responses, the idle time
+ * and the authenticated user.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ConnectionStats {
+    /**
+     * The counter of connections' IDs.
+     */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    /**
+     * The connection's ID for the administrator.
+     */
+    private final int id;
+    /**
+     * The client's address.
+     */
+    private final String address;
+    /**
+     * The time of the connection in milliseconds.
+     */
+    private final long connectTime = System.currentTimeMillis();
+    /**
+     * The time of the last read or sent object in milliseconds.
+     */
+    private volatile long lastActivity = connectTime;
+    /**
+     * The login of the authenticated user or null.
+     */
+    private volatile String user;
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    /**
+     * Responses, which are processed or wait for the sending.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param address the client's address.
+     */
+    public ConnectionStats(String address) {
+        this.id = NEXT_ID.getAndIncrement();
+        this.address = address;
+    }
+
+    /**
+     * Record the read request.
+     *
+     * @param bytes the count of read bytes.
+     */
+    public void read(int bytes) {
+        bytesIn.addAndGet(bytes);
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Record the request, which waits for the response.
+     */
+    public void queue() {
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Record the sent response.
+     *
+     * @param bytes the count of sent bytes.
+     * @param startNanos the start of the request by {@link System#nanoTime()}.
+     */
+    public void served(int bytes, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        bytesOut.addAndGet(bytes);
+        requests.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        queued.decrementAndGet();
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Record the request, which is failed without the response.
+     */
+    public void failed() {
+        errors.incrementAndGet();
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Record the request, which is failed with the sent message about the error.
+     *
+     * @param bytes the count of sent bytes.
+     */
+    public void failed(int bytes) {
+        bytesOut.addAndGet(bytes);
+        lastActivity = System.currentTimeMillis();
+        failed();
+    }
+
+    /**
+     * Record the request, which isn't answered, because the client closed the connection (it isn't an error).
+     */
+    public void closed() {
+        queued.decrementAndGet();
+        lastActivity = System.currentTimeMillis();
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return the time since the connection in seconds.
+     */
+    public long getAgeSeconds() {
+        return (System.currentTimeMillis() - connectTime) / 1000;
+    }
+
+    /**
+     * @return the time since the last read or sent object in milliseconds.
+     */
+    public long getIdleMillis() {
+        return System.currentTimeMillis() - lastActivity;
+    }
+
+    /**
+     * @return the total time of served requests in milliseconds (the connection's load).
+     */
+    public double getBusyMillis() {
+        return (double) totalNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMeanMillis() {
+        long count = requests.get();
+        return count == 0 ? 0 : getBusyMillis() / count;
+    }
+
+    public double getMaxMillis() {
+        return (double) maxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
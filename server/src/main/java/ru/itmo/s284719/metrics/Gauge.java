@@ -0,0 +1,29 @@
+package ru.itmo.s284719.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The value, which is read at the request (the collection's size, the count of connections).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Gauge implements GaugeMBean {
+    private final String name;
+    private final LongSupplier supplier;
+
+    Gauge(String name, LongSupplier supplier) {
+        this.name = name;
+        this.supplier = supplier;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getValue() {
+        return supplier.getAsLong();
+    }
+}
@@ -0,0 +1,13 @@
+package ru.itmo.s284719.metrics;
+
+/**
+ * JMX's interface of {@link Gauge}.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface GaugeMBean {
+    String getName();
+
+    long getValue();
+}
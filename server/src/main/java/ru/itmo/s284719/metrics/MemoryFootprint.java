@@ -0,0 +1,411 @@
+package ru.itmo.s284719.metrics;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.Chapter;
+import ru.itmo.s284719.network.space.Coordinates;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The estimator of the heap, which is used by elements of the collection.
+ * Sizes of objects are calculated by their classes' fields and the layout of the current JVM
+ * (headers, compressed references, alignment), so they're estimations, but they don't need agents.
+ * The object, which is reachable from some sampled elements, is counted once, cached boxed values,
+ * enums and zones are shared with the whole JVM and aren't counted.
+ * Entries of containers are counted by their real classes: the node of the skip list with its indexes
+ * and the boxed key in the storage, the slot of the priority queue or the entry of the cache in the collection.
+ * The storage without the heap's map (the database) gives new copies of elements, so their sizes
+ * are the layout of elements, but only cached elements are kept in the heap.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class MemoryFootprint {
+    /**
+     * Components of the element in the report's order.
+     */
+    public static final String[] COMPONENTS = {"storage's entry", "collection's entry", "pair", "space marine",
+            "name", "coordinates", "creation date", "health", "height", "chapter", "owner's login"};
+    /**
+     * The component with the entry of the storage's map, which is kept for every element.
+     */
+    private static final String STORAGE_ENTRY = COMPONENTS[0];
+    /**
+     * The component with the entry of the collection, which is kept for every element or for cached elements.
+     */
+    private static final String COLLECTION_ENTRY = COMPONENTS[1];
+    /**
+     * The expected count of indexes for one node of the skip list:
+     * the node gets the first index with the chance 1/4, and every next level with the chance 1/2.
+     */
+    private static final double SKIP_LIST_INDEXES = 0.5;
+    /**
+     * The load factor of the cache's hash table.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * The size of the reference in bytes.
+     */
+    private final int referenceSize;
+    /**
+     * The size of the object's header in bytes.
+     */
+    private final int headerSize;
+    /**
+     * The size of the array's header with its length in bytes.
+     */
+    private final int arrayHeaderSize;
+    /**
+     * The alignment of objects in bytes.
+     */
+    private final int alignment;
+    /**
+     * Strings have arrays of bytes with one byte for Latin-1 symbols (Java 9+).
+     */
+    private final boolean compactStrings;
+    /**
+     * Sizes of objects by their classes.
+     */
+    private final Map<Class<?>, Long> shallowSizes = new HashMap<>();
+
+    /**
+     * The result of the analysis.
+     */
+    public static class Report {
+        /**
+         * The count of elements in the collection.
+         */
+        public final int size;
+        /**
+         * The count of elements, which the collection keeps in the heap (the cache's capacity),
+         * or {@link Long#MAX_VALUE}, if the collection keeps all elements.
+         */
+        public final long capacity;
+        /**
+         * Sampled elements are new copies from the storage, not the objects in the heap.
+         */
+        public boolean copies;
+        /**
+         * The storage's map keeps sampled elements, so they are in the heap without the collection.
+         */
+        public boolean shared;
+        /**
+         * The count of sampled elements.
+         */
+        public int sampled;
+        /**
+         * Bytes of sampled elements by components.
+         */
+        public final Map<String, Long> bytes = new LinkedHashMap<>();
+        /**
+         * The count of sampled strings.
+         */
+        public long strings;
+        /**
+         * The count of strings, which are equal to other sampled strings.
+         */
+        public long duplicateStrings;
+        /**
+         * Bytes of strings, which are equal to other sampled strings.
+         */
+        public long duplicateStringBytes;
+        /**
+         * The count of sampled chapters.
+         */
+        public long chapters;
+        /**
+         * The count of chapters, which are equal to other sampled chapters.
+         */
+        public long duplicateChapters;
+        /**
+         * Bytes of chapters (with their strings), which are equal to other sampled chapters.
+         */
+        public long duplicateChapterBytes;
+
+        Report(int size, long capacity) {
+            this.size = size;
+            this.capacity = capacity;
+            for (String component : COMPONENTS)
+                bytes.put(component, 0L);
+        }
+
+        /**
+         * @param component the component.
+         * @return bytes of the component per element.
+         */
+        public double perElement(String component) {
+            return sampled == 0 ? 0 : (double) bytes.get(component) / sampled;
+        }
+
+        /**
+         * @return bytes of all components per element.
+         */
+        public double perElement() {
+            long total = 0;
+            for (long value : bytes.values())
+                total += value;
+            return sampled == 0 ? 0 : (double) total / sampled;
+        }
+
+        /**
+         * @param component the component.
+         * @param target the count of elements.
+         * @return the count of elements, whose component is kept in the heap.
+         */
+        public long resident(String component, long target) {
+            if (component.equals(STORAGE_ENTRY) || (shared && !component.equals(COLLECTION_ENTRY)))
+                return target;
+            return Math.min(target, capacity);
+        }
+
+        /**
+         * @param target the count of elements.
+         * @return the heap, which is used by the collection with the count of elements, in bytes.
+         */
+        public double projected(long target) {
+            double bytes = 0;
+            for (String component : COMPONENTS)
+                bytes += perElement(component) * resident(component, target);
+            return bytes;
+        }
+    }
+
+    /**
+     * Constructor with the layout of the current JVM.
+     */
+    public MemoryFootprint() {
+        boolean is64 = !"32".equals(System.getProperty("sun.arch.data.model"));
+        boolean compressedOops = is64 && Boolean.parseBoolean(vmOption("UseCompressedOops", "true"));
+        boolean compressedClasses = is64 &&
+                Boolean.parseBoolean(vmOption("UseCompressedClassPointers", String.valueOf(compressedOops)));
+        referenceSize = is64 && !compressedOops ? 8 : 4;
+        headerSize = is64 ? (compressedClasses ? 12 : 16) : 8;
+        arrayHeaderSize = headerSize + 4;
+        alignment = Integer.parseInt(vmOption("ObjectAlignmentInBytes", "8"));
+        boolean coder;
+        try {
+            String.class.getDeclaredField("coder");
+            coder = true;
+        } catch (NoSuchFieldException e) {
+            coder = false;
+        }
+        compactStrings = coder;
+    }
+
+    /**
+     * @return the description of the JVM's layout.
+     */
+    public String getLayout() {
+        return referenceSize + "-byte references, " + headerSize + "-byte headers, " + alignment +
+                "-byte alignment, " + (compactStrings ? "compact" : "UTF-16") + " strings";
+    }
+
+    /**
+     * Analyze the sample of the storage's elements.
+     *
+     * @param sample the sampled elements of the storage.
+     * @param size the size of the collection.
+     * @param index the storage's map by IDs in the heap or null.
+     * @param capacity the count of elements, which the collection keeps in the cache,
+     *                 or {@link Long#MAX_VALUE}, if the collection keeps all elements in the priority queue.
+     * @return the report.
+     */
+    public Report analyze(List<Pair<SpaceMarine, String>> sample, int size, Map<Integer, ?> index, long capacity) {
+        Report report = new Report(size, capacity);
+        Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> stringValues = new HashSet<>();
+        Set<List<Object>> chapterValues = new HashSet<>();
+        for (Pair<SpaceMarine, String> pair : sample) {
+            SpaceMarine spaceMarine = pair.first;
+            Object entry = index == null ? null : index.get(spaceMarine.getId());
+            // if (the storage's map doesn't have the same object) than: the element is the copy.
+            if (entry != pair)
+                report.copies = true;
+            if (index != null)
+                add(report, STORAGE_ENTRY, indexEntry(index, spaceMarine.getId(), entry, counted));
+            add(report, COLLECTION_ENTRY, capacity == Long.MAX_VALUE ? referenceSize : cacheEntry(spaceMarine.getId()));
+            add(report, "pair", object(pair, counted));
+            add(report, "space marine", object(spaceMarine, counted));
+            add(report, "name", string(spaceMarine.getName(), counted, stringValues, report));
+            Coordinates coordinates = spaceMarine.getCoordinates();
+            if (coordinates != null)
+                add(report, "coordinates", object(coordinates, counted) + boxed(coordinates.getY(), counted));
+            ZonedDateTime date = spaceMarine.getCreationDate();
+            if (date != null)
+                add(report, "creation date", object(date, counted) + object(date.toLocalDateTime(), counted) +
+                        object(date.toLocalDate(), counted) + object(date.toLocalTime(), counted));
+            add(report, "health", boxed(spaceMarine.getHealth(), counted));
+            add(report, "height", boxed(spaceMarine.getHeight(), counted));
+            add(report, "chapter", chapter(spaceMarine.getChapter(), counted, stringValues, chapterValues, report));
+            add(report, "owner's login", string(pair.second, counted, stringValues, report));
+            ++report.sampled;
+        }
+        report.shared = index != null && !report.copies;
+        return report;
+    }
+
+    /**
+     * @param index the storage's map.
+     * @param id the element's ID.
+     * @param entry the map's value (the element or its location).
+     * @param counted counted objects.
+     * @return the size of the map's entry without the element.
+     */
+    private long indexEntry(Map<Integer, ?> index, int id, Object entry, Set<Object> counted) {
+        long bytes = boxedKey(id);
+        if (entry instanceof Number)
+            bytes += boxed((Number) entry, counted);
+        if (index instanceof ConcurrentSkipListMap)
+            return bytes + nestedSize("java.util.concurrent.ConcurrentSkipListMap$Node", 3) +
+                    Math.round(SKIP_LIST_INDEXES * nestedSize("java.util.concurrent.ConcurrentSkipListMap$Index", 3));
+        return bytes + hashEntry("java.util.HashMap$Node");
+    }
+
+    /**
+     * @param id the element's ID.
+     * @return the size of the cache's entry (the access ordered hash map) without the element.
+     */
+    private long cacheEntry(int id) {
+        return boxedKey(id) + hashEntry("java.util.LinkedHashMap$Entry");
+    }
+
+    /**
+     * @param className the class of hash map's entries.
+     * @return the size of the entry with its slot in the table.
+     */
+    private long hashEntry(String className) {
+        return nestedSize(className, 5) + Math.round(referenceSize / LOAD_FACTOR);
+    }
+
+    /**
+     * @param id the ID.
+     * @return the size of the boxed ID (values from -128 to 127 are cached by the JVM).
+     */
+    private long boxedKey(int id) {
+        return id >= -128 && id <= 127 ? 0 : shallowSize(Integer.class);
+    }
+
+    /**
+     * @param className the name of the JDK's nested class.
+     * @param references the count of references in the class for JVMs without the class.
+     * @return the size of the class' object.
+     */
+    private long nestedSize(String className, int references) {
+        try {
+            return shallowSize(Class.forName(className));
+        } catch (ClassNotFoundException e) {
+            return align(headerSize + (long) references * referenceSize);
+        }
+    }
+
+    private static void add(Report report, String component, long bytes) {
+        report.bytes.put(component, report.bytes.get(component) + bytes);
+    }
+
+    private long chapter(Chapter chapter, Set<Object> counted, Set<String> stringValues,
+                         Set<List<Object>> chapterValues, Report report) {
+        if (chapter == null || counted.contains(chapter))
+            return 0;
+        long bytes = object(chapter, counted) + string(chapter.getName(), counted, stringValues, report) +
+                string(chapter.getParentLegion(), counted, stringValues, report) +
+                string(chapter.getWorld(), counted, stringValues, report);
+        ++report.chapters;
+        // if (other chapter has the same fields) than: this chapter could be shared.
+        if (!chapterValues.add(Arrays.asList(chapter.getName(), chapter.getParentLegion(),
+                chapter.getMarinesCount(), chapter.getWorld()))) {
+            ++report.duplicateChapters;
+            report.duplicateChapterBytes += bytes;
+        }
+        return bytes;
+    }
+
+    private long string(String string, Set<Object> counted, Set<String> stringValues, Report report) {
+        if (string == null || !counted.add(string))
+            return 0;
+        long bytes = shallowSize(String.class) + array(compactStrings && isLatin1(string)
+                ? string.length() : 2L * string.length());
+        ++report.strings;
+        // if (other string has the same value) than: this string could be deduplicated.
+        if (!stringValues.add(string)) {
+            ++report.duplicateStrings;
+            report.duplicateStringBytes += bytes;
+        }
+        return bytes;
+    }
+
+    private long boxed(Number number, Set<Object> counted) {
+        // values from -128 to 127 are cached by the JVM.
+        if (number == null || number == Long.valueOf(number.longValue())
+                || number == Integer.valueOf(number.intValue()))
+            return 0;
+        return object(number, counted);
+    }
+
+    private long object(Object object, Set<Object> counted) {
+        if (object == null || !counted.add(object))
+            return 0;
+        return shallowSize(object.getClass());
+    }
+
+    private long array(long bytes) {
+        return align(arrayHeaderSize + bytes);
+    }
+
+    private synchronized long shallowSize(Class<?> type) {
+        Long size = shallowSizes.get(type);
+        if (size == null) {
+            long fields = 0;
+            for (Class<?> c = type; c != null; c = c.getSuperclass())
+                for (Field field : c.getDeclaredFields())
+                    if (!Modifier.isStatic(field.getModifiers()))
+                        fields += fieldSize(field.getType());
+            size = align(headerSize + fields);
+            shallowSizes.put(type, size);
+        }
+        return size;
+    }
+
+    private long fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class)
+            return 8;
+        if (type == int.class || type == float.class)
+            return 4;
+        if (type == short.class || type == char.class)
+            return 2;
+        if (type == byte.class || type == boolean.class)
+            return 1;
+        return referenceSize;
+    }
+
+    private long align(long bytes) {
+        return (bytes + alignment - 1) / alignment * alignment;
+    }
+
+    private static boolean isLatin1(String string) {
+        for (int i = 0; i < string.length(); ++i)
+            if (string.charAt(i) > 0xFF)
+                return false;
+        return true;
+    }
+
+    /**
+     * @param name the name of the HotSpot's option.
+     * @param defaultValue the value for other JVMs.
+     * @return the option's value.
+     */
+    private static String vmOption(String name, String defaultValue) {
+        try {
+            return ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption(name).getValue();
+        } catch (RuntimeException | LinkageError e) {
+            return defaultValue;
+        }
+    }
+}
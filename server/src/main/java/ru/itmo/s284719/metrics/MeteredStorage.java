@@ -0,0 +1,247 @@
+package ru.itmo.s284719.metrics;
+
+import ru.itmo.s284719.database.Storage;
+import ru.itmo.s284719.database.TableSummary;
+import ru.itmo.s284719.database.User;
+import ru.itmo.s284719.network.jfr.FlightEvents;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * The storage, which records timings of calls of other storage to the metrics' registry
+ * (metrics "Storage" by methods' names) and commits events "Storage Statement" to JDK Flight Recorder.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class MeteredStorage implements Storage, Closeable {
+    /**
+     * The call of the storage.
+     *
+     * @param <T> the call's result.
+     */
+    private interface Call<T> {
+        T call() throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * The call of the storage with the input or the output.
+     *
+     * @param <T> the call's result.
+     */
+    private interface IOCall<T> {
+        T call() throws SQLException, ClassNotFoundException, IOException;
+    }
+
+    /**
+     * The storage with the data.
+     */
+    private final Storage storage;
+    /**
+     * The registry of metrics.
+     */
+    private final MetricsRegistry metrics;
+
+    /**
+     * @param storage the storage with the data.
+     * @param metrics the registry of metrics.
+     */
+    public MeteredStorage(Storage storage, MetricsRegistry metrics) {
+        this.storage = storage;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the storage with the data.
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public boolean isLoginFree(String login) throws ClassNotFoundException, SQLException {
+        return time("isLoginFree", () -> storage.isLoginFree(login));
+    }
+
+    @Override
+    public boolean registerUser(User user) throws ClassNotFoundException, SQLException {
+        return time("registerUser", () -> storage.registerUser(user));
+    }
+
+    @Override
+    public boolean isRegisteredUser(User user) throws ClassNotFoundException, SQLException {
+        return time("isRegisteredUser", () -> storage.isRegisteredUser(user));
+    }
+
+    @Override
+    public int addSpaceMarineWithCreator(SpaceMarine spaceMarine, User user)
+            throws SQLException, ClassNotFoundException {
+        return time("addSpaceMarineWithCreator", () -> storage.addSpaceMarineWithCreator(spaceMarine, user));
+    }
+
+    @Override
+    public boolean deleteSpaceMarineWithCreator(int id) throws SQLException, ClassNotFoundException {
+        return time("deleteSpaceMarineWithCreator", () -> storage.deleteSpaceMarineWithCreator(id));
+    }
+
+    @Override
+    public PriorityBlockingQueue<Pair<SpaceMarine, String>> getPriorityBlockingQueuePair()
+            throws SQLException, ClassNotFoundException {
+        return time("getPriorityBlockingQueuePair", storage::getPriorityBlockingQueuePair);
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsAfterId(int afterId, int limit)
+            throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarinePairsAfterId", () -> storage.getSpaceMarinePairsAfterId(afterId, limit));
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsSample(int size)
+            throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarinePairsSample", () -> storage.getSpaceMarinePairsSample(size));
+    }
+
+    @Override
+    public Map<Integer, ?> getHeapIndex() {
+        return storage.getHeapIndex();
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByCreator(String login)
+            throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarinePairsByCreator", () -> storage.getSpaceMarinePairsByCreator(login));
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> getAnySpaceMarinePairByHeight(String login, int height)
+            throws SQLException, ClassNotFoundException {
+        return time("getAnySpaceMarinePairByHeight", () -> storage.getAnySpaceMarinePairByHeight(login, height));
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight()
+            throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarinePairsOrderedByHeight", storage::getSpaceMarinePairsOrderedByHeight);
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight(Pair<SpaceMarine, String> after,
+                                                                             int limit)
+            throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarinePairsOrderedByHeight", () -> storage.getSpaceMarinePairsOrderedByHeight(after, limit));
+    }
+
+    @Override
+    public long[] getSpaceMarineCountsByMeleeWeapon() throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarineCountsByMeleeWeapon", storage::getSpaceMarineCountsByMeleeWeapon);
+    }
+
+    @Override
+    public long getSpaceMarineHeightSum() throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarineHeightSum", storage::getSpaceMarineHeightSum);
+    }
+
+    @Override
+    public TableSummary getSpaceMarineSummary() throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarineSummary", storage::getSpaceMarineSummary);
+    }
+
+    @Override
+    public Set<Integer> getSpaceMarineIds() throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarineIds", storage::getSpaceMarineIds);
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByIds(Collection<Integer> ids)
+            throws SQLException, ClassNotFoundException {
+        return time("getSpaceMarinePairsByIds", () -> storage.getSpaceMarinePairsByIds(ids));
+    }
+
+    @Override
+    public List<Integer> copySpaceMarinesFrom(Reader reader) throws SQLException, ClassNotFoundException, IOException {
+        return timeIO("copySpaceMarinesFrom", () -> storage.copySpaceMarinesFrom(reader));
+    }
+
+    @Override
+    public long copySpaceMarinesTo(Writer writer) throws SQLException, ClassNotFoundException, IOException {
+        return timeIO("copySpaceMarinesTo", () -> storage.copySpaceMarinesTo(writer));
+    }
+
+    @Override
+    public int reconcile(Queue<Pair<SpaceMarine, String>> queue) throws SQLException, ClassNotFoundException {
+        return time("reconcile", () -> storage.reconcile(queue));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (storage instanceof Closeable)
+            ((Closeable) storage).close();
+    }
+
+    private <T> T time(String name, Call<T> call) throws SQLException, ClassNotFoundException {
+        OperationMetrics operation = metrics.storage(name);
+        Object event = FlightEvents.SINK.beginStatement();
+        long start = operation.start();
+        try {
+            T result = call.call();
+            if (event != null)
+                FlightEvents.SINK.endStatement(event, name, rows(result), true);
+            return result;
+        } catch (SQLException | ClassNotFoundException | RuntimeException e) {
+            operation.error();
+            if (event != null)
+                FlightEvents.SINK.endStatement(event, name, -1, false);
+            throw e;
+        } finally {
+            operation.stop(start);
+        }
+    }
+
+    private <T> T timeIO(String name, IOCall<T> call) throws SQLException, ClassNotFoundException, IOException {
+        OperationMetrics operation = metrics.storage(name);
+        Object event = FlightEvents.SINK.beginStatement();
+        long start = operation.start();
+        try {
+            T result = call.call();
+            // the copying returns the count of rows or IDs of rows.
+            if (event != null)
+                FlightEvents.SINK.endStatement(event, name,
+                        result instanceof Number ? ((Number) result).longValue() : rows(result), true);
+            return result;
+        } catch (SQLException | ClassNotFoundException | IOException | RuntimeException e) {
+            operation.error();
+            if (event != null)
+                FlightEvents.SINK.endStatement(event, name, -1, false);
+            throw e;
+        } finally {
+            operation.stop(start);
+        }
+    }
+
+    /**
+     * @param result the call's result.
+     * @return the count of read or changed rows by the call's result or -1, if it's unknown.
+     */
+    private static long rows(Object result) {
+        if (result instanceof Pair)
+            return 1;
+        if (result instanceof Collection)
+            return ((Collection<?>) result).size();
+        if (result instanceof Boolean)
+            return (Boolean) result ? 1 : 0;
+        return -1;
+    }
+}
@@ -0,0 +1,222 @@
+package ru.itmo.s284719.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the server's metrics: metrics of clients' commands and storage's calls by names,
+ * their totals and gauges. Metrics are created at the first usage and, if JMX is enabled
+ * by {@link #registerMBeans()}, are registered as MBeans in the domain "ru.itmo.s284719"
+ * (for example, "ru.itmo.s284719:type=Command,name=show").
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(MetricsRegistry.class);
+    /**
+     * The domain of MBeans.
+     */
+    public static final String JMX_DOMAIN = "ru.itmo.s284719";
+
+    /**
+     * The time of the start or the last reset in milliseconds.
+     */
+    private volatile long startTime = System.currentTimeMillis();
+    /**
+     * The total of all clients' commands.
+     */
+    private final OperationMetrics requests = new OperationMetrics("total", null);
+    /**
+     * The total of all storage's calls.
+     */
+    private final OperationMetrics storageCalls = new OperationMetrics("total", null);
+    /**
+     * Metrics of clients' commands by names.
+     */
+    private final Map<String, OperationMetrics> commands = new ConcurrentHashMap<>();
+    /**
+     * Metrics of storage's calls by methods' names.
+     */
+    private final Map<String, OperationMetrics> storage = new ConcurrentHashMap<>();
+    /**
+     * Gauges by names.
+     */
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    /**
+     * The MBeans' server or null, if JMX isn't enabled.
+     */
+    private volatile MBeanServer mBeanServer = null;
+
+    /**
+     * @param name the command's name.
+     * @return metrics of the client's command.
+     */
+    public OperationMetrics command(String name) {
+        OperationMetrics metrics = commands.get(name);
+        if (metrics == null)
+            metrics = commands.computeIfAbsent(name, key -> register("Command", new OperationMetrics(key, requests)));
+        return metrics;
+    }
+
+    /**
+     * @param name the storage's method.
+     * @return metrics of the storage's call.
+     */
+    public OperationMetrics storage(String name) {
+        OperationMetrics metrics = storage.get(name);
+        if (metrics == null)
+            metrics = storage.computeIfAbsent(name, key -> register("Storage", new OperationMetrics(key, storageCalls)));
+        return metrics;
+    }
+
+    /**
+     * Add the gauge.
+     *
+     * @param name the gauge's name.
+     * @param supplier the supplier of the gauge's value.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, register("Gauge", new Gauge(name, supplier)));
+    }
+
+    /**
+     * @return metrics of clients' commands sorted by names.
+     */
+    public SortedMap<String, OperationMetrics> getCommands() {
+        return new TreeMap<>(commands);
+    }
+
+    /**
+     * @return metrics of storage's calls sorted by names.
+     */
+    public SortedMap<String, OperationMetrics> getStorage() {
+        return new TreeMap<>(storage);
+    }
+
+    /**
+     * @return values of gauges sorted by names.
+     */
+    public SortedMap<String, Long> getGauges() {
+        SortedMap<String, Long> values = new TreeMap<>();
+        for (Gauge gauge : gauges.values())
+            values.put(gauge.getName(), gauge.getValue());
+        return values;
+    }
+
+    public OperationMetrics getRequestsTotal() {
+        return requests;
+    }
+
+    public OperationMetrics getStorageTotal() {
+        return storageCalls;
+    }
+
+    /**
+     * Register the registry and all metrics as MBeans of the platform's MBeans' server.
+     * Metrics, which are created later, are registered at the creation.
+     */
+    public synchronized void registerMBeans() {
+        if (mBeanServer != null)
+            return;
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        register("Server", "Metrics", this);
+        for (OperationMetrics metrics : commands.values())
+            register("Command", metrics);
+        for (OperationMetrics metrics : storage.values())
+            register("Storage", metrics);
+        for (Gauge gauge : gauges.values())
+            register("Gauge", gauge);
+        // logging.
+        logger.info("Metrics are registered as MBeans in the domain \"" + JMX_DOMAIN + "\".");
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return (System.currentTimeMillis() - startTime) / 1000;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.getCount();
+    }
+
+    @Override
+    public long getRequestErrors() {
+        return requests.getErrors();
+    }
+
+    @Override
+    public long getRequestsInFlight() {
+        return requests.getInFlight();
+    }
+
+    /**
+     * @return the average count of requests per second since the start or the last reset.
+     */
+    @Override
+    public double getRequestsPerSecond() {
+        long millis = Math.max(1, System.currentTimeMillis() - startTime);
+        return requests.getCount() * 1000.0 / millis;
+    }
+
+    @Override
+    public long getStorageCalls() {
+        return storageCalls.getCount();
+    }
+
+    @Override
+    public long getStorageErrors() {
+        return storageCalls.getErrors();
+    }
+
+    /**
+     * Forget latencies and errors of all metrics.
+     */
+    @Override
+    public void reset() {
+        requests.reset();
+        storageCalls.reset();
+        commands.values().forEach(OperationMetrics::reset);
+        storage.values().forEach(OperationMetrics::reset);
+        startTime = System.currentTimeMillis();
+    }
+
+    private OperationMetrics register(String type, OperationMetrics metrics) {
+        register(type, metrics.getName(), metrics);
+        return metrics;
+    }
+
+    private Gauge register(String type, Gauge gauge) {
+        register(type, gauge.getName(), gauge);
+        return gauge;
+    }
+
+    private void register(String type, String name, Object mBean) {
+        MBeanServer server = mBeanServer;
+        if (server == null)
+            return;
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(mBean, objectName);
+        } catch (JMException e) {
+            // logging.
+            logger.warn("Registration of the MBean \"" + name + "\" is failed.", e);
+        }
+    }
+}
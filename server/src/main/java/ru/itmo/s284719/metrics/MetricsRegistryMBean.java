@@ -0,0 +1,25 @@
+package ru.itmo.s284719.metrics;
+
+/**
+ * JMX's interface of {@link MetricsRegistry}: the server's totals.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface MetricsRegistryMBean {
+    long getUptimeSeconds();
+
+    long getRequests();
+
+    long getRequestErrors();
+
+    long getRequestsInFlight();
+
+    double getRequestsPerSecond();
+
+    long getStorageCalls();
+
+    long getStorageErrors();
+
+    void reset();
+}
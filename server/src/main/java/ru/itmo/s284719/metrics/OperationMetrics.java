@@ -0,0 +1,156 @@
+package ru.itmo.s284719.metrics;
+
+import ru.itmo.s284719.network.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one operation (the client's command or the storage's call):
+ * the histogram of latencies, the count of errors and the count of operations in progress.
+ * Usage:
+ * <pre>
+ *     long start = metrics.start();
+ *     try {
+ *         ...
+ *     } catch (Exception e) {
+ *         metrics.error();
+ *         throw e;
+ *     } finally {
+ *         metrics.stop(start);
+ *     }
+ * </pre>
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    /**
+     * The count of nanoseconds in one millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * The operation's name.
+     */
+    private final String name;
+    /**
+     * Latencies of finished operations in nanoseconds.
+     */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    /**
+     * The count of failed operations.
+     */
+    private final LongAdder errors = new LongAdder();
+    /**
+     * The count of operations in progress.
+     */
+    private final AtomicLong inFlight = new AtomicLong();
+    /**
+     * The registry's total counters or null.
+     */
+    private final OperationMetrics total;
+
+    /**
+     * @param name the operation's name.
+     * @param total the metrics, which count all operations of the kind, or null.
+     */
+    OperationMetrics(String name, OperationMetrics total) {
+        this.name = name;
+        this.total = total;
+    }
+
+    /**
+     * Start the operation.
+     *
+     * @return the start's time for {@link #stop(long)}.
+     */
+    public long start() {
+        inFlight.incrementAndGet();
+        if (total != null)
+            total.inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish the operation and record its latency.
+     *
+     * @param start the start's time from {@link #start()}.
+     */
+    public void stop(long start) {
+        long latency = System.nanoTime() - start;
+        latencies.record(latency);
+        inFlight.decrementAndGet();
+        if (total != null) {
+            total.latencies.record(latency);
+            total.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Count the failed operation (it's stopped by {@link #stop(long)} too).
+     */
+    public void error() {
+        errors.increment();
+        if (total != null)
+            total.errors.increment();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latencies.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latencies.getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latencies.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return latencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latencies.getMax() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Forget latencies and errors (operations in progress are counted further).
+     */
+    @Override
+    public void reset() {
+        latencies.reset();
+        errors.reset();
+    }
+}
@@ -0,0 +1,29 @@
+package ru.itmo.s284719.metrics;
+
+/**
+ * JMX's interface of {@link OperationMetrics}: latencies are in milliseconds.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface OperationMetricsMBean {
+    String getName();
+
+    long getCount();
+
+    long getErrors();
+
+    long getInFlight();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
@@ -0,0 +1,172 @@
+package ru.itmo.s284719.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The trace of one client's request: times of its phases (reading, hashing the password,
+ * dispatching, executing, waiting for the database's lock, the database, sending).
+ * The trace is bound to the thread, which processes the request, so the code deep inside
+ * (for example, {@link TracedLock}) switches phases by {@link #currentPhase(String)} without parameters.
+ * Requests slower than the threshold (system property "server.slowRequestMillis", 100 ms by default,
+ * negative value disables traces) are written to the logger "ru.itmo.s284719.slow" with all phases.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class RequestTrace {
+    /**
+     * Log4j 2 logger of slow requests.
+     */
+    private static final Logger slowLogger = LogManager.getLogger("ru.itmo.s284719.slow");
+    /**
+     * The threshold of slow requests in milliseconds.
+     */
+    public static final long SLOW_REQUEST_MILLIS = Long.getLong("server.slowRequestMillis", 100);
+    /**
+     * The threshold of slow requests in nanoseconds.
+     */
+    private static final long SLOW_REQUEST_NANOS = SLOW_REQUEST_MILLIS * 1_000_000;
+    /**
+     * The maximal count of different phases (other phases are added to the last one).
+     */
+    private static final int MAX_PHASES = 16;
+    /**
+     * The trace of the request, which is processed by the thread.
+     */
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The start's time.
+     */
+    private final long start;
+    /**
+     * Names of phases in the order of the first start.
+     */
+    private final String[] names = new String[MAX_PHASES];
+    /**
+     * Durations of phases in nanoseconds.
+     */
+    private final long[] durations = new long[MAX_PHASES];
+    /**
+     * The count of phases.
+     */
+    private int count = 0;
+    /**
+     * The index of the current phase.
+     */
+    private int current;
+    /**
+     * The start's time of the current phase.
+     */
+    private long phaseStart;
+    private String user = null;
+    private String command = null;
+
+    private RequestTrace(String phase) {
+        start = phaseStart = System.nanoTime();
+        current = index(phase);
+    }
+
+    /**
+     * Start the trace in the current thread.
+     *
+     * @param phase the first phase.
+     * @return the trace or null, if traces are disabled.
+     */
+    public static RequestTrace start(String phase) {
+        if (SLOW_REQUEST_MILLIS < 0)
+            return null;
+        RequestTrace trace = new RequestTrace(phase);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return the trace of the current thread or null.
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Switch the phase of the current thread's trace, if the thread has the trace.
+     *
+     * @param phase the new phase.
+     */
+    public static void currentPhase(String phase) {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null)
+            trace.phase(phase);
+    }
+
+    /**
+     * Finish the current phase and start the new one.
+     *
+     * @param phase the new phase.
+     */
+    public synchronized void phase(String phase) {
+        long now = System.nanoTime();
+        durations[current] += now - phaseStart;
+        phaseStart = now;
+        current = index(phase);
+    }
+
+    /**
+     * Bind the trace to the current thread (the request goes to other thread).
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Unbind the trace from the current thread.
+     */
+    public void detach() {
+        if (CURRENT.get() == this)
+            CURRENT.remove();
+    }
+
+    public synchronized void setUser(String user) {
+        this.user = user;
+    }
+
+    public synchronized void setCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Finish the trace and write that to the log of slow requests, if the request is slow.
+     */
+    public synchronized void finish() {
+        phase(names[current]);
+        detach();
+        long total = phaseStart - start;
+        if (total >= SLOW_REQUEST_NANOS && slowLogger.isWarnEnabled())
+            slowLogger.warn(toString());
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("Request ")
+                .append(millis(phaseStart - start)).append(" ms, user: \"").append(user)
+                .append("\", command: \"").append(command).append("\":");
+        for (int i = 0; i < count; ++i)
+            sb.append(i == 0 ? " " : ", ").append(names[i]).append(' ').append(millis(durations[i])).append(" ms");
+        return sb.append('.').toString();
+    }
+
+    private int index(String phase) {
+        for (int i = 0; i < count; ++i)
+            if (names[i].equals(phase))
+                return i;
+        if (count == MAX_PHASES)
+            return count - 1;
+        names[count] = phase;
+        return count++;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,97 @@
+package ru.itmo.s284719.metrics;
+
+import ru.itmo.s284719.network.jfr.FlightEvents;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The reentrant lock of the database's connection, which switches phases of the request's trace:
+ * the waiting for the lock is the phase "db lock", the time with the lock is the phase "database",
+ * after the unlocking the request returns to the phase "execute".
+ * The waiting for the lock, which is held by other thread, is committed as the event "Lock Wait"
+ * to JDK Flight Recorder.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class TracedLock implements Lock {
+    /**
+     * The lock's name for events.
+     */
+    private static final String NAME = "database";
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Override
+    public void lock() {
+        if (lock.isHeldByCurrentThread()) {
+            lock.lock();
+            return;
+        }
+        RequestTrace.currentPhase("db lock");
+        // if (the lock is held by other thread) than: wait for it with the event.
+        if (!lock.tryLock()) {
+            Object event = FlightEvents.SINK.beginLockWait();
+            lock.lock();
+            if (event != null)
+                FlightEvents.SINK.endLockWait(event, NAME);
+        }
+        RequestTrace.currentPhase("database");
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (lock.isHeldByCurrentThread()) {
+            lock.lockInterruptibly();
+            return;
+        }
+        RequestTrace.currentPhase("db lock");
+        if (!lock.tryLock()) {
+            Object event = FlightEvents.SINK.beginLockWait();
+            lock.lockInterruptibly();
+            if (event != null)
+                FlightEvents.SINK.endLockWait(event, NAME);
+        }
+        RequestTrace.currentPhase("database");
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean locked = lock.tryLock();
+        if (locked && lock.getHoldCount() == 1)
+            RequestTrace.currentPhase("database");
+        return locked;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        boolean reentered = lock.isHeldByCurrentThread();
+        if (!reentered)
+            RequestTrace.currentPhase("db lock");
+        boolean locked = lock.tryLock();
+        if (!locked) {
+            Object event = FlightEvents.SINK.beginLockWait();
+            locked = lock.tryLock(time, unit);
+            if (event != null)
+                FlightEvents.SINK.endLockWait(event, NAME);
+        }
+        if (!reentered)
+            RequestTrace.currentPhase(locked ? "database" : "execute");
+        return locked;
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+        if (!lock.isHeldByCurrentThread())
+            RequestTrace.currentPhase("execute");
+    }
+
+    @Override
+    public Condition newCondition() {
+        return lock.newCondition();
+    }
+}
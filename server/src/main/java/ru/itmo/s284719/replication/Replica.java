@@ -0,0 +1,261 @@
+package ru.itmo.s284719.replication;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.network.ObjectSocketChannel;
+import ru.itmo.s284719.network.cluster.ReplicationBatch;
+import ru.itmo.s284719.network.cluster.ReplicationEntry;
+import ru.itmo.s284719.network.commands.Replicate;
+import ru.itmo.s284719.network.commands.UserCommand;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The replica's side of the replication: it asks the primary server for mutations
+ * after its LSN by the usual client's protocol and applies them to the collection.
+ * After the start, the reconnection after the long break or the primary's restart
+ * the primary sends the snapshot by pages, after that only the mutations.
+ * The user for the replication must be the primary's admin.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Replica implements Closeable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(Replica.class);
+    /**
+     * The time between requests, when the replica has all mutations, in milliseconds.
+     */
+    private static final long POLL_DELAY = Long.getLong("replication.pollDelay", 200);
+    /**
+     * The time before the reconnection in milliseconds.
+     */
+    private static final long RECONNECT_DELAY = 5000;
+
+    /**
+     * The subscriber of the primary's mutations.
+     */
+    public interface Subscriber {
+        /**
+         * Replace the collection with the primary's snapshot.
+         *
+         * @param snapshot the primary's collection.
+         */
+        void snapshot(List<Pair<SpaceMarine, String>> snapshot) throws SQLException, ClassNotFoundException;
+
+        /**
+         * Apply the primary's mutation.
+         *
+         * @param entry the mutation.
+         */
+        void apply(ReplicationEntry entry) throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * The primary's address.
+     */
+    private final InetSocketAddress primary;
+    /**
+     * The login of the user for the replication.
+     */
+    private final String login;
+    /**
+     * The password of the user for the replication.
+     */
+    private final String password;
+    /**
+     * The replica's name for the primary.
+     */
+    private String name;
+    /**
+     * The subscriber of mutations.
+     */
+    private Subscriber subscriber;
+    /**
+     * The replicating thread.
+     */
+    private Thread thread;
+    /**
+     * The field with information about closing.
+     */
+    private volatile boolean closed = false;
+    /**
+     * The ID of the primary's log or null before the first snapshot.
+     */
+    private volatile String logId = null;
+    /**
+     * The LSN of the applied mutations.
+     */
+    private volatile long lsn = 0;
+    /**
+     * The last LSN of the primary's log by its last answer.
+     */
+    private volatile long primaryLsn = 0;
+    /**
+     * The time of the last answer, which had all mutations of the primary, in milliseconds.
+     */
+    private volatile long caughtUpTime = 0;
+    /**
+     * The field with information about the connection.
+     */
+    private volatile boolean connected = false;
+    /**
+     * The loaded pages of the snapshot or null, if the replica doesn't load the snapshot.
+     */
+    private List<Pair<SpaceMarine, String>> snapshot = null;
+    /**
+     * The ID of the last element of the loaded pages or {@link Replicate#NO_SNAPSHOT}.
+     */
+    private int snapshotAfterId = Replicate.NO_SNAPSHOT;
+
+    /**
+     * Constructor with the primary and the user's data.
+     *
+     * @param primary the primary's address.
+     * @param login the login of the user, which is registered on the primary.
+     * @param password the user's password.
+     */
+    public Replica(InetSocketAddress primary, String login, String password) {
+        this.primary = primary;
+        this.login = login;
+        this.password = password;
+    }
+
+    /**
+     * Start the replication in the separate thread.
+     *
+     * @param name the replica's name for the primary.
+     * @param subscriber the subscriber of mutations.
+     */
+    public void start(String name, Subscriber subscriber) {
+        this.name = name;
+        this.subscriber = subscriber;
+        thread = new Thread(this::replicate, "replication");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ask and apply mutations, while the replica isn't closed.
+     */
+    private void replicate() {
+        while (!closed) {
+            try (SocketChannel channel = SocketChannel.open(primary)) {
+                channel.configureBlocking(false);
+                connected = true;
+                // logging.
+                logger.info("Replication from the primary " + primary + " is started from LSN " + lsn + '.');
+                while (!closed) {
+                    ObjectSocketChannel.sendObject(channel,
+                            new UserCommand(new Replicate(name, logId, lsn, snapshotAfterId), login, password));
+                    Object answer = ObjectSocketChannel.getObject(channel);
+                    if (!(answer instanceof ReplicationBatch))
+                        throw new IOException("The primary refused the replication: " + answer + '.');
+                    ReplicationBatch batch = (ReplicationBatch) answer;
+                    apply(batch);
+                    // if (the replica has all mutations) than: wait for new mutations.
+                    if (snapshot == null && batch.lsn == batch.primaryLsn) {
+                        caughtUpTime = System.currentTimeMillis();
+                        Thread.sleep(POLL_DELAY);
+                    }
+                }
+            } catch (IOException | ClassNotFoundException | SQLException | RuntimeException e) {
+                connected = false;
+                if (closed)
+                    return;
+                // logging.
+                logger.error("Replication from the primary " + primary + " is failed, reconnection after " +
+                        RECONNECT_DELAY + " ms.", e);
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException interruptedE) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Apply the primary's batch and remember its LSN.
+     * Pages of the snapshot are collected, the whole snapshot is applied after the last page.
+     *
+     * @param batch the primary's batch.
+     */
+    private void apply(ReplicationBatch batch) throws SQLException, ClassNotFoundException {
+        if (batch.snapshot != null) {
+            // if (the primary starts the snapshot again) than: the loaded pages are forgotten.
+            if (batch.snapshotAfterId == 0)
+                snapshot = new ArrayList<>();
+            snapshot.addAll(batch.snapshot);
+            logId = batch.logId;
+            lsn = batch.lsn;
+            primaryLsn = batch.primaryLsn;
+            if (!batch.snapshotComplete) {
+                snapshotAfterId = batch.snapshot.get(batch.snapshot.size() - 1).first.getId();
+                return;
+            }
+            subscriber.snapshot(snapshot);
+            // logging.
+            logger.info("Snapshot of the primary with LSN " + batch.lsn + " and length " +
+                    snapshot.size() + " is applied.");
+            snapshot = null;
+            snapshotAfterId = Replicate.NO_SNAPSHOT;
+        }
+        for (ReplicationEntry entry : batch.entries)
+            subscriber.apply(entry);
+        logId = batch.logId;
+        lsn = batch.lsn;
+        primaryLsn = batch.primaryLsn;
+    }
+
+    public InetSocketAddress getPrimary() {
+        return primary;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    public long getPrimaryLsn() {
+        return primaryLsn;
+    }
+
+    /**
+     * @return the count of the primary's mutations, which aren't applied.
+     */
+    public long getLagEntries() {
+        return Math.max(0, primaryLsn - lsn);
+    }
+
+    /**
+     * @return the time since the replica had all mutations of the primary in milliseconds
+     * or -1, if it has never had them.
+     */
+    public long getLagMillis() {
+        long time = caughtUpTime;
+        return time == 0 ? -1 : System.currentTimeMillis() - time;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (thread != null)
+            thread.interrupt();
+    }
+}
@@ -0,0 +1,180 @@
+package ru.itmo.s284719.replication;
+
+import ru.itmo.s284719.network.cluster.ReplicationBatch;
+import ru.itmo.s284719.network.cluster.ReplicationEntry;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.util.*;
+
+/**
+ * The ordered log of the collection's mutations for replicas in the memory.
+ * Only the last mutations are kept (system property "replication.backlog"):
+ * the replica, which is too far behind, gets the snapshot of the collection.
+ * The caller appends mutations in the same order, as they're applied to the collection
+ * (after applying), so the snapshot, which is read after taking the last LSN,
+ * becomes consistent after applying mutations after that LSN.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ReplicationLog {
+    /**
+     * The default count of kept mutations.
+     */
+    public static final int DEFAULT_BACKLOG = Integer.getInteger("replication.backlog", 10000);
+
+    /**
+     * The unique ID of this log (the log isn't saved, so LSNs start again after restart).
+     */
+    private final String logId = UUID.randomUUID().toString();
+    /**
+     * The count of kept mutations.
+     */
+    private final int backlog;
+    /**
+     * The kept mutations in the order of LSNs.
+     */
+    private final ArrayDeque<ReplicationEntry> entries = new ArrayDeque<>();
+    /**
+     * The LSN of the collection's state before the first kept mutation.
+     */
+    private long baseLsn = 0;
+    /**
+     * The LSN of the last mutation.
+     */
+    private long lastLsn = 0;
+    /**
+     * The replicas' states by their names.
+     */
+    private final Map<String, ReplicaState> replicas = new TreeMap<>();
+
+    /**
+     * The state of the replica from its last request.
+     */
+    public static class ReplicaState {
+        /**
+         * The LSN of the replica's collection.
+         */
+        public final long lsn;
+        /**
+         * The time of the replica's last request in milliseconds.
+         */
+        public final long time;
+
+        ReplicaState(long lsn, long time) {
+            this.lsn = lsn;
+            this.time = time;
+        }
+    }
+
+    public ReplicationLog() {
+        this(DEFAULT_BACKLOG);
+    }
+
+    /**
+     * @param backlog the count of kept mutations.
+     */
+    public ReplicationLog(int backlog) {
+        if (backlog <= 0)
+            throw new IllegalArgumentException("The backlog must be greater than 0.");
+        this.backlog = backlog;
+    }
+
+    /**
+     * Append adding of the element.
+     *
+     * @param pair the added element.
+     */
+    public synchronized void logAdd(Pair<SpaceMarine, String> pair) {
+        append(pair.first.getId(), pair);
+    }
+
+    /**
+     * Append removing of the element.
+     *
+     * @param id the removed element's ID.
+     */
+    public synchronized void logRemove(int id) {
+        append(id, null);
+    }
+
+    /**
+     * Forget kept mutations after the collection's change, which isn't in the log (the reloading):
+     * all replicas get the snapshot.
+     */
+    public synchronized void reset() {
+        entries.clear();
+        baseLsn = ++lastLsn;
+    }
+
+    /**
+     * Get mutations after the replica's LSN.
+     *
+     * @param replicaName the replica's name.
+     * @param logId the ID of the replica's log or null.
+     * @param lsn the LSN of the replica's collection.
+     * @param limit the maximal count of mutations.
+     * @return the batch or null, if the replica needs the snapshot.
+     */
+    public synchronized ReplicationBatch entriesAfter(String replicaName, String logId, long lsn, int limit) {
+        replicas.put(replicaName, new ReplicaState(lsn, System.currentTimeMillis()));
+        // if (the replica has other log, is too far behind or is ahead) than: the snapshot is needed.
+        if (!hasEntriesAfter(logId, lsn))
+            return null;
+        List<ReplicationEntry> list = new ArrayList<>((int) Math.min(limit, lastLsn - lsn));
+        for (ReplicationEntry entry : entries) {
+            if (list.size() == limit)
+                break;
+            if (entry.lsn > lsn)
+                list.add(entry);
+        }
+        long batchLsn = list.isEmpty() ? lsn : list.get(list.size() - 1).lsn;
+        return new ReplicationBatch(this.logId, batchLsn, lastLsn, list);
+    }
+
+    /**
+     * @param logId the ID of the replica's log or null.
+     * @param lsn the LSN of the replica's collection or the replica's snapshot.
+     * @return true, if the log keeps all mutations after the LSN.
+     */
+    public synchronized boolean hasEntriesAfter(String logId, long lsn) {
+        return this.logId.equals(logId) && lsn >= baseLsn && lsn <= lastLsn;
+    }
+
+    /**
+     * Create the batch with the snapshot's page. The snapshot's LSN is taken before reading
+     * the first page, so mutations after that LSN make the snapshot consistent.
+     *
+     * @param lsn the snapshot's LSN.
+     * @param afterId the ID before the first element of the page.
+     * @param page the elements of the page in the order of IDs.
+     * @param complete true for the last page.
+     * @return the batch.
+     */
+    public synchronized ReplicationBatch snapshotPage(long lsn, int afterId, List<Pair<SpaceMarine, String>> page,
+                                                     boolean complete) {
+        return new ReplicationBatch(logId, lsn, lastLsn, page, afterId, complete, Collections.emptyList());
+    }
+
+    public String getLogId() {
+        return logId;
+    }
+
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * @return the replicas' states by their names.
+     */
+    public synchronized Map<String, ReplicaState> getReplicas() {
+        return new TreeMap<>(replicas);
+    }
+
+    private void append(int id, Pair<SpaceMarine, String> pair) {
+        entries.addLast(new ReplicationEntry(++lastLsn, id, pair));
+        if (entries.size() > backlog)
+            baseLsn = entries.removeFirst().lsn;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.itmo.s284719.server;
+
+/**
+ * Interface for commands of the server's administrator, which aren't sent by clients.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface AdminCommands {
+    @ru.itmo.s284719.network.Command(name = "copy_from", numbArgs = 1, args = "file_name",
+            desc = "загрузить элементы из CSV-файла в базу данных одной командой COPY " +
+            "и добавить их в коллекцию")
+    public void copyFrom(String[] args);
+
+    @ru.itmo.s284719.network.Command(name = "copy_to", numbArgs = 1, args = "file_name",
+            desc = "выгрузить элементы из базы данных в CSV-файл одной командой COPY")
+    public void copyTo(String[] args);
+
+    @ru.itmo.s284719.network.Command(name = "replication",
+            desc = "вывести состояние репликации: номер последнего изменения, реплики и их отставание")
+    public void replication(String[] args);
+
+    @ru.itmo.s284719.network.Command(name = "stats", args = "[reset]",
+            desc = "вывести метрики сервера: задержки команд клиентов (p50, p99, p99.9), ошибки, " +
+            "выполняемые запросы, вызовы хранилища и размер коллекции; reset - сбросить метрики")
+    public void stats(String[] args);
+
+    @ru.itmo.s284719.network.Command(name = "memory", args = "[sample_size [target_size]]",
+            desc = "оценить память коллекции по выборке элементов: байты на элемент по частям, " +
+            "доли повторяющихся строк и орденов, объём кучи для target_size элементов")
+    public void memory(String[] args);
+
+    @ru.itmo.s284719.network.Command(name = "connections", args = "[close id | close_idle seconds]",
+            desc = "вывести подключения клиентов по убыванию нагрузки: байты, запросы, задержки, " +
+            "очередь ответов, простой и пользователь; close - закрыть подключение, " +
+            "close_idle - закрыть подключения, простаивающие дольше seconds секунд")
+    public void connections(String[] args);
+}
@@ -2,10 +2,21 @@ package ru.itmo.s284719.server;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import ru.itmo.s284719.collection.HybridMarineCollection;
+import ru.itmo.s284719.collection.InMemoryMarineCollection;
+import ru.itmo.s284719.collection.MarineCollection;
 import ru.itmo.s284719.database.DatabaseHandler;
+import ru.itmo.s284719.database.InMemoryStorage;
+import ru.itmo.s284719.database.Storage;
 import ru.itmo.s284719.database.User;
+import ru.itmo.s284719.journal.Journal;
+import ru.itmo.s284719.metrics.MeteredStorage;
+import ru.itmo.s284719.metrics.MetricsRegistry;
+import ru.itmo.s284719.replication.Replica;
+import ru.itmo.s284719.store.LogStructuredStorage;
 import ru.itmo.s284719.network.Converters;
 import ru.itmo.s284719.network.WaitingOutput;
+import ru.itmo.s284719.network.cluster.ShardIds;
 import ru.itmo.s284719.network.parser.Pair;
 import ru.itmo.s284719.network.parser.Parser;
 import ru.itmo.s284719.network.space.SpaceMarine;
@@ -13,9 +24,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
 
 /**
@@ -33,6 +50,26 @@ public class Server {
      * The default server's port.
      */
     public static final int DEFAULT_PORT = 8000;
+    /**
+     * The count of cached elements in the hybrid mode (system property "server.cacheSize"):
+     * 0 keeps the whole collection in the memory.
+     */
+    private static final int CACHE_SIZE = Integer.getInteger("server.cacheSize", 0);
+    /**
+     * The storage (system property "server.storage"): "jdbc" for PostgreSQL,
+     * "file" for the local log-structured file (system property "server.storageDirectory")
+     * or "memory" for the storage without durability (for load tests and profiling).
+     */
+    private static final String STORAGE = System.getProperty("server.storage", "jdbc").toLowerCase();
+    /**
+     * Known values of the system property "server.storage".
+     */
+    private static final List<String> STORAGES = Arrays.asList("jdbc", "file", "memory");
+    /**
+     * The address of the primary server ("host:port") for the read-only replica
+     * (system property "replication.primary") or null for the primary server.
+     */
+    private static final String PRIMARY = System.getProperty("replication.primary");
     /**
      * The GSON's parser for format JSON.
      */
@@ -63,6 +100,14 @@ public class Server {
      */
     public static void main(String[] args) throws ClassNotFoundException, NoSuchAlgorithmException, IOException {
 
+        // if (the storage is unknown) than: print exception and exit (the typo mustn't lose data in the memory).
+        if (!STORAGES.contains(STORAGE)) {
+            // logging.
+            logger.fatal("Unknown storage: \"" + STORAGE + "\".");
+            err.println("Unknown storage \"" + STORAGE + "\", the storage is one of: " + String.join(", ", STORAGES) + '.');
+            return;
+        }
+
         // declaration server's PORT.
         int port;
 
@@ -118,7 +163,29 @@ public class Server {
         User admin = null;
         // declare server's collection (PriorityQueue<SpaceMarine>).
         PriorityBlockingQueue<Pair<SpaceMarine, String>> queuePair = null;
-        DatabaseHandler dbHandler = null;
+        MarineCollection collection = null;
+        Storage storage = null;
+        Replica replica = null;
+        InetSocketAddress primary = null;
+        // the registry of metrics for the console's command "stats" and JMX.
+        MetricsRegistry metrics = new MetricsRegistry();
+        if (PRIMARY != null) {
+            try {
+                String[] address = PRIMARY.split(":");
+                if (address.length != 2) throw new IllegalArgumentException();
+                primary = new InetSocketAddress(address[0], Integer.parseInt(address[1]));
+            } catch (IllegalArgumentException e) {
+                // logging.
+                logger.fatal("Incorrect address of the primary server: \"" + PRIMARY + "\".");
+                err.println("Incorrect address of the primary server, the format: host:port.");
+                return;
+            }
+        }
+        // the local journal for fast restart of PostgreSQL's storage (the hybrid mode reads the database,
+        // the replica gets the collection from the primary).
+        boolean journaled = CACHE_SIZE <= 0 && STORAGE.equals("jdbc") && PRIMARY == null;
+        Journal journal = new Journal(Paths.get(Journal.DEFAULT_DIRECTORY));
+        Collection<Pair<SpaceMarine, String>> recovered = journaled ? journal.recover() : null;
 
         // cycle, while the admin's data incorrect, database is disconnected or driver isn't exists.
         while (admin == null) {
@@ -179,57 +246,78 @@ public class Server {
                 // logging.
                 logger.info("Correct password's format.");
 
-                dbHandler = new DatabaseHandler(adminLogin, adminPassword);
+                if (!STORAGE.equals("jdbc")) {
+                    if (storage == null)
+                        storage = openLocalStorage();
+                    // register the admin or check the admin's password.
+                    User user = new User(adminLogin, adminPassword);
+                    if (storage.isLoginFree(adminLogin))
+                        storage.registerUser(user);
+                    else if (!storage.isRegisteredUser(user))
+                        throw new SQLDataException();
+                    out.println("Hello, " + adminLogin + '.');
+                } else {
+                    DatabaseHandler dbHandler = new DatabaseHandler(adminLogin, adminPassword);
 
-                try {
-                    dbHandler.dbConnection = dbHandler.getDbConnection();
-                } catch (SQLException e) {
-                    // logging.
-                    logger.error("PostgresQL database's connection doesn't exist.", e);
-                    err.println("PostgresQL database's connection does not exist.");
-                }
-
-                while (dbHandler.dbConnection == null) {
-                    // logging.
-                    logger.warn("Try to connection to the database's server.");
-                    WaitingOutput.wait("Connect to the database's server");
                     try {
-                        dbHandler.getDbConnection();
+                        dbHandler.dbConnection = dbHandler.getDbConnection();
                     } catch (SQLException e) {
                         // logging.
-                        logger.error("Connection is incorrect.", e);
+                        logger.error("PostgresQL database's connection doesn't exist.", e);
+                        err.println("PostgresQL database's connection does not exist.");
+                    }
+
+                    while (dbHandler.dbConnection == null) {
+                        // logging.
+                        logger.warn("Try to connection to the database's server.");
+                        WaitingOutput.wait("Connect to the database's server");
+                        try {
+                            dbHandler.getDbConnection();
+                        } catch (SQLException e) {
+                            // logging.
+                            logger.error("Connection is incorrect.", e);
+                        }
                     }
+
+                    // logger.
+                    logger.info("Admin: \"" + adminLogin + "\" connect to the database.");
+                    out.println("Database connection established.");
+                    out.println("Hello, " + adminLogin + '.');
+                    storage = dbHandler;
                 }
 
-                // logger.
-                logger.info("Admin: \"" + adminLogin + "\" connect to the database.");
-                out.println("Database connection established.");
-                out.println("Hello, " + adminLogin + '.');
-
-                // parse Database's data to the collection.
-                try {
-                    queuePair = dbHandler.getPriorityBlockingQueuePair();
-                } catch (ClassNotFoundException e) {
-                    err.println("JDBC PostgresQL driver is not found.");
-                    err.println("Adding org.postgresql:postgresql:42.2.16 library to the project is fatal.");
-                    // logging.
-                    logger.error("JDBC PostgresQL driver is not found.", e);
-                } catch (SQLException e) {
-                    //err.println("SQLException: " + e.getMessage());
+                // record timings of the storage's calls.
+                if (!(storage instanceof MeteredStorage))
+                    storage = new MeteredStorage(storage, metrics);
+
+                // if (the server is the replica) than: the collection is filled by the primary's snapshot,
+                // the admin's data is used for the replication.
+                if (primary != null) {
+                    replica = new Replica(primary, adminLogin, adminPassword);
+                    collection = new InMemoryMarineCollection(new PriorityBlockingQueue<>());
                     // logging.
-                    logger.error("Getting collection from the database is incorrect.", e);
+                    logger.info("The server is the read-only replica of the primary server " + PRIMARY + '.');
+                    out.println("Replica of the primary server: " + PRIMARY + '.');
                 }
 
-                while (queuePair == null) {
-                    // logging.
-                    logger.warn("Try to getting the collection from the database again.");
-                    WaitingOutput.wait("Try getting the database's data");
+                // parse Database's data to the collection (the hybrid mode reads only summaries).
+                while (collection == null) {
                     try {
-                        queuePair = dbHandler.getPriorityBlockingQueuePair();
+                        if (CACHE_SIZE > 0) {
+                            collection = new HybridMarineCollection(storage, CACHE_SIZE);
+                            // logging.
+                            logger.info("Hybrid collection with the cache of " + CACHE_SIZE + " elements is used.");
+                        } else {
+                            queuePair = loadCollection(storage, recovered);
+                            collection = new InMemoryMarineCollection(queuePair);
+                        }
                     } catch (SQLException e) {
                         //err.println("SQLException: " + e.getMessage());
                         // logging.
                         logger.error("Getting collection from the database is incorrect.", e);
+                        // logging.
+                        logger.warn("Try to getting the collection from the database again.");
+                        WaitingOutput.wait("Try getting the database's data");
                     }
                 }
 
@@ -249,7 +337,56 @@ public class Server {
             }
         }
 
+        if (ShardIds.NODES > 1) {
+            // logging.
+            logger.info("The server is the node " + ShardIds.NODE + " of the cluster with " + ShardIds.NODES + " nodes.");
+            out.println("Cluster's node: " + ShardIds.NODE + " of " + ShardIds.NODES + ".");
+        }
+
+        if (journaled) {
+            // write the base snapshot of the loaded collection and start periodic snapshots.
+            journal.snapshot(queuePair);
+            journal.startPeriodicSnapshots(queuePair, Journal.DEFAULT_SNAPSHOT_PERIOD);
+        }
+
         // create ru.itmo.s284719.server.
-        new ServerConsole(port, queuePair, dbHandler, admin);
+        new ServerConsole(port, collection, storage, admin, journal, replica, metrics);
+    }
+
+    /**
+     * Open the storage without PostgreSQL.
+     *
+     * @return the local storage.
+     */
+    private static Storage openLocalStorage() throws IOException {
+        if (STORAGE.equals("file")) {
+            String directory = System.getProperty("server.storageDirectory", LogStructuredStorage.DEFAULT_DIRECTORY);
+            // logging.
+            logger.info("The local file's storage in the directory \"" + directory + "\" is used.");
+            return new LogStructuredStorage(Paths.get(directory));
+        }
+        // logging.
+        logger.warn("The memory's storage is used: all data is lost after the exit.");
+        return new InMemoryStorage();
+    }
+
+    /**
+     * Load the collection: if the journal is recovered,
+     * than reconcile that with the database's changed rows, else read the whole table.
+     *
+     * @param storage the storage.
+     * @param recovered the collection recovered from the journal or null.
+     * @return the server's collection.
+     */
+    private static PriorityBlockingQueue<Pair<SpaceMarine, String>> loadCollection(
+            Storage storage, Collection<Pair<SpaceMarine, String>> recovered)
+            throws SQLException, ClassNotFoundException {
+        if (recovered == null)
+            return storage.getPriorityBlockingQueuePair();
+        PriorityBlockingQueue<Pair<SpaceMarine, String>> queue = new PriorityBlockingQueue<>(recovered);
+        int changes = storage.reconcile(queue);
+        // logging.
+        logger.info("Collection from the journal is reconciled with the database: " + changes + " changes.");
+        return queue;
     }
 }
\ No newline at end of file
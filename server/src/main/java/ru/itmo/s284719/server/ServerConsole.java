@@ -2,36 +2,66 @@ package ru.itmo.s284719.server;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
+import ru.itmo.s284719.collection.HybridMarineCollection;
+import ru.itmo.s284719.collection.MarineCollection;
+import ru.itmo.s284719.database.ChangeListener;
 import ru.itmo.s284719.database.DatabaseHandler;
+import ru.itmo.s284719.database.RowChange;
+import ru.itmo.s284719.database.Storage;
 import ru.itmo.s284719.database.User;
+import ru.itmo.s284719.journal.BinarySnapshot;
+import ru.itmo.s284719.journal.Journal;
+import ru.itmo.s284719.metrics.ConnectionStats;
+import ru.itmo.s284719.metrics.MemoryFootprint;
+import ru.itmo.s284719.metrics.MeteredStorage;
+import ru.itmo.s284719.metrics.MetricsRegistry;
+import ru.itmo.s284719.metrics.OperationMetrics;
+import ru.itmo.s284719.metrics.RequestTrace;
+import ru.itmo.s284719.replication.Replica;
+import ru.itmo.s284719.replication.ReplicationLog;
 import ru.itmo.s284719.network.*;
+import ru.itmo.s284719.network.cluster.ReplicationBatch;
+import ru.itmo.s284719.network.cluster.ReplicationEntry;
+import ru.itmo.s284719.network.cluster.ShardIds;
+import ru.itmo.s284719.network.cluster.ShardSummary;
 import ru.itmo.s284719.network.commands.*;
 import ru.itmo.s284719.network.commands.Command;
 import ru.itmo.s284719.network.commands.UserCommand;
+import ru.itmo.s284719.network.jfr.FlightEvents;
 import ru.itmo.s284719.network.parser.Pair;
 import ru.itmo.s284719.network.space.MeleeWeapon;
 import ru.itmo.s284719.network.space.SpaceMarine;
 
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.RecursiveAction;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -42,7 +72,7 @@ import org.apache.logging.log4j.LogManager;
  * @version 0.5
  * @author Danhout
  */
-public class ServerConsole extends SimpleCMD {
+public class ServerConsole extends SimpleCMD implements AdminCommands {
     /**
      * Log4j 2 logger.
      */
@@ -50,7 +80,7 @@ public class ServerConsole extends SimpleCMD {
     /**
      * The queue for processing space marines and saving they.
      */
-    private final Queue<Pair<SpaceMarine, String>> queuePair;
+    private final MarineCollection queuePair;
     /**
      * The time of creation the collection in milliseconds.
      */
@@ -59,6 +89,10 @@ public class ServerConsole extends SimpleCMD {
      * The universal parser from GSON for format JSON.
      */
     private final Gson gson = Converters.registerZoneId(new GsonBuilder()).setPrettyPrinting().create();
+    /**
+     * The type of the collection's element for GSON.
+     */
+    private static final Type PAIR_TYPE = new TypeToken<Pair<SpaceMarine, String>>(){}.getType();
     /**
      * The computer's local IP.
      */
@@ -81,9 +115,9 @@ public class ServerConsole extends SimpleCMD {
      */
     private Selector clientSelector;
     /**
-     * The list with client's channels.
+     * Client's channels with their statistics.
      */
-    private List<SocketChannel> listChannels = new LinkedList<>();
+    private final Map<SocketChannel, ConnectionStats> connections = new ConcurrentHashMap<>();
     /**
      * The thread for processing connections.
      */
@@ -93,9 +127,9 @@ public class ServerConsole extends SimpleCMD {
      */
     private boolean wasWorking = false;
     /**
-     * The database's handler.
+     * The storage of users and space marines.
      */
-    private DatabaseHandler dbHandler = null;
+    private Storage storage = null;
     /**
      * The admin's info with.
      */
@@ -104,22 +138,133 @@ public class ServerConsole extends SimpleCMD {
      * The pool for reading clients' requests;
      */
     private ForkJoinPool executor = new ForkJoinPool(4);
+    /**
+     * The local journal of the collection's mutations.
+     */
+    private final Journal journal;
+    /**
+     * The lock for consistent copies of the collection:
+     * mutations of the database and the collection hold the read lock,
+     * the copy and the reloading from the database hold the write lock.
+     */
+    private final ReadWriteLock collectionLock = new ReentrantReadWriteLock();
+    /**
+     * The thread for saving the collection in the background.
+     */
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "collection-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * The last saving of the collection.
+     */
+    private Future<?> lastSave = null;
+    /**
+     * The listener of changes, which are made by other servers with the same database,
+     * or null (system property "server.notifications" is false).
+     */
+    private ChangeListener changeListener = null;
+    /**
+     * The log of the collection's mutations for replicas.
+     */
+    private final ReplicationLog replicationLog = new ReplicationLog();
+    /**
+     * The replication from the primary server or null, if this server isn't a replica.
+     */
+    private final Replica replica;
+    /**
+     * Names of commands, which change the collection (they're rejected by the replica).
+     */
+    private static final Set<String> MUTATING_COMMANDS = new HashSet<>(Arrays.asList(
+            "add", "update", "remove_by_id", "clear", "remove_head", "add_if_min",
+            "remove_greater", "remove_any_by_height", "copy_from"));
+    /**
+     * The maximal count of mutations in one answer to the replica.
+     */
+    private static final int REPLICATION_BATCH_SIZE = 1000;
+    /**
+     * The maximal count of elements in one page of the snapshot for the replica
+     * (the whole collection could be greater than the maximal object's size of the protocol).
+     */
+    private static final int REPLICATION_SNAPSHOT_PAGE_SIZE = 1000;
+    /**
+     * Handlers of clients' commands by the commands' classes (the table is created once).
+     */
+    private static final Map<Class<? extends Command>, CommandHandler> COMMAND_HANDLERS = commandHandlers();
+    /**
+     * Bytes in one megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+    /**
+     * The registry of the server's metrics.
+     */
+    private final MetricsRegistry metrics;
 
     /**
      * Constructor with all parameters.
      *
      * @param port the server's port.
-     * @param queuePair the queue with SpaceMarines and creator's login for the server.
+     * @param queuePair the collection with SpaceMarines and creator's login for the server.
+     * @param storage the storage of users and space marines.
+     * @param journal the local journal of the collection's mutations.
+     * @param replica the replication from the primary server or null, if this server isn't a replica.
+     * @param metrics the registry of the server's metrics.
      */
-    public ServerConsole(int port, PriorityBlockingQueue<Pair<SpaceMarine, String>> queuePair,
-                         DatabaseHandler dbHandler, User admin) throws NoSuchAlgorithmException, IOException {
+    public ServerConsole(int port, MarineCollection queuePair,
+                         Storage storage, User admin, Journal journal, Replica replica, MetricsRegistry metrics)
+            throws NoSuchAlgorithmException, IOException {
 
         // create ServerConsole with the SpaceMarine's queue and default functions.
         super();
         this.queuePair = queuePair;
         this.creationTime = System.currentTimeMillis();
-        this.dbHandler = dbHandler;
+        this.storage = storage;
         this.admin = admin;
+        this.journal = journal;
+        this.replica = replica;
+        this.metrics = metrics;
+
+        // gauges of the server's state and metrics in JMX (system property "server.jmx").
+        metrics.gauge("collection.size", queuePair::size);
+        metrics.gauge("connections", connections::size);
+        metrics.gauge("replication.lastLsn", replicationLog::getLastLsn);
+        if (Boolean.parseBoolean(System.getProperty("server.jmx", "true")))
+            metrics.registerMBeans();
+
+        // the storage without timings of calls.
+        Storage origin = storage instanceof MeteredStorage ? ((MeteredStorage) storage).getStorage() : storage;
+        // apply changes of other servers with the same database (the replica gets them from the primary).
+        if (replica == null && origin instanceof DatabaseHandler
+                && Boolean.parseBoolean(System.getProperty("server.notifications", "true"))) {
+            changeListener = new ChangeListener((DatabaseHandler) origin, new ChangeListener.Subscriber() {
+                @Override
+                public void changed(RowChange change) throws SQLException, ClassNotFoundException {
+                    applyExternalChange(change);
+                }
+
+                @Override
+                public void reload() throws SQLException, ClassNotFoundException {
+                    reloadCollection();
+                }
+            });
+            changeListener.start();
+        }
+        // apply mutations of the primary server.
+        if (replica != null) {
+            replica.start(InetAddress.getLocalHost().getHostName() + ':' + port, new Replica.Subscriber() {
+                @Override
+                public void snapshot(List<Pair<SpaceMarine, String>> snapshot)
+                        throws SQLException, ClassNotFoundException {
+                    applyReplicatedSnapshot(snapshot);
+                }
+
+                @Override
+                public void apply(ReplicationEntry entry) throws SQLException, ClassNotFoundException {
+                    applyReplicatedEntry(entry);
+                }
+            });
+        }
 
         try {
             // initialization the IP and the port.
@@ -151,14 +296,15 @@ public class ServerConsole extends SimpleCMD {
                     // received server channel and register that to clientSelector for operation read.
                     SocketChannel channel = ((ServerSocketChannel) keysServer.next().channel()).accept();
                     channel.configureBlocking(false).register(clientSelector, SelectionKey.OP_READ);
-                    // add the channel to listChannels with client's channels.
-                    listChannels.add(channel);
+                    // add the channel to connections with client's channels.
+                    connections.put(channel, new ConnectionStats(channel.socket().getInetAddress().getHostAddress() +
+                            ':' + channel.socket().getPort()));
                     // logging.
                     logger.info("Client with " +
                             "IP: " + channel.socket().getInetAddress().getHostAddress() +
                             ", PORT: " + channel.socket().getPort() + " " +
                             "is connected.");
-                    logger.info("Count of clients' connections: " + listChannels.size() + '.');
+                    logger.info("Count of clients' connections: " + connections.size() + '.');
                 } catch (Exception e) {
                     // logging.
                     logger.error("Getting new client's connection is error.", e);
@@ -169,12 +315,15 @@ public class ServerConsole extends SimpleCMD {
             };
             // task for removing connections.
             Runnable removeIncorrectConnectionsTask = () -> {
-                // remove closed client's channels from client's selector and list with channels.
-                Iterator<SocketChannel> channels = listChannels.iterator();
+                // remove closed client's channels from client's selector and connections.
+                Iterator<SocketChannel> channels = connections.keySet().iterator();
                 while (channels.hasNext()) {
                     SocketChannel channel = channels.next();
-                    if (!channel.isConnected()) {
-                        clientSelector.keys().remove(channel.keyFor(clientSelector));
+                    if (!channel.isOpen() || !channel.isConnected()) {
+                        // the key set of the selector isn't modifiable, the cancelled key is removed by the selection.
+                        SelectionKey key = channel.keyFor(clientSelector);
+                        if (key != null)
+                            key.cancel();
                         channels.remove();
                         // logging.
                         logger.info("Client with " +
@@ -199,7 +348,7 @@ public class ServerConsole extends SimpleCMD {
                             setKeys.clear();
                         }
                         // remove incorrect connections.
-                        if (!listChannels.isEmpty())
+                        if (!connections.isEmpty())
                             removeIncorrectConnectionsTask.run();
                     } catch (IOException e) {
                         // logging.
@@ -240,105 +389,250 @@ public class ServerConsole extends SimpleCMD {
         @Override
         protected void compute() {
             // if (the keys is empty), than: exit the method;
-            if (keysRequests == null || keysRequests.estimateSize() == 0)
+            if (keysRequests == null)
+                return;
+            // if (the keys can be split) than: process both parts in parallel.
+            // The task isn't invoked by itself again: its completion would let the selector
+            // select channels, which are still read by the other part, for the second reader.
+            Spliterator<SelectionKey> split = keysRequests.estimateSize() > 1 ? keysRequests.trySplit() : null;
+            if (split != null) {
+                invokeAll(new RequestAction(split), new RequestAction(keysRequests));
                 return;
-            // else if (the keys have only one SelectionKey element), than:
-            else if (keysRequests.estimateSize() == 1) {
-                keysRequests.forEachRemaining(key -> {
-                    // get a SocketChannel from the SelectionKey.
-                    SocketChannel channel = (SocketChannel) key.channel();
-                    // result processing of client's command.
-                    final Object[] result = new Object[1];
-                    // process client's command with the database.
-                    Thread procesingThread = new Thread(() -> {
+            }
+            // else: process keys one by one (the estimated size of the keys isn't exact).
+            keysRequests.forEachRemaining(key -> {
+                // get a SocketChannel from the SelectionKey.
+                SocketChannel channel = (SocketChannel) key.channel();
+                // the connection's statistics.
+                ConnectionStats connection = connections.get(channel);
+                final long start = System.nanoTime();
+                if (connection != null)
+                    connection.queue();
+                // result processing of client's command.
+                final Object[] result = new Object[1];
+                // the trace of the request's phases.
+                final RequestTrace[] trace = new RequestTrace[1];
+                // the request is failed: the answer is the error's message or nothing.
+                final boolean[] failed = new boolean[1];
+                // process client's command with the database.
+                Thread procesingThread = new Thread(() -> {
+                    trace[0] = RequestTrace.start("read");
+                    try {
+                        ClientCallable callable = new ClientCallable(channel, connection);
+                        result[0] = callable.call();
+                        failed[0] = callable.isFailed();
+                        //ObjectSocketChannel.sendObject(channel, new ClientCallable(channel).call());
+                    } catch (EOFException e) {
+                        // the client closed the connection: close the channel, it's removed from connections.
                         try {
-                            result[0] = new ClientCallable(channel).call();
-                            //ObjectSocketChannel.sendObject(channel, new ClientCallable(channel).call());
-                        } catch (Exception e) {
+                            channel.close();
+                        } catch (IOException closeE) {
                             // logging.
-                            logger.error("Processing client's request has a exception.", e);
+                            logger.error("Closing client's channel has a exception.", closeE);
                         }
-                    });
-                    procesingThread.start();
-                    try {
-                        procesingThread.join();
-                    } catch (InterruptedException e) {
+                    } catch (Exception e) {
+                        failed[0] = true;
                         // logging.
-                        logger.fatal("Thread of client command's processing is fail", e);
-                    }
-                    // send the result to client.
-                    new Thread(() -> {
-                        try {
-                            ObjectSocketChannel.sendObject(channel, result[0]);
-                            // logging.
-                            String[] clientConnectionData =
-                                    channel.getRemoteAddress().toString().substring(1).split(":");
-                            String clientIP = clientConnectionData[0];
-                            String clientPORT = clientConnectionData[1];
-                            logger.info("Send server's response to client with IP: " + clientIP +
-                                    ", PORT: " + clientPORT + '.');
-                        } catch (Exception e) {
-                            // logging.
-                            logger.error("Sending has a exception.", e);
+                        logger.error("Processing client's request has a exception.", e);
+                    } finally {
+                        if (trace[0] != null) {
+                            trace[0].phase("send");
+                            trace[0].detach();
                         }
-                    }).start();
+                    }
                 });
-            // else: split the spliterator and invoke updated the object and new object.
-            } else {
-                RequestAction newRequestAction = new RequestAction(keysRequests.trySplit());
-                invokeAll(this, newRequestAction);
-                //newRequestAction.compute();
-                //this.compute();
-            }
+                procesingThread.start();
+                try {
+                    procesingThread.join();
+                } catch (InterruptedException e) {
+                    // logging.
+                    logger.fatal("Thread of client command's processing is fail", e);
+                }
+                // if (the channel is closed) than: the response isn't sent,
+                // the closing by the client isn't an error.
+                if (!channel.isOpen()) {
+                    if (connection != null) {
+                        if (failed[0])
+                            connection.failed();
+                        else
+                            connection.closed();
+                    }
+                    return;
+                }
+                // send the result to client.
+                new Thread(() -> {
+                    try {
+                        int bytes = ObjectSocketChannel.sendObject(channel, result[0]);
+                        if (connection != null) {
+                            if (failed[0])
+                                connection.failed(bytes);
+                            else
+                                connection.served(bytes, start);
+                        }
+                        // logging.
+                        String[] clientConnectionData =
+                                channel.getRemoteAddress().toString().substring(1).split(":");
+                        String clientIP = clientConnectionData[0];
+                        String clientPORT = clientConnectionData[1];
+                        logger.info("Send server's response to client with IP: " + clientIP +
+                                ", PORT: " + clientPORT + '.');
+                    } catch (Exception e) {
+                        if (connection != null)
+                            connection.failed();
+                        // logging.
+                        logger.error("Sending has a exception.", e);
+                    } finally {
+                        // write the slow request to the log.
+                        if (trace[0] != null)
+                            trace[0].finish();
+                    }
+                }).start();
+            });
         }
     }
 
-    class ClientCallable implements Callable {
+    /**
+     * The handler of the client's command.
+     */
+    @FunctionalInterface
+    interface CommandHandler {
+        /**
+         * @param callable the client's request with the command.
+         * @return the answer to the client.
+         */
+        Object handle(ClientCallable callable) throws SQLException, ClassNotFoundException;
+    }
+
+    /**
+     * Create the table of handlers of clients' commands.
+     *
+     * @return the unmodifiable map of handlers by the commands' classes.
+     */
+    static Map<Class<? extends Command>, CommandHandler> commandHandlers() {
+        Map<Class<? extends Command>, CommandHandler> handlers = new HashMap<>();
+        handlers.put(Add.class, ClientCallable::add);
+        handlers.put(AddIfMin.class, ClientCallable::addIfMin);
+        handlers.put(AverageOfHeight.class, ClientCallable::averageOfHeight);
+        handlers.put(Clear.class, ClientCallable::clear);
+        handlers.put(CountGreaterThanMeleeWeapon.class, ClientCallable::countGreaterThanMeleeWeapon);
+        handlers.put(Info.class, ClientCallable::info);
+        handlers.put(RemoveAnyByHeight.class, ClientCallable::removeAnyByHeight);
+        handlers.put(RemoveById.class, ClientCallable::removeById);
+        handlers.put(RemoveGreater.class, ClientCallable::removeGreater);
+        handlers.put(RemoveHead.class, ClientCallable::removeHead);
+        handlers.put(Summary.class, ClientCallable::summary);
+        handlers.put(Replicate.class, ClientCallable::replicate);
+        handlers.put(Show.class, ClientCallable::show);
+        handlers.put(Update.class, ClientCallable::update);
+        return Collections.unmodifiableMap(handlers);
+    }
+
+    class ClientCallable implements Callable<Object> {
         private UserCommand userCmd;
         private User user;
-
-        public ClientCallable(SocketChannel channel) throws Exception {
-            this.userCmd = (UserCommand) ObjectSocketChannel.getObject(channel);
+        private OperationMetrics commandMetrics;
+        private ConnectionStats connection;
+        /**
+         * The command is failed: the answer is the error's message.
+         */
+        private boolean failed;
+
+        public ClientCallable(SocketChannel channel, ConnectionStats connection) throws Exception {
+            this.connection = connection;
+            this.userCmd = (UserCommand) ObjectSocketChannel.getObject(channel,
+                    connection == null ? null : connection::read);
+            RequestTrace trace = RequestTrace.current();
+            if (trace != null) {
+                trace.setUser(userCmd.getLogin());
+                trace.setCommand(userCmd.getCommand() == null ? "auth" : ((Command) userCmd.getCommand()).getName());
+                trace.phase("hash");
+            }
             if (userCmd.getPassword() != null)
                 this.user = new User(userCmd.getLogin(), userCmd.getPassword());
+            RequestTrace.currentPhase("dispatch");
             // logging.
             logger.warn("Get data of user: " + userCmd.getLogin() + '.');
         }
 
+        /**
+         * Process the command and record its latency to the command's metrics.
+         *
+         * @return the answer to the client.
+         */
         @Override
-        public Object call() throws IllegalAccessException, SQLException, ClassNotFoundException {
+        public Object call() throws SQLException, ClassNotFoundException {
+            String name = userCmd.getCommand() == null ? "auth" : ((Command) userCmd.getCommand()).getName();
+            commandMetrics = metrics.command(name);
+            Object event = FlightEvents.SINK.beginCommand();
+            long start = commandMetrics.start();
+            boolean thrown = true;
+            try {
+                Object answer = process();
+                thrown = false;
+                // if (the user is authorized or registered) than: remember the connection's user.
+                if (connection != null && userCmd.getCommand() == null && userCmd.getPassword() != null
+                        && (answer == null || Boolean.TRUE.equals(answer)))
+                    connection.setUser(userCmd.getLogin());
+                return answer;
+            } finally {
+                if (thrown)
+                    commandMetrics.error();
+                commandMetrics.stop(start);
+                if (event != null)
+                    FlightEvents.SINK.endCommand(event, name, userCmd.getLogin(), !thrown && !failed);
+            }
+        }
+
+        /**
+         * @return true, if the command is failed and the answer is the error's message.
+         */
+        boolean isFailed() {
+            return failed;
+        }
+
+        private Object process() throws SQLException, ClassNotFoundException {
             // logging.
             logger.info("Processing data of user: " + userCmd.getLogin() + '.');
             // if (command is empty) than: authorize or register the client.
             if (userCmd.getCommand() == null) {
+                RequestTrace.currentPhase("execute");
                 return checkUserData();
             }
-            // Invoke method with ru.itmo.s284719.client command class's name.
-            try {
-                Command cmd = (Command) userCmd.getCommand();
-                String cmdName = cmd.getClass().getSimpleName();
-                // do to lower case first symbol the command's class.
-                cmdName = Character.toLowerCase(cmdName.charAt(0)) + cmdName.substring(1);
+            // if (the server is the replica and the command changes the collection) than: reject that.
+            if (replica != null && MUTATING_COMMANDS.contains(((Command) userCmd.getCommand()).getName())) {
+                // logging.
+                logger.warn("User: \"" + userCmd.getLogin() + "\" try to change the replica's collection.");
+                return "The server is a read-only replica, the primary server: " + replica.getPrimary() + '.';
+            }
+            // find the handler of the client's command.
+            Command cmd = (Command) userCmd.getCommand();
+            CommandHandler handler = COMMAND_HANDLERS.get(cmd.getClass());
+            // if (the server doesn't know the command (the client is newer)) than: answer the error's message.
+            if (handler == null) {
                 // logging.
-                logger.warn("User: \"" + userCmd.getLogin() + "\" try to invoking command \"" + cmdName + "\".");
-                Method method = ClientCallable.class.getDeclaredMethod(cmdName);
-                // run client's command
-                return method.invoke(this);
-            } catch (InvocationTargetException e) {
+                logger.error("Client's command: \"" + cmd.getClass().getSimpleName() + "\" is not found.");
+                commandMetrics.error();
+                failed = true;
+                return "The command \"" + cmd.getName() + "\" isn't supported by the server.";
+            }
+            // logging.
+            logger.warn("User: \"" + userCmd.getLogin() + "\" try to invoking command \"" + cmd.getName() + "\".");
+            // run client's command
+            RequestTrace.currentPhase("execute");
+            try {
+                return handler.handle(this);
+            } catch (SQLException | ClassNotFoundException | RuntimeException e) {
                 // for logging.
                 logger.error("Client's command have a exception.", e);
-            } catch (NoSuchMethodException e) {
-                // logging.
-                String cmdName = userCmd.getCommand().getClass().getSimpleName();
-                cmdName = Character.toLowerCase(cmdName.charAt(0)) + cmdName.substring(1);
-                logger.error("Client's command :\"" + cmdName + "\" is not found");
+                commandMetrics.error();
+                failed = true;
+                return "The command \"" + cmd.getName() + "\" is failed on the server.";
             }
-            return null;
         }
 
         Boolean checkUserData() throws SQLException, ClassNotFoundException {
             // if (password is empty) than: send Boolean.of(login is free).
-            final boolean loginFree = dbHandler.isLoginFree(userCmd.getLogin());
+            final boolean loginFree = storage.isLoginFree(userCmd.getLogin());
             if (userCmd.getPassword() == null) {
                 // logging.
                 if (loginFree)
@@ -351,11 +645,13 @@ public class ServerConsole extends SimpleCMD {
             else if (loginFree) {
                 // logging.
                 logger.info("Register new user with login: \"" + user.getLogin() + "\".");
-                dbHandler.registerUser(user);
-                return null;
+                if (storage.registerUser(user))
+                    return null;
+                // logging.
+                logger.info("Login: \"" + user.getLogin() + "\" is taken by other registration.");
             }
             // if (full user's data but the login isn't free) than: login user.
-            boolean isRegisteredUser = dbHandler.isRegisteredUser(user);
+            boolean isRegisteredUser = storage.isRegisteredUser(user);
             if (!isRegisteredUser) {
                 // logging.
                 logger.info("Get incorrect password of user: \"" + user.getLogin() + "\".");
@@ -369,8 +665,7 @@ public class ServerConsole extends SimpleCMD {
         // add spaceMarine to queue.
         Object add() throws SQLException, ClassNotFoundException {
             SpaceMarine spaceMarine = ((Add) userCmd.getCommand()).spaceMarine;
-            spaceMarine.setId(dbHandler.addSpaceMarineWithCreator(spaceMarine, user));
-            queuePair.add(new Pair<>(spaceMarine, user.getLogin()));
+            insertToCollection(spaceMarine, user);
             return null;
         }
 
@@ -378,53 +673,37 @@ public class ServerConsole extends SimpleCMD {
         Object addIfMin() throws SQLException, ClassNotFoundException {
             // get minimal spaceMarine from the queue.
             SpaceMarine spaceMarine = ((AddIfMin) userCmd.getCommand()).spaceMarine;
-            Optional<Pair<SpaceMarine, String>> optional = queuePair.stream().min(Pair::compareToFirst);
+            Pair<SpaceMarine, String> min = queuePair.peek();
             // if (queue isn't empty and new spaceMarine less than the old minimal spaceMarine)
-            if (!optional.isPresent() || spaceMarine.compareTo(optional.get().first) < 0) {
+            if (min == null || spaceMarine.compareTo(min.first) < 0) {
                 // than: add new spaceMarine to the ru.itmo.s284719.database and the queue.
-                spaceMarine.setId(dbHandler.addSpaceMarineWithCreator(spaceMarine, user));
-                queuePair.add(new Pair<>(spaceMarine, user.getLogin()));
+                insertToCollection(spaceMarine, user);
             }
             return null;
         }
 
         // send average of height of spaceMarines from the queue to ru.itmo.s284719.client.
         Object averageOfHeight() {
-            String str;
-            if (queuePair.isEmpty())
-                str = "The average value of the height: 0.";
-            else {
-                int result = queuePair.stream().mapToInt(pair -> pair.first.getHeight()).sum();
-                str = "The average value of the height: " + ((double) result) / queuePair.size() + ".";
-            }
-            return str;
+            return "The average value of the height: " + queuePair.averageHeight() + ".";
         }
 
         // clear the queue.
         Object clear() throws SQLException, ClassNotFoundException {
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.second.equals(user.getLogin())) {
-                    dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-                    iter.remove();
-                }
-            }
+            for (Pair<SpaceMarine, String> pair : queuePair.findByCreator(user.getLogin()))
+                deleteFromCollection(pair);
             return null;
         }
 
         // send count spaceMarines from the queue greater than the meleeWeapon.
         Object countGreaterThanMeleeWeapon() {
             MeleeWeapon meleeWeapon = ((CountGreaterThanMeleeWeapon) userCmd.getCommand()).meleeWeapon;
-            long count = queuePair.stream()
-                    .filter(pair -> pair.first.getMeleeWeapon().compareTo(meleeWeapon) > 0)
-                    .count();
+            long count = queuePair.countMeleeWeaponGreaterThan(meleeWeapon);
             return count + " queue's elements have the value \"Melee Weapon\", greater than the given value.";
         }
 
         // send info about the queue to ru.itmo.s284719.client.
         Object info() {
-            return "collectionType: PriorityQueue<SpaceMarine>, " +
+            return "collectionType: " + queuePair.getType() + ", " +
                     "createTime: " + new SimpleDateFormat("hh:mm:ss dd-MM-yyyy").format(creationTime) +
                     ", length: " + queuePair.size() + ".";
         }
@@ -432,64 +711,104 @@ public class ServerConsole extends SimpleCMD {
         // remove any spaceMarine from the queue with height less than the height.
         Object removeAnyByHeight() throws SQLException, ClassNotFoundException {
             int height = ((RemoveAnyByHeight) userCmd.getCommand()).height;
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.second.equals(user.getLogin()) && pair.first.getHeight().equals(height)) {
-                    dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-                    iter.remove();
-                    break;
-                }
-            }
+            Pair<SpaceMarine, String> pair = queuePair.findAnyByHeight(user.getLogin(), height);
+            // the removed element is returned, so the client of the cluster stops asking other nodes.
+            if (pair != null && deleteFromCollection(pair))
+                return pair;
             return null;
         }
 
         // remove spaceMarine by the ID.
         Object removeById() throws SQLException, ClassNotFoundException {
             int id = ((RemoveById) userCmd.getCommand()).id;
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.first.getId() == id) {
-                    if (pair.second.equals(user.getLogin())) {
-                        dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-                        iter.remove();
-                    }
-                    break;
-                }
-            }
+            Pair<SpaceMarine, String> pair = queuePair.findById(id);
+            if (pair != null && pair.second.equals(user.getLogin()))
+                deleteFromCollection(pair);
             return null;
         }
 
         // remove all spaceMarine from the queue greater than the spaceMarine.
-        Object remove_greater() throws SQLException, ClassNotFoundException {
+        Object removeGreater() throws SQLException, ClassNotFoundException {
             SpaceMarine spaceMarine = ((RemoveGreater) userCmd.getCommand()).spaceMarine;
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.second.equals(user.getLogin()) && pair.first.compareTo(spaceMarine) > 0) {
-                    dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-                    iter.remove();
-                }
+            for (Pair<SpaceMarine, String> pair : queuePair.findGreaterThan(spaceMarine)) {
+                if (pair.second.equals(user.getLogin()))
+                    deleteFromCollection(pair);
             }
             return null;
         }
 
         // send and remove spaceMarine from a head of the queue.
         Object removeHead() throws SQLException, ClassNotFoundException {
-            if (queuePair.peek().second.equals(user.getLogin())) {
-                dbHandler.deleteSpaceMarineWithCreator(queuePair.peek().first.getId());
-                return queuePair.poll();
-            }
+            Pair<SpaceMarine, String> pair = queuePair.peek();
+            if (pair != null && pair.second.equals(user.getLogin()) && deleteFromCollection(pair))
+                return pair;
             return null;
         }
 
+        // send the summary of the queue to the client of the cluster.
+        Object summary() throws SQLException, ClassNotFoundException {
+            MeleeWeapon[] meleeWeapons = MeleeWeapon.values();
+            long[] counts = new long[meleeWeapons.length];
+            for (MeleeWeapon meleeWeapon : meleeWeapons)
+                counts[meleeWeapon.ordinal()] = queuePair.countMeleeWeaponGreaterThan(meleeWeapon);
+            return new ShardSummary(queuePair.getType(),
+                    new SimpleDateFormat("hh:mm:ss dd-MM-yyyy").format(creationTime),
+                    queuePair.size(), queuePair.averageHeight(), counts, queuePair.peek());
+        }
+
+        // send mutations after the replica's LSN or the page of the snapshot of the queue to the replica.
+        Object replicate() throws SQLException, ClassNotFoundException {
+            // only the admin's data gives the whole collection with all creators' logins.
+            if (user == null || !user.getLogin().equals(admin.getLogin()) || !storage.isRegisteredUser(user)) {
+                // logging.
+                logger.warn("Replication for the user: \"" + userCmd.getLogin() + "\", who isn't the admin, is rejected.");
+                return "Replication is allowed only for the admin.";
+            }
+            Replicate replicate = (Replicate) userCmd.getCommand();
+            // if (the replica loads the snapshot and the log has mutations after its LSN) than: send the next page.
+            if (replicate.snapshotAfterId != Replicate.NO_SNAPSHOT
+                    && replicationLog.hasEntriesAfter(replicate.logId, replicate.lsn))
+                return snapshotPage(replicate.lsn, replicate.snapshotAfterId);
+            ReplicationBatch batch = replicationLog.entriesAfter(replicate.replicaName,
+                    replicate.logId, replicate.lsn, REPLICATION_BATCH_SIZE);
+            if (batch != null)
+                return batch;
+            // the snapshot's LSN is taken before the first page, so mutations after that make the snapshot consistent.
+            batch = snapshotPage(replicationLog.getLastLsn(), 0);
+            // logging.
+            logger.info("Snapshot with LSN " + batch.lsn + " is started for the replica \"" + replicate.replicaName + "\".");
+            return batch;
+        }
+
+        /**
+         * Read the page of the snapshot. Mutations aren't stopped, only the reloading of the collection,
+         * which resets the replication's log (the replica starts the snapshot again).
+         *
+         * @param lsn the snapshot's LSN.
+         * @param afterId the ID before the first element of the page.
+         * @return the batch with the page.
+         */
+        private ReplicationBatch snapshotPage(long lsn, int afterId) throws SQLException, ClassNotFoundException {
+            List<Pair<SpaceMarine, String>> page;
+            collectionLock.readLock().lock();
+            try {
+                page = queuePair.findPage(afterId, REPLICATION_SNAPSHOT_PAGE_SIZE);
+            } finally {
+                collectionLock.readLock().unlock();
+            }
+            return replicationLog.snapshotPage(lsn, afterId, page, page.size() < REPLICATION_SNAPSHOT_PAGE_SIZE);
+        }
+
         // send the queue in the format JSON to ru.itmo.s284719.client.
-        Object show() {
-            List<Pair<SpaceMarine, String>> list = queuePair.stream()
-                    .sorted(Comparator.comparing(pair -> pair.first.getHeight()))
-                    .collect(Collectors.toList());
-            return gson.toJson(list);
+        Object show() throws SQLException, ClassNotFoundException {
+            StringWriter json = new StringWriter();
+            try {
+                writeJson(json, queuePair.scanByHeight());
+            } catch (IOException e) {
+                // the writer to the string doesn't throw IOException.
+                throw new UncheckedIOException(e);
+            }
+            return json.toString();
         }
 
         // update spaceMarine with same ID.
@@ -497,20 +816,195 @@ public class ServerConsole extends SimpleCMD {
             Update updateValue = (Update) userCmd.getCommand();
             int id = updateValue.id;
             SpaceMarine spaceMarine = updateValue.newSpaceMarine;
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.first.getId() == id) {
-                    if (pair.second.equals(user.getLogin())) {
-                        dbHandler.deleteSpaceMarineWithCreator(id);
-                        iter.remove();
-                        spaceMarine.setId(dbHandler.addSpaceMarineWithCreator(spaceMarine, user));
-                        queuePair.add(new Pair<>(spaceMarine, user.getLogin()));
-                    }
-                    break;
+            Pair<SpaceMarine, String> pair = queuePair.findById(id);
+            if (pair != null && pair.second.equals(user.getLogin()))
+                updateInCollection(pair, spaceMarine, user);
+            return null;
+        }
+    }
+
+    /**
+     * Add the element to the collection and append that to the journal.
+     *
+     * @param pair the element with the space marine and the creator's login.
+     */
+    private void addToCollection(Pair<SpaceMarine, String> pair) {
+        queuePair.add(pair);
+        journal.logAdd(pair);
+        replicationLog.logAdd(pair);
+    }
+
+    /**
+     * Remove the element from the collection and append that to the journal.
+     *
+     * @param pair the element.
+     */
+    private void removeFromCollection(Pair<SpaceMarine, String> pair) {
+        if (queuePair.remove(pair)) {
+            journal.logRemove(pair.first.getId());
+            replicationLog.logRemove(pair.first.getId());
+        }
+    }
+
+    /**
+     * Insert the space marine to the database and add that to the collection.
+     *
+     * @param spaceMarine the space marine.
+     * @param creator the space marine's creator.
+     */
+    private void insertToCollection(SpaceMarine spaceMarine, User creator) throws SQLException, ClassNotFoundException {
+        collectionLock.readLock().lock();
+        try {
+            spaceMarine.setId(storage.addSpaceMarineWithCreator(spaceMarine, creator));
+            addToCollection(new Pair<>(spaceMarine, creator.getLogin()));
+        } finally {
+            collectionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Delete the element from the database and remove that from the collection,
+     * if other request hasn't deleted that before.
+     *
+     * @param pair the element.
+     * @return true, if the element is deleted by this call.
+     */
+    private boolean deleteFromCollection(Pair<SpaceMarine, String> pair) throws SQLException, ClassNotFoundException {
+        collectionLock.readLock().lock();
+        try {
+            if (!storage.deleteSpaceMarineWithCreator(pair.first.getId()))
+                return false;
+            removeFromCollection(pair);
+            return true;
+        } finally {
+            collectionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the element with the new space marine in the database and the collection
+     * (the new space marine gets new ID). The consistent snapshot doesn't see
+     * the collection between removing and adding.
+     *
+     * @param oldPair the element.
+     * @param spaceMarine the new space marine.
+     * @param creator the new space marine's creator.
+     */
+    private void updateInCollection(Pair<SpaceMarine, String> oldPair, SpaceMarine spaceMarine, User creator)
+            throws SQLException, ClassNotFoundException {
+        collectionLock.readLock().lock();
+        try {
+            if (deleteFromCollection(oldPair))
+                insertToCollection(spaceMarine, creator);
+        } finally {
+            collectionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the change of the row, which is made by other server, to the collection.
+     *
+     * @param change the insert or the delete of the row.
+     */
+    private void applyExternalChange(RowChange change) throws SQLException, ClassNotFoundException {
+        // the inserted row is read (it could be deleted after the insert), the deleted row isn't.
+        Pair<SpaceMarine, String> pair = null;
+        if (change.isInserted()) {
+            List<Pair<SpaceMarine, String>> list =
+                    storage.getSpaceMarinePairsByIds(Collections.singleton(change.getId()));
+            pair = list.isEmpty() ? null : list.get(0);
+        }
+        collectionLock.readLock().lock();
+        try {
+            if (queuePair.applyChange(change, pair)) {
+                if (pair == null) {
+                    journal.logRemove(change.getId());
+                    replicationLog.logRemove(change.getId());
+                } else {
+                    journal.logAdd(pair);
+                    replicationLog.logAdd(pair);
                 }
             }
-            return null;
+        } finally {
+            collectionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reload the collection from the database after lost changes of other servers.
+     * Mutations of this server wait, so the database and the collection are compared without them.
+     * The journal doesn't have these changes, but the recovery reconciles the journal with the database.
+     */
+    private void reloadCollection() throws SQLException, ClassNotFoundException {
+        collectionLock.writeLock().lock();
+        try {
+            queuePair.reload(storage);
+            // replicas can't get the reloaded changes from the log.
+            replicationLog.reset();
+        } finally {
+            collectionLock.writeLock().unlock();
+        }
+        // logging.
+        logger.info("Collection is reloaded from the database: " + queuePair.size() + " elements.");
+    }
+
+    /**
+     * Replace the replica's collection with the primary's snapshot.
+     * Replicas of this replica get the snapshot too.
+     *
+     * @param snapshot the primary's collection.
+     */
+    private void applyReplicatedSnapshot(List<Pair<SpaceMarine, String>> snapshot)
+            throws SQLException, ClassNotFoundException {
+        Set<Integer> ids = new HashSet<>();
+        for (Pair<SpaceMarine, String> pair : snapshot)
+            ids.add(pair.first.getId());
+        collectionLock.writeLock().lock();
+        try {
+            queuePair.scan().forEach(pair -> {
+                if (!ids.contains(pair.first.getId()))
+                    queuePair.applyChange(pair.first.getId(), null);
+            });
+            for (Pair<SpaceMarine, String> pair : snapshot)
+                queuePair.applyChange(pair.first.getId(), pair);
+            replicationLog.reset();
+        } finally {
+            collectionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply the primary's mutation to the replica's collection.
+     *
+     * @param entry the mutation.
+     */
+    private void applyReplicatedEntry(ReplicationEntry entry) throws SQLException, ClassNotFoundException {
+        collectionLock.readLock().lock();
+        try {
+            if (queuePair.applyChange(entry.id, entry.pair)) {
+                if (entry.pair == null)
+                    replicationLog.logRemove(entry.id);
+                else
+                    replicationLog.logAdd(entry.pair);
+            }
+        } finally {
+            collectionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Open the scan of the collection, which waits only for replacements in progress.
+     * The in-memory collection is copied consistently by one array's copy,
+     * the hybrid collection is read by pages later without the lock.
+     *
+     * @return the scan of the collection's elements.
+     */
+    private MarineCollection.Scan snapshotCollection() {
+        collectionLock.writeLock().lock();
+        try {
+            return queuePair.scan();
+        } finally {
+            collectionLock.writeLock().unlock();
         }
     }
 
@@ -528,7 +1022,7 @@ public class ServerConsole extends SimpleCMD {
             return;
         }
 
-        String str = "collectionType: PriorityQueue<SpaceMarine>, " +
+        String str = "collectionType: " + queuePair.getType() + ", " +
                 "createTime: " + new SimpleDateFormat("hh:mm:ss dd-MM-yyyy").format(creationTime) +
                 ", length: " + queuePair.size() + ".";
         out.println(str);
@@ -548,10 +1042,14 @@ public class ServerConsole extends SimpleCMD {
             return;
         }
 
-        List<Pair<SpaceMarine, String>> list = queuePair.stream()
-                .sorted(Comparator.comparing(pair -> pair.first.getHeight()))
-                .collect(Collectors.toList());
-        out.println(gson.toJson(list));
+        try {
+            writeJson(out, queuePair.scanByHeight());
+            out.println();
+        } catch (SQLException | ClassNotFoundException | IOException e) {
+            err.println("show: reading the collection from the database is failed.");
+            // logging.
+            logger.error("Reading the collection for showing is failed.", e);
+        }
     }
 
     /**
@@ -568,8 +1066,7 @@ public class ServerConsole extends SimpleCMD {
         }
 
         SpaceMarine spaceMarine = inputSpaceMarine();
-        spaceMarine.setId(dbHandler.addSpaceMarineWithCreator(spaceMarine, admin));
-        queuePair.add(new Pair<>(spaceMarine, admin.getLogin()));
+        insertToCollection(spaceMarine, admin);
     }
 
     /**
@@ -601,17 +1098,9 @@ public class ServerConsole extends SimpleCMD {
         }
 
         SpaceMarine spaceMarine = inputSpaceMarine();
-        Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-        while (iter.hasNext()) {
-            Pair<SpaceMarine, String> pair = iter.next();
-            if (pair.first.getId() == id) {
-                dbHandler.deleteSpaceMarineWithCreator(id);
-                iter.remove();
-                spaceMarine.setId(dbHandler.addSpaceMarineWithCreator(spaceMarine, admin));
-                queuePair.add(new Pair<>(spaceMarine, admin.getLogin()));
-                break;
-            }
-        }
+        Pair<SpaceMarine, String> pair = queuePair.findById(id);
+        if (pair != null)
+            updateInCollection(pair, spaceMarine, admin);
 
     }
 
@@ -636,15 +1125,9 @@ public class ServerConsole extends SimpleCMD {
                 throw new IllegalArgumentException();
             }
 
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.first.getId() == id) {
-                    dbHandler.deleteSpaceMarineWithCreator(id);
-                    iter.remove();
-                    break;
-                }
-            }
+            Pair<SpaceMarine, String> pair = queuePair.findById(id);
+            if (pair != null)
+                deleteFromCollection(pair);
 
         } catch (IllegalArgumentException e) {
             // if (check is fail) than: print exception and return.
@@ -659,12 +1142,8 @@ public class ServerConsole extends SimpleCMD {
      */
     @Override
     public void clear(String[] args) throws SQLException, ClassNotFoundException {
-        Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-        while (iter.hasNext()) {
-            Pair<SpaceMarine, String> pair = iter.next();
-            dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-            iter.remove();
-        }
+        // the hybrid collection's rows are deleted page by page.
+        queuePair.scan().forEach(this::deleteFromCollection);
     }
 
     /**
@@ -674,17 +1153,138 @@ public class ServerConsole extends SimpleCMD {
      */
     @Override
     public void save(String[] args) {
-       try {
-           PrintWriter fout = new PrintWriter("base.json");
-           fout.println(gson.toJson(queuePair));
-           fout.flush();
-           fout.close();
-           out.println("Saving the collection to file \"base.json\" is corrected.");
-       } catch (IOException e) {
-           err.println("Saving the collection to file \"base.json\" is failed.");
-           //for logging.
-           //e.printStackTrace;
-       }
+        // if (the command has incorrect parameters) than: print exception and return.
+        boolean binary = args != null && args.length == 1 && args[0].equals("binary");
+        if (args != null && args.length != 0 && !binary) {
+            err.println("save: this command has one easy parameter \"binary\" or hasn't parameters.");
+            return;
+        }
+        // if (the previous saving is working) than: print about that and return.
+        if (lastSave != null && !lastSave.isDone()) {
+            err.println("save: the previous saving isn't finished.");
+            return;
+        }
+
+        // open the consistent scan and serialize that in the background.
+        MarineCollection.Scan scan = snapshotCollection();
+        int total = queuePair.size();
+        String fileName = binary ? "base.bin" : "base.json";
+        lastSave = saveExecutor.submit(() -> {
+            try {
+                Path path = Paths.get(fileName);
+                Path temp = path.resolveSibling(fileName + ".tmp");
+                int written = binary ? saveBinary(temp, scan, fileName, total) : saveJson(temp, scan, fileName, total);
+                // replace the file only after the full writing.
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                out.println("Saving the collection to file \"" + fileName + "\" is corrected.");
+                // logging.
+                logger.info("Saving " + written + " elements to file \"" + fileName + "\" is finished.");
+            } catch (IOException | SQLException | ClassNotFoundException | RuntimeException e) {
+                err.println("Saving the collection to file \"" + fileName + "\" is failed.");
+                // logging.
+                logger.error("Saving the collection to file \"" + fileName + "\" is failed.", e);
+            }
+        });
+        out.println("Saving " + total + " elements to file \"" + fileName + "\" is started.");
+    }
+
+    /**
+     * Write the elements to the JSON's file by one element without building whole string.
+     *
+     * @param path the file's path.
+     * @param scan the scan of the collection's elements.
+     * @param fileName the file's name for reports of the progress.
+     * @param total the expected count of elements for reports of the progress.
+     * @return the count of written elements.
+     */
+    private int saveJson(Path path, MarineCollection.Scan scan, String fileName, int total)
+            throws IOException, SQLException, ClassNotFoundException {
+        int step = Math.max(1, total / 10);
+        int[] written = {0};
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeJson(writer, scan, pair -> {
+                if (++written[0] % step == 0)
+                    reportSaveProgress(fileName, written[0], total);
+            });
+        }
+        return written[0];
+    }
+
+    /**
+     * Write the elements to the binary snapshot by one element.
+     *
+     * @param path the file's path.
+     * @param scan the scan of the collection's elements.
+     * @param fileName the file's name for reports of the progress.
+     * @param total the expected count of elements for reports of the progress.
+     * @return the count of written elements.
+     */
+    private int saveBinary(Path path, MarineCollection.Scan scan, String fileName, int total)
+            throws IOException, SQLException, ClassNotFoundException {
+        try (BinarySnapshot.Writer writer = new BinarySnapshot.Writer(path, creationTime,
+                written -> reportSaveProgress(fileName, written, total))) {
+            scan.forEach(writer::write);
+            writer.finish();
+            return writer.getCount();
+        }
+    }
+
+    /**
+     * Write the elements as the JSON's array by one element.
+     *
+     * @param writer the writer of the text (it isn't closed).
+     * @param scan the scan of elements.
+     */
+    private void writeJson(Writer writer, MarineCollection.Scan scan)
+            throws IOException, SQLException, ClassNotFoundException {
+        writeJson(writer, scan, pair -> {});
+    }
+
+    /**
+     * Write the elements as the JSON's array by one element.
+     *
+     * @param writer the writer of the text (it isn't closed).
+     * @param scan the scan of elements.
+     * @param written the visitor of written elements.
+     */
+    private void writeJson(Writer writer, MarineCollection.Scan scan,
+                           MarineCollection.Visitor<RuntimeException> written)
+            throws IOException, SQLException, ClassNotFoundException {
+        JsonWriter json = gson.newJsonWriter(writer);
+        json.beginArray();
+        scan.forEach(pair -> {
+            gson.toJson(pair, PAIR_TYPE, json);
+            written.visit(pair);
+        });
+        json.endArray();
+        json.flush();
+    }
+
+    /**
+     * Report the progress of the saving.
+     *
+     * @param fileName the file's name.
+     * @param written the count of written elements.
+     * @param total the count of all elements.
+     */
+    private void reportSaveProgress(String fileName, int written, int total) {
+        // logging.
+        logger.info("Saving to file \"" + fileName + "\": " + written + " of " + total +
+                " elements (" + (total == 0 ? 100 : written * 100L / total) + "%).");
+    }
+
+    /**
+     * Wait for the end of the saving in the background.
+     */
+    private void awaitSave() {
+        if (lastSave == null)
+            return;
+        try {
+            lastSave.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // logging.
+            logger.error("Waiting for the saving is failed.", e);
+        }
     }
 
     /**
@@ -701,15 +1301,347 @@ public class ServerConsole extends SimpleCMD {
 
         // Exit program with trying to save collection to "base.json" file.
         try {
+            // if (the previous saving is working) than: the final saving waits for that,
+            // because the previous copy doesn't have the latest changes.
+            awaitSave();
             save(null);
+            awaitSave();
+            if (changeListener != null)
+                changeListener.close();
+            if (replica != null)
+                replica.close();
+            journal.close();
+            if (storage instanceof Closeable)
+                ((Closeable) storage).close();
             out.println("Exit program.");
             out.flush();
             out.close();
+        } catch (IOException e) {
+            // logging.
+            logger.error("Closing the storage is failed.", e);
         } finally {
             System.exit(0);
         }
     }
 
+    /**
+     * Load elements from the CSV's file to the database by one command COPY
+     * and add the loaded elements to the collection.
+     *
+     * @param args the command's arguments.
+     */
+    @Override
+    public void copyFrom(String[] args) {
+        // if (the command hasn't only one easy parameter) than: print exception and return.
+        if (args == null || args.length != 1) {
+            err.println("copy_from: this command has one easy parameter \"file's name\".");
+            return;
+        }
+        // if (the server is the node of the cluster) than: COPY gives IDs of other nodes.
+        if (ShardIds.NODES > 1) {
+            err.println("copy_from: this command isn't available on the cluster's node.");
+            return;
+        }
+
+        List<Integer> ids;
+        collectionLock.readLock().lock();
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            ids = storage.copySpaceMarinesFrom(reader);
+            // add the new rows to the collection.
+            for (Pair<SpaceMarine, String> pair : storage.getSpaceMarinePairsByIds(ids))
+                addToCollection(pair);
+        } catch (NoSuchFileException e) {
+            err.println("File for reading not found.");
+            return;
+        } catch (IOException e) {
+            err.println("copy_from: the file isn't read: " + e);
+            return;
+        } catch (SQLException | ClassNotFoundException e) {
+            // if (the file has incorrect rows or the storage hasn't COPY) than: nothing is loaded.
+            err.println("copy_from: the file isn't loaded: " + e.getMessage());
+            return;
+        } finally {
+            collectionLock.readLock().unlock();
+        }
+
+        out.println(ids.size() + " elements are loaded from file \"" + args[0] + "\".");
+        // logging.
+        logger.info(ids.size() + " elements are loaded from file \"" + args[0] + "\" by COPY.");
+    }
+
+    /**
+     * Unload elements from the database to the CSV's file by one command COPY.
+     *
+     * @param args the command's arguments.
+     */
+    @Override
+    public void copyTo(String[] args) {
+        // if (the command hasn't only one easy parameter) than: print exception and return.
+        if (args == null || args.length != 1) {
+            err.println("copy_to: this command has one easy parameter \"file's name\".");
+            return;
+        }
+
+        long rows;
+        try (Writer writer = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            rows = storage.copySpaceMarinesTo(writer);
+        } catch (NoSuchFileException e) {
+            err.println("Directory for writing not found.");
+            return;
+        } catch (IOException e) {
+            // if (the file isn't writable) than: the server continues.
+            err.println("copy_to: the file isn't written: " + e);
+            return;
+        } catch (SQLException | ClassNotFoundException e) {
+            // if (the storage hasn't COPY or the database fails) than: the server continues.
+            err.println("copy_to: the file isn't unloaded: " + e.getMessage());
+            return;
+        }
+
+        out.println(rows + " elements are unloaded to file \"" + args[0] + "\".");
+        // logging.
+        logger.info(rows + " elements are unloaded to file \"" + args[0] + "\" by COPY.");
+    }
+
+    /**
+     * Output the state of the replication: the log's LSN, replicas of this server
+     * and the lag of this replica behind the primary server.
+     *
+     * @param args the command's arguments.
+     */
+    @Override
+    public void replication(String[] args) {
+        // if (the command has parameters) than: print exception and return.
+        if (args == null || args.length != 0) {
+            err.println("replication: this command hasn't parameters.");
+            return;
+        }
+
+        out.println("Log: " + replicationLog.getLogId() + ", last LSN: " + replicationLog.getLastLsn() + '.');
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ReplicationLog.ReplicaState> entry : replicationLog.getReplicas().entrySet()) {
+            ReplicationLog.ReplicaState state = entry.getValue();
+            out.println("Replica \"" + entry.getKey() + "\": LSN " + state.lsn +
+                    ", lag " + Math.max(0, replicationLog.getLastLsn() - state.lsn) + " mutations" +
+                    ", last request " + (now - state.time) + " ms ago.");
+        }
+        if (replica != null) {
+            long lagMillis = replica.getLagMillis();
+            out.println("Primary " + replica.getPrimary() + (replica.isConnected() ? "" : " (disconnected)") +
+                    ": applied LSN " + replica.getLsn() + ", primary's LSN " + replica.getPrimaryLsn() +
+                    ", lag " + replica.getLagEntries() + " mutations, " +
+                    (lagMillis < 0 ? "not synchronized yet." : lagMillis + " ms."));
+        }
+    }
+
+    /**
+     * Output the server's metrics: latencies of clients' commands and storage's calls
+     * in milliseconds, errors, requests in progress and gauges.
+     * The argument "reset" forgets latencies and errors.
+     *
+     * @param args arguments for the command.
+     */
+    @Override
+    public void stats(String[] args) {
+        // if (the command has incorrect parameters) than: print exception and return.
+        if (args == null || args.length > 1 || (args.length == 1 && !args[0].equals("reset"))) {
+            err.println("stats: this command has only the optional parameter \"reset\".");
+            return;
+        }
+        if (args.length == 1) {
+            metrics.reset();
+            out.println("Metrics are reset.");
+            return;
+        }
+
+        out.println(String.format("Uptime: %d s, requests: %d (%.1f per second), errors: %d, in flight: %d.",
+                metrics.getUptimeSeconds(), metrics.getRequests(), metrics.getRequestsPerSecond(),
+                metrics.getRequestErrors(), metrics.getRequestsInFlight()));
+        printMetrics("Command", metrics.getCommands(), metrics.getRequestsTotal());
+        printMetrics("Storage's call", metrics.getStorage(), metrics.getStorageTotal());
+        for (Map.Entry<String, Long> gauge : metrics.getGauges().entrySet())
+            out.println(gauge.getKey() + ": " + gauge.getValue() + '.');
+    }
+
+    /**
+     * Output the estimation of the heap, which is used by the collection, by the sample of elements:
+     * bytes per element by components, duplicate strings and chapters, the projected heap.
+     *
+     * @param args arguments for the command: the sample's size (1000 by default)
+     *             and the count of elements for the projection (1000000 by default).
+     */
+    @Override
+    public void memory(String[] args) {
+        // if (the command has incorrect parameters) than: print exception and return.
+        if (args == null || args.length > 2) {
+            err.println("memory: this command has only optional parameters \"sample_size\" and \"target_size\".");
+            return;
+        }
+        int sampleSize;
+        long target;
+        try {
+            sampleSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+            target = args.length > 1 ? Long.parseLong(args[1]) : 1000000;
+        } catch (NumberFormatException e) {
+            err.println("memory: parameters must be integer numbers.");
+            return;
+        }
+        if (sampleSize <= 0 || target < 0) {
+            err.println("memory: the sample's size must be greater than 0, the target size mustn't be negative.");
+            return;
+        }
+
+        // the sample is taken by the storage without the collection's lock.
+        long capacity = queuePair instanceof HybridMarineCollection
+                ? ((HybridMarineCollection) queuePair).getCapacity() : Long.MAX_VALUE;
+        MemoryFootprint footprint = new MemoryFootprint();
+        MemoryFootprint.Report report;
+        try {
+            report = footprint.analyze(storage.getSpaceMarinePairsSample(sampleSize),
+                    queuePair.size(), storage.getHeapIndex(), capacity);
+        } catch (SQLException | ClassNotFoundException e) {
+            // if (the database fails) than: the server continues.
+            err.println("memory: the sample isn't taken: " + e.getMessage());
+            return;
+        }
+        out.println("Sampled " + report.sampled + " of " + report.size + " elements, JVM: " +
+                footprint.getLayout() + '.');
+        if (report.sampled == 0)
+            return;
+        // if (sampled elements aren't the heap's objects) than: sizes are the layout of loaded elements.
+        if (report.copies)
+            out.println("Sampled elements are new copies from the storage: their sizes are the layout " +
+                    "of loaded elements, duplicates are counted only in the sample.");
+        if (capacity != Long.MAX_VALUE)
+            out.println("The hybrid collection keeps at most " + capacity + " elements in the cache, " +
+                    (report.shared ? "the storage keeps all elements in the heap." : "other elements aren't in the heap."));
+        double total = report.perElement();
+        String format = "%-20s %14s %8s";
+        out.println(String.format(format, "Component", "bytes/element", "share"));
+        for (String component : MemoryFootprint.COMPONENTS)
+            out.println(String.format(format, component, String.format("%.1f", report.perElement(component)),
+                    String.format("%.1f%%", 100 * report.perElement(component) / total)));
+        out.println(String.format(format, "total", String.format("%.1f", total), "100.0%"));
+        out.println(String.format("Strings: %d, duplicates: %d (%.1f%%), deduplication saves %.1f bytes/element.",
+                report.strings, report.duplicateStrings, percent(report.duplicateStrings, report.strings),
+                (double) report.duplicateStringBytes / report.sampled));
+        out.println(String.format("Chapters: %d, duplicates: %d (%.1f%%), sharing saves %.1f bytes/element.",
+                report.chapters, report.duplicateChapters, percent(report.duplicateChapters, report.chapters),
+                (double) report.duplicateChapterBytes / report.sampled));
+        Runtime runtime = Runtime.getRuntime();
+        out.println(String.format("Projected heap for %d elements: %.1f MB (now %.1f MB, heap used: %.1f MB, " +
+                        "max: %.1f MB).", target, report.projected(target) / MEGABYTE,
+                report.projected(report.size) / MEGABYTE,
+                (double) (runtime.totalMemory() - runtime.freeMemory()) / MEGABYTE,
+                (double) runtime.maxMemory() / MEGABYTE));
+    }
+
+    /**
+     * Output clients' connections sorted by their load (the total time of served requests)
+     * or close connections.
+     *
+     * @param args arguments for the command: nothing, "close id" or "close_idle seconds".
+     */
+    @Override
+    public void connections(String[] args) {
+        // if (the command has incorrect parameters) than: print exception and return.
+        if (args == null || (args.length != 0 && (args.length != 2 ||
+                !(args[0].equals("close") || args[0].equals("close_idle"))))) {
+            err.println("connections: this command has no parameters, \"close id\" or \"close_idle seconds\".");
+            return;
+        }
+        if (args.length == 0) {
+            List<ConnectionStats> list = new ArrayList<>(connections.values());
+            list.sort(Comparator.comparingDouble(ConnectionStats::getBusyMillis).reversed());
+            String format = "%5s %-22s %-16s %10s %10s %9s %7s %9s %9s %6s %9s";
+            out.println(String.format(format, "id", "address", "user", "bytes in", "bytes out", "requests",
+                    "errors", "mean, ms", "max, ms", "queue", "idle, s"));
+            for (ConnectionStats connection : list)
+                out.println(String.format(format, connection.getId(), connection.getAddress(),
+                        connection.getUser() == null ? "-" : connection.getUser(), connection.getBytesIn(),
+                        connection.getBytesOut(), connection.getRequests(), connection.getErrors(),
+                        String.format("%.3f", connection.getMeanMillis()),
+                        String.format("%.3f", connection.getMaxMillis()), connection.getQueued(),
+                        connection.getIdleMillis() / 1000));
+            out.println("Connections: " + list.size() + '.');
+            return;
+        }
+        long number;
+        try {
+            number = Long.parseLong(args[1]);
+        } catch (NumberFormatException e) {
+            err.println("connections: the parameter \"" + args[1] + "\" isn't an integer number.");
+            return;
+        }
+        int closed = 0;
+        for (Map.Entry<SocketChannel, ConnectionStats> entry : connections.entrySet()) {
+            ConnectionStats connection = entry.getValue();
+            if (args[0].equals("close") ? connection.getId() == number
+                    : connection.getIdleMillis() > number * 1000) {
+                try {
+                    // the closed channel is removed from connections by the connections' thread.
+                    entry.getKey().close();
+                    ++closed;
+                    // logging.
+                    logger.info("Connection " + connection.getId() + " with address: " +
+                            connection.getAddress() + " is closed by the administrator.");
+                } catch (IOException e) {
+                    err.println("connections: closing the connection " + connection.getId() + " is failed.");
+                    // logging.
+                    logger.error("Closing the connection " + connection.getId() + " is failed.", e);
+                }
+            }
+        }
+        if (args[0].equals("close") && closed == 0)
+            err.println("connections: the connection with ID " + number + " isn't found.");
+        else
+            out.println("Closed connections: " + closed + '.');
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    /**
+     * Print the table of metrics.
+     *
+     * @param title the title of the names' column.
+     * @param operations metrics by names.
+     * @param total the total of metrics.
+     */
+    private void printMetrics(String title, Map<String, OperationMetrics> operations, OperationMetrics total) {
+        String format = "%-36s %10s %8s %9s %10s %10s %10s %10s %10s";
+        out.println(String.format(format, title, "count", "errors", "in flight",
+                "mean, ms", "p50, ms", "p99, ms", "p99.9, ms", "max, ms"));
+        for (OperationMetrics operation : operations.values())
+            printMetrics(format, operation);
+        printMetrics(format, total);
+    }
+
+    private void printMetrics(String format, OperationMetrics operation) {
+        out.println(String.format(format, operation.getName(), operation.getCount(), operation.getErrors(),
+                operation.getInFlight(), String.format("%.3f", operation.getMeanMillis()),
+                String.format("%.3f", operation.getP50Millis()), String.format("%.3f", operation.getP99Millis()),
+                String.format("%.3f", operation.getP999Millis()), String.format("%.3f", operation.getMaxMillis())));
+    }
+
+    /**
+     * Execute command of server's console.
+     * The replica rejects commands, which change the collection.
+     *
+     * @param strLine the normalise line from server's console for running command.
+     */
+    @Override
+    public void runCommand(String strLine) throws IOException {
+        String command = strLine.split(" ")[0];
+        if (replica != null && MUTATING_COMMANDS.contains(command)) {
+            err.println(command + ": the server is a read-only replica, the primary server: " +
+                    replica.getPrimary() + '.');
+            return;
+        }
+        super.runCommand(strLine);
+    }
+
     /**
      * Output the first item in the collection and deletes it.
      *
@@ -725,11 +1657,9 @@ public class ServerConsole extends SimpleCMD {
 
         try {
             // else if (the queue isn't empty): print and remove element from head of the collection.
-            if (queuePair.size() != 0) {
-                Pair<SpaceMarine, String> pair = queuePair.poll();
-                dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
+            Pair<SpaceMarine, String> pair = queuePair.peek();
+            if (pair != null && deleteFromCollection(pair))
                 out.println(pair);
-            }
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
@@ -752,12 +1682,11 @@ public class ServerConsole extends SimpleCMD {
         try {
             // get minimal spaceMarine from the queue.
             SpaceMarine spaceMarine = inputSpaceMarine();
-            Optional<Pair<SpaceMarine, String>> optional = queuePair.stream().min(Pair::compareToFirst);
+            Pair<SpaceMarine, String> min = queuePair.peek();
             // if (queue isn't empty and new spaceMarine less than the old minimal spaceMarine)
-            if (!optional.isPresent() || spaceMarine.compareTo(optional.get().first) < 0) {
+            if (min == null || spaceMarine.compareTo(min.first) < 0) {
                 // than: add new spaceMarine to the ru.itmo.s284719.database and the queue.
-                dbHandler.addSpaceMarineWithCreator(spaceMarine, admin);
-                queuePair.add(new Pair<>(spaceMarine, admin.getLogin()));
+                insertToCollection(spaceMarine, admin);
             }
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
@@ -780,14 +1709,8 @@ public class ServerConsole extends SimpleCMD {
         try {
             // read composite parameter (SpaceMarine).
             SpaceMarine spaceMarine = inputSpaceMarine();
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.first.compareTo(spaceMarine) > 0) {
-                    dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-                    iter.remove();
-                }
-            }
+            for (Pair<SpaceMarine, String> pair : queuePair.findGreaterThan(spaceMarine))
+                deleteFromCollection(pair);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         }
@@ -822,15 +1745,9 @@ public class ServerConsole extends SimpleCMD {
             else
                 height = Integer.parseInt(args[0]);
 
-            Iterator<Pair<SpaceMarine, String>> iter = queuePair.iterator();
-            while (iter.hasNext()) {
-                Pair<SpaceMarine, String> pair = iter.next();
-                if (pair.first.getHeight().equals(height)) {
-                    dbHandler.deleteSpaceMarineWithCreator(pair.first.getId());
-                    iter.remove();
-                    break;
-                }
-            }
+            Pair<SpaceMarine, String> pair = queuePair.findAnyByHeight(null, height);
+            if (pair != null)
+                deleteFromCollection(pair);
         } catch (ClassNotFoundException e) {
             err.println(Arrays.toString(e.getStackTrace()));
         } catch (NumberFormatException e) {
@@ -853,14 +1770,7 @@ public class ServerConsole extends SimpleCMD {
         }
 
         // else: get and print server's answer.
-        String str;
-        if (queuePair.isEmpty()) {
-            str = "The average value of the height: 0.";
-        } else {
-            int result = queuePair.stream().mapToInt(pair -> pair.first.getHeight()).sum();
-            str = "The average value of the height: " + ((double) result) / queuePair.size() + ".";
-        }
-        out.println(str);
+        out.println("The average value of the height: " + queuePair.averageHeight() + ".");
     }
 
     /**
@@ -885,9 +1795,7 @@ public class ServerConsole extends SimpleCMD {
                 err.println("count_greater_than_melee_weapon: this command has one easy parameter \"MeleeWeapon\" type of enumeration.");
                 return;
             }
-            long count = queuePair.stream()
-                    .filter(pair -> pair.first.getMeleeWeapon().compareTo(meleeWeapon) > 0)
-                    .count();
+            long count = queuePair.countMeleeWeaponGreaterThan(meleeWeapon);
             out.println(count + " queue's elements have the value \"Melee Weapon\", greater than the given value.");
 
         } catch (IllegalArgumentException e) {
@@ -0,0 +1,482 @@
+package ru.itmo.s284719.store;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.itmo.s284719.database.Storage;
+import ru.itmo.s284719.database.User;
+import ru.itmo.s284719.journal.MarineCodec;
+import ru.itmo.s284719.network.cluster.ShardIds;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * The storage in the local log-structured file without the database.
+ * Every change is the record appended to the file, which is mapped to the memory,
+ * so adding and deleting don't have system calls. The memory has only the index
+ * of space marines' records by IDs and users with hashes of passwords.
+ * The mapped region is forced to the disk by the background thread with the period,
+ * so the process' crash loses nothing and the system's crash loses the last period.
+ * When the file has more dead records than live records, the background thread
+ * writes live records to the new file (compaction) and replaces the old file with that.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LogStructuredStorage implements Storage, Closeable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(LogStructuredStorage.class);
+    /**
+     * The default directory of the store.
+     */
+    public static final String DEFAULT_DIRECTORY = "store";
+    /**
+     * The period of forcing the file to the disk in milliseconds.
+     */
+    private static final long FORCE_PERIOD = 100;
+    /**
+     * The period of checking for the compaction in seconds.
+     */
+    private static final long COMPACTION_PERIOD = 10;
+    /**
+     * The minimal size of dead records for the compaction in bytes.
+     */
+    private static final long COMPACTION_MIN_GARBAGE = 1 << 20;
+    /**
+     * The type of record with the space marine (the payload of {@link MarineCodec}).
+     */
+    private static final byte MARINE = 1;
+    /**
+     * The type of record about deleting of the space marine (the payload is the ID).
+     */
+    private static final byte DELETE = 2;
+    /**
+     * The type of record with the user (the login and the hash of the password).
+     */
+    private static final byte USER = 3;
+    /**
+     * The type of record with the last given ID (the first record after the compaction).
+     */
+    private static final byte LAST_ID = 4;
+    /**
+     * The prefix of files' names.
+     */
+    private static final String FILE_PREFIX = "data-";
+    /**
+     * The suffix of files' names.
+     */
+    private static final String FILE_SUFFIX = ".log";
+
+    /**
+     * The store's directory.
+     */
+    private final Path directory;
+    /**
+     * The current file.
+     */
+    private StoreFile file;
+    /**
+     * The current file's generation (it's increased by every compaction).
+     */
+    private long generation;
+    /**
+     * Offsets of space marines' records by IDs.
+     */
+    private final ConcurrentNavigableMap<Integer, Integer> offsets = new ConcurrentSkipListMap<>();
+    /**
+     * Hashes of users' passwords by logins.
+     */
+    private final Map<String, byte[]> users = new ConcurrentHashMap<>();
+    /**
+     * The last given ID.
+     */
+    private int lastId = 0;
+    /**
+     * The size of live records in the current file.
+     */
+    private long liveBytes = 0;
+    /**
+     * The lock of the file: appends, remapping and the compaction hold the write lock,
+     * reads hold the read lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * The thread for forcing and the compaction.
+     */
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "store-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Open the store in the directory and recover the index from the latest file.
+     *
+     * @param directory the store's directory.
+     */
+    public LogStructuredStorage(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        // the latest file is complete: the compaction renames the new file only after its writing.
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(FILE_SUFFIX))
+                    generations.add(Long.parseLong(name.substring(FILE_PREFIX.length(),
+                            name.length() - FILE_SUFFIX.length())));
+                else
+                    Files.delete(path);
+            }
+        }
+        Collections.sort(generations);
+        generation = generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+        for (long old : generations) {
+            if (old != generation)
+                Files.delete(filePath(old));
+        }
+
+        file = new StoreFile(filePath(generation), this::recover);
+        for (int offset : offsets.values())
+            liveBytes += file.recordSize(offset);
+        // logging.
+        logger.info("Store \"" + file.getPath() + "\" is opened: " + offsets.size() + " space marines, " +
+                users.size() + " users, " + (file.getEnd() - liveBytes) + " bytes of dead records.");
+
+        background.scheduleWithFixedDelay(this::force, FORCE_PERIOD, FORCE_PERIOD, TimeUnit.MILLISECONDS);
+        background.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                // logging.
+                logger.error("Compaction of the store is failed.", e);
+            }
+        }, COMPACTION_PERIOD, COMPACTION_PERIOD, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Apply the record from the file to the index at the opening.
+     * Only sizes of users' records are counted here, sizes of space marines' records
+     * are counted by the index after the opening.
+     */
+    private void recover(int offset, byte type, byte[] payload) throws IOException {
+        switch (type) {
+            case MARINE: {
+                // the codec writes the ID first.
+                int id = ByteBuffer.wrap(payload).getInt();
+                offsets.put(id, offset);
+                lastId = Math.max(lastId, id);
+                break;
+            }
+            case DELETE:
+                offsets.remove(ByteBuffer.wrap(payload).getInt());
+                break;
+            case USER: {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                String login = in.readUTF();
+                byte[] hashPassword = new byte[in.readUnsignedShort()];
+                in.readFully(hashPassword);
+                users.put(login, hashPassword);
+                liveBytes += StoreFile.HEADER_SIZE + 1 + payload.length;
+                break;
+            }
+            case LAST_ID:
+                lastId = Math.max(lastId, ByteBuffer.wrap(payload).getInt());
+                break;
+            default:
+                throw new IOException("Unknown record's type " + type + " at the offset " + offset + '.');
+        }
+    }
+
+    @Override
+    public boolean isLoginFree(String login) {
+        return !users.containsKey(login);
+    }
+
+    @Override
+    public boolean registerUser(User user) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (users.containsKey(user.getLogin()))
+                return false;
+            byte[] payload = encodeUser(user.getLogin(), user.getHashPassword());
+            append(USER, payload);
+            liveBytes += StoreFile.HEADER_SIZE + 1 + payload.length;
+            users.put(user.getLogin(), user.getHashPassword());
+            return true;
+        } catch (IOException e) {
+            throw new SQLException("Writing to the store is failed.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isRegisteredUser(User user) {
+        byte[] hashPassword = users.get(user.getLogin());
+        return hashPassword != null && Arrays.equals(hashPassword, user.getHashPassword());
+    }
+
+    @Override
+    public int addSpaceMarineWithCreator(SpaceMarine spaceMarine, User user) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            spaceMarine.setId(ShardIds.next(lastId));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            MarineCodec.write(new Pair<>(spaceMarine, user.getLogin()), new DataOutputStream(bytes));
+            byte[] payload = bytes.toByteArray();
+            offsets.put(spaceMarine.getId(), append(MARINE, payload));
+            liveBytes += StoreFile.HEADER_SIZE + 1 + payload.length;
+            lastId = spaceMarine.getId();
+            return lastId;
+        } catch (IOException e) {
+            throw new SQLException("Writing to the store is failed.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteSpaceMarineWithCreator(int id) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            Integer offset = offsets.get(id);
+            if (offset == null)
+                return false;
+            // the size is read before the appending, which can move the record to the next generation.
+            int size = file.recordSize(offset);
+            append(DELETE, ByteBuffer.allocate(4).putInt(id).array());
+            offsets.remove(id);
+            liveBytes -= size;
+            return true;
+        } catch (IOException e) {
+            throw new SQLException("Writing to the store is failed.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public PriorityBlockingQueue<Pair<SpaceMarine, String>> getPriorityBlockingQueuePair() throws SQLException {
+        return new PriorityBlockingQueue<>(read(offsets.keySet()));
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsAfterId(int afterId, int limit) throws SQLException {
+        return read(offsets.tailMap(afterId, false).keySet().stream().limit(limit).collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByCreator(String login) throws SQLException {
+        return read(offsets.keySet()).stream()
+                .filter(pair -> pair.second.equals(login))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Pair<SpaceMarine, String> getAnySpaceMarinePairByHeight(String login, int height) throws SQLException {
+        for (Pair<SpaceMarine, String> pair : read(offsets.keySet())) {
+            if ((login == null || pair.second.equals(login)) && Integer.valueOf(height).equals(pair.first.getHeight()))
+                return pair;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsOrderedByHeight() throws SQLException {
+        List<Pair<SpaceMarine, String>> list = read(offsets.keySet());
+        list.sort(Comparator.comparing(pair -> pair.first.getHeight(),
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return list;
+    }
+
+    /**
+     * @return the map of records' offsets by IDs (sampled pairs are decoded copies).
+     */
+    @Override
+    public Map<Integer, ?> getHeapIndex() {
+        return offsets;
+    }
+
+    @Override
+    public long[] getSpaceMarineCountsByMeleeWeapon() throws SQLException {
+        long[] counts = new long[MeleeWeapon.values().length];
+        for (Pair<SpaceMarine, String> pair : read(offsets.keySet()))
+            ++counts[pair.first.getMeleeWeapon().ordinal()];
+        return counts;
+    }
+
+    @Override
+    public long getSpaceMarineHeightSum() throws SQLException {
+        long sum = 0;
+        for (Pair<SpaceMarine, String> pair : read(offsets.keySet())) {
+            if (pair.first.getHeight() != null)
+                sum += pair.first.getHeight();
+        }
+        return sum;
+    }
+
+    @Override
+    public Set<Integer> getSpaceMarineIds() {
+        return new HashSet<>(offsets.keySet());
+    }
+
+    @Override
+    public List<Pair<SpaceMarine, String>> getSpaceMarinePairsByIds(Collection<Integer> ids) throws SQLException {
+        return read(ids);
+    }
+
+    @Override
+    public List<Integer> copySpaceMarinesFrom(Reader reader) throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("COPY is supported only by PostgreSQL's storage.");
+    }
+
+    @Override
+    public long copySpaceMarinesTo(Writer writer) throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("COPY is supported only by PostgreSQL's storage.");
+    }
+
+    /**
+     * Read space marines with the IDs from the file.
+     * Records are copied under the lock and decoded without that.
+     *
+     * @param ids the space marines' IDs (absent IDs are skipped).
+     * @return the list of pairs in the IDs' order.
+     */
+    private List<Pair<SpaceMarine, String>> read(Collection<Integer> ids) throws SQLException {
+        List<byte[]> payloads = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Integer id : ids) {
+                Integer offset = offsets.get(id);
+                if (offset != null)
+                    payloads.add(file.readPayload(offset));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Pair<SpaceMarine, String>> list = new ArrayList<>(payloads.size());
+        try {
+            for (byte[] payload : payloads)
+                list.add(MarineCodec.read(new DataInputStream(new ByteArrayInputStream(payload))));
+        } catch (IOException e) {
+            throw new SQLException("Reading from the store is failed.", e);
+        }
+        return list;
+    }
+
+    /**
+     * Force the current file to the disk.
+     */
+    private void force() {
+        StoreFile current;
+        lock.readLock().lock();
+        try {
+            current = file;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // the old file after the compaction is already forced.
+        current.force();
+    }
+
+    /**
+     * Append the record to the current file. If the record doesn't fit the file's limit,
+     * than live records are moved to the next generation before the appending.
+     * The caller holds the write lock.
+     *
+     * @param type the record's type.
+     * @param payload the record's payload.
+     * @return the record's offset.
+     */
+    private int append(byte type, byte[] payload) throws IOException {
+        if (!file.fits(payload.length)) {
+            // logging.
+            logger.warn("Store's file \"" + file.getPath() + "\" is full, live records are moved to the next file.");
+            roll();
+        }
+        return file.append(type, payload);
+    }
+
+    /**
+     * Write live records to the new file, if the current file has more dead records than live records.
+     */
+    void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long garbage = file.getEnd() - liveBytes;
+            if (garbage < COMPACTION_MIN_GARBAGE || garbage < liveBytes)
+                return;
+            roll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write live records to the file of the next generation and replace the current file with that.
+     * The caller holds the write lock.
+     */
+    private void roll() throws IOException {
+        long garbage = file.getEnd() - liveBytes;
+        Path temp = directory.resolve(FILE_PREFIX + (generation + 1) + ".tmp");
+        Files.deleteIfExists(temp);
+        Map<Integer, Integer> newOffsets = new HashMap<>(offsets.size() * 4 / 3 + 1);
+        try (StoreFile compacted = new StoreFile(temp, null)) {
+            compacted.append(LAST_ID, ByteBuffer.allocate(4).putInt(lastId).array());
+            for (Map.Entry<String, byte[]> user : users.entrySet())
+                compacted.append(USER, encodeUser(user.getKey(), user.getValue()));
+            for (Map.Entry<Integer, Integer> entry : offsets.entrySet())
+                newOffsets.put(entry.getKey(), compacted.append(MARINE, file.readPayload(entry.getValue())));
+        }
+        Path path = filePath(generation + 1);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+
+        StoreFile old = file;
+        file = new StoreFile(path, null);
+        ++generation;
+        offsets.putAll(newOffsets);
+        liveBytes = file.getEnd();
+        old.close();
+        Files.delete(old.getPath());
+        // logging.
+        logger.info("Store is compacted to \"" + path + "\": " + garbage + " bytes of dead records are removed.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        background.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            file.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Path filePath(long generation) {
+        return directory.resolve(String.format("%s%020d%s", FILE_PREFIX, generation, FILE_SUFFIX));
+    }
+
+    private static byte[] encodeUser(String login, byte[] hashPassword) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(login);
+        out.writeShort(hashPassword.length);
+        out.write(hashPassword);
+        return bytes.toByteArray();
+    }
+}
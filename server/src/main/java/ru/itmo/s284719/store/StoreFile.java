@@ -0,0 +1,221 @@
+package ru.itmo.s284719.store;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of records, which is mapped to the memory.
+ * Every record has a format: [length: int][CRC32: int][type: byte][payload],
+ * where the length and the CRC32 cover the type and the payload.
+ * The mapped region is greater than the written records and has zeros after them,
+ * it's doubled, when the next record doesn't fit, up to 2 GB (the limit of the mapped buffer).
+ * The caller serializes appends and remapping with reads.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+class StoreFile implements Closeable {
+    /**
+     * Log4j 2 logger.
+     */
+    private static final Logger logger = LogManager.getLogger(StoreFile.class);
+    /**
+     * The size of record's header (the length and the CRC32).
+     */
+    static final int HEADER_SIZE = 8;
+    /**
+     * The initial size of the mapped region.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    /**
+     * The maximal size of the mapped region.
+     */
+    static final int MAX_CAPACITY = Integer.MAX_VALUE;
+
+    /**
+     * The file's path.
+     */
+    private final Path path;
+    /**
+     * The file's channel.
+     */
+    private final FileChannel channel;
+    /**
+     * The mapped region of the file.
+     */
+    private volatile MappedByteBuffer buffer;
+    /**
+     * The offset after the last record.
+     */
+    private int end = 0;
+
+    /**
+     * Consumer of records at the opening.
+     */
+    interface RecordConsumer {
+        void accept(int offset, byte type, byte[] payload) throws IOException;
+    }
+
+    /**
+     * Open the file and give its valid records to the consumer.
+     * The torn tail after the last valid record (after crash) is filled with zeros,
+     * so records after the gap never become valid again.
+     *
+     * @param path the file's path.
+     * @param consumer the consumer of records or null.
+     */
+    StoreFile(Path path, RecordConsumer consumer) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("The store's file \"" + path + "\" is greater than 2 GB.");
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, (int) size));
+
+        while (end + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(end);
+            if (length <= 0 || length > buffer.capacity() - end - HEADER_SIZE)
+                break;
+            byte[] record = new byte[length];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(end + HEADER_SIZE);
+            duplicate.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(end + 4))
+                break;
+            if (consumer != null) {
+                byte[] payload = new byte[length - 1];
+                System.arraycopy(record, 1, payload, 0, payload.length);
+                consumer.accept(end, record[0], payload);
+            }
+            end += HEADER_SIZE + length;
+        }
+
+        // clear the torn tail (only not zero bytes are written, so clear pages aren't changed).
+        boolean torn = false;
+        for (int i = end; i < buffer.capacity(); ++i) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+                torn = true;
+            }
+        }
+        if (torn) {
+            buffer.force();
+            // logging.
+            logger.warn("Store's file \"" + path + "\" has a torn tail after the byte " + end + ", it's cleared.");
+        }
+    }
+
+    /**
+     * Append the record to the mapped region.
+     * The record survives the process' crash at once and the system's crash after {@link #force()}.
+     *
+     * @param type the record's type.
+     * @param payload the record's payload.
+     * @return the record's offset.
+     */
+    int append(byte type, byte[] payload) throws IOException {
+        int length = 1 + payload.length;
+        ensureCapacity(HEADER_SIZE + length);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+
+        int offset = end;
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset + 4);
+        duplicate.putInt((int) crc.getValue()).put(type).put(payload);
+        // the length is written last: the record without the length isn't read.
+        buffer.putInt(offset, length);
+        end += HEADER_SIZE + length;
+        return offset;
+    }
+
+    /**
+     * @param payloadLength the length of the record's payload.
+     * @return true, if the record fits the file after written records.
+     */
+    boolean fits(int payloadLength) {
+        return (long) end + HEADER_SIZE + 1 + payloadLength <= MAX_CAPACITY;
+    }
+
+    /**
+     * @param offset the record's offset.
+     * @return the record's type.
+     */
+    byte readType(int offset) {
+        return buffer.get(offset + HEADER_SIZE);
+    }
+
+    /**
+     * @param offset the record's offset.
+     * @return the record's payload.
+     */
+    byte[] readPayload(int offset) {
+        ByteBuffer duplicate = buffer.duplicate();
+        byte[] payload = new byte[duplicate.getInt(offset) - 1];
+        duplicate.position(offset + HEADER_SIZE + 1);
+        duplicate.get(payload);
+        return payload;
+    }
+
+    /**
+     * @param offset the record's offset.
+     * @return the record's size with the header.
+     */
+    int recordSize(int offset) {
+        return HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    /**
+     * @return the size of written records.
+     */
+    int getEnd() {
+        return end;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Force the mapped region to the disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Remap the file with the greater region, if the record doesn't fit.
+     *
+     * @param size the record's size.
+     */
+    private void ensureCapacity(int size) throws IOException {
+        if (size <= buffer.capacity() - end)
+            return;
+        if ((long) end + size > MAX_CAPACITY)
+            throw new IOException("The store's file \"" + path + "\" is full.");
+        long capacity = buffer.capacity();
+        while (capacity - end < size)
+            capacity = Math.min(capacity * 2, MAX_CAPACITY);
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,106 @@
+package ru.itmo.s284719.collection;
+
+import org.junit.Before;
+import org.junit.Test;
+import ru.itmo.s284719.database.InMemoryStorage;
+import ru.itmo.s284719.database.RowChange;
+import ru.itmo.s284719.database.TableSummary;
+import ru.itmo.s284719.database.User;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.MeleeWeapon;
+import ru.itmo.s284719.network.space.SpaceMarine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.itmo.s284719.collection.InMemoryMarineCollectionTest.pair;
+
+/**
+ * Tests of applying notified changes to the summary of the hybrid collection:
+ * the change, which the summary's snapshot already counts, changes nothing.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class HybridMarineCollectionTest {
+    /**
+     * The storage, whose summary has the snapshot of PostgreSQL:
+     * transactions before 10 and 11-14, 16-19 are committed, 15 is running, 20 and later aren't started.
+     */
+    private static class SnapshotStorage extends InMemoryStorage {
+        @Override
+        public TableSummary getSpaceMarineSummary() {
+            return new TableSummary(getSpaceMarineCountsByMeleeWeapon(), getSpaceMarineHeightSum(), "10:20:15");
+        }
+    }
+
+    private SnapshotStorage storage;
+    private HybridMarineCollection collection;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = new SnapshotStorage();
+        User user = new User("owner", "password");
+        storage.addSpaceMarineWithCreator(pair(1, 10, MeleeWeapon.CHAIN_SWORD).first, user);
+        storage.addSpaceMarineWithCreator(pair(2, 20, MeleeWeapon.POWER_SWORD).first, user);
+        collection = new HybridMarineCollection(storage, 10);
+    }
+
+    @Test
+    public void summaryIsReadFromStorage() {
+        assertEquals(2, collection.size());
+        assertEquals(15, collection.averageHeight(), 1e-9);
+    }
+
+    @Test
+    public void countedChangesAreSkipped() {
+        // committed before the snapshot.
+        assertFalse(collection.applyChange(new RowChange(3, true, 5, 30, MeleeWeapon.CHAIN_SWORD), null));
+        // committed between xmin and xmax and not running.
+        assertFalse(collection.applyChange(new RowChange(1, false, 12, 10, MeleeWeapon.CHAIN_SWORD), null));
+        assertEquals(2, collection.size());
+        assertEquals(15, collection.averageHeight(), 1e-9);
+    }
+
+    @Test
+    public void notCountedChangesUpdateSummary() {
+        // running at the snapshot.
+        assertTrue(collection.applyChange(new RowChange(3, true, 15, 30, MeleeWeapon.CHAIN_SWORD), null));
+        assertEquals(3, collection.size());
+        assertEquals(20, collection.averageHeight(), 1e-9);
+        // started after the snapshot.
+        assertTrue(collection.applyChange(new RowChange(1, false, 25, 10, MeleeWeapon.CHAIN_SWORD), null));
+        assertEquals(2, collection.size());
+        assertEquals(25, collection.averageHeight(), 1e-9);
+    }
+
+    @Test
+    public void insertedPairIsCachedAndDeletedPairIsForgotten() throws Exception {
+        Pair<SpaceMarine, String> pair = pair(3, 30, MeleeWeapon.CHAIN_SWORD);
+        collection.applyChange(new RowChange(3, true, 25, 30, MeleeWeapon.CHAIN_SWORD), pair);
+        // the storage doesn't have the row, so the pair is found only in the cache.
+        assertSame(pair, collection.findById(3));
+        collection.applyChange(new RowChange(3, false, 26, 30, MeleeWeapon.CHAIN_SWORD), null);
+        assertNull(collection.findById(3));
+    }
+
+    @Test
+    public void removingIsCountedOnce() throws Exception {
+        Pair<SpaceMarine, String> pair = collection.findById(1);
+        storage.deleteSpaceMarineWithCreator(1);
+        assertTrue(collection.remove(pair));
+        assertFalse(collection.remove(pair));
+        assertEquals(1, collection.size());
+        assertNull(collection.findById(1));
+    }
+
+    @Test
+    public void changeWithoutTransactionReloadsSummary() throws Exception {
+        storage.deleteSpaceMarineWithCreator(1);
+        assertTrue(collection.applyChange(1, null));
+        assertEquals(1, collection.size());
+        assertEquals(20, collection.averageHeight(), 1e-9);
+    }
+}
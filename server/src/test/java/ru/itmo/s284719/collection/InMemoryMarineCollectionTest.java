@@ -0,0 +1,77 @@
+package ru.itmo.s284719.collection;
+
+import org.junit.Test;
+import ru.itmo.s284719.database.RowChange;
+import ru.itmo.s284719.network.parser.Pair;
+import ru.itmo.s284719.network.space.*;
+
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of applying changes of other servers and replicated changes to the in-memory collection.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class InMemoryMarineCollectionTest {
+    static Pair<SpaceMarine, String> pair(int id, Integer height, MeleeWeapon meleeWeapon) {
+        SpaceMarine spaceMarine = new SpaceMarine("marine" + id, new Coordinates(1, 2L), 10L, height,
+                AstartesCategory.ASSAULT, meleeWeapon, new Chapter("chapter", "legion", 100, "world"));
+        spaceMarine.setId(id);
+        return new Pair<>(spaceMarine, "owner");
+    }
+
+    private static InMemoryMarineCollection collection() {
+        InMemoryMarineCollection collection = new InMemoryMarineCollection(new PriorityBlockingQueue<>());
+        collection.add(pair(1, 10, MeleeWeapon.CHAIN_SWORD));
+        collection.add(pair(2, 20, MeleeWeapon.POWER_SWORD));
+        return collection;
+    }
+
+    @Test
+    public void insertOfNewIdAddsElement() {
+        InMemoryMarineCollection collection = collection();
+        Pair<SpaceMarine, String> pair = pair(3, 30, MeleeWeapon.CHAIN_SWORD);
+        assertTrue(collection.applyChange(3, pair));
+        assertEquals(3, collection.size());
+        assertSame(pair, collection.findById(3));
+        assertEquals(20, collection.averageHeight(), 1e-9);
+    }
+
+    @Test
+    public void repeatedInsertChangesNothing() {
+        InMemoryMarineCollection collection = collection();
+        assertFalse(collection.applyChange(1, pair(1, 50, MeleeWeapon.CHAIN_SWORD)));
+        assertEquals(2, collection.size());
+        assertEquals(15, collection.averageHeight(), 1e-9);
+    }
+
+    @Test
+    public void deleteRemovesElementOnce() {
+        InMemoryMarineCollection collection = collection();
+        assertTrue(collection.applyChange(1, null));
+        assertNull(collection.findById(1));
+        assertEquals(1, collection.size());
+        assertEquals(20, collection.averageHeight(), 1e-9);
+        assertFalse(collection.applyChange(1, null));
+        assertEquals(1, collection.size());
+    }
+
+    @Test
+    public void rowChangesAreAppliedByIds() throws Exception {
+        InMemoryMarineCollection collection = collection();
+        Pair<SpaceMarine, String> pair = pair(3, 30, MeleeWeapon.CHAIN_SWORD);
+        assertTrue(collection.applyChange(new RowChange(3, true, 100, 30, MeleeWeapon.CHAIN_SWORD), pair));
+        assertTrue(collection.applyChange(new RowChange(2, false, 101, 20, MeleeWeapon.POWER_SWORD), null));
+        assertEquals(2, collection.size());
+        assertSame(pair, collection.findById(3));
+        assertNull(collection.findById(2));
+        assertEquals(20, collection.averageHeight(), 1e-9);
+    }
+}
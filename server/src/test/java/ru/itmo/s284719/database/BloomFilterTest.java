@@ -0,0 +1,53 @@
+package ru.itmo.s284719.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the Bloom filter of logins.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class BloomFilterTest {
+    @Test
+    public void addedStringsArePresent() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; ++i)
+            filter.put("login" + i);
+        for (int i = 0; i < 10000; ++i)
+            assertTrue(filter.mightContain("login" + i));
+    }
+
+    @Test
+    public void emptyFilterHasNoStrings() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        assertFalse(filter.mightContain(""));
+        assertFalse(filter.mightContain("admin"));
+    }
+
+    @Test
+    public void falsePositivesAreNearTheProbability() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; ++i)
+            filter.put("login" + i);
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; ++i) {
+            if (filter.mightContain("user" + i))
+                ++falsePositives;
+        }
+        // the expected count is 1000, the filter with the wrong size or hashes gives much more.
+        assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test
+    public void expectedCountIsAtLeastOne() {
+        BloomFilter filter = new BloomFilter(0, 0.01);
+        assertEquals(1, filter.getExpected());
+        filter.put("admin");
+        assertTrue(filter.mightContain("admin"));
+    }
+}
@@ -0,0 +1,100 @@
+package ru.itmo.s284719.database;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of giving out IDs from reserved blocks.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class IdAllocatorTest {
+    /**
+     * The source like the database's sequence: blocks of consecutive IDs.
+     */
+    private static class SequenceSource implements IdAllocator.BlockSource {
+        final AtomicInteger last = new AtomicInteger();
+        final AtomicInteger reserved = new AtomicInteger();
+
+        @Override
+        public int[] reserve(int count) {
+            reserved.incrementAndGet();
+            int[] ids = new int[count];
+            for (int i = 0; i < count; ++i)
+                ids[i] = last.incrementAndGet();
+            return ids;
+        }
+    }
+
+    @Test
+    public void idsFollowAcrossRefilledBlocks() throws Exception {
+        int[][] blocks = {{1, 2, 3}, {10, 11, 12}};
+        AtomicInteger reserved = new AtomicInteger();
+        IdAllocator allocator = new IdAllocator(count -> {
+            assertEquals(3, count);
+            return blocks[reserved.getAndIncrement()];
+        }, 3);
+        int[] expected = {1, 2, 3, 10, 11, 12};
+        for (int id : expected)
+            assertEquals(id, allocator.nextId());
+        assertEquals(2, reserved.get());
+    }
+
+    @Test
+    public void concurrentCallersGetUniqueIds() throws Exception {
+        SequenceSource source = new SequenceSource();
+        IdAllocator allocator = new IdAllocator(source, 16);
+        int threads = 8;
+        int idsPerThread = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                futures.add(executor.submit((Callable<int[]>) () -> {
+                    int[] ids = new int[idsPerThread];
+                    for (int j = 0; j < idsPerThread; ++j)
+                        ids[j] = allocator.nextId();
+                    return ids;
+                }));
+            }
+            Set<Integer> ids = new HashSet<>();
+            for (Future<int[]> future : futures)
+                for (int id : future.get())
+                    assertTrue("The ID " + id + " is given twice.", ids.add(id));
+            assertEquals(threads * idsPerThread, ids.size());
+            // every reserved block is used up: no block is reserved twice for the same exhaustion.
+            assertEquals(threads * idsPerThread / 16, source.reserved.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void emptyBlockIsError() throws Exception {
+        new IdAllocator(count -> new int[0], 16).nextId();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blockSizeMustBePositive() {
+        new IdAllocator(count -> new int[count], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeBlockSizeIsRejected() {
+        new IdAllocator(count -> new int[count], -1);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.itmo.s284719.server;
+
+import org.junit.Test;
+import ru.itmo.s284719.network.commands.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the table of handlers of clients' commands.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class CommandHandlersTest {
+    /**
+     * Classes of all commands, which clients send to the server.
+     */
+    private static final List<Class<? extends Command>> CLIENT_COMMANDS = Arrays.asList(
+            Add.class, AddIfMin.class, AverageOfHeight.class, Clear.class, CountGreaterThanMeleeWeapon.class,
+            Info.class, RemoveAnyByHeight.class, RemoveById.class, RemoveGreater.class, RemoveHead.class,
+            Replicate.class, Show.class, Summary.class, Update.class);
+
+    @Test
+    public void everyClientCommandHasHandler() {
+        Map<Class<? extends Command>, ServerConsole.CommandHandler> handlers = ServerConsole.commandHandlers();
+        for (Class<? extends Command> type : CLIENT_COMMANDS)
+            assertNotNull(type.getSimpleName(), handlers.get(type));
+        assertEquals(CLIENT_COMMANDS.size(), handlers.size());
+    }
+
+    @Test
+    public void unknownCommandHasNoHandler() {
+        Command unknown = new Command() {
+            @Override
+            public String getName() {
+                return "unknown";
+            }
+
+            @Override
+            public String getDesc() {
+                return "";
+            }
+        };
+        assertNull(ServerConsole.commandHandlers().get(unknown.getClass()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void tableIsUnmodifiable() {
+        ServerConsole.commandHandlers().remove(Add.class);
+    }
+}
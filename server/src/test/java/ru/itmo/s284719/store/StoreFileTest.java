@@ -0,0 +1,140 @@
+package ru.itmo.s284719.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of records of the store's file and their recovery after torn writes.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class StoreFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The record read at the opening.
+     */
+    private static class Record {
+        final int offset;
+        final byte type;
+        final byte[] payload;
+
+        Record(int offset, byte type, byte[] payload) {
+            this.offset = offset;
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    private static List<Record> open(Path path) throws IOException {
+        List<Record> records = new ArrayList<>();
+        new StoreFile(path, (offset, type, payload) -> records.add(new Record(offset, type, payload))).close();
+        return records;
+    }
+
+    @Test
+    public void recordsAreReadAfterReopening() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("data.log");
+        int first, second;
+        try (StoreFile file = new StoreFile(path, null)) {
+            first = file.append((byte) 1, new byte[] {1, 2, 3});
+            second = file.append((byte) 2, new byte[0]);
+            assertEquals(0, first);
+            assertEquals(StoreFile.HEADER_SIZE + 4, second);
+            assertEquals(1, file.readType(first));
+            assertArrayEquals(new byte[] {1, 2, 3}, file.readPayload(first));
+            assertEquals(StoreFile.HEADER_SIZE + 4, file.recordSize(first));
+        }
+        List<Record> records = open(path);
+        assertEquals(2, records.size());
+        assertEquals(first, records.get(0).offset);
+        assertEquals(1, records.get(0).type);
+        assertArrayEquals(new byte[] {1, 2, 3}, records.get(0).payload);
+        assertEquals(second, records.get(1).offset);
+        assertEquals(2, records.get(1).type);
+        assertEquals(0, records.get(1).payload.length);
+    }
+
+    @Test
+    public void recordWithWrongCrcAndLaterRecordsAreCut() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("data.log");
+        int second;
+        try (StoreFile file = new StoreFile(path, null)) {
+            file.append((byte) 1, new byte[] {1});
+            second = file.append((byte) 1, new byte[] {2});
+            file.append((byte) 1, new byte[] {3});
+        }
+        // damage the payload of the second record.
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            raw.seek(second + StoreFile.HEADER_SIZE + 1);
+            raw.write(7);
+        }
+        List<Record> records = open(path);
+        assertEquals(1, records.size());
+        assertArrayEquals(new byte[] {1}, records.get(0).payload);
+
+        // the cleared tail doesn't bring the third record back, new records follow the first one.
+        try (StoreFile file = new StoreFile(path, null)) {
+            assertEquals(second, file.getEnd());
+            file.append((byte) 1, new byte[] {4});
+        }
+        records = open(path);
+        assertEquals(2, records.size());
+        assertArrayEquals(new byte[] {4}, records.get(1).payload);
+    }
+
+    @Test
+    public void recordWithTornLengthIsCut() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("data.log");
+        int second;
+        try (StoreFile file = new StoreFile(path, null)) {
+            file.append((byte) 1, new byte[] {1});
+            second = file.append((byte) 1, new byte[] {2});
+        }
+        // the length points after the end of the file.
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            raw.seek(second);
+            raw.writeInt(Integer.MAX_VALUE);
+        }
+        assertEquals(1, open(path).size());
+    }
+
+    @Test
+    public void regionGrowsForLargeRecords() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("data.log");
+        byte[] large = new byte[3 << 20];
+        Arrays.fill(large, (byte) 5);
+        try (StoreFile file = new StoreFile(path, null)) {
+            file.append((byte) 1, new byte[] {1});
+            int offset = file.append((byte) 1, large);
+            assertArrayEquals(large, file.readPayload(offset));
+        }
+        List<Record> records = open(path);
+        assertEquals(2, records.size());
+        assertArrayEquals(large, records.get(1).payload);
+    }
+
+    @Test
+    public void recordsOverTheLimitDontFit() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("data.log");
+        try (StoreFile file = new StoreFile(path, null)) {
+            assertTrue(file.fits(100));
+            assertFalse(file.fits(StoreFile.MAX_CAPACITY - StoreFile.HEADER_SIZE));
+        }
+    }
+}